@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.cache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+import com.codefollower.lealone.atomicdb.io.sstable.Descriptor;
+import com.codefollower.lealone.atomicdb.metrics.CacheMetrics;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+/**
+ * A cache of sstable data chunks, shared by all sstables, that keeps the chunks off-heap.
+ * For compressed sstables a chunk is the decompressed compression chunk; for uncompressed sstables
+ * it is the aligned buffer a RandomAccessReader reads at once.
+ *
+ * Readers copy a cached chunk into their own buffer, so a chunk found in the cache saves both
+ * the read from disk and the decompression.
+ *
+ * The chunks of a file are keyed by the CachedFile its PoolingSegmentedFile opened, which also
+ * tracks their positions: when the file is released they are removed without scanning the cache,
+ * and a chunk written by a reader that raced with the release is removed by that reader.
+ */
+public class ChunkCache implements ICache<ChunkCache.Key, RefCountedMemory>
+{
+    private static final Logger logger = LoggerFactory.getLogger(ChunkCache.class);
+
+    private static final int DEFAULT_CONCURENCY_LEVEL = 64;
+
+    public static final ChunkCache instance = new ChunkCache(DatabaseDescriptor.getChunkCacheSizeInMB() * 1024L * 1024L);
+
+    private final ConcurrentLinkedHashMap<Key, RefCountedMemory> map;
+    private final CacheMetrics metrics;
+    private final ConcurrentMap<String, CacheMetrics> tableMetrics = new ConcurrentHashMap<String, CacheMetrics>();
+
+    private ChunkCache(long capacity)
+    {
+        EvictionListener<Key, RefCountedMemory> listener = new EvictionListener<Key, RefCountedMemory>()
+        {
+            public void onEviction(Key k, RefCountedMemory mem)
+            {
+                mem.unreference();
+                k.file.positions.remove(k.position);
+                // the chunk may have been cached again meanwhile, it must stay tracked
+                if (map.containsKey(k))
+                    k.file.positions.add(k.position);
+            }
+        };
+
+        map = new ConcurrentLinkedHashMap.Builder<Key, RefCountedMemory>()
+              .weigher(new Weigher<RefCountedMemory>()
+              {
+                  public int weightOf(RefCountedMemory value)
+                  {
+                      return (int) value.size();
+                  }
+              })
+              .maximumWeightedCapacity(capacity)
+              .concurrencyLevel(DEFAULT_CONCURENCY_LEVEL)
+              .listener(listener)
+              .build();
+        metrics = new CacheMetrics("ChunkCache", this);
+
+        logger.info("Initializing chunk cache with capacity of {} MBs", capacity / 1024 / 1024);
+    }
+
+    public boolean isEnabled()
+    {
+        return map.capacity() > 0;
+    }
+
+    /**
+     * @return the handle under which the chunks of the given data file are cached
+     */
+    public CachedFile openFile(String path)
+    {
+        Descriptor desc = Descriptor.fromFilename(path);
+        return new CachedFile(path, getMetrics(desc.ksname, desc.cfname));
+    }
+
+    /**
+     * @return the metrics of the given table
+     */
+    private CacheMetrics getMetrics(String ksName, String cfName)
+    {
+        String name = ksName + "." + cfName;
+        CacheMetrics m = tableMetrics.get(name);
+        if (m == null)
+        {
+            synchronized (tableMetrics)
+            {
+                m = tableMetrics.get(name);
+                if (m == null)
+                {
+                    m = new CacheMetrics("ChunkCache", ksName, cfName);
+                    tableMetrics.put(name, m);
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Unregister the metrics of a dropped table.
+     */
+    public void releaseMetrics(String ksName, String cfName)
+    {
+        synchronized (tableMetrics)
+        {
+            CacheMetrics m = tableMetrics.remove(ksName + "." + cfName);
+            if (m != null)
+                m.release();
+        }
+    }
+
+    public CacheMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Copy a cached chunk into the given buffer.
+     *
+     * @return the number of bytes copied, or -1 if the chunk is not cached
+     */
+    public int read(CachedFile file, long position, byte[] buffer)
+    {
+        metrics.requests.mark();
+        file.metrics.requests.mark();
+
+        RefCountedMemory mem = map.get(new Key(file, position));
+        if (mem == null || !mem.reference())
+            return -1;
+        try
+        {
+            int length = (int) mem.size();
+            mem.getBytes(0, buffer, 0, length);
+            metrics.hits.mark();
+            file.metrics.hits.mark();
+            return length;
+        }
+        finally
+        {
+            mem.unreference();
+        }
+    }
+
+    /**
+     * Cache a copy of the first length bytes of the given buffer.
+     */
+    public void write(CachedFile file, long position, byte[] buffer, int length)
+    {
+        if (length <= 0 || file.invalidated)
+            return;
+
+        RefCountedMemory mem;
+        try
+        {
+            mem = new RefCountedMemory(length);
+        }
+        catch (OutOfMemoryError e)
+        {
+            return; // out of native memory.  never mind.
+        }
+        mem.setBytes(0, buffer, 0, length);
+        Key key = new Key(file, position);
+        put(key, mem);
+        file.positions.add(position);
+        // the position is tracked before the flag is read, so either invalidateFile sees it or we see the flag
+        if (file.invalidated)
+            remove(key);
+    }
+
+    /**
+     * Remove all the chunks of a data file, once its sstable is released.
+     */
+    public void invalidateFile(CachedFile file)
+    {
+        file.invalidated = true;
+        for (Long position : file.positions)
+            remove(new Key(file, position));
+    }
+
+    public long capacity()
+    {
+        return map.capacity();
+    }
+
+    public void setCapacity(long capacity)
+    {
+        map.setCapacity(capacity);
+    }
+
+    public void put(Key key, RefCountedMemory mem)
+    {
+        RefCountedMemory old = map.put(key, mem);
+        if (old != null)
+            old.unreference();
+    }
+
+    public boolean putIfAbsent(Key key, RefCountedMemory mem)
+    {
+        RefCountedMemory old = map.putIfAbsent(key, mem);
+        if (old != null)
+            mem.unreference();
+        return old == null;
+    }
+
+    public boolean replace(Key key, RefCountedMemory old, RefCountedMemory mem)
+    {
+        boolean success = map.replace(key, old, mem);
+        if (success)
+            old.unreference();
+        else
+            mem.unreference();
+        return success;
+    }
+
+    public RefCountedMemory get(Key key)
+    {
+        return map.get(key);
+    }
+
+    public void remove(Key key)
+    {
+        RefCountedMemory mem = map.remove(key);
+        if (mem != null)
+            mem.unreference();
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public long weightedSize()
+    {
+        return map.weightedSize();
+    }
+
+    public void clear()
+    {
+        for (Key key : map.keySet())
+            remove(key);
+    }
+
+    public Set<Key> keySet()
+    {
+        return map.keySet();
+    }
+
+    public Set<Key> hotKeySet(int n)
+    {
+        return map.descendingKeySetWithLimit(n);
+    }
+
+    public boolean containsKey(Key key)
+    {
+        return map.containsKey(key);
+    }
+
+    /**
+     * The chunks cached for one data file.
+     */
+    public static class CachedFile
+    {
+        public final String path;
+        private final CacheMetrics metrics;
+        private final Set<Long> positions = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        private volatile boolean invalidated;
+
+        private CachedFile(String path, CacheMetrics metrics)
+        {
+            this.path = path;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String toString()
+        {
+            return path;
+        }
+    }
+
+    public static class Key
+    {
+        public final CachedFile file;
+        public final long position;
+
+        public Key(CachedFile file, long position)
+        {
+            this.file = file;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return position == other.position && file == other.file;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * file.path.hashCode() + (int) (position ^ (position >>> 32));
+        }
+
+        @Override
+        public String toString()
+        {
+            return file + "@" + position;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import com.codefollower.lealone.atomicdb.serializers.MarshalException;
 import com.codefollower.lealone.atomicdb.tracing.Tracing;
 import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
 import com.codefollower.lealone.atomicdb.utils.FBUtilities;
+import com.codefollower.lealone.atomicdb.utils.FilterFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.collect.AbstractIterator;
@@ -82,6 +83,8 @@ public final class CFMetaData
     public final static SpeculativeRetry DEFAULT_SPECULATIVE_RETRY = new SpeculativeRetry(SpeculativeRetry.RetryType.PERCENTILE, 0.99);
     public final static int DEFAULT_INDEX_INTERVAL = 128;
     public final static boolean DEFAULT_POPULATE_IO_CACHE_ON_FLUSH = false;
+    public final static FilterFactory.Type DEFAULT_BLOOM_FILTER_TYPE = FilterFactory.Type.STANDARD;
+    public final static int CACHE_WHOLE_PARTITION = 0;
 
     // Note that this is the default only for user created tables
     public final static String DEFAULT_COMPRESSOR = LZ4Compressor.class.getCanonicalName();
@@ -132,6 +135,7 @@ public final class CFMetaData
                                                                     + "memtable_flush_period_in_ms int,"
                                                                     + "key_aliases text,"
                                                                     + "bloom_filter_fp_chance double,"
+                                                                    + "bloom_filter_type text,"
                                                                     + "caching text,"
                                                                     + "default_time_to_live int,"
                                                                     + "compaction_strategy_class text,"
@@ -141,6 +145,7 @@ public final class CFMetaData
                                                                     + "compaction_strategy_options text,"
                                                                     + "speculative_retry text,"
                                                                     + "populate_io_cache_on_flush boolean,"
+                                                                    + "row_cache_cells_per_partition int,"
                                                                     + "index_interval int,"
                                                                     + "dropped_columns map<text, bigint>,"
                                                                     + "PRIMARY KEY (keyspace_name, columnfamily_name)"
@@ -396,12 +401,14 @@ public final class CFMetaData
     private volatile int minCompactionThreshold = DEFAULT_MIN_COMPACTION_THRESHOLD;
     private volatile int maxCompactionThreshold = DEFAULT_MAX_COMPACTION_THRESHOLD;
     private volatile Double bloomFilterFpChance = null;
+    private volatile FilterFactory.Type bloomFilterType = DEFAULT_BLOOM_FILTER_TYPE;
     private volatile Caching caching = DEFAULT_CACHING_STRATEGY;
     private volatile int indexInterval = DEFAULT_INDEX_INTERVAL;
     private int memtableFlushPeriod = 0;
     private volatile int defaultTimeToLive = DEFAULT_DEFAULT_TIME_TO_LIVE;
     private volatile SpeculativeRetry speculativeRetry = DEFAULT_SPECULATIVE_RETRY;
     private volatile boolean populateIoCacheOnFlush = DEFAULT_POPULATE_IO_CACHE_ON_FLUSH;
+    private volatile int rowCacheCellsPerPartition = CACHE_WHOLE_PARTITION;
     private volatile Map<ColumnIdentifier, Long> droppedColumns = new HashMap<>();
     private volatile Map<String, TriggerDefinition> triggers = new HashMap<>();
     private volatile boolean isPurged = false;
@@ -441,12 +448,14 @@ public final class CFMetaData
     public CFMetaData compactionStrategyOptions(Map<String, String> prop) {compactionStrategyOptions = prop; return this;}
     public CFMetaData compressionParameters(CompressionParameters prop) {compressionParameters = prop; return this;}
     public CFMetaData bloomFilterFpChance(Double prop) {bloomFilterFpChance = prop; return this;}
+    public CFMetaData bloomFilterType(FilterFactory.Type prop) {bloomFilterType = prop; return this;}
     public CFMetaData caching(Caching prop) {caching = prop; return this;}
     public CFMetaData indexInterval(int prop) {indexInterval = prop; return this;}
     public CFMetaData memtableFlushPeriod(int prop) {memtableFlushPeriod = prop; return this;}
     public CFMetaData defaultTimeToLive(int prop) {defaultTimeToLive = prop; return this;}
     public CFMetaData speculativeRetry(SpeculativeRetry prop) {speculativeRetry = prop; return this;}
     public CFMetaData populateIoCacheOnFlush(boolean prop) {populateIoCacheOnFlush = prop; return this;}
+    public CFMetaData rowCacheCellsPerPartition(int prop) {rowCacheCellsPerPartition = prop; return this;}
     public CFMetaData droppedColumns(Map<ColumnIdentifier, Long> cols) {droppedColumns = cols; return this;}
     public CFMetaData triggers(Map<String, TriggerDefinition> prop) {triggers = prop; return this;}
 
@@ -598,12 +607,14 @@ public final class CFMetaData
                       .compactionStrategyOptions(new HashMap<>(oldCFMD.compactionStrategyOptions))
                       .compressionParameters(oldCFMD.compressionParameters.copy())
                       .bloomFilterFpChance(oldCFMD.bloomFilterFpChance)
+                      .bloomFilterType(oldCFMD.bloomFilterType)
                       .caching(oldCFMD.caching)
                       .defaultTimeToLive(oldCFMD.defaultTimeToLive)
                       .indexInterval(oldCFMD.indexInterval)
                       .speculativeRetry(oldCFMD.speculativeRetry)
                       .memtableFlushPeriod(oldCFMD.memtableFlushPeriod)
                       .populateIoCacheOnFlush(oldCFMD.populateIoCacheOnFlush)
+                      .rowCacheCellsPerPartition(oldCFMD.rowCacheCellsPerPartition)
                       .droppedColumns(new HashMap<>(oldCFMD.droppedColumns))
                       .triggers(new HashMap<>(oldCFMD.triggers))
                       .rebuild();
@@ -665,6 +676,15 @@ public final class CFMetaData
         return populateIoCacheOnFlush;
     }
 
+    /**
+     * @return how many cells, from the start of a partition in clustering order, the row cache keeps
+     *         for each partition, or CACHE_WHOLE_PARTITION
+     */
+    public int getRowCacheCellsPerPartition()
+    {
+        return rowCacheCellsPerPartition;
+    }
+
     public int getGcGraceSeconds()
     {
         return gcGraceSeconds;
@@ -783,6 +803,11 @@ public final class CFMetaData
                : bloomFilterFpChance;
     }
 
+    public FilterFactory.Type getBloomFilterType()
+    {
+        return bloomFilterType;
+    }
+
     public Caching getCaching()
     {
         return caching;
@@ -845,12 +870,14 @@ public final class CFMetaData
             .append(compactionStrategyOptions, rhs.compactionStrategyOptions)
             .append(compressionParameters, rhs.compressionParameters)
             .append(bloomFilterFpChance, rhs.bloomFilterFpChance)
+            .append(bloomFilterType, rhs.bloomFilterType)
             .append(memtableFlushPeriod, rhs.memtableFlushPeriod)
             .append(caching, rhs.caching)
             .append(defaultTimeToLive, rhs.defaultTimeToLive)
             .append(indexInterval, rhs.indexInterval)
             .append(speculativeRetry, rhs.speculativeRetry)
             .append(populateIoCacheOnFlush, rhs.populateIoCacheOnFlush)
+            .append(rowCacheCellsPerPartition, rhs.rowCacheCellsPerPartition)
             .append(droppedColumns, rhs.droppedColumns)
             .append(triggers, rhs.triggers)
             .isEquals();
@@ -878,12 +905,14 @@ public final class CFMetaData
             .append(compactionStrategyOptions)
             .append(compressionParameters)
             .append(bloomFilterFpChance)
+            .append(bloomFilterType)
             .append(memtableFlushPeriod)
             .append(caching)
             .append(defaultTimeToLive)
             .append(indexInterval)
             .append(speculativeRetry)
             .append(populateIoCacheOnFlush)
+            .append(rowCacheCellsPerPartition)
             .append(droppedColumns)
             .append(triggers)
             .toHashCode();
@@ -964,11 +993,13 @@ public final class CFMetaData
         maxCompactionThreshold = cfm.maxCompactionThreshold;
 
         bloomFilterFpChance = cfm.bloomFilterFpChance;
+        bloomFilterType = cfm.bloomFilterType;
         memtableFlushPeriod = cfm.memtableFlushPeriod;
         caching = cfm.caching;
         defaultTimeToLive = cfm.defaultTimeToLive;
         speculativeRetry = cfm.speculativeRetry;
         populateIoCacheOnFlush = cfm.populateIoCacheOnFlush;
+        rowCacheCellsPerPartition = cfm.rowCacheCellsPerPartition;
 
         if (!cfm.droppedColumns.isEmpty())
             droppedColumns = cfm.droppedColumns;
@@ -1260,6 +1291,9 @@ public final class CFMetaData
         if (bloomFilterFpChance != null && bloomFilterFpChance == 0)
             throw new ConfigurationException("Zero false positives is impossible; bloom filter false positive chance bffpc must be 0 < bffpc <= 1");
 
+        if (rowCacheCellsPerPartition < 0)
+            throw new ConfigurationException("row_cache_cells_per_partition must not be negative (0 caches whole partitions)");
+
         return this;
     }
 
@@ -1415,12 +1449,14 @@ public final class CFMetaData
         adder.add("local_read_repair_chance", dcLocalReadRepairChance);
         adder.add("replicate_on_write", replicateOnWrite);
         adder.add("populate_io_cache_on_flush", populateIoCacheOnFlush);
+        adder.add("row_cache_cells_per_partition", rowCacheCellsPerPartition);
         adder.add("gc_grace_seconds", gcGraceSeconds);
         adder.add("default_validator", defaultValidator.toString());
         adder.add("key_validator", keyValidator.toString());
         adder.add("min_compaction_threshold", minCompactionThreshold);
         adder.add("max_compaction_threshold", maxCompactionThreshold);
         adder.add("bloom_filter_fp_chance", bloomFilterFpChance);
+        adder.add("bloom_filter_type", bloomFilterType.toString());
 
         adder.add("memtable_flush_period_in_ms", memtableFlushPeriod);
         adder.add("caching", caching.toString());
@@ -1479,6 +1515,8 @@ public final class CFMetaData
                 cfm.comment(result.getString("comment"));
             if (result.has("bloom_filter_fp_chance"))
                 cfm.bloomFilterFpChance(result.getDouble("bloom_filter_fp_chance"));
+            if (result.has("bloom_filter_type"))
+                cfm.bloomFilterType(FilterFactory.Type.fromString(result.getString("bloom_filter_type")));
             if (result.has("memtable_flush_period_in_ms"))
                 cfm.memtableFlushPeriod(result.getInt("memtable_flush_period_in_ms"));
             cfm.caching(Caching.valueOf(result.getString("caching")));
@@ -1503,6 +1541,8 @@ public final class CFMetaData
             }
             if (result.has("populate_io_cache_on_flush"))
                 cfm.populateIoCacheOnFlush(result.getBoolean("populate_io_cache_on_flush"));
+            if (result.has("row_cache_cells_per_partition"))
+                cfm.rowCacheCellsPerPartition(result.getInt("row_cache_cells_per_partition"));
 
             /*
              * The info previously hold by key_aliases, column_aliases and value_alias is now stored in columnMetadata (because 1) this
@@ -1955,12 +1995,14 @@ public final class CFMetaData
             .append("compactionStrategyOptions", compactionStrategyOptions)
             .append("compressionOptions", compressionParameters.asThriftOptions())
             .append("bloomFilterFpChance", bloomFilterFpChance)
+            .append("bloomFilterType", bloomFilterType)
             .append("memtable_flush_period_in_ms", memtableFlushPeriod)
             .append("caching", caching)
             .append("defaultTimeToLive", defaultTimeToLive)
             .append("speculative_retry", speculativeRetry)
             .append("indexInterval", indexInterval)
             .append("populateIoCacheOnFlush", populateIoCacheOnFlush)
+            .append("rowCacheCellsPerPartition", rowCacheCellsPerPartition)
             .append("droppedColumns", droppedColumns)
             .append("triggers", triggers)
             .toString();
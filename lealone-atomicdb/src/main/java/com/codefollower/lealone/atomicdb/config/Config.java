@@ -110,11 +110,14 @@ public class Config
     public Integer column_index_size_in_kb = 64;
     public Integer in_memory_compaction_limit_in_mb = 64;
     public Integer concurrent_compactors = FBUtilities.getAvailableProcessors();
+    public Integer concurrent_subrange_compactors;
+    public int subrange_compaction_threshold_in_mb = 1024;
     public volatile Integer compaction_throughput_mb_per_sec = 16;
 
     public Integer max_streaming_retries = 3;
 
     public volatile Integer stream_throughput_outbound_megabits_per_sec = 200;
+    public boolean stream_entire_sstables = true;
 
     public String[] data_file_directories;
 
@@ -125,9 +128,11 @@ public class Config
     public Integer commitlog_total_space_in_mb;
     public CommitLogSync commitlog_sync;
     public Double commitlog_sync_batch_window_in_ms;
+    public Double commitlog_sync_group_window_in_ms;
     public Integer commitlog_sync_period_in_ms;
     public int commitlog_segment_size_in_mb = 32;
     public int commitlog_periodic_queue_size = 1024 * FBUtilities.getAvailableProcessors();
+    public boolean commitlog_compression = false;
 
     public String endpoint_snitch;
     public Boolean dynamic_snitch = true;
@@ -151,6 +156,9 @@ public class Config
 
     public int hinted_handoff_throttle_in_kb = 1024;
     public int max_hints_delivery_threads = 1;
+    public String hints_directory;
+    public int max_hints_file_size_in_mb = 128;
+    public int hints_flush_period_in_ms = 10000;
     public boolean compaction_preheat_key_cache = true;
 
     public volatile boolean incremental_backups = false;
@@ -173,9 +181,14 @@ public class Config
     public boolean preheat_kernel_page_cache = false;
 
     public Integer file_cache_size_in_mb;
+    public Integer chunk_cache_size_in_mb;
 
     public boolean inter_dc_tcp_nodelay = true;
 
+    public InternodeCoalescing internode_command_coalescing = InternodeCoalescing.moving_average;
+    public InternodeCoalescing internode_response_coalescing = InternodeCoalescing.moving_average;
+    public int internode_coalescing_window_in_us = 200;
+
     public String memtable_allocator = "SlabAllocator";
 
     private static boolean outboundBindAny = false;
@@ -209,7 +222,8 @@ public class Config
     public static enum CommitLogSync
     {
         periodic,
-        batch
+        batch,
+        group
     }
 
     public static enum InternodeCompression
@@ -217,6 +231,11 @@ public class Config
         all, none, dc
     }
 
+    public static enum InternodeCoalescing
+    {
+        disabled, fixed, moving_average
+    }
+
     public static enum DiskAccessMode
     {
         auto,
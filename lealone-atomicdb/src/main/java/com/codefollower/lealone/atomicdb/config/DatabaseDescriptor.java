@@ -159,6 +159,18 @@ public class DatabaseDescriptor
             }
             logger.debug("Syncing log with a batch window of {}", conf.commitlog_sync_batch_window_in_ms);
         }
+        else if (conf.commitlog_sync == Config.CommitLogSync.group)
+        {
+            if (conf.commitlog_sync_group_window_in_ms == null)
+            {
+                throw new ConfigurationException("Missing value for commitlog_sync_group_window_in_ms: Double expected.");
+            }
+            else if (conf.commitlog_sync_batch_window_in_ms != null || conf.commitlog_sync_period_in_ms != null)
+            {
+                throw new ConfigurationException("Group sync specified, but commitlog_sync_batch_window_in_ms or commitlog_sync_period_in_ms found. Only specify commitlog_sync_group_window_in_ms when using group sync");
+            }
+            logger.debug("Syncing log with a group window of {}", conf.commitlog_sync_group_window_in_ms);
+        }
         else
         {
             if (conf.commitlog_sync_period_in_ms == null)
@@ -260,6 +272,9 @@ public class DatabaseDescriptor
         if (conf.file_cache_size_in_mb == null)
             conf.file_cache_size_in_mb = Math.min(512, (int) (Runtime.getRuntime().maxMemory() / (4 * 1048576)));
 
+        if (conf.chunk_cache_size_in_mb == null)
+            conf.chunk_cache_size_in_mb = Math.min(256, (int) (Runtime.getRuntime().maxMemory() / (8 * 1048576)));
+
         if (conf.memtable_total_space_in_mb == null)
             conf.memtable_total_space_in_mb = (int) (Runtime.getRuntime().maxMemory() / (4 * 1048576));
         if (conf.memtable_total_space_in_mb <= 0)
@@ -332,6 +347,9 @@ public class DatabaseDescriptor
         if (conf.native_transport_max_frame_size_in_mb <= 0)
             throw new ConfigurationException("native_transport_max_frame_size_in_mb must be positive");
 
+        if (conf.internode_coalescing_window_in_us < 0)
+            throw new ConfigurationException("internode_coalescing_window_in_us must not be negative");
+
         /* end point snitch */
         if (conf.endpoint_snitch == null)
         {
@@ -408,6 +426,12 @@ public class DatabaseDescriptor
         if (conf.concurrent_compactors <= 0)
             throw new ConfigurationException("concurrent_compactors should be strictly greater than 0");
 
+        if (conf.concurrent_subrange_compactors == null)
+            conf.concurrent_subrange_compactors = conf.concurrent_compactors;
+
+        if (conf.concurrent_subrange_compactors <= 0)
+            throw new ConfigurationException("concurrent_subrange_compactors should be strictly greater than 0");
+
         /* data file and commit log directories. they get created later, when they're needed. */
         if (conf.commitlog_directory != null && conf.data_file_directories != null && conf.saved_caches_directory != null)
         {
@@ -432,6 +456,9 @@ public class DatabaseDescriptor
                 throw new ConfigurationException("saved_caches_directory missing");
         }
 
+        if (conf.hints_directory == null && conf.commitlog_directory != null)
+            conf.hints_directory = new File(new File(conf.commitlog_directory).getAbsoluteFile().getParentFile(), "hints").getPath();
+
         if (conf.initial_token != null)
             for (String token : tokensFromString(conf.initial_token))
                 partitioner.getTokenFactory().validate(token);
@@ -606,6 +633,8 @@ public class DatabaseDescriptor
                 throw new ConfigurationException("saved_caches_directory must be specified");
 
             FileUtils.createDirectory(conf.saved_caches_directory);
+
+            FileUtils.createDirectory(conf.hints_directory);
         }
         catch (ConfigurationException e)
         {
@@ -889,6 +918,26 @@ public class DatabaseDescriptor
         return conf.concurrent_compactors;
     }
 
+    public static int getConcurrentSubRangeCompactors()
+    {
+        return conf.concurrent_subrange_compactors;
+    }
+
+    public static void setConcurrentSubRangeCompactors(int value)
+    {
+        conf.concurrent_subrange_compactors = value;
+    }
+
+    public static long getSubRangeCompactionThreshold()
+    {
+        return conf.subrange_compaction_threshold_in_mb * 1024L * 1024L;
+    }
+
+    public static void setSubRangeCompactionThreshold(int thresholdInMB)
+    {
+        conf.subrange_compaction_threshold_in_mb = thresholdInMB;
+    }
+
     public static int getCompactionThroughputMbPerSec()
     {
         return conf.compaction_throughput_mb_per_sec;
@@ -904,6 +953,11 @@ public class DatabaseDescriptor
         return conf.stream_throughput_outbound_megabits_per_sec;
     }
 
+    public static boolean streamEntireSSTables()
+    {
+        return conf.stream_entire_sstables;
+    }
+
     public static void setStreamThroughputOutboundMegabitsPerSec(int value)
     {
         conf.stream_throughput_outbound_megabits_per_sec = value;
@@ -1057,6 +1111,11 @@ public class DatabaseDescriptor
         return conf.commitlog_sync_batch_window_in_ms;
     }
 
+    public static double getCommitLogSyncGroupWindow()
+    {
+        return conf.commitlog_sync_group_window_in_ms;
+    }
+
     public static int getCommitLogSyncPeriod()
     {
         return conf.commitlog_sync_period_in_ms;
@@ -1067,6 +1126,17 @@ public class DatabaseDescriptor
         return conf.commitlog_periodic_queue_size;
     }
 
+    public static boolean isCommitLogCompressed()
+    {
+        return conf.commitlog_compression;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogCompression(boolean compression)
+    {
+        conf.commitlog_compression = compression;
+    }
+
     public static Config.CommitLogSync getCommitLogSync()
     {
         return conf.commitlog_sync;
@@ -1185,6 +1255,21 @@ public class DatabaseDescriptor
         return conf.max_hints_delivery_threads;
     }
 
+    public static String getHintsDirectory()
+    {
+        return conf.hints_directory;
+    }
+
+    public static long getMaxHintsFileSize()
+    {
+        return conf.max_hints_file_size_in_mb * 1024L * 1024L;
+    }
+
+    public static int getHintsFlushPeriodInMS()
+    {
+        return conf.hints_flush_period_in_ms;
+    }
+
     public static boolean getPreheatKeyCache()
     {
         return conf.compaction_preheat_key_cache;
@@ -1210,6 +1295,11 @@ public class DatabaseDescriptor
         return conf.file_cache_size_in_mb;
     }
 
+    public static int getChunkCacheSizeInMB()
+    {
+        return conf.chunk_cache_size_in_mb;
+    }
+
     public static int getTotalMemtableSpaceInMB()
     {
         // should only be called if estimatesRealMemtableSize() is true
@@ -1317,6 +1407,21 @@ public class DatabaseDescriptor
         return conf.inter_dc_tcp_nodelay;
     }
 
+    public static Config.InternodeCoalescing getInternodeCommandCoalescing()
+    {
+        return conf.internode_command_coalescing;
+    }
+
+    public static Config.InternodeCoalescing getInternodeResponseCoalescing()
+    {
+        return conf.internode_response_coalescing;
+    }
+
+    public static int getInternodeCoalescingWindow()
+    {
+        return conf.internode_coalescing_window_in_us;
+    }
+
     public static boolean shouldPreheatPageCache()
     {
         return conf.preheat_kernel_page_cache;
@@ -25,6 +25,7 @@ import com.codefollower.lealone.atomicdb.db.compaction.AbstractCompactionStrateg
 import com.codefollower.lealone.atomicdb.exceptions.ConfigurationException;
 import com.codefollower.lealone.atomicdb.exceptions.SyntaxException;
 import com.codefollower.lealone.atomicdb.io.compress.CompressionParameters;
+import com.codefollower.lealone.atomicdb.utils.FilterFactory;
 
 public class CFPropDefs extends PropertyDefinitions
 {
@@ -40,7 +41,9 @@ public class CFPropDefs extends PropertyDefinitions
     public static final String KW_INDEX_INTERVAL = "index_interval";
     public static final String KW_SPECULATIVE_RETRY = "speculative_retry";
     public static final String KW_POPULATE_IO_CACHE_ON_FLUSH = "populate_io_cache_on_flush";
+    public static final String KW_ROW_CACHE_CELLS_PER_PARTITION = "row_cache_cells_per_partition";
     public static final String KW_BF_FP_CHANCE = "bloom_filter_fp_chance";
+    public static final String KW_BF_TYPE = "bloom_filter_type";
     public static final String KW_MEMTABLE_FLUSH_PERIOD = "memtable_flush_period_in_ms";
 
     public static final String KW_COMPACTION = "compaction";
@@ -63,7 +66,9 @@ public class CFPropDefs extends PropertyDefinitions
         keywords.add(KW_INDEX_INTERVAL);
         keywords.add(KW_SPECULATIVE_RETRY);
         keywords.add(KW_POPULATE_IO_CACHE_ON_FLUSH);
+        keywords.add(KW_ROW_CACHE_CELLS_PER_PARTITION);
         keywords.add(KW_BF_FP_CHANCE);
+        keywords.add(KW_BF_TYPE);
         keywords.add(KW_COMPACTION);
         keywords.add(KW_COMPRESSION);
         keywords.add(KW_MEMTABLE_FLUSH_PERIOD);
@@ -113,8 +118,10 @@ public class CFPropDefs extends PropertyDefinitions
 
         validateMinimumInt(KW_DEFAULT_TIME_TO_LIVE, 0, CFMetaData.DEFAULT_DEFAULT_TIME_TO_LIVE);
         validateMinimumInt(KW_INDEX_INTERVAL, 1, CFMetaData.DEFAULT_INDEX_INTERVAL);
+        validateMinimumInt(KW_ROW_CACHE_CELLS_PER_PARTITION, 0, CFMetaData.CACHE_WHOLE_PARTITION);
 
         SpeculativeRetry.fromString(getString(KW_SPECULATIVE_RETRY, SpeculativeRetry.RetryType.NONE.name()));
+        FilterFactory.Type.fromString(getString(KW_BF_TYPE, CFMetaData.DEFAULT_BLOOM_FILTER_TYPE.name()));
     }
 
     public Class<? extends AbstractCompactionStrategy> getCompactionStrategy()
@@ -158,6 +165,7 @@ public class CFPropDefs extends PropertyDefinitions
         cfm.speculativeRetry(CFMetaData.SpeculativeRetry.fromString(getString(KW_SPECULATIVE_RETRY, cfm.getSpeculativeRetry().toString())));
         cfm.memtableFlushPeriod(getInt(KW_MEMTABLE_FLUSH_PERIOD, cfm.getMemtableFlushPeriod()));
         cfm.populateIoCacheOnFlush(getBoolean(KW_POPULATE_IO_CACHE_ON_FLUSH, cfm.populateIoCacheOnFlush()));
+        cfm.rowCacheCellsPerPartition(getInt(KW_ROW_CACHE_CELLS_PER_PARTITION, cfm.getRowCacheCellsPerPartition()));
         cfm.indexInterval(getInt(KW_INDEX_INTERVAL, cfm.getIndexInterval()));
 
         if (compactionStrategyClass != null)
@@ -167,6 +175,7 @@ public class CFPropDefs extends PropertyDefinitions
         }
 
         cfm.bloomFilterFpChance(getDouble(KW_BF_FP_CHANCE, cfm.getBloomFilterFpChance()));
+        cfm.bloomFilterType(FilterFactory.Type.fromString(getString(KW_BF_TYPE, cfm.getBloomFilterType().toString())));
 
         if (!getCompressionOptions().isEmpty())
             cfm.compressionParameters(CompressionParameters.create(getCompressionOptions()));
@@ -18,6 +18,7 @@
 package com.codefollower.lealone.atomicdb.db;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.codefollower.lealone.atomicdb.config.CFMetaData;
@@ -149,15 +150,16 @@ public class AtomicSortedColumns extends ColumnFamily
 
     public void addAll(ColumnFamily cm, Allocator allocator, Function<Cell, Cell> transformation)
     {
-        addAllWithSizeDelta(cm, allocator, transformation, SecondaryIndexManager.nullUpdater);
+        addAllWithSizeDelta(cm, allocator, transformation, SecondaryIndexManager.nullUpdater, null);
     }
 
     /**
      *  This is only called by Memtable.resolve, so only AtomicSortedColumns needs to implement it.
      *
+     *  @param cellCount if not null, incremented by the number of cells this merge added
      *  @return the difference in size seen after merging the given columns
      */
-    public long addAllWithSizeDelta(ColumnFamily cm, Allocator allocator, Function<Cell, Cell> transformation, SecondaryIndexManager.Updater indexer)
+    public long addAllWithSizeDelta(ColumnFamily cm, Allocator allocator, Function<Cell, Cell> transformation, SecondaryIndexManager.Updater indexer, AtomicLong cellCount)
     {
         /*
          * This operation needs to atomicity and isolation. To that end, we
@@ -202,6 +204,8 @@ public class AtomicSortedColumns extends ColumnFamily
 
         indexer.updateRowLevelIndexes();
 
+        if (cellCount != null)
+            cellCount.addAndGet(modified.map.size() - current.map.size());
         return sizeDelta;
     }
 
@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import javax.management.*;
 
+import com.codefollower.lealone.atomicdb.cache.ChunkCache;
 import com.codefollower.lealone.atomicdb.cache.IRowCacheEntry;
 import com.codefollower.lealone.atomicdb.cache.RowCacheKey;
 import com.codefollower.lealone.atomicdb.cache.RowCacheSentinel;
@@ -43,6 +44,7 @@ import com.codefollower.lealone.atomicdb.db.commitlog.ReplayPosition;
 import com.codefollower.lealone.atomicdb.db.compaction.*;
 import com.codefollower.lealone.atomicdb.db.composites.CellNameType;
 import com.codefollower.lealone.atomicdb.db.composites.Composite;
+import com.codefollower.lealone.atomicdb.db.composites.Composites;
 import com.codefollower.lealone.atomicdb.db.filter.*;
 import com.codefollower.lealone.atomicdb.db.index.SecondaryIndex;
 import com.codefollower.lealone.atomicdb.db.index.SecondaryIndexManager;
@@ -97,6 +99,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     private volatile DefaultInteger minCompactionThreshold;
     private volatile DefaultInteger maxCompactionThreshold;
     private volatile AbstractCompactionStrategy compactionStrategy;
+    /** the setting the cached rows of this column family were read with */
+    private volatile int rowCacheCellsPerPartition;
 
     public final Directories directories;
 
@@ -122,6 +126,17 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         maybeReloadCompactionStrategy();
 
+        // a head cached for the old setting could be taken for a whole partition (or the other way round)
+        if (rowCacheCellsPerPartition != metadata.getRowCacheCellsPerPartition())
+        {
+            rowCacheCellsPerPartition = metadata.getRowCacheCellsPerPartition();
+            for (RowCacheKey key : CacheService.instance.rowCache.getKeySet())
+            {
+                if (key.cfId.equals(metadata.cfId))
+                    invalidateCachedRow(key);
+            }
+        }
+
         scheduleFlush();
 
         indexManager.reload();
@@ -235,6 +250,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         name = columnFamilyName;
         this.metadata = metadata;
         this.minCompactionThreshold = new DefaultInteger(metadata.getMinCompactionThreshold());
+        this.rowCacheCellsPerPartition = metadata.getRowCacheCellsPerPartition();
         this.maxCompactionThreshold = new DefaultInteger(metadata.getMaxCompactionThreshold());
         this.partitioner = partitioner;
         this.directories = directories;
@@ -358,6 +374,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         // unregister metrics
         metric.release();
+        ChunkCache.instance.releaseMetrics(keyspace.getName(), name);
     }
 
     public long getMinRowSize()
@@ -1250,13 +1267,88 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return getColumnFamily(QueryFilter.getSliceFilter(key, name, start, finish, reversed, limit, timestamp));
     }
 
+    /**
+     * @return the filter the row cache reads partitions with: the whole partition, or only its first
+     *         row_cache_cells_per_partition cells
+     */
+    public QueryFilter rowCacheFilter(DecoratedKey key, long timestamp)
+    {
+        int cells = rowCacheCellsPerPartition;
+        if (cells == CFMetaData.CACHE_WHOLE_PARTITION)
+            return QueryFilter.getIdentityFilter(key, name, timestamp);
+        return QueryFilter.getSliceFilter(key, name, Composites.EMPTY, Composites.EMPTY, false, cells, timestamp);
+    }
+
+    /**
+     * @return true if the given cached row, read with {@link #rowCacheFilter}, holds everything filter selects
+     */
+    public boolean isFilterFullyCoveredBy(IDiskAtomFilter filter, ColumnFamily cached, long now)
+    {
+        return isFilterFullyCoveredBy(filter, cached, rowCacheCellsPerPartition, now);
+    }
+
+    @VisibleForTesting
+    static boolean isFilterFullyCoveredBy(IDiskAtomFilter filter, ColumnFamily cached, int cells, long now)
+    {
+        if (cells == CFMetaData.CACHE_WHOLE_PARTITION)
+            return true;
+
+        // fewer live cells than the limit means the read that cached the row reached the end of the partition.
+        // Long.MIN_VALUE keeps the cells that have expired since then in the count
+        int live = 0;
+        for (Cell cell : cached)
+        {
+            if (cell.isLive(Long.MIN_VALUE) && ++live >= cells)
+                break;
+        }
+        if (live < cells)
+            return true;
+
+        return filter instanceof SliceQueryFilter && ((SliceQueryFilter) filter).isFullyCoveredBy(cached, now);
+    }
+
+    /**
+     * @return the filter to read a missed row with when only the heads of partitions are cached: a read of the
+     *         head that also answers filter, or null if filter does not start at the head of the partition
+     */
+    private static SliceQueryFilter headFilter(IDiskAtomFilter filter, int cells)
+    {
+        if (!(filter instanceof SliceQueryFilter))
+            return null;
+        SliceQueryFilter slice = (SliceQueryFilter) filter;
+        if (slice.reversed || slice.slices.length != 1 || !slice.start().isEmpty())
+            return null;
+        return new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, false, Math.max(slice.count, cells), slice.compositesToGroup);
+    }
+
+    /**
+     * @return the first cells live cells of row, with the tombstones before them
+     */
+    @VisibleForTesting
+    static ColumnFamily headOf(ColumnFamily row, int cells, long now)
+    {
+        ColumnFamily head = row.cloneMeShallow();
+        DeletionInfo.InOrderTester tester = row.inOrderDeletionTester();
+        int live = 0;
+        for (Cell cell : row)
+        {
+            if (live >= cells)
+                break;
+            head.addColumn(cell);
+            if (cell.isLive(now) && !tester.isDeleted(cell))
+                live++;
+        }
+        return head;
+    }
+
     /**
      * fetch the row given by filter.key if it is in the cache; if not, read it from disk and cache it
      * @param cfId the column family to read the row from
-     * @param filter the columns being queried.  Note that we still cache entire rows, but if a row is uncached
-     *               and we race to cache it, only the winner will read the entire row
-     * @return the entire row for filter.key, if present in the cache (or we can cache it), or just the column
-     *         specified by filter otherwise
+     * @param filter the columns being queried.  Note that we still cache entire rows (or their heads, when
+     *               row_cache_cells_per_partition is set), but if a row is uncached and we race to cache it,
+     *               only the winner will read the entire row
+     * @return the cached row for filter.key, if present in the cache (or we can cache it) and it covers filter,
+     *         or just the columns specified by filter otherwise
      */
     private ColumnFamily getThroughCache(UUID cfId, QueryFilter filter)
     {
@@ -1276,26 +1368,49 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 Tracing.trace("Row cache miss (race)");
                 return getTopLevelColumns(filter, Integer.MIN_VALUE);
             }
+            ColumnFamily cachedRow = (ColumnFamily) cached;
+            if (!isFilterFullyCoveredBy(filter.filter, cachedRow, filter.timestamp))
+            {
+                // the query reaches past the cached head of the partition
+                Tracing.trace("Row cache hit, but the cached head does not cover the query");
+                return getTopLevelColumns(filter, Integer.MIN_VALUE);
+            }
             Tracing.trace("Row cache hit");
-            return (ColumnFamily) cached;
+            return cachedRow;
         }
 
         Tracing.trace("Row cache miss");
+        int cells = rowCacheCellsPerPartition;
+        QueryFilter cacheFilter = rowCacheFilter(filter.key, filter.timestamp);
+        if (cells != CFMetaData.CACHE_WHOLE_PARTITION)
+        {
+            // read the head once, long enough to answer the query too; a query that does not start at the head
+            // would need a second read, so it is read on its own and nothing is cached
+            SliceQueryFilter headFilter = headFilter(filter.filter, cells);
+            if (headFilter == null)
+            {
+                Tracing.trace("Row cache miss, the query does not start at the head of the partition");
+                return getTopLevelColumns(filter, Integer.MIN_VALUE);
+            }
+            cacheFilter = new QueryFilter(filter.key, name, headFilter, filter.timestamp);
+        }
+
         RowCacheSentinel sentinel = new RowCacheSentinel();
         boolean sentinelSuccess = CacheService.instance.rowCache.putIfAbsent(key, sentinel);
-
+        ColumnFamily row = null;
         try
         {
-            ColumnFamily data = getTopLevelColumns(QueryFilter.getIdentityFilter(filter.key, name, filter.timestamp),
-                                                   Integer.MIN_VALUE);
-            if (sentinelSuccess && data != null)
-                CacheService.instance.rowCache.replace(key, sentinel, data);
-
-            return data;
+            row = getTopLevelColumns(cacheFilter, Integer.MIN_VALUE);
+            if (sentinelSuccess && row != null)
+            {
+                ColumnFamily head = cells == CFMetaData.CACHE_WHOLE_PARTITION ? row : headOf(row, cells, filter.timestamp);
+                CacheService.instance.rowCache.replace(key, sentinel, head);
+            }
+            return row;
         }
         finally
         {
-            if (sentinelSuccess && data == null)
+            if (sentinelSuccess && row == null)
                 invalidateCachedRow(key);
         }
     }
@@ -1421,11 +1536,18 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     private ViewFragment markReferenced(AbstractViewSSTableFinder finder)
     {
         List<SSTableReader> sstables;
-        DataTracker.View view;
+        List<Memtable> memtables;
 
         while (true)
         {
-            view = data.getView();
+            DataTracker.View view = data.getView();
+
+            // the memtables are referenced too, so an off-heap one is not freed while it is read
+            memtables = new ArrayList<Memtable>(view.memtablesPendingFlush.size() + 1);
+            memtables.add(view.memtable);
+            memtables.addAll(view.memtablesPendingFlush);
+            if (!Memtable.acquireReferences(memtables))
+                continue; // a memtable was flushed meanwhile, retry w/ new view
 
             if (view.intervalTree.isEmpty())
             {
@@ -1436,10 +1558,11 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             sstables = finder.findSSTables(view);
             if (SSTableReader.acquireReferences(sstables))
                 break;
+            Memtable.releaseReferences(memtables);
             // retry w/ new view
         }
 
-        return new ViewFragment(sstables, Iterables.concat(Collections.singleton(view.memtable), view.memtablesPendingFlush));
+        return new ViewFragment(sstables, memtables);
     }
 
     /**
@@ -1509,7 +1632,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
         finally
         {
-            SSTableReader.releaseReferences(view.sstables);
+            view.release();
         }
     }
 
@@ -1534,6 +1657,28 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
     }
 
+    /**
+     * Invalidates the cached rows of this column family whose keys fall in any of the given bounds,
+     * used when SSTables are added without their rows going through {@link #invalidateCachedRow(DecoratedKey)}.
+     */
+    public void invalidateCachedRows(Collection<Bounds<RowPosition>> boundsCollection)
+    {
+        for (RowCacheKey key : CacheService.instance.rowCache.getKeySet())
+        {
+            if (!key.cfId.equals(metadata.cfId))
+                continue;
+            DecoratedKey dk = partitioner.decorateKey(ByteBuffer.wrap(key.key));
+            for (Bounds<RowPosition> bounds : boundsCollection)
+            {
+                if (bounds.contains(dk))
+                {
+                    invalidateCachedRow(dk);
+                    break;
+                }
+            }
+        }
+    }
+
     public static abstract class AbstractScanIterator extends AbstractIterator<Row> implements CloseableIterator<Row>
     {
         public boolean needsFiltering()
@@ -1585,7 +1730,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
                 public void close() throws IOException
                 {
-                    SSTableReader.releaseReferences(view.sstables);
+                    view.release();
                     iterator.close();
                 }
             };
@@ -1593,7 +1738,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         catch (RuntimeException e)
         {
             // In case getIterator() throws, otherwise the iteror close method releases the references.
-            SSTableReader.releaseReferences(view.sstables);
+            view.release();
             throw e;
         }
     }
@@ -2301,6 +2446,15 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             this.sstables = sstables;
             this.memtables = memtables;
         }
+
+        /**
+         * Release the references to the sstables and memtables acquired by markReferenced.
+         */
+        public void release()
+        {
+            SSTableReader.releaseReferences(sstables);
+            Memtable.releaseReferences(memtables);
+        }
     }
 
     /**
@@ -138,6 +138,7 @@ public class DataTracker
         }
         while (!view.compareAndSet(currentView, newView));
         notifyRenewed(currentView.memtable);
+        currentView.memtable.releaseReference();
     }
 
     public void replaceFlushed(Memtable memtable, SSTableReader sstable)
@@ -155,6 +156,7 @@ public class DataTracker
                     newView = newView.replace(Arrays.asList(sstable), Collections.<SSTableReader>emptyList());
             }
             while (!view.compareAndSet(currentView, newView));
+            memtable.releaseReference();
             return;
         }
 
@@ -169,6 +171,8 @@ public class DataTracker
             newView = currentView.replaceFlushed(memtable, sstable);
         }
         while (!view.compareAndSet(currentView, newView));
+        // the memtable has left the view, its memory is freed once the reads in progress are done
+        memtable.releaseReference();
 
         if (sstable != null)
         {
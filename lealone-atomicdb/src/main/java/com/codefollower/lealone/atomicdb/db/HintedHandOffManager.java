@@ -18,6 +18,7 @@
 package com.codefollower.lealone.atomicdb.db;
 
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
@@ -25,42 +26,28 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
 import com.codefollower.lealone.atomicdb.concurrent.JMXEnabledThreadPoolExecutor;
 import com.codefollower.lealone.atomicdb.concurrent.NamedThreadFactory;
-import com.codefollower.lealone.atomicdb.config.CFMetaData;
 import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
-import com.codefollower.lealone.atomicdb.config.Schema;
-import com.codefollower.lealone.atomicdb.db.compaction.CompactionManager;
-import com.codefollower.lealone.atomicdb.db.composites.CellName;
-import com.codefollower.lealone.atomicdb.db.composites.Composite;
-import com.codefollower.lealone.atomicdb.db.composites.Composites;
-import com.codefollower.lealone.atomicdb.db.filter.*;
-import com.codefollower.lealone.atomicdb.db.marshal.Int32Type;
-import com.codefollower.lealone.atomicdb.db.marshal.UUIDType;
-import com.codefollower.lealone.atomicdb.dht.IPartitioner;
-import com.codefollower.lealone.atomicdb.dht.Range;
+import com.codefollower.lealone.atomicdb.db.hints.HintMessage;
+import com.codefollower.lealone.atomicdb.db.hints.HintsBatch;
+import com.codefollower.lealone.atomicdb.db.hints.HintsStore;
+import com.codefollower.lealone.atomicdb.db.hints.LegacyHintsMigrator;
 import com.codefollower.lealone.atomicdb.dht.Token;
 import com.codefollower.lealone.atomicdb.exceptions.WriteTimeoutException;
 import com.codefollower.lealone.atomicdb.gms.ApplicationState;
 import com.codefollower.lealone.atomicdb.gms.FailureDetector;
 import com.codefollower.lealone.atomicdb.gms.Gossiper;
-import com.codefollower.lealone.atomicdb.io.sstable.Descriptor;
-import com.codefollower.lealone.atomicdb.io.sstable.SSTable;
+import com.codefollower.lealone.atomicdb.io.FSReadError;
 import com.codefollower.lealone.atomicdb.metrics.HintedHandoffMetrics;
 import com.codefollower.lealone.atomicdb.net.MessageOut;
 import com.codefollower.lealone.atomicdb.net.MessagingService;
 import com.codefollower.lealone.atomicdb.service.*;
-import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
 import com.codefollower.lealone.atomicdb.utils.FBUtilities;
 import com.codefollower.lealone.atomicdb.utils.UUIDGen;
-import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.Uninterruptibles;
 
@@ -70,22 +57,16 @@ import org.slf4j.LoggerFactory;
 import org.cliffc.high_scale_lib.NonBlockingHashSet;
 
 /**
- * The hint schema looks like this:
+ * Hints are kept in per-host append-only files by {@link HintsStore}, as checksummed batches of
+ * mutations (see {@link HintsBatch}), instead of in the system hints table.
  *
- * CREATE TABLE hints (
- *   target_id uuid,
- *   hint_id timeuuid,
- *   message_version int,
- *   mutation blob,
- *   PRIMARY KEY (target_id, hint_id, message_version)
- * ) WITH COMPACT STORAGE;
+ * When FailureDetector signals that a node that was down is back up, we send it its hint files
+ * batch by batch, throttled by hinted_handoff_throttle_in_kb, and delete each file once all of its
+ * batches have been acknowledged. There are no per-hint deletes and nothing to compact.
+ * An interrupted delivery resumes after the last acknowledged batch.
  *
- * Thus, for each node in the cluster we treat its uuid as the partition key; each hint is a logical row
- * (physical composite column) containing the mutation to replay and associated metadata.
- *
- * When FailureDetector signals that a node that was down is back up, we page through
- * the hinted mutations and send them over one at a time, waiting for
- * hinted_handoff_throttle_delay in between each.
+ * Hints left in the system hints table by earlier versions are moved to the files at startup,
+ * see {@link LegacyHintsMigrator}.
  *
  * deliverHints is also exposed to JMX so it can be run manually if FD ever misses
  * its cue somehow.
@@ -97,8 +78,8 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
     public static final HintedHandOffManager instance = new HintedHandOffManager();
 
     private static final Logger logger = LoggerFactory.getLogger(HintedHandOffManager.class);
-    private static final int PAGE_SIZE = 128;
-    private static final int LARGE_NUMBER = 65536; // 64k nodes ought to be enough for anybody.
+    // batches sent before waiting for their acknowledgements
+    private static final int MAX_BATCHES_IN_FLIGHT = 16;
 
     public final HintedHandoffMetrics metrics = new HintedHandoffMetrics();
 
@@ -115,13 +96,10 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
                                                                                  new NamedThreadFactory("HintedHandoff", Thread.MIN_PRIORITY),
                                                                                  "internal");
 
-    private final ColumnFamilyStore hintStore = Keyspace.open(Keyspace.SYSTEM_KS).getColumnFamilyStore(SystemKeyspace.HINTS_CF);
-
     /**
-     * Returns a mutation representing a Hint to be sent to <code>targetId</code>
-     * as soon as it becomes available again.
+     * Store a hint to be sent to <code>targetId</code> as soon as it becomes available again.
      */
-    public Mutation hintFor(Mutation mutation, int ttl, UUID targetId)
+    public void writeHint(Mutation mutation, int ttl, UUID targetId)
     {
         assert ttl > 0;
 
@@ -132,13 +110,7 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
         else
             logger.warn("Unable to find matching endpoint for target {} when storing a hint", targetId);
 
-        UUID hintId = UUIDGen.getTimeUUID();
-        // serialize the hint with id and version as a composite column name
-        CellName name = CFMetaData.HintsCf.comparator.makeCellName(hintId, MessagingService.current_version);
-        ByteBuffer value = ByteBuffer.wrap(FBUtilities.serialize(mutation, Mutation.serializer, MessagingService.current_version));
-        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(Schema.instance.getCFMetaData(Keyspace.SYSTEM_KS, SystemKeyspace.HINTS_CF));
-        cf.addColumn(name, value, System.currentTimeMillis(), ttl);
-        return new Mutation(Keyspace.SYSTEM_KS, UUIDType.instance.decompose(targetId), cf);
+        HintsStore.instance.write(targetId, mutation, System.currentTimeMillis(), ttl);
     }
 
     /*
@@ -168,6 +140,8 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
         }
         logger.debug("Created HHOM instance, registered MBean.");
 
+        LegacyHintsMigrator.migrate();
+
         Runnable runnable = new Runnable()
         {
             public void run()
@@ -177,13 +151,16 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
             }
         };
         StorageService.optionalTasks.scheduleWithFixedDelay(runnable, 10, 10, TimeUnit.MINUTES);
-    }
 
-    private static void deleteHint(ByteBuffer tokenBytes, CellName columnName, long timestamp)
-    {
-        Mutation mutation = new Mutation(Keyspace.SYSTEM_KS, tokenBytes);
-        mutation.delete(SystemKeyspace.HINTS_CF, columnName, timestamp);
-        mutation.applyUnsafe(); // don't bother with commitlog since we're going to flush as soon as we're done with delivery
+        Runnable flush = new Runnable()
+        {
+            public void run()
+            {
+                HintsStore.instance.flushAll();
+            }
+        };
+        long period = DatabaseDescriptor.getHintsFlushPeriodInMS();
+        StorageService.optionalTasks.scheduleWithFixedDelay(flush, period, period, TimeUnit.MILLISECONDS);
     }
 
     public void deleteHintsForEndpoint(final String ipOrHostname)
@@ -204,10 +181,7 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
     {
         if (!StorageService.instance.getTokenMetadata().isMember(endpoint))
             return;
-        UUID hostId = StorageService.instance.getTokenMetadata().getHostId(endpoint);
-        ByteBuffer hostIdBytes = ByteBuffer.wrap(UUIDGen.decompose(hostId));
-        final Mutation mutation = new Mutation(Keyspace.SYSTEM_KS, hostIdBytes);
-        mutation.delete(SystemKeyspace.HINTS_CF, System.currentTimeMillis());
+        final UUID hostId = StorageService.instance.getTokenMetadata().getHostId(endpoint);
 
         // execute asynchronously to avoid blocking caller (which may be processing gossip)
         Runnable runnable = new Runnable()
@@ -217,8 +191,7 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
                 try
                 {
                     logger.info("Deleting any stored hints for {}", endpoint);
-                    mutation.apply();
-                    compact();
+                    HintsStore.instance.deleteAll(hostId);
                 }
                 catch (Exception e)
                 {
@@ -229,7 +202,6 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
         StorageService.optionalTasks.submit(runnable);
     }
 
-    //foobar
     public void truncateAllHints() throws ExecutionException, InterruptedException
     {
         Runnable runnable = new Runnable()
@@ -239,7 +211,7 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
                 try
                 {
                     logger.info("Truncating all stored hints.");
-                    Keyspace.open(Keyspace.SYSTEM_KS).getColumnFamilyStore(SystemKeyspace.HINTS_CF).truncateBlocking();
+                    HintsStore.instance.deleteAll();
                 }
                 catch (Exception e)
                 {
@@ -251,23 +223,6 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
 
     }
 
-    @VisibleForTesting
-    protected Future<?> compact()
-    {
-        hintStore.forceBlockingFlush();
-        ArrayList<Descriptor> descriptors = new ArrayList<Descriptor>();
-        for (SSTable sstable : hintStore.getSSTables())
-            descriptors.add(sstable.descriptor);
-        return CompactionManager.instance.submitUserDefined(hintStore, descriptors, (int) (System.currentTimeMillis() / 1000));
-    }
-
-    private static boolean pagingFinished(ColumnFamily hintColumnFamily, Composite startColumn)
-    {
-        // done if no hints found or the start column (same as last column processed in previous iteration) is the only one
-        return hintColumnFamily == null
-               || (hintColumnFamily.getSortedColumns().size() == 1 && hintColumnFamily.getColumn((CellName)startColumn) != null);
-    }
-
     private int waitForSchemaAgreement(InetAddress endpoint) throws TimeoutException
     {
         Gossiper gossiper = Gossiper.instance;
@@ -303,7 +258,8 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
 
     private void deliverHintsToEndpoint(InetAddress endpoint)
     {
-        if (hintStore.isEmpty())
+        UUID hostId = Gossiper.instance.getHostId(endpoint);
+        if (hostId == null || !HintsStore.instance.hasHints(hostId))
             return; // nothing to do, don't confuse users by logging a no-op handoff
 
         // check if hints delivery has been paused
@@ -329,178 +285,137 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
             return;
         }
 
-        doDeliverHintsToEndpoint(endpoint);
+        logger.info("Started hinted handoff for host: {} with IP: {}", hostId, endpoint);
+        int delivered = sendHints(hostId, endpoint, createRateLimiter());
+        if (delivered >= 0)
+            logger.info("Finished hinted handoff of {} hints to endpoint {}", delivered, endpoint);
     }
 
-    /*
-     * 1. Get the key of the endpoint we need to handoff
-     * 2. For each column, deserialize the mutation and send it to the endpoint
-     * 3. Delete the subcolumn if the write was successful
-     * 4. Force a flush
-     * 5. Do major compaction to clean up all deletes etc.
-     */
-    private void doDeliverHintsToEndpoint(InetAddress endpoint)
+    private RateLimiter createRateLimiter()
     {
-        // find the hints for the node using its token.
-        UUID hostId = Gossiper.instance.getHostId(endpoint);
-        logger.info("Started hinted handoff for host: {} with IP: {}", hostId, endpoint);
-        final ByteBuffer hostIdBytes = ByteBuffer.wrap(UUIDGen.decompose(hostId));
-        DecoratedKey epkey =  StorageService.getPartitioner().decorateKey(hostIdBytes);
-
-        final AtomicInteger rowsReplayed = new AtomicInteger(0);
-        Composite startColumn = Composites.EMPTY;
-
-        int pageSize = calculatePageSize();
-        logger.debug("Using pageSize of {}", pageSize);
-
         // rate limit is in bytes per second. Uses Double.MAX_VALUE if disabled (set to 0 in cassandra.yaml).
         // max rate is scaled by the number of nodes in the cluster (CASSANDRA-5272).
         int throttleInKB = DatabaseDescriptor.getHintedHandoffThrottleInKB()
-                           / (StorageService.instance.getTokenMetadata().getAllEndpoints().size() - 1);
-        RateLimiter rateLimiter = RateLimiter.create(throttleInKB == 0 ? Double.MAX_VALUE : throttleInKB * 1024);
+                           / Math.max(1, StorageService.instance.getTokenMetadata().getAllEndpoints().size() - 1);
+        return RateLimiter.create(throttleInKB == 0 ? Double.MAX_VALUE : throttleInKB * 1024);
+    }
 
-        delivery:
-        while (true)
+    /**
+     * Send all the hint files of a host to <code>endpoint</code>, which is either the host itself or,
+     * when this node leaves the ring, another node that will deliver them later. Each file is deleted
+     * once all of its batches have been acknowledged.
+     *
+     * @return the number of hints sent, or -1 if delivery was aborted
+     */
+    private int sendHints(UUID hostId, InetAddress endpoint, RateLimiter rateLimiter)
+    {
+        int sent = 0;
+        for (File file : HintsStore.instance.closeAndList(hostId))
         {
-            long now = System.currentTimeMillis();
-            QueryFilter filter = QueryFilter.getSliceFilter(epkey,
-                                                            SystemKeyspace.HINTS_CF,
-                                                            startColumn,
-                                                            Composites.EMPTY,
-                                                            false,
-                                                            pageSize,
-                                                            now);
-
-            ColumnFamily hintsPage = ColumnFamilyStore.removeDeleted(hintStore.getColumnFamily(filter), (int) (now / 1000));
-
-            if (pagingFinished(hintsPage, startColumn))
-                break;
-
-            // check if node is still alive and we should continue delivery process
-            if (!FailureDetector.instance.isAlive(endpoint))
+            int count = sendFile(file, hostId, endpoint, rateLimiter);
+            if (count < 0)
             {
-                logger.info("Endpoint {} died during hint delivery; aborting ({} delivered)", endpoint, rowsReplayed);
-                return;
+                logger.info("Aborted sending hints to {} ({} sent)", endpoint, sent);
+                return -1;
             }
+            sent += count;
+            HintsStore.instance.delete(file);
+        }
+        return sent;
+    }
 
-            List<WriteResponseHandler> responseHandlers = Lists.newArrayList();
-            Map<UUID, Long> truncationTimesCache = new HashMap<UUID, Long>();
-            for (final Cell hint : hintsPage)
+    private int sendFile(File file, UUID hostId, InetAddress endpoint, RateLimiter rateLimiter)
+    {
+        int sent = 0;
+        List<WriteResponseHandler> responseHandlers = new ArrayList<>(MAX_BATCHES_IN_FLIGHT);
+        // the offset of the end of each batch in flight
+        List<Long> offsets = new ArrayList<>(MAX_BATCHES_IN_FLIGHT);
+        long offset = HintsStore.instance.getDispatchOffset(file);
+        if (offset > 0)
+            logger.debug("Resuming delivery of {} at {}", file, offset);
+        try (DataInputStream in = HintsStore.instance.openForDispatch(file))
+        {
+            ByteBuffer batch;
+            while ((batch = HintsBatch.read(in)) != null)
             {
                 // check if hints delivery has been paused during the process
                 if (hintedHandOffPaused)
                 {
                     logger.debug("Hints delivery process is paused, aborting");
-                    break delivery;
+                    return -1;
                 }
-
-                // Skip tombstones:
-                // if we iterate quickly enough, it's possible that we could request a new page in the same millisecond
-                // in which the local deletion timestamp was generated on the last column in the old page, in which
-                // case the hint will have no columns (since it's deleted) but will still be included in the resultset
-                // since (even with gcgs=0) it's still a "relevant" tombstone.
-                if (!hint.isLive(System.currentTimeMillis()))
-                    continue;
-
-                startColumn = hint.name();
-
-                int version = Int32Type.instance.compose(hint.name().get(1));
-                DataInputStream in = new DataInputStream(ByteBufferUtil.inputStream(hint.value()));
-                Mutation mutation;
-                try
-                {
-                    mutation = Mutation.serializer.deserialize(in, version);
-                }
-                catch (UnknownColumnFamilyException e)
-                {
-                    logger.debug("Skipping delivery of hint for deleted columnfamily", e);
-                    deleteHint(hostIdBytes, hint.name(), hint.maxTimestamp());
-                    continue;
-                }
-                catch (IOException e)
-                {
-                    throw new AssertionError(e);
-                }
-
-                truncationTimesCache.clear();
-                for (UUID cfId : ImmutableSet.copyOf((mutation.getColumnFamilyIds())))
-                {
-                    Long truncatedAt = truncationTimesCache.get(cfId);
-                    if (truncatedAt == null)
-                    {
-                        ColumnFamilyStore cfs = Keyspace.open(mutation.getKeyspaceName()).getColumnFamilyStore(cfId);
-                        truncatedAt = cfs.getTruncationTime();
-                        truncationTimesCache.put(cfId, truncatedAt);
-                    }
-
-                    if (hint.maxTimestamp() < truncatedAt)
-                    {
-                        logger.debug("Skipping delivery of hint for truncated columnfamily {}", cfId);
-                        mutation = mutation.without(cfId);
-                    }
-                }
-
-                if (mutation.isEmpty())
+                // check if node is still alive and we should continue delivery process
+                if (!FailureDetector.instance.isAlive(endpoint))
                 {
-                    deleteHint(hostIdBytes, hint.name(), hint.maxTimestamp());
-                    continue;
+                    logger.info("Endpoint {} died during hint delivery", endpoint);
+                    return -1;
                 }
 
-                MessageOut<Mutation> message = mutation.createMessage();
+                MessageOut<HintMessage> message = new HintMessage(hostId, batch).createMessage();
                 rateLimiter.acquire(message.serializedSize(MessagingService.current_version));
-                Runnable callback = new Runnable()
-                {
-                    public void run()
-                    {
-                        rowsReplayed.incrementAndGet();
-                        deleteHint(hostIdBytes, hint.name(), hint.maxTimestamp());
-                    }
-                };
-                WriteResponseHandler responseHandler = new WriteResponseHandler(endpoint, WriteType.UNLOGGED_BATCH, callback);
+                WriteResponseHandler responseHandler = new WriteResponseHandler(endpoint, WriteType.UNLOGGED_BATCH);
                 MessagingService.instance().sendRR(message, endpoint, responseHandler);
                 responseHandlers.add(responseHandler);
-            }
+                offset += batch.remaining();
+                offsets.add(offset);
+                sent += HintsBatch.count(batch);
 
-            for (WriteResponseHandler handler : responseHandlers)
-            {
-                try
-                {
-                    handler.get();
-                }
-                catch (WriteTimeoutException e)
-                {
-                    logger.info("Timed out replaying hints to {}; aborting ({} delivered)", endpoint, rowsReplayed);
-                    return;
-                }
+                if (responseHandlers.size() >= MAX_BATCHES_IN_FLIGHT && !awaitResponses(file, responseHandlers, offsets, endpoint))
+                    return -1;
             }
         }
+        catch (IOException e)
+        {
+            throw new FSReadError(e, file);
+        }
+        return awaitResponses(file, responseHandlers, offsets, endpoint) ? sent : -1;
+    }
 
-        logger.info("Finished hinted handoff of {} rows to endpoint {}", rowsReplayed, endpoint);
-
+    /**
+     * Wait for the batches in flight in the order they were sent, recording after each one that
+     * the next attempt can start after it. The batches sent after one that timed out are sent again.
+     */
+    private static boolean awaitResponses(File file, List<WriteResponseHandler> responseHandlers, List<Long> offsets, InetAddress endpoint)
+    {
         try
         {
-            compact().get();
+            for (int i = 0; i < responseHandlers.size(); i++)
+            {
+                responseHandlers.get(i).get();
+                HintsStore.instance.markDispatched(file, offsets.get(i));
+            }
+            return true;
         }
-        catch (Exception e)
+        catch (WriteTimeoutException e)
         {
-            throw new RuntimeException(e);
+            logger.info("Timed out sending hints to {}", endpoint);
+            return false;
+        }
+        finally
+        {
+            responseHandlers.clear();
+            offsets.clear();
         }
     }
 
-    private int calculatePageSize()
+    /**
+     * Hand all the hints stored on this node over to <code>destination</code>, which keeps them
+     * for their original targets. Used when this node leaves the ring.
+     */
+    public Future<?> transferAllHints(final InetAddress destination)
     {
-        // read less columns (mutations) per page if they are very large
-        int meanColumnCount = hintStore.getMeanColumns();
-        if (meanColumnCount > 0)
+        return executor.submit(new Runnable()
         {
-            int averageColumnSize = (int) (hintStore.getMeanRowSize() / meanColumnCount);
-            // page size of 1 does not allow actual paging b/c of >= behavior on startColumn
-            return Math.max(2, Math.min(PAGE_SIZE, DatabaseDescriptor.getInMemoryCompactionLimit() / averageColumnSize));
-        }
-        else
-        {
-            return PAGE_SIZE;
-        }
+            public void run()
+            {
+                RateLimiter rateLimiter = createRateLimiter();
+                for (UUID hostId : HintsStore.instance.hostsWithHints())
+                {
+                    if (sendHints(hostId, destination, rateLimiter) < 0)
+                        throw new RuntimeException("Could not transfer hints for " + hostId + " to " + destination);
+                }
+            }
+        });
     }
 
     /**
@@ -512,16 +427,10 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
         if (logger.isDebugEnabled())
           logger.debug("Started scheduleAllDeliveries");
 
-        IPartitioner p = StorageService.getPartitioner();
-        RowPosition minPos = p.getMinimumToken().minKeyBound();
-        Range<RowPosition> range = new Range<RowPosition>(minPos, minPos, p);
-        IDiskAtomFilter filter = new NamesQueryFilter(ImmutableSortedSet.<CellName>of());
-        List<Row> rows = hintStore.getRangeSlice(range, null, filter, Integer.MAX_VALUE, System.currentTimeMillis());
-        for (Row row : rows)
+        for (UUID hostId : HintsStore.instance.hostsWithHints())
         {
-            UUID hostId = UUIDGen.getUUID(row.key.key);
             InetAddress target = StorageService.instance.getTokenMetadata().getEndpointForHostId(hostId);
-            // token may have since been removed (in which case we have just read back a tombstone)
+            // the host may have since been removed from the ring
             if (target != null)
                 scheduleHintDelivery(target);
         }
@@ -575,42 +484,11 @@ public class HintedHandOffManager implements HintedHandOffManagerMBean
 
         // Extract the keys as strings to be reported.
         LinkedList<String> result = new LinkedList<String>();
-        for (Row row : getHintsSlice(1))
+        for (UUID hostId : HintsStore.instance.hostsWithHints())
         {
-            if (row.cf != null) //ignore removed rows
-                result.addFirst(tokenFactory.toString(row.key.token));
+            Token token = StorageService.getPartitioner().getToken(ByteBuffer.wrap(UUIDGen.decompose(hostId)));
+            result.addFirst(tokenFactory.toString(token));
         }
         return result;
     }
-
-    private List<Row> getHintsSlice(int columnCount)
-    {
-        // Get count # of columns...
-        SliceQueryFilter predicate = new SliceQueryFilter(ColumnSlice.ALL_COLUMNS_ARRAY,
-                                                          false,
-                                                          columnCount);
-
-        // From keys "" to ""...
-        IPartitioner<?> partitioner = StorageService.getPartitioner();
-        RowPosition minPos = partitioner.getMinimumToken().minKeyBound();
-        Range<RowPosition> range = new Range<RowPosition>(minPos, minPos);
-
-        try
-        {
-            RangeSliceCommand cmd = new RangeSliceCommand(Keyspace.SYSTEM_KS,
-                                                          SystemKeyspace.HINTS_CF,
-                                                          System.currentTimeMillis(),
-                                                          predicate,
-                                                          range,
-                                                          null,
-                                                          LARGE_NUMBER);
-            return StorageProxy.getRangeSlice(cmd, ConsistencyLevel.ONE);
-        }
-        catch (Exception e)
-        {
-            logger.info("HintsCF getEPPendingHints timed out.");
-            throw new RuntimeException(e);
-        }
-    }
-
 }
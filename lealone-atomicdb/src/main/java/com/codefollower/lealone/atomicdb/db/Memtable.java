@@ -18,14 +18,18 @@
 package com.codefollower.lealone.atomicdb.db;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.codefollower.lealone.atomicdb.concurrent.JMXEnabledThreadPoolExecutor;
 import com.codefollower.lealone.atomicdb.concurrent.NamedThreadFactory;
 import com.codefollower.lealone.atomicdb.concurrent.StageManager;
 import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+import com.codefollower.lealone.atomicdb.db.columniterator.OnDiskAtomIterator;
 import com.codefollower.lealone.atomicdb.db.commitlog.ReplayPosition;
 import com.codefollower.lealone.atomicdb.db.composites.CellNameType;
 import com.codefollower.lealone.atomicdb.db.index.SecondaryIndexManager;
@@ -34,6 +38,9 @@ import com.codefollower.lealone.atomicdb.io.sstable.SSTableWriter;
 import com.codefollower.lealone.atomicdb.io.sstable.metadata.MetadataCollector;
 import com.codefollower.lealone.atomicdb.io.util.DiskAwareRunnable;
 import com.codefollower.lealone.atomicdb.utils.Allocator;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+import com.codefollower.lealone.atomicdb.utils.HeapAllocator;
+import com.codefollower.lealone.atomicdb.utils.ObjectSizes;
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import org.cliffc.high_scale_lib.NonBlockingHashSet;
@@ -87,8 +94,29 @@ public class Memtable
 
     volatile static ColumnFamilyStore activelyMeasuring;
 
+    // heap used by the objects that reference the cell names and values an off-heap allocator keeps:
+    // the cell, its name, the two buffer slices and the SnapTree node holding the cell
+    private static final long CELL_HEAP_OVERHEAD = ObjectSizes.getFieldSize(8L + 2 * ObjectSizes.getReferenceSize())
+                                                   + ObjectSizes.getFieldSize(ObjectSizes.getReferenceSize())
+                                                   + 2 * ObjectSizes.getSize(ByteBuffer.allocate(0))
+                                                   + ObjectSizes.getFieldSize(4L + 8 + 5 * ObjectSizes.getReferenceSize());
+    // the decorated key with its token and key slice, the skip list node, and the AtomicSortedColumns with
+    // its reference, holder, deletion info and SnapTree root
+    private static final long PARTITION_HEAP_OVERHEAD = ObjectSizes.getFieldSize(2 * ObjectSizes.getReferenceSize())
+                                                        + ObjectSizes.getFieldSize(8L)
+                                                        + ObjectSizes.getSize(ByteBuffer.allocate(0))
+                                                        + ObjectSizes.getFieldSize(3 * ObjectSizes.getReferenceSize())
+                                                        + 4 * ObjectSizes.getFieldSize(2 * ObjectSizes.getReferenceSize())
+                                                        + ObjectSizes.getFieldSize(8L + 4 + 4 * ObjectSizes.getReferenceSize());
+
     private final AtomicLong currentSize = new AtomicLong(0);
     private final AtomicLong currentOperations = new AtomicLong(0);
+    private final AtomicLong currentCells = new AtomicLong(0);
+    private final AtomicLong currentPartitions = new AtomicLong(0);
+
+    // one reference is held by the DataTracker while the memtable is part of its view, the others by reads
+    // in progress (see ColumnFamilyStore.markReferenced); the allocator is freed when the last one is released
+    private final AtomicInteger references = new AtomicInteger(1);
 
     // We index the memtable by RowPosition only for the purpose of being able
     // to select key range using Token.KeyBound. However put() ensures that we
@@ -134,6 +162,13 @@ public class Memtable
 
     public long getLiveSize()
     {
+        // an off-heap allocator knows exactly how much native memory the cells use, and the heap
+        // part is a fixed amount per cell and partition, so there is no need for the liveRatio estimate
+        if (allocator.isOffHeap())
+            return allocator.getOffHeapSize()
+                   + currentCells.get() * CELL_HEAP_OVERHEAD
+                   + currentPartitions.get() * PARTITION_HEAP_OVERHEAD;
+
         long estimatedSize = (long) (currentSize.get() * cfs.liveRatio);
 
         // liveRatio is just an estimate; we can get a lower bound directly from the allocator
@@ -160,6 +195,9 @@ public class Memtable
 
     public void updateLiveRatio() throws RuntimeException
     {
+        if (allocator.isOffHeap())
+            return;
+
         if (!MemoryMeter.isInitialized())
         {
             // hack for openjdk.  we log a warning about this in the startup script too.
@@ -188,10 +226,13 @@ public class Memtable
             // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
             previous = rows.putIfAbsent(new DecoratedKey(key.token, allocator.clone(key.key)), empty);
             if (previous == null)
+            {
                 previous = empty;
+                currentPartitions.incrementAndGet();
+            }
         }
 
-        long sizeDelta = previous.addAllWithSizeDelta(cf, allocator, localCopyFunction, indexer);
+        long sizeDelta = previous.addAllWithSizeDelta(cf, allocator, localCopyFunction, indexer, currentCells);
         currentSize.addAndGet(sizeDelta);
         currentOperations.addAndGet((cf.getColumnCount() == 0)
                                     ? cf.isMarkedForDelete() ? 1 : 0
@@ -211,6 +252,110 @@ public class Memtable
         return builder.toString();
     }
 
+    public boolean acquireReference()
+    {
+        while (true)
+        {
+            int n = references.get();
+            if (n <= 0)
+                return false;
+            if (references.compareAndSet(n, n + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Release a reference to this memtable. When the memtable has left the DataTracker view (it was flushed
+     * or discarded) and no read uses it any more, the memory of its allocator is freed.
+     */
+    public void releaseReference()
+    {
+        if (references.decrementAndGet() == 0)
+            allocator.free();
+    }
+
+    public static boolean acquireReferences(Iterable<Memtable> memtables)
+    {
+        Memtable failed = null;
+        for (Memtable memtable : memtables)
+        {
+            if (!memtable.acquireReference())
+            {
+                failed = memtable;
+                break;
+            }
+        }
+
+        if (failed == null)
+            return true;
+
+        for (Memtable memtable : memtables)
+        {
+            if (memtable == failed)
+                break;
+            memtable.releaseReference();
+        }
+        return false;
+    }
+
+    public static void releaseReferences(Iterable<Memtable> memtables)
+    {
+        for (Memtable memtable : memtables)
+            memtable.releaseReference();
+    }
+
+    /**
+     * The memory of an off-heap memtable is freed once it is released, so a read copies the cells it
+     * returns to the heap. Only the cells the filter selects are copied.
+     */
+    public OnDiskAtomIterator copyToHeap(final OnDiskAtomIterator iter)
+    {
+        if (!allocator.isOffHeap())
+            return iter;
+
+        return new OnDiskAtomIterator()
+        {
+            public ColumnFamily getColumnFamily()
+            {
+                return iter.getColumnFamily();
+            }
+
+            public DecoratedKey getKey()
+            {
+                return iter.getKey();
+            }
+
+            public boolean hasNext()
+            {
+                return iter.hasNext();
+            }
+
+            public OnDiskAtom next()
+            {
+                OnDiskAtom atom = iter.next();
+                return atom instanceof Cell ? ((Cell) atom).localCopy(cfs, HeapAllocator.instance) : atom;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close() throws IOException
+            {
+                iter.close();
+            }
+        };
+    }
+
+    /**
+     * @return the given partition key of this memtable, copied to the heap if the memtable is off-heap
+     */
+    public DecoratedKey copyToHeap(DecoratedKey key)
+    {
+        return allocator.isOffHeap() ? new DecoratedKey(key.token, ByteBufferUtil.clone(key.key)) : key;
+    }
+
     public void flushAndSignal(final CountDownLatch latch, final Future<ReplayPosition> context)
     {
         flushWriter.execute(new FlushRunnable(latch, context));
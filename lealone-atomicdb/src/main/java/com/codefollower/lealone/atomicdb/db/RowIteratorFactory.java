@@ -61,7 +61,7 @@ public class RowIteratorFactory
         // memtables
         for (Memtable memtable : memtables)
         {
-            iterators.add(new ConvertToColumnIterator<AtomicSortedColumns>(range, memtable.getEntryIterator(range.startKey(), range.stopKey())));
+            iterators.add(new ConvertToColumnIterator<AtomicSortedColumns>(range, memtable, memtable.getEntryIterator(range.startKey(), range.stopKey())));
         }
 
         for (SSTableReader sstable : sstables)
@@ -95,9 +95,9 @@ public class RowIteratorFactory
             {
                 // First check if this row is in the rowCache. If it is we can skip the rest
                 ColumnFamily cached = cfs.getRawCachedRow(key);
-                if (cached == null)
+                if (cached == null || !cfs.isFilterFullyCoveredBy(range.columnFilter(key.key), cached, now))
                 {
-                    // not cached: collate
+                    // not cached, or only the head of the row is cached: collate
                     QueryFilter.collateOnDiskAtom(returnCF, colIters, range.columnFilter(key.key), gcBefore, now);
                 }
                 else
@@ -120,11 +120,13 @@ public class RowIteratorFactory
     private static class ConvertToColumnIterator<T extends ColumnFamily> implements CloseableIterator<OnDiskAtomIterator>
     {
         private final DataRange range;
+        private final Memtable memtable;
         private final Iterator<Map.Entry<DecoratedKey, T>> iter;
 
-        public ConvertToColumnIterator(DataRange range, Iterator<Map.Entry<DecoratedKey, T>> iter)
+        public ConvertToColumnIterator(DataRange range, Memtable memtable, Iterator<Map.Entry<DecoratedKey, T>> iter)
         {
             this.range = range;
+            this.memtable = memtable;
             this.iter = iter;
         }
 
@@ -143,11 +145,13 @@ public class RowIteratorFactory
         public OnDiskAtomIterator next()
         {
             final Map.Entry<DecoratedKey, T> entry = iter.next();
-            return new LazyColumnIterator(entry.getKey(), new IColumnIteratorFactory()
+            // the rows returned may outlive the memtable, see Memtable.copyToHeap
+            final DecoratedKey key = memtable.copyToHeap(entry.getKey());
+            return new LazyColumnIterator(key, new IColumnIteratorFactory()
             {
                 public OnDiskAtomIterator create()
                 {
-                    return range.columnFilter(entry.getKey().key).getColumnFamilyIterator(entry.getKey(), entry.getValue());
+                    return memtable.copyToHeap(range.columnFilter(key.key).getColumnFamilyIterator(key, entry.getValue()));
                 }
             });
         }
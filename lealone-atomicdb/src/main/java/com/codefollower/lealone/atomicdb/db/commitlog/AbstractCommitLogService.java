@@ -78,6 +78,7 @@ public abstract class AbstractCommitLogService
                         run = !shutdown;
 
                         // sync and signal
+                        awaitMoreWrites();
                         long syncStarted = System.currentTimeMillis();
                         commitLog.sync(shutdown);
                         lastSyncedAt = syncStarted;
@@ -115,6 +116,8 @@ public abstract class AbstractCommitLogService
                         try
                         {
                             haveWork.tryAcquire(sleep, TimeUnit.MILLISECONDS);
+                            // one sync serves every request made so far
+                            haveWork.drainPermits();
                         }
                         catch (InterruptedException e)
                         {
@@ -153,6 +156,13 @@ public abstract class AbstractCommitLogService
 
     protected abstract void maybeWaitForSync(Allocation alloc);
 
+    /**
+     * Called before each sync, lets a subclass hold it back briefly so that more writers can share it.
+     */
+    protected void awaitMoreWrites()
+    {
+    }
+
     /**
      * Sync immediately, but don't block for the sync to cmplete
      */
@@ -30,7 +30,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.codefollower.lealone.atomicdb.config.Config;
 import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
 import com.codefollower.lealone.atomicdb.db.*;
 import com.codefollower.lealone.atomicdb.io.FSWriteError;
@@ -68,9 +67,17 @@ public class CommitLog implements CommitLogMBean
 
         allocator = new CommitLogSegmentManager();
 
-        executor = DatabaseDescriptor.getCommitLogSync() == Config.CommitLogSync.batch
-                 ? new BatchCommitLogService(this)
-                 : new PeriodicCommitLogService(this);
+        switch (DatabaseDescriptor.getCommitLogSync())
+        {
+            case batch:
+                executor = new BatchCommitLogService(this);
+                break;
+            case group:
+                executor = new GroupCommitLogService(this);
+                break;
+            default:
+                executor = new PeriodicCommitLogService(this);
+        }
 
         MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
         try
@@ -36,6 +36,11 @@ public class CommitLogDescriptor
     public static final int VERSION_12 = 2;
     public static final int VERSION_20 = 3;
     public static final int VERSION_21 = 4;
+    /**
+     * Same records as {@link #VERSION_21}, but every sync section is compressed with LZ4 and appended to the file
+     * behind a header of {@link CommitLogSegment#COMPRESSED_MARKER_SIZE} bytes.
+     */
+    public static final int VERSION_21_LZ4 = 5;
     /**
      * Increment this number if there is a changes in the commit log disc layout or MessagingVersion changes.
      * Note: make sure to handle {@link #getMessagingVersion()}
@@ -79,12 +84,18 @@ public class CommitLogDescriptor
             case VERSION_20:
                 return MessagingService.VERSION_20;
             case VERSION_21:
+            case VERSION_21_LZ4:
                 return MessagingService.VERSION_21;
             default:
                 throw new IllegalStateException("Unknown commitlog version " + version);
         }
     }
 
+    public boolean isCompressed()
+    {
+        return version == VERSION_21_LZ4;
+    }
+
     public String fileName()
     {
         return FILENAME_PREFIX + version + SEPARATOR + id + FILENAME_EXTENSION;
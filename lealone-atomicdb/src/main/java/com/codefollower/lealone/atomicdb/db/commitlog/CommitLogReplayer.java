@@ -19,6 +19,7 @@
 package com.codefollower.lealone.atomicdb.db.commitlog;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -28,7 +29,12 @@ import com.codefollower.lealone.atomicdb.concurrent.Stage;
 import com.codefollower.lealone.atomicdb.concurrent.StageManager;
 import com.codefollower.lealone.atomicdb.config.Schema;
 import com.codefollower.lealone.atomicdb.db.*;
+import com.codefollower.lealone.atomicdb.io.compress.ICompressor;
+import com.codefollower.lealone.atomicdb.io.compress.LZ4Compressor;
+import com.codefollower.lealone.atomicdb.io.util.AbstractDataInput;
 import com.codefollower.lealone.atomicdb.io.util.FastByteArrayInputStream;
+import com.codefollower.lealone.atomicdb.io.util.FileDataInput;
+import com.codefollower.lealone.atomicdb.io.util.FileMark;
 import com.codefollower.lealone.atomicdb.io.util.FileUtils;
 import com.codefollower.lealone.atomicdb.io.util.RandomAccessReader;
 import com.codefollower.lealone.atomicdb.utils.*;
@@ -243,8 +249,14 @@ public class CommitLogReplayer
                 return;
             }
 
+            if (desc.isCompressed())
+            {
+                replayCompressed(reader, offset, segmentId, version, replayFilter);
+                return;
+            }
+
             int prevEnd = 0;
-            main: while (true)
+            while (true)
             {
 
                 int end = prevEnd;
@@ -263,171 +275,376 @@ public class CommitLogReplayer
                     logger.debug("Replaying {} between {} and {}", file, offset, end);
 
                 reader.seek(offset);
+                if (!replaySection(reader, end, segmentId, version, replayFilter))
+                    break;
+
+                if (version < CommitLogDescriptor.VERSION_21)
+                    break;
+
+                offset = end + CommitLogSegment.SYNC_MARKER_SIZE;
+                prevEnd = end;
+            }
+        }
+        finally
+        {
+            FileUtils.closeQuietly(reader);
+            logger.info("Finished reading {}", file);
+        }
+    }
+
+    /**
+     * Replays a segment written with commitlog_compression: each sync section is preceded by its end position,
+     * its compressed length and a checksum that also covers the compressed blocks, and is decompressed before
+     * its records are replayed at their uncompressed positions.
+     */
+    private void replayCompressed(RandomAccessReader reader, int offset, long segmentId, int version, ReplayFilter replayFilter) throws IOException
+    {
+        ICompressor compressor = LZ4Compressor.create(Collections.<String, String>emptyMap());
+        byte[] compressed = new byte[0];
+        int start = 0;
+        while (reader.getFilePointer() + CommitLogSegment.COMPRESSED_MARKER_SIZE <= reader.length())
+        {
+            long sectionPosition = reader.getFilePointer();
+            int end = reader.readInt();
+            int compressedLength = reader.readInt();
+            long filecrc = reader.readLong();
+
+            if (end <= start + CommitLogSegment.SYNC_MARKER_SIZE
+                || compressedLength < 0 || compressedLength > reader.length() - reader.getFilePointer())
+            {
+                if (end != 0 || filecrc != 0)
+                    logger.warn("Encountered bad compressed section at position {} of commit log {}", sectionPosition, reader.getPath());
+                return;
+            }
+
+            if (compressed.length < compressedLength)
+                compressed = new byte[compressedLength];
+            reader.readFully(compressed, 0, compressedLength);
+
+            PureJavaCrc32 crc = new PureJavaCrc32();
+            FBUtilities.updateChecksumInt(crc, (int) (segmentId & 0xFFFFFFFFL));
+            FBUtilities.updateChecksumInt(crc, (int) (segmentId >>> 32));
+            FBUtilities.updateChecksumInt(crc, start);
+            FBUtilities.updateChecksumInt(crc, end);
+            crc.update(compressed, 0, compressedLength);
+            FBUtilities.updateChecksumInt(crc, compressedLength);
+            if (crc.getValue() != filecrc)
+            {
+                logger.warn("Encountered bad compressed section at position {} of commit log {}", sectionPosition, reader.getPath());
+                return;
+            }
+
+            if (end <= offset)
+            {
+                // already flushed
+                start = end;
+                continue;
+            }
+
+            int dataStart = start + CommitLogSegment.SYNC_MARKER_SIZE;
+            byte[] uncompressed = new byte[end - dataStart];
+            try
+            {
+                uncompressBlocks(compressor, compressed, compressedLength, uncompressed);
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to uncompress section at position {} of commit log {}", sectionPosition, reader.getPath());
+                return;
+            }
 
-                 /* read the logs populate Mutation and apply */
-                while (reader.getPosition() < end && !reader.isEOF())
+            if (logger.isDebugEnabled())
+                logger.debug("Replaying {} between {} and {}", reader.getPath(), Math.max(offset, dataStart), end);
+
+            SectionDataInput section = new SectionDataInput(uncompressed, dataStart, reader.getPath());
+            section.seek(Math.max(offset, dataStart));
+            if (!replaySection(section, end, segmentId, version, replayFilter))
+                return;
+            start = end;
+        }
+    }
+
+    private static void uncompressBlocks(ICompressor compressor, byte[] compressed, int compressedLength, byte[] uncompressed) throws IOException
+    {
+        ByteBuffer blocks = ByteBuffer.wrap(compressed, 0, compressedLength);
+        int uncompressedLength = 0;
+        while (blocks.hasRemaining())
+        {
+            if (blocks.remaining() < 4)
+                throw new IOException("Truncated compressed block");
+            int blockLength = blocks.getInt();
+            if (blockLength < 0 || blockLength > blocks.remaining())
+                throw new IOException("Truncated compressed block");
+            uncompressedLength += compressor.uncompress(compressed, blocks.position(), blockLength, uncompressed, uncompressedLength);
+            blocks.position(blocks.position() + blockLength);
+        }
+        if (uncompressedLength != uncompressed.length)
+            throw new IOException("Uncompressed " + uncompressedLength + " bytes instead of " + uncompressed.length);
+    }
+
+    /**
+     * Replays the records of one sync section, from the current position of the reader up to end.
+     *
+     * @return false if the rest of the segment cannot be trusted and must not be replayed
+     */
+    private boolean replaySection(FileDataInput reader, int end, final long segmentId, int version, final ReplayFilter replayFilter) throws IOException
+    {
+        while (reader.getFilePointer() < end && !reader.isEOF())
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("Reading mutation at {}", reader.getFilePointer());
+
+            long claimedCRC32;
+            int serializedSize;
+            try
+            {
+                // any of the reads may hit EOF
+                serializedSize = reader.readInt();
+                if (serializedSize == LEGACY_END_OF_SEGMENT_MARKER)
                 {
-                    if (logger.isDebugEnabled())
-                        logger.debug("Reading mutation at {}", reader.getFilePointer());
+                    logger.debug("Encountered end of segment marker at {}", reader.getFilePointer());
+                    return false;
+                }
 
-                    long claimedCRC32;
-                    int serializedSize;
-                    try
-                    {
-                        // any of the reads may hit EOF
-                        serializedSize = reader.readInt();
-                        if (serializedSize == LEGACY_END_OF_SEGMENT_MARKER)
-                        {
-                            logger.debug("Encountered end of segment marker at {}", reader.getFilePointer());
-                            break main;
-                        }
+                // Mutation must be at LEAST 10 bytes:
+                // 3 each for a non-empty Keyspace and Key (including the
+                // 2-byte length from writeUTF/writeWithShortLength) and 4 bytes for column count.
+                // This prevents CRC by being fooled by special-case garbage in the file; see CASSANDRA-2128
+                if (serializedSize < 10)
+                    return false;
+
+                long claimedSizeChecksum = reader.readLong();
+                checksum.reset();
+                if (version < CommitLogDescriptor.VERSION_20)
+                    checksum.update(serializedSize);
+                else
+                    FBUtilities.updateChecksumInt(checksum, serializedSize);
 
-                        // Mutation must be at LEAST 10 bytes:
-                        // 3 each for a non-empty Keyspace and Key (including the
-                        // 2-byte length from writeUTF/writeWithShortLength) and 4 bytes for column count.
-                        // This prevents CRC by being fooled by special-case garbage in the file; see CASSANDRA-2128
-                        if (serializedSize < 10)
-                            break main;
-
-                        long claimedSizeChecksum = reader.readLong();
-                        checksum.reset();
-                        if (version < CommitLogDescriptor.VERSION_20)
-                            checksum.update(serializedSize);
-                        else
-                            FBUtilities.updateChecksumInt(checksum, serializedSize);
-
-                        if (checksum.getValue() != claimedSizeChecksum)
-                            break main; // entry wasn't synced correctly/fully. that's
-                        // ok.
-
-                        if (serializedSize > buffer.length)
-                            buffer = new byte[(int) (1.2 * serializedSize)];
-                        reader.readFully(buffer, 0, serializedSize);
-                        claimedCRC32 = reader.readLong();
-                    }
-                    catch (EOFException eof)
-                    {
-                        break main; // last CL entry didn't get completely written. that's ok.
-                    }
+                if (checksum.getValue() != claimedSizeChecksum)
+                    return false; // entry wasn't synced correctly/fully. that's
+                // ok.
 
-                    checksum.update(buffer, 0, serializedSize);
-                    if (claimedCRC32 != checksum.getValue())
-                    {
-                        // this entry must not have been fsynced. probably the rest is bad too,
-                        // but just in case there is no harm in trying them (since we still read on an entry boundary)
-                        continue;
-                    }
+                if (serializedSize > buffer.length)
+                    buffer = new byte[(int) (1.2 * serializedSize)];
+                reader.readFully(buffer, 0, serializedSize);
+                claimedCRC32 = reader.readLong();
+            }
+            catch (EOFException eof)
+            {
+                return false; // last CL entry didn't get completely written. that's ok.
+            }
 
-                    /* deserialize the commit log entry */
-                    FastByteArrayInputStream bufIn = new FastByteArrayInputStream(buffer, 0, serializedSize);
-                    final Mutation mutation;
-                    try
-                    {
-                        // assuming version here. We've gone to lengths to make sure what gets written to the CL is in
-                        // the current version. so do make sure the CL is drained prior to upgrading a node.
-                        mutation = Mutation.serializer.deserialize(new DataInputStream(bufIn), version, ColumnSerializer.Flag.LOCAL);
-                        // doublecheck that what we read is [still] valid for the current schema
-                        for (ColumnFamily cf : mutation.getColumnFamilies())
-                            for (Cell cell : cf)
-                                cf.getComparator().validate(cell.name());
-                    }
-                    catch (UnknownColumnFamilyException ex)
-                    {
-                        if (ex.cfId == null)
-                            continue;
-                        AtomicInteger i = invalidMutations.get(ex.cfId);
-                        if (i == null)
-                        {
-                            i = new AtomicInteger(1);
-                            invalidMutations.put(ex.cfId, i);
-                        }
-                        else
-                            i.incrementAndGet();
-                        continue;
-                    }
-                    catch (Throwable t)
-                    {
-                        File f = File.createTempFile("mutation", "dat");
-                        DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
-                        try
-                        {
-                            out.write(buffer, 0, serializedSize);
-                        }
-                        finally
-                        {
-                            out.close();
-                        }
-                        String st = String.format("Unexpected error deserializing mutation; saved to %s and ignored.  This may be caused by replaying a mutation against a table with the same name but incompatible schema.  Exception follows: ",
-                                                  f.getAbsolutePath());
-                        logger.error(st, t);
-                        continue;
-                    }
+            checksum.update(buffer, 0, serializedSize);
+            if (claimedCRC32 != checksum.getValue())
+            {
+                // this entry must not have been fsynced. probably the rest is bad too,
+                // but just in case there is no harm in trying them (since we still read on an entry boundary)
+                continue;
+            }
 
-                    if (logger.isDebugEnabled())
-                        logger.debug("replaying mutation for {}.{}: {}", mutation.getKeyspaceName(), ByteBufferUtil.bytesToHex(mutation.key()), "{" + StringUtils.join(mutation.getColumnFamilies().iterator(), ", ") + "}");
+            /* deserialize the commit log entry */
+            FastByteArrayInputStream bufIn = new FastByteArrayInputStream(buffer, 0, serializedSize);
+            final Mutation mutation;
+            try
+            {
+                // assuming version here. We've gone to lengths to make sure what gets written to the CL is in
+                // the current version. so do make sure the CL is drained prior to upgrading a node.
+                mutation = Mutation.serializer.deserialize(new DataInputStream(bufIn), version, ColumnSerializer.Flag.LOCAL);
+                // doublecheck that what we read is [still] valid for the current schema
+                for (ColumnFamily cf : mutation.getColumnFamilies())
+                    for (Cell cell : cf)
+                        cf.getComparator().validate(cell.name());
+            }
+            catch (UnknownColumnFamilyException ex)
+            {
+                if (ex.cfId == null)
+                    continue;
+                AtomicInteger i = invalidMutations.get(ex.cfId);
+                if (i == null)
+                {
+                    i = new AtomicInteger(1);
+                    invalidMutations.put(ex.cfId, i);
+                }
+                else
+                    i.incrementAndGet();
+                continue;
+            }
+            catch (Throwable t)
+            {
+                File f = File.createTempFile("mutation", "dat");
+                DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+                try
+                {
+                    out.write(buffer, 0, serializedSize);
+                }
+                finally
+                {
+                    out.close();
+                }
+                String st = String.format("Unexpected error deserializing mutation; saved to %s and ignored.  This may be caused by replaying a mutation against a table with the same name but incompatible schema.  Exception follows: ",
+                                          f.getAbsolutePath());
+                logger.error(st, t);
+                continue;
+            }
+
+            if (logger.isDebugEnabled())
+                logger.debug("replaying mutation for {}.{}: {}", mutation.getKeyspaceName(), ByteBufferUtil.bytesToHex(mutation.key()), "{" + StringUtils.join(mutation.getColumnFamilies().iterator(), ", ") + "}");
 
-                    final long entryLocation = reader.getFilePointer();
-                    Runnable runnable = new WrappedRunnable()
+            final long entryLocation = reader.getFilePointer();
+            Runnable runnable = new WrappedRunnable()
+            {
+                public void runMayThrow() throws IOException
+                {
+                    if (Schema.instance.getKSMetaData(mutation.getKeyspaceName()) == null)
+                        return;
+                    if (pointInTimeExceeded(mutation))
+                        return;
+
+                    final Keyspace keyspace = Keyspace.open(mutation.getKeyspaceName());
+
+                    // Rebuild the mutation, omitting column families that
+                    //    a) the user has requested that we ignore,
+                    //    b) have already been flushed,
+                    // or c) are part of a cf that was dropped.
+                    // Keep in mind that the cf.name() is suspect. do every thing based on the cfid instead.
+                    Mutation newMutation = null;
+                    for (ColumnFamily columnFamily : replayFilter.filter(mutation))
                     {
-                        public void runMayThrow() throws IOException
+                        if (Schema.instance.getCF(columnFamily.id()) == null)
+                            continue; // dropped
+
+                        ReplayPosition rp = cfPositions.get(columnFamily.id());
+
+                        // replay if current segment is newer than last flushed one or,
+                        // if it is the last known segment, if we are after the replay position
+                        if (segmentId > rp.segment || (segmentId == rp.segment && entryLocation > rp.position))
                         {
-                            if (Schema.instance.getKSMetaData(mutation.getKeyspaceName()) == null)
-                                return;
-                            if (pointInTimeExceeded(mutation))
-                                return;
-
-                            final Keyspace keyspace = Keyspace.open(mutation.getKeyspaceName());
-
-                            // Rebuild the mutation, omitting column families that
-                            //    a) the user has requested that we ignore,
-                            //    b) have already been flushed,
-                            // or c) are part of a cf that was dropped.
-                            // Keep in mind that the cf.name() is suspect. do every thing based on the cfid instead.
-                            Mutation newMutation = null;
-                            for (ColumnFamily columnFamily : replayFilter.filter(mutation))
-                            {
-                                if (Schema.instance.getCF(columnFamily.id()) == null)
-                                    continue; // dropped
-
-                                ReplayPosition rp = cfPositions.get(columnFamily.id());
-
-                                // replay if current segment is newer than last flushed one or,
-                                // if it is the last known segment, if we are after the replay position
-                                if (segmentId > rp.segment || (segmentId == rp.segment && entryLocation > rp.position))
-                                {
-                                    if (newMutation == null)
-                                        newMutation = new Mutation(mutation.getKeyspaceName(), mutation.key());
-                                    newMutation.add(columnFamily);
-                                    replayedCount.incrementAndGet();
-                                }
-                            }
-                            if (newMutation != null)
-                            {
-                                assert !newMutation.isEmpty();
-                                Keyspace.open(newMutation.getKeyspaceName()).apply(newMutation, false);
-                                keyspacesRecovered.add(keyspace);
-                            }
+                            if (newMutation == null)
+                                newMutation = new Mutation(mutation.getKeyspaceName(), mutation.key());
+                            newMutation.add(columnFamily);
+                            replayedCount.incrementAndGet();
                         }
-                    };
-                    futures.add(StageManager.getStage(Stage.MUTATION).submit(runnable));
-                    if (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT)
+                    }
+                    if (newMutation != null)
                     {
-                        FBUtilities.waitOnFutures(futures);
-                        futures.clear();
+                        assert !newMutation.isEmpty();
+                        Keyspace.open(newMutation.getKeyspaceName()).apply(newMutation, false);
+                        keyspacesRecovered.add(keyspace);
                     }
                 }
+            };
+            futures.add(StageManager.getStage(Stage.MUTATION).submit(runnable));
+            if (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT)
+            {
+                FBUtilities.waitOnFutures(futures);
+                futures.clear();
+            }
+        }
+        return true;
+    }
 
-                if (version < CommitLogDescriptor.VERSION_21)
-                    break;
+    /**
+     * The uncompressed records of a sync section, addressed by their position in the segment.
+     */
+    private static final class SectionDataInput extends AbstractDataInput implements FileDataInput
+    {
+        private final byte[] data;
+        private final int offset;
+        private final String path;
+        private int position;
 
-                offset = end + CommitLogSegment.SYNC_MARKER_SIZE;
-                prevEnd = end;
-            }
+        SectionDataInput(byte[] data, int offset, String path)
+        {
+            this.data = data;
+            this.offset = offset;
+            this.path = path;
         }
-        finally
+
+        protected void seekInternal(int pos)
         {
-            FileUtils.closeQuietly(reader);
-            logger.info("Finished reading {}", file);
+            position = pos;
+        }
+
+        protected int getPosition()
+        {
+            return position;
+        }
+
+        public void seek(long pos) throws IOException
+        {
+            long inSectionPos = pos - offset;
+            if (inSectionPos < 0 || inSectionPos > data.length)
+                throw new IOException(String.format("Seek position %d is not within section (offset: %d, length: %d)", pos, offset, data.length));
+            seekInternal((int) inSectionPos);
+        }
+
+        public long getFilePointer()
+        {
+            return offset + (long) position;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public boolean isEOF()
+        {
+            return position == data.length;
+        }
+
+        public long bytesRemaining()
+        {
+            return data.length - position;
+        }
+
+        public int read()
+        {
+            if (isEOF())
+                return -1;
+            return data[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (isEOF())
+                return -1;
+            int count = Math.min(len, data.length - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        public int skipBytes(int n)
+        {
+            int skipped = Math.min(n, data.length - position);
+            position += skipped;
+            return skipped;
+        }
+
+        public ByteBuffer readBytes(int length) throws IOException
+        {
+            if (length > bytesRemaining())
+                throw new EOFException();
+            ByteBuffer bytes = ByteBuffer.wrap(Arrays.copyOfRange(data, position, position + length));
+            position += length;
+            return bytes;
+        }
+
+        public FileMark mark()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void reset(FileMark mark)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public long bytesPastMark(FileMark mark)
+        {
+            throw new UnsupportedOperationException();
         }
     }
 
@@ -25,12 +25,15 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -48,7 +51,10 @@ import com.codefollower.lealone.atomicdb.config.Schema;
 import com.codefollower.lealone.atomicdb.db.ColumnFamily;
 import com.codefollower.lealone.atomicdb.db.Mutation;
 import com.codefollower.lealone.atomicdb.io.FSWriteError;
+import com.codefollower.lealone.atomicdb.io.compress.ICompressor;
+import com.codefollower.lealone.atomicdb.io.compress.LZ4Compressor;
 import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+import com.codefollower.lealone.atomicdb.utils.FBUtilities;
 import com.codefollower.lealone.atomicdb.utils.PureJavaCrc32;
 import com.codefollower.lealone.atomicdb.utils.WaitQueue;
 
@@ -70,6 +76,19 @@ public class CommitLogSegment
     // The commit log (chained) sync marker/header size in bytes (int: length + long: checksum [segmentId, position])
     static final int SYNC_MARKER_SIZE = 4 + 8;
 
+    // The header of a compressed sync section in bytes (int: end position + int: compressed length
+    // + long: checksum [segmentId, start position, end position, compressed blocks, compressed length])
+    static final int COMPRESSED_MARKER_SIZE = 4 + 4 + 8;
+
+    // A compressed sync section is a sequence of blocks (int: compressed length + compressed bytes),
+    // each holding up to this many bytes of the section, so that the compression buffer stays small
+    static final int COMPRESSION_BLOCK_SIZE = 64 * 1024;
+
+    // The in-memory images of compressed segments are reused by the next segments rather than reallocated:
+    // one for the active segment, one for the segment being synced and closed, one for the preallocated segment
+    private static final int MAX_POOLED_IMAGES = 3;
+    private static final Queue<ByteBuffer> imagePool = new ConcurrentLinkedQueue<>();
+
     // The current AppendLock object - i.e. the one all threads adding new log records should use to synchronise
     private final AtomicReference<AppendLock> appendLock = new AtomicReference<>(new AppendLock());
 
@@ -98,7 +117,17 @@ public class CommitLogSegment
     private final File logFile;
     private final RandomAccessFile logFileAccessor;
 
-    private final MappedByteBuffer buffer;
+    // the mapped file, or when compressed an in-memory image of it whose sync sections are appended to the file
+    private final ByteBuffer buffer;
+
+    // null if the segment is not compressed
+    private final ICompressor compressor;
+    // the output of the compression of one block, reused for all the blocks and released on close
+    private ICompressor.WrappedArray compressionBuffer;
+    // where the next compressed sync section is appended to the file
+    private long compressedFilePosition;
+
+    private boolean closed;
 
     public final CommitLogDescriptor descriptor;
 
@@ -123,7 +152,16 @@ public class CommitLogSegment
     CommitLogSegment(String filePath)
     {
         id = getNextId();
-        descriptor = new CommitLogDescriptor(id);
+        if (DatabaseDescriptor.isCommitLogCompressed())
+        {
+            compressor = LZ4Compressor.create(Collections.<String, String>emptyMap());
+            descriptor = new CommitLogDescriptor(CommitLogDescriptor.VERSION_21_LZ4, id);
+        }
+        else
+        {
+            compressor = null;
+            descriptor = new CommitLogDescriptor(id);
+        }
         logFile = new File(DatabaseDescriptor.getCommitLogLocation(), descriptor.fileName());
         boolean isCreating = true;
 
@@ -148,12 +186,22 @@ public class CommitLogSegment
             if (isCreating)
                 logger.debug("Creating new commit log segment {}", logFile.getPath());
 
-            // Map the segment, extending or truncating it to the standard segment size.
-            // (We may have restarted after a segment size configuration change, leaving "incorrectly"
-            // sized segments on disk.)
-            logFileAccessor.setLength(DatabaseDescriptor.getCommitLogSegmentSize());
+            if (compressor == null)
+            {
+                // Map the segment, extending or truncating it to the standard segment size.
+                // (We may have restarted after a segment size configuration change, leaving "incorrectly"
+                // sized segments on disk.)
+                logFileAccessor.setLength(DatabaseDescriptor.getCommitLogSegmentSize());
+
+                buffer = logFileAccessor.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DatabaseDescriptor.getCommitLogSegmentSize());
+            }
+            else
+            {
+                // the file only grows by the compressed sections written at each sync
+                logFileAccessor.setLength(0);
 
-            buffer = logFileAccessor.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DatabaseDescriptor.getCommitLogSegmentSize());
+                buffer = takeImage(DatabaseDescriptor.getCommitLogSegmentSize());
+            }
             // mark the initial header as uninitialised
             buffer.putInt(0, 0);
             buffer.putLong(4, 0);
@@ -244,8 +292,8 @@ public class CommitLogSegment
     {
         try
         {
-            // check we have more work to do
-            if (allocatePosition.get() <= lastSyncedOffset + SYNC_MARKER_SIZE)
+            // check we have more work to do; a closed segment may have handed its image to another one
+            if (closed || allocatePosition.get() <= lastSyncedOffset + SYNC_MARKER_SIZE)
                 return;
 
             // allocate a new sync marker; this is both necessary in itself, but also serves to demarcate
@@ -276,34 +324,41 @@ public class CommitLogSegment
             appendLock.set(new AppendLock());
             curAppendLock.expireAndWaitForCompletion();
 
-            // write previous sync marker to point to next sync marker
-            // we don't chain the crcs here to ensure this method is idempotent if it fails
-            int offset = lastSyncedOffset;
-            final PureJavaCrc32 crc = new PureJavaCrc32();
-            crc.update((int) (id & 0xFFFFFFFFL));
-            crc.update((int) (id >>> 32));
-            crc.update(offset);
-            buffer.putInt(offset, nextMarker);
-            buffer.putLong(offset + 4, crc.getValue());
-
-            // zero out the next sync marker so replayer can cleanly exit
-            if (nextMarker < buffer.capacity())
+            if (compressor == null)
+            {
+                // write previous sync marker to point to next sync marker
+                // we don't chain the crcs here to ensure this method is idempotent if it fails
+                int offset = lastSyncedOffset;
+                final PureJavaCrc32 crc = new PureJavaCrc32();
+                crc.update((int) (id & 0xFFFFFFFFL));
+                crc.update((int) (id >>> 32));
+                crc.update(offset);
+                buffer.putInt(offset, nextMarker);
+                buffer.putLong(offset + 4, crc.getValue());
+
+                // zero out the next sync marker so replayer can cleanly exit
+                if (nextMarker < buffer.capacity())
+                {
+                    buffer.putInt(nextMarker, 0);
+                    buffer.putLong(nextMarker + 4, 0);
+                }
+
+                // actually perform the sync
+                ((MappedByteBuffer) buffer).force();
+            }
+            else
             {
-                buffer.putInt(nextMarker, 0);
-                buffer.putLong(nextMarker + 4, 0);
+                writeCompressed(lastSyncedOffset, close ? discardedTailFrom : nextMarker);
             }
+            if (close)
+                nextMarker = buffer.capacity();
 
-            // actually perform the sync and signal those waiting for it
-            buffer.force();
+            // publish the new offset before waking the writers, or one that wakes early waits for the next signal
+            lastSyncedOffset = nextMarker;
             syncComplete.signalAll();
 
             if (close)
-            {
                 close();
-                nextMarker = buffer.capacity();
-            }
-
-            lastSyncedOffset = nextMarker;
         }
         catch (Exception e) // MappedByteBuffer.force() does not declare IOException but can actually throw it
         {
@@ -311,6 +366,72 @@ public class CommitLogSegment
         }
     }
 
+    /**
+     * Compresses the records between the sync marker at offset and end, appends them to the file
+     * behind their own header and forces the file to disk. The records keep their uncompressed
+     * positions, so that ReplayPositions are the same as for an uncompressed segment.
+     * <p/>
+     * The section is compressed block by block, and its header is written after the blocks: the checksum
+     * covers the compressed bytes, so a section that was only partly written is not replayed.
+     */
+    private void writeCompressed(int offset, int end) throws IOException
+    {
+        int start = offset + SYNC_MARKER_SIZE;
+        if (end <= start)
+            return;
+
+        if (compressionBuffer == null)
+            compressionBuffer = new ICompressor.WrappedArray(new byte[4 + compressor.initialCompressedBufferLength(COMPRESSION_BLOCK_SIZE)]);
+
+        final PureJavaCrc32 crc = new PureJavaCrc32();
+        FBUtilities.updateChecksumInt(crc, (int) (id & 0xFFFFFFFFL));
+        FBUtilities.updateChecksumInt(crc, (int) (id >>> 32));
+        FBUtilities.updateChecksumInt(crc, offset);
+        FBUtilities.updateChecksumInt(crc, end);
+
+        FileChannel channel = logFileAccessor.getChannel();
+        long position = compressedFilePosition + COMPRESSED_MARKER_SIZE;
+        for (int blockStart = start; blockStart < end; blockStart += COMPRESSION_BLOCK_SIZE)
+        {
+            int blockLength = Math.min(COMPRESSION_BLOCK_SIZE, end - blockStart);
+            int compressedLength = compressor.compress(buffer.array(), blockStart, blockLength, compressionBuffer, 4);
+            ByteBuffer block = ByteBuffer.wrap(compressionBuffer.buffer, 0, 4 + compressedLength);
+            block.putInt(0, compressedLength);
+            crc.update(compressionBuffer.buffer, 0, 4 + compressedLength);
+            while (block.hasRemaining())
+                position += channel.write(block, position);
+        }
+
+        int compressedLength = (int) (position - compressedFilePosition - COMPRESSED_MARKER_SIZE);
+        FBUtilities.updateChecksumInt(crc, compressedLength);
+        ByteBuffer header = ByteBuffer.allocate(COMPRESSED_MARKER_SIZE);
+        header.putInt(0, end);
+        header.putInt(4, compressedLength);
+        header.putLong(8, crc.getValue());
+        long headerPosition = compressedFilePosition;
+        while (header.hasRemaining())
+            headerPosition += channel.write(header, headerPosition);
+        channel.force(false);
+        compressedFilePosition = position;
+    }
+
+    private static ByteBuffer takeImage(int size)
+    {
+        ByteBuffer image;
+        while ((image = imagePool.poll()) != null)
+        {
+            if (image.capacity() == size)
+                return image;
+        }
+        return ByteBuffer.allocate(size);
+    }
+
+    private static void releaseImage(ByteBuffer image)
+    {
+        if (imagePool.size() < MAX_POOLED_IMAGES)
+            imagePool.add(image);
+    }
+
     public boolean isFullySynced()
     {
         return lastSyncedOffset == buffer.capacity();
@@ -373,11 +494,24 @@ public class CommitLogSegment
     /**
      * Close the segment file.
      */
-    void close()
+    synchronized void close()
     {
+        if (closed)
+            return;
+        closed = true;
         try
         {
-            FileUtils.clean(buffer);
+            if (buffer instanceof MappedByteBuffer)
+            {
+                FileUtils.clean((MappedByteBuffer) buffer);
+            }
+            else
+            {
+                // nothing can be written to the image once it is handed to another segment
+                discardUnusedTail();
+                releaseImage(buffer);
+                compressionBuffer = null;
+            }
             logFileAccessor.close();
         }
         catch (IOException e)
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.commitlog;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+
+/**
+ * Group commit: a writer wakes the sync thread as soon as its record is written, and the sync thread
+ * lingers while more writers keep arriving, so that concurrent writers share a single sync.
+ * The linger never exceeds the group window, which bounds the latency added to a write.
+ */
+class GroupCommitLogService extends AbstractCommitLogService
+{
+    private final long windowNanos;
+
+    public GroupCommitLogService(CommitLog commitLog)
+    {
+        super(commitLog, "COMMIT-LOG-WRITER", (int) Math.max(1, Math.ceil(DatabaseDescriptor.getCommitLogSyncGroupWindow())));
+        windowNanos = (long) (DatabaseDescriptor.getCommitLogSyncGroupWindow() * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    protected void maybeWaitForSync(CommitLogSegment.Allocation alloc)
+    {
+        // wait until record has been safely persisted to disk
+        pending.incrementAndGet();
+        requestExtraSync();
+        alloc.awaitDiskSync();
+        pending.decrementAndGet();
+    }
+
+    @Override
+    protected void awaitMoreWrites()
+    {
+        long waiting = pending.get();
+        if (waiting == 0)
+            return;
+
+        long deadline = System.nanoTime() + windowNanos;
+        long step = Math.max(windowNanos / 10, 1);
+        while (System.nanoTime() < deadline)
+        {
+            LockSupport.parkNanos(step);
+            long now = pending.get();
+            // nobody joined since the last check, the group is complete
+            if (now <= waiting)
+                return;
+            waiting = now;
+        }
+    }
+}
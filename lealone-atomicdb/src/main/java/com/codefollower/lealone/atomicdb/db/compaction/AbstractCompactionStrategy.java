@@ -205,6 +205,16 @@ public abstract class AbstractCompactionStrategy
             CompactionManager.instance.submitBackground(cfs);
     }
 
+    /**
+     * Whether a large compaction may be split into disjoint token ranges, each written to sstables of its own
+     * (see subrange_compaction_threshold_in_mb).  A strategy may only allow this if it does not select these
+     * outputs for compaction again just because there are several of them.
+     */
+    public boolean supportsSubRangeCompaction()
+    {
+        return false;
+    }
+
     /**
      * @return a subset of the suggested sstables that are relevant for read requests.
      */
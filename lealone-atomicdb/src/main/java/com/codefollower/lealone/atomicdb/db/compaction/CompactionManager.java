@@ -99,6 +99,10 @@ public class CompactionManager implements CompactionManagerMBean
     private final static CompactionExecutor cacheCleanupExecutor = new CacheCleanupExecutor();
 
     private final CompactionMetrics metrics = new CompactionMetrics(executor, validationExecutor);
+
+    // runs the sub-ranges of a large compaction task concurrently, see CompactionTask
+    private final CompactionExecutor subRangeExecutor = new CompactionExecutor(DatabaseDescriptor.getConcurrentSubRangeCompactors(),
+                                                                               "SubRangeCompactionExecutor");
     private final Multiset<ColumnFamilyStore> compactingCF = ConcurrentHashMultiset.create();
 
     private final RateLimiter compactionRateLimiter = RateLimiter.create(Double.MAX_VALUE);
@@ -928,6 +932,20 @@ public class CompactionManager implements CompactionManagerMBean
         return CompactionMetrics.getCompactions().size();
     }
 
+    public CompactionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Run one sub-range of a compaction task.  The caller waits for the result, so the sub-ranges of
+     * a task do not take the place of other compactions in the compaction executor.
+     */
+    public <T> Future<T> submitSubRange(Callable<T> subRange)
+    {
+        return subRangeExecutor.submit(subRange);
+    }
+
     private static class CompactionExecutor extends ThreadPoolExecutor
     {
         protected CompactionExecutor(int minThreads, int maxThreads, String name, BlockingQueue<Runnable> queue)
@@ -936,7 +954,7 @@ public class CompactionManager implements CompactionManagerMBean
             allowCoreThreadTimeOut(true);
         }
 
-        private CompactionExecutor(int threadCount, String name)
+        protected CompactionExecutor(int threadCount, String name)
         {
             this(threadCount, threadCount, name, new LinkedBlockingQueue<Runnable>());
         }
@@ -20,6 +20,9 @@ package com.codefollower.lealone.atomicdb.db.compaction;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
@@ -28,6 +31,8 @@ import com.codefollower.lealone.atomicdb.db.DecoratedKey;
 import com.codefollower.lealone.atomicdb.db.RowIndexEntry;
 import com.codefollower.lealone.atomicdb.db.SystemKeyspace;
 import com.codefollower.lealone.atomicdb.db.compaction.CompactionManager.CompactionExecutorStatsCollector;
+import com.codefollower.lealone.atomicdb.dht.Range;
+import com.codefollower.lealone.atomicdb.dht.Token;
 import com.codefollower.lealone.atomicdb.io.sstable.Descriptor;
 import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
 import com.codefollower.lealone.atomicdb.io.sstable.SSTableWriter;
@@ -121,28 +126,39 @@ public class CompactionTask extends AbstractCompactionTask
         logger.info("Compacting {}", toCompact);
 
         long start = System.nanoTime();
-        long totalKeysWritten = 0;
         long estimatedTotalKeys = Math.max(cfs.metadata.getIndexInterval(), SSTableReader.getApproximateKeyCount(actuallyCompact));
         long estimatedSSTables = Math.max(1, SSTableReader.getTotalBytes(actuallyCompact) / strategy.getMaxSSTableBytes());
         long keysPerSSTable = (long) Math.ceil((double) estimatedTotalKeys / estimatedSSTables);
+
+        List<Range<Token>> ranges = getSubRanges(strategy, actuallyCompact);
+        if (ranges.size() > 1)
+        {
+            logger.info("Compacting {} in {} sub-ranges", cfs, ranges.size());
+            keysPerSSTable = (long) Math.ceil((double) keysPerSSTable / ranges.size());
+        }
         logger.debug("Expected bloom filter size : {}", keysPerSSTable);
 
-        AbstractCompactionIterable ci = new CompactionIterable(compactionType, strategy.getScanners(actuallyCompact), controller);
-        CloseableIterator<AbstractCompactedRow> iter = ci.iterator();
-        Map<DecoratedKey, RowIndexEntry> cachedKeys = new HashMap<>();
+        List<SubRangeCompaction> subRanges = new ArrayList<>(ranges.size());
+        for (Range<Token> range : ranges)
+            subRanges.add(new SubRangeCompaction(strategy, actuallyCompact, range, controller, sstableDirectory, keysPerSSTable));
 
         // we can't preheat until the tracker has been set. This doesn't happen until we tell the cfs to
         // replace the old entries.  Track entries to preheat here until then.
         Map<Descriptor, Map<DecoratedKey, RowIndexEntry>> cachedKeyMap =  new HashMap<>();
 
         Collection<SSTableReader> sstables = new ArrayList<>();
-        Collection<SSTableWriter> writers = new ArrayList<>();
-
-        if (collector != null)
-            collector.beginCompaction(ci);
+        boolean hasRows = false;
         try
         {
-            if (!iter.hasNext())
+            if (subRanges.size() == 1)
+                subRanges.get(0).call();
+            else
+                runSubRanges(subRanges);
+
+            for (SubRangeCompaction subRange : subRanges)
+                hasRows |= subRange.hasRows;
+
+            if (!hasRows)
             {
                 // don't mark compacted in the finally block, since if there _is_ nondeleted data,
                 // we need to sync it (via closeAndOpen) first, so there is no period during which
@@ -151,64 +167,21 @@ public class CompactionTask extends AbstractCompactionTask
                 return;
             }
 
-            SSTableWriter writer = createCompactionWriter(sstableDirectory, keysPerSSTable);
-            writers.add(writer);
-            while (iter.hasNext())
-            {
-                if (ci.isStopRequested())
-                    throw new CompactionInterruptedException(ci.getCompactionInfo());
-
-                AbstractCompactedRow row = iter.next();
-                RowIndexEntry indexEntry = writer.append(row);
-                if (indexEntry == null)
-                {
-                    controller.invalidateCachedRow(row.key);
-                    row.close();
-                    continue;
-                }
-
-                totalKeysWritten++;
-
-                if (DatabaseDescriptor.getPreheatKeyCache())
-                {
-                    for (SSTableReader sstable : actuallyCompact)
-                    {
-                        if (sstable.getCachedPosition(row.key, false) != null)
-                        {
-                            cachedKeys.put(row.key, indexEntry);
-                            break;
-                        }
-                    }
-                }
-
-                if (newSSTableSegmentThresholdReached(writer))
-                {
-                    // tmp = false because later we want to query it with descriptor from SSTableReader
-                    cachedKeyMap.put(writer.descriptor.asTemporary(false), cachedKeys);
-                    writer = createCompactionWriter(sstableDirectory, keysPerSSTable);
-                    writers.add(writer);
-                    cachedKeys = new HashMap<>();
-                }
-            }
-
-            if (writer.getFilePointer() > 0)
-            {
-                cachedKeyMap.put(writer.descriptor.asTemporary(false), cachedKeys);
-            }
-            else
+            long maxAge = getMaxDataAge(toCompact);
+            for (SubRangeCompaction subRange : subRanges)
             {
-                writer.abort();
-                writers.remove(writer);
+                for (SSTableWriter completedWriter : subRange.writers)
+                    sstables.add(completedWriter.closeAndOpenReader(maxAge));
+                cachedKeyMap.putAll(subRange.cachedKeyMap);
             }
-
-            long maxAge = getMaxDataAge(toCompact);
-            for (SSTableWriter completedWriter : writers)
-                sstables.add(completedWriter.closeAndOpenReader(maxAge));
         }
         catch (Throwable t)
         {
-            for (SSTableWriter writer : writers)
-                writer.abort();
+            for (SubRangeCompaction subRange : subRanges)
+            {
+                for (SSTableWriter writer : subRange.writers)
+                    writer.abort();
+            }
             // also remove already completed SSTables
             for (SSTableReader sstable : sstables)
             {
@@ -225,20 +198,6 @@ public class CompactionTask extends AbstractCompactionTask
             // (in replaceCompactedSSTables)
             if (taskId != null)
                 SystemKeyspace.finishCompaction(taskId);
-
-            if (collector != null)
-                collector.finishCompaction(ci);
-
-            try
-            {
-                // We don't expect this to throw, but just in case, we do it after the cleanup above, to make sure
-                // we don't end up with compaction information hanging around indefinitely in limbo.
-                iter.close();
-            }
-            catch (IOException e)
-            {
-                throw new RuntimeException(e);
-            }
         }
 
         replaceCompactedSSTables(toCompact, sstables);
@@ -258,7 +217,16 @@ public class CompactionTask extends AbstractCompactionTask
 
         double mbps = dTime > 0 ? (double) endsize / (1024 * 1024) / ((double) dTime / 1000) : 0;
         long totalSourceRows = 0;
-        long[] counts = ci.getMergedRowCounts();
+        long totalKeysWritten = 0;
+        long[] counts = new long[0];
+        for (SubRangeCompaction subRange : subRanges)
+        {
+            totalKeysWritten += subRange.keysWritten;
+            if (subRange.mergedRowCounts.length > counts.length)
+                counts = Arrays.copyOf(counts, subRange.mergedRowCounts.length);
+            for (int i = 0; i < subRange.mergedRowCounts.length; i++)
+                counts[i] += subRange.mergedRowCounts[i];
+        }
         StringBuilder mergeSummary = new StringBuilder(counts.length * 10);
         Map<Integer, Long> mergedRows = new HashMap<>();
         for (int i = 0; i < counts.length; i++)
@@ -280,6 +248,200 @@ public class CompactionTask extends AbstractCompactionTask
         logger.debug("Actual #keys: {}, Estimated #keys:{}, Err%: {}", totalKeysWritten, estimatedTotalKeys, ((double)(totalKeysWritten - estimatedTotalKeys)/totalKeysWritten));
     }
 
+    /**
+     * Split a large compaction into disjoint token ranges of about the same number of partitions, using
+     * the index summary samples of the sstables.  Each range is compacted on its own, so the output
+     * sstables of different ranges do not overlap.  Only strategies that opt in are split: size tiered
+     * compaction would put the outputs in one bucket and compact them again, and time window compaction
+     * wants a single sstable per window.
+     *
+     * @return the ranges to compact, or a single null range if the compaction is not split
+     */
+    private List<Range<Token>> getSubRanges(AbstractCompactionStrategy strategy, Set<SSTableReader> sstables)
+    {
+        int splits = DatabaseDescriptor.getConcurrentSubRangeCompactors();
+        if (splits <= 1 || !strategy.supportsSubRangeCompaction()
+            || SSTableReader.getTotalBytes(sstables) < DatabaseDescriptor.getSubRangeCompactionThreshold())
+            return Collections.singletonList(null);
+
+        Token minimum = cfs.partitioner.getMinimumToken();
+        Range<Token> fullRange = new Range<Token>(minimum, minimum, cfs.partitioner);
+        List<Token> samples = new ArrayList<>();
+        for (SSTableReader sstable : sstables)
+        {
+            for (DecoratedKey key : sstable.getKeySamples(fullRange))
+                samples.add(key.token);
+        }
+        Collections.sort(samples);
+
+        List<Range<Token>> ranges = new ArrayList<>(splits);
+        Token left = minimum;
+        for (int i = 1; i < splits; i++)
+        {
+            Token right = samples.isEmpty() ? null : samples.get((int) ((long) samples.size() * i / splits));
+            if (right == null || right.compareTo(left) <= 0)
+                continue;
+            ranges.add(new Range<Token>(left, right, cfs.partitioner));
+            left = right;
+        }
+        if (ranges.isEmpty())
+            return Collections.singletonList(null);
+        ranges.add(new Range<Token>(left, minimum, cfs.partitioner));
+        return ranges;
+    }
+
+    private void runSubRanges(List<SubRangeCompaction> subRanges) throws Exception
+    {
+        List<Future<Void>> futures = new ArrayList<>(subRanges.size());
+        for (SubRangeCompaction subRange : subRanges)
+            futures.add(CompactionManager.instance.submitSubRange(subRange));
+
+        // wait for all of them, even when one fails, so that no writer is still in use when they are aborted
+        Throwable failure = null;
+        for (Future<Void> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                if (failure == null)
+                    failure = e.getCause();
+            }
+            catch (InterruptedException e)
+            {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw Throwables.propagate(failure);
+    }
+
+    /**
+     * Merges the rows of one token range of the compacted sstables into new sstables.
+     * The writers are opened by the task once all the ranges are done.
+     */
+    private class SubRangeCompaction implements Callable<Void>
+    {
+        private final AbstractCompactionStrategy strategy;
+        private final Set<SSTableReader> sstables;
+        private final Range<Token> range;
+        private final CompactionController controller;
+        private final File sstableDirectory;
+        private final long keysPerSSTable;
+
+        final List<SSTableWriter> writers = new ArrayList<>();
+        final Map<Descriptor, Map<DecoratedKey, RowIndexEntry>> cachedKeyMap = new HashMap<>();
+        long[] mergedRowCounts = new long[0];
+        long keysWritten;
+        boolean hasRows;
+
+        SubRangeCompaction(AbstractCompactionStrategy strategy, Set<SSTableReader> sstables, Range<Token> range,
+                           CompactionController controller, File sstableDirectory, long keysPerSSTable)
+        {
+            this.strategy = strategy;
+            this.sstables = sstables;
+            this.range = range;
+            this.controller = controller;
+            this.sstableDirectory = sstableDirectory;
+            this.keysPerSSTable = keysPerSSTable;
+        }
+
+        public Void call() throws Exception
+        {
+            long start = System.nanoTime();
+            AbstractCompactionIterable ci = new CompactionIterable(compactionType, strategy.getScanners(sstables, range), controller);
+            CloseableIterator<AbstractCompactedRow> iter = ci.iterator();
+            Map<DecoratedKey, RowIndexEntry> cachedKeys = new HashMap<>();
+
+            if (collector != null)
+                collector.beginCompaction(ci);
+            try
+            {
+                if (!iter.hasNext())
+                    return null;
+                hasRows = true;
+
+                SSTableWriter writer = createCompactionWriter(sstableDirectory, keysPerSSTable);
+                writers.add(writer);
+                while (iter.hasNext())
+                {
+                    if (ci.isStopRequested())
+                        throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+                    AbstractCompactedRow row = iter.next();
+                    RowIndexEntry indexEntry = writer.append(row);
+                    if (indexEntry == null)
+                    {
+                        controller.invalidateCachedRow(row.key);
+                        row.close();
+                        continue;
+                    }
+
+                    keysWritten++;
+
+                    if (DatabaseDescriptor.getPreheatKeyCache())
+                    {
+                        for (SSTableReader sstable : sstables)
+                        {
+                            if (sstable.getCachedPosition(row.key, false) != null)
+                            {
+                                cachedKeys.put(row.key, indexEntry);
+                                break;
+                            }
+                        }
+                    }
+
+                    if (newSSTableSegmentThresholdReached(writer))
+                    {
+                        // tmp = false because later we want to query it with descriptor from SSTableReader
+                        cachedKeyMap.put(writer.descriptor.asTemporary(false), cachedKeys);
+                        writer = createCompactionWriter(sstableDirectory, keysPerSSTable);
+                        writers.add(writer);
+                        cachedKeys = new HashMap<>();
+                    }
+                }
+
+                if (writer.getFilePointer() > 0)
+                {
+                    cachedKeyMap.put(writer.descriptor.asTemporary(false), cachedKeys);
+                }
+                else
+                {
+                    writer.abort();
+                    writers.remove(writer);
+                }
+            }
+            finally
+            {
+                mergedRowCounts = ci.getMergedRowCounts();
+
+                if (collector != null)
+                    collector.finishCompaction(ci);
+
+                // We don't expect this to throw, but just in case, we do it after the cleanup above, to make sure
+                // we don't end up with compaction information hanging around indefinitely in limbo.
+                iter.close();
+            }
+
+            if (range != null)
+            {
+                long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                long bytes = 0;
+                for (SSTableWriter writer : writers)
+                    bytes += writer.getOnDiskFilePointer();
+                long kbps = bytes * 1000000 / 1024 / micros;
+                CompactionManager.instance.getMetrics().subRangeCompactions.mark();
+                CompactionManager.instance.getMetrics().subRangeThroughput.update(kbps);
+                logger.debug(String.format("Compacted sub-range %s of %s: %,d partitions, %,d bytes in %,dms = %,dKB/s",
+                                           range, cfs.name, keysWritten, bytes, TimeUnit.MICROSECONDS.toMillis(micros), kbps));
+            }
+            return null;
+        }
+    }
+
     private SSTableWriter createCompactionWriter(File sstableDirectory, long keysPerSSTable)
     {
         return new SSTableWriter(cfs.getTempSSTablePath(sstableDirectory),
@@ -168,6 +168,15 @@ public class LeveledCompactionStrategy extends AbstractCompactionStrategy implem
         return maxSSTableSizeInMB * 1024L * 1024L;
     }
 
+    /**
+     * The output of a leveled compaction is already a set of disjoint sstables, placed by level and not by count.
+     */
+    @Override
+    public boolean supportsSubRangeCompaction()
+    {
+        return true;
+    }
+
     public List<ICompactionScanner> getScanners(Collection<SSTableReader> sstables, Range<Token> range)
     {
         Multimap<Integer, SSTableReader> byLevel = ArrayListMultimap.create();
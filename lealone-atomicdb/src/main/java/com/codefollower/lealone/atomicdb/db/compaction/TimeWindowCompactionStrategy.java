@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.compaction;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import com.codefollower.lealone.atomicdb.cql.CFPropDefs;
+import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
+import com.codefollower.lealone.atomicdb.exceptions.ConfigurationException;
+import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
+import com.codefollower.lealone.atomicdb.utils.Pair;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compaction strategy for append-only time-series data, usually written with a TTL.
+ *
+ * SSTables are grouped in time windows by the max timestamp found in their StatsMetadata, and only
+ * sstables of the same window are compacted together: the current window is compacted like size tiered
+ * compaction, an older window is compacted down to a single sstable once it is no longer written to.
+ * So old data is not rewritten with new data over and over, and an sstable whose data has all expired
+ * (and does not shadow older data in another sstable) is dropped as a whole, without rewriting it.
+ */
+public class TimeWindowCompactionStrategy extends AbstractCompactionStrategy
+{
+    private static final Logger logger = LoggerFactory.getLogger(TimeWindowCompactionStrategy.class);
+
+    protected TimeWindowCompactionStrategyOptions options;
+    protected volatile int estimatedRemainingTasks;
+    private long lastExpiredCheck;
+
+    public TimeWindowCompactionStrategy(ColumnFamilyStore cfs, Map<String, String> options)
+    {
+        super(cfs, options);
+        this.estimatedRemainingTasks = 0;
+        this.options = new TimeWindowCompactionStrategyOptions(options);
+    }
+
+    public synchronized AbstractCompactionTask getNextBackgroundTask(int gcBefore)
+    {
+        if (!isEnabled())
+            return null;
+
+        while (true)
+        {
+            // an sstable that has fully expired is compacted alone: CompactionTask drops it without rewriting it
+            long now = System.currentTimeMillis();
+            if (now - lastExpiredCheck > options.expiredSSTableCheckFrequency)
+            {
+                Set<SSTableReader> expired = getFullyExpiredSSTables(gcBefore);
+                if (expired.isEmpty())
+                {
+                    lastExpiredCheck = now;
+                }
+                else if (cfs.getDataTracker().markCompacting(expired))
+                {
+                    // only recorded now, so that expired sstables another compaction marked first are looked for again
+                    lastExpiredCheck = now;
+                    logger.debug("Dropping expired sstables {}", expired);
+                    return new CompactionTask(cfs, expired, gcBefore);
+                }
+                else
+                {
+                    continue;
+                }
+            }
+
+            List<SSTableReader> sstables = getNextBackgroundSSTables(gcBefore);
+
+            if (sstables.isEmpty())
+                return null;
+
+            if (cfs.getDataTracker().markCompacting(sstables))
+                return new CompactionTask(cfs, sstables, gcBefore);
+        }
+    }
+
+    private Set<SSTableReader> getFullyExpiredSSTables(int gcBefore)
+    {
+        Set<SSTableReader> uncompacting = Sets.newHashSet(filterSuspectSSTables(cfs.getUncompactingSSTables()));
+        if (uncompacting.isEmpty())
+            return uncompacting;
+        return CompactionController.getFullyExpiredSSTables(cfs, uncompacting, cfs.getOverlappingSSTables(uncompacting), gcBefore);
+    }
+
+    private List<SSTableReader> getNextBackgroundSSTables(final int gcBefore)
+    {
+        if (!isEnabled())
+            return Collections.emptyList();
+
+        Set<SSTableReader> uncompacting = Sets.newHashSet(filterSuspectSSTables(cfs.getUncompactingSSTables()));
+        if (uncompacting.isEmpty())
+            return Collections.emptyList();
+
+        NavigableMap<Long, List<SSTableReader>> windows = getWindows(createSSTableAndMaxTimestampPairs(uncompacting, options.timestampResolution),
+                                                                     options.windowUnit.toMillis(options.windowSize));
+        logger.debug("Compaction windows are {}", windows);
+        updateEstimatedCompactionsByTasks(windows);
+        List<SSTableReader> mostInteresting = newestBucket(windows, cfs.getMinimumCompactionThreshold(), cfs.getMaximumCompactionThreshold());
+        if (!mostInteresting.isEmpty())
+            return mostInteresting;
+
+        // if there is no sstable to compact in standard way, try compacting single sstable whose droppable tombstone
+        // ratio is greater than threshold.
+        List<SSTableReader> sstablesWithTombstones = new ArrayList<SSTableReader>();
+        for (SSTableReader sstable : uncompacting)
+        {
+            if (worthDroppingTombstones(sstable, gcBefore))
+                sstablesWithTombstones.add(sstable);
+        }
+        if (sstablesWithTombstones.isEmpty())
+            return Collections.emptyList();
+
+        Collections.sort(sstablesWithTombstones, new SSTableReader.SizeComparator());
+        return Collections.singletonList(sstablesWithTombstones.get(0));
+    }
+
+    /**
+     * @param timestampResolution the unit of the timestamps written by the clients
+     * @return the sstables paired with their max timestamp, in milliseconds
+     */
+    public static List<Pair<SSTableReader, Long>> createSSTableAndMaxTimestampPairs(Iterable<SSTableReader> sstables, TimeUnit timestampResolution)
+    {
+        List<Pair<SSTableReader, Long>> pairs = new ArrayList<Pair<SSTableReader, Long>>();
+        for (SSTableReader sstable : sstables)
+            pairs.add(Pair.create(sstable, timestampResolution.toMillis(sstable.getMaxTimestamp())));
+        return pairs;
+    }
+
+    /**
+     * Group files by the time window their max timestamp falls in.
+     *
+     * @param files the files paired with their max timestamp, in milliseconds
+     * @param windowMillis the length of a window, in milliseconds
+     * @return the windows keyed by their start (in milliseconds), newest first
+     */
+    @VisibleForTesting
+    static <T> NavigableMap<Long, List<T>> getWindows(Collection<Pair<T, Long>> files, long windowMillis)
+    {
+        NavigableMap<Long, List<T>> windows = new TreeMap<Long, List<T>>(Collections.reverseOrder());
+        for (Pair<T, Long> pair : files)
+        {
+            long start = getWindowStart(pair.right, windowMillis);
+            List<T> window = windows.get(start);
+            if (window == null)
+            {
+                window = new ArrayList<T>();
+                windows.put(start, window);
+            }
+            window.add(pair.left);
+        }
+        return windows;
+    }
+
+    @VisibleForTesting
+    static long getWindowStart(long millis, long windowMillis)
+    {
+        long start = millis - millis % windowMillis;
+        // round down for timestamps before the epoch as well
+        return millis < 0 && start != millis ? start - windowMillis : start;
+    }
+
+    /**
+     * @param windows the sstables of each window, newest first
+     * @return the sstables to compact: a size tiered bucket of the newest window, or else all the sstables
+     * (up to maxThreshold) of the newest older window that has more than one sstable
+     */
+    private List<SSTableReader> newestBucket(NavigableMap<Long, List<SSTableReader>> windows, int minThreshold, int maxThreshold)
+    {
+        boolean current = true;
+        for (List<SSTableReader> window : windows.values())
+        {
+            if (current)
+            {
+                current = false;
+                // the current window is still being written to: compact it like size tiered compaction does
+                List<List<SSTableReader>> buckets = SizeTieredCompactionStrategy.getBuckets(SizeTieredCompactionStrategy.createSSTableAndLengthPairs(window),
+                                                                                            options.stcsOptions.bucketHigh,
+                                                                                            options.stcsOptions.bucketLow,
+                                                                                            options.stcsOptions.minSSTableSize);
+                List<SSTableReader> mostInteresting = SizeTieredCompactionStrategy.mostInterestingBucket(buckets, minThreshold, maxThreshold);
+                if (!mostInteresting.isEmpty())
+                    return mostInteresting;
+            }
+            else if (window.size() >= 2)
+            {
+                // an older window is compacted down to one sstable, smallest sstables first
+                Collections.sort(window, new SSTableReader.SizeComparator());
+                return window.subList(0, Math.min(window.size(), maxThreshold));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private void updateEstimatedCompactionsByTasks(NavigableMap<Long, List<SSTableReader>> windows)
+    {
+        int n = 0;
+        boolean current = true;
+        for (List<SSTableReader> window : windows.values())
+        {
+            if (current)
+            {
+                current = false;
+                if (window.size() >= cfs.getMinimumCompactionThreshold())
+                    n += Math.ceil((double) window.size() / cfs.getMaximumCompactionThreshold());
+            }
+            else if (window.size() >= 2)
+            {
+                n += Math.ceil((double) window.size() / cfs.getMaximumCompactionThreshold());
+            }
+        }
+        estimatedRemainingTasks = n;
+    }
+
+    public AbstractCompactionTask getMaximalTask(final int gcBefore)
+    {
+        Iterable<SSTableReader> sstables = cfs.markAllCompacting();
+        if (sstables == null)
+            return null;
+
+        return new CompactionTask(cfs, sstables, gcBefore);
+    }
+
+    public AbstractCompactionTask getUserDefinedTask(Collection<SSTableReader> sstables, final int gcBefore)
+    {
+        assert !sstables.isEmpty(); // checked for by CM.submitUserDefined
+
+        if (!cfs.getDataTracker().markCompacting(sstables))
+        {
+            logger.debug("Unable to mark {} for compaction; probably a background compaction got to it first.  You can disable background compactions temporarily if this is a problem", sstables);
+            return null;
+        }
+
+        return new CompactionTask(cfs, sstables, gcBefore).setUserDefined(true);
+    }
+
+    public int getEstimatedRemainingTasks()
+    {
+        return estimatedRemainingTasks;
+    }
+
+    public long getMaxSSTableBytes()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options) throws ConfigurationException
+    {
+        Map<String, String> uncheckedOptions = AbstractCompactionStrategy.validateOptions(options);
+        uncheckedOptions = TimeWindowCompactionStrategyOptions.validateOptions(options, uncheckedOptions);
+
+        uncheckedOptions.remove(CFPropDefs.KW_MINCOMPACTIONTHRESHOLD);
+        uncheckedOptions.remove(CFPropDefs.KW_MAXCOMPACTIONTHRESHOLD);
+
+        return uncheckedOptions;
+    }
+
+    public String toString()
+    {
+        return String.format("TimeWindowCompactionStrategy[%s %s/%s/%s]",
+            options.windowSize, options.windowUnit,
+            cfs.getMinimumCompactionThreshold(),
+            cfs.getMaximumCompactionThreshold());
+    }
+}
@@ -49,7 +49,7 @@ public class QueryFilter
         ColumnFamily cf = memtable.getColumnFamily(key);
         if (cf == null)
             return null;
-        return getColumnFamilyIterator(cf);
+        return memtable.copyToHeap(getColumnFamilyIterator(cf));
     }
 
     public OnDiskAtomIterator getColumnFamilyIterator(ColumnFamily cf)
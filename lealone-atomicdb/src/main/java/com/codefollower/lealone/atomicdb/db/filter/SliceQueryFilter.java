@@ -266,6 +266,37 @@ public class SliceQueryFilter implements IDiskAtomFilter
         }
     }
 
+    /**
+     * Whether this filter can be answered from cf alone, cf holding every cell of the partition
+     * up to its last one (the head of the partition, as kept by the row cache).
+     */
+    public boolean isFullyCoveredBy(ColumnFamily cf, long now)
+    {
+        if (cf.getColumnCount() == 0)
+            return false;
+
+        // a slice ending before the last cell of the head only selects cells the head holds
+        Composite high = reversed ? start() : finish();
+        if (!high.isEmpty() && cf.getComparator().compare(high, cf.getReverseSortedColumns().iterator().next().name()) <= 0)
+            return true;
+
+        // a reversed query reading past the head needs the cells after it
+        if (reversed)
+            return false;
+
+        // otherwise the query is answered once the slices select more than count live groups of the head;
+        // the last group of the head may have been cut short, so it never counts toward the limit
+        ColumnCounter counter = columnCounter(cf.getComparator(), now);
+        DeletionInfo.InOrderTester tester = cf.inOrderDeletionTester();
+        for (Iterator<Cell> iter = cf.iterator(slices); iter.hasNext(); )
+        {
+            counter.count(iter.next(), tester);
+            if (counter.live() > count)
+                return true;
+        }
+        return false;
+    }
+
     public Composite start()
     {
         return this.slices[0].start;
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.hints;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import com.codefollower.lealone.atomicdb.db.TypeSizes;
+import com.codefollower.lealone.atomicdb.io.IVersionedSerializer;
+import com.codefollower.lealone.atomicdb.net.MessageOut;
+import com.codefollower.lealone.atomicdb.net.MessagingService;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+import com.codefollower.lealone.atomicdb.utils.UUIDSerializer;
+
+/**
+ * A batch of hints, exactly as it is stored in a hints file, together with the host it is meant for.
+ *
+ * The receiver applies the hints if it is that host, otherwise it stores the batch for later delivery
+ * (this is how a decommissioned node hands its hints over).
+ */
+public class HintMessage
+{
+    public static final IVersionedSerializer<HintMessage> serializer = new HintMessageSerializer();
+
+    public final UUID hostId;
+    public final ByteBuffer batch;
+
+    public HintMessage(UUID hostId, ByteBuffer batch)
+    {
+        this.hostId = hostId;
+        this.batch = batch;
+    }
+
+    public MessageOut<HintMessage> createMessage()
+    {
+        return new MessageOut<HintMessage>(MessagingService.Verb.HINT, this, serializer);
+    }
+
+    public String toString()
+    {
+        return "HintMessage(hostId=" + hostId + ", hints=" + HintsBatch.count(batch) + ")";
+    }
+
+    private static class HintMessageSerializer implements IVersionedSerializer<HintMessage>
+    {
+        public void serialize(HintMessage message, DataOutput out, int version) throws IOException
+        {
+            UUIDSerializer.serializer.serialize(message.hostId, out, version);
+            ByteBufferUtil.writeWithLength(message.batch, out);
+        }
+
+        public HintMessage deserialize(DataInput in, int version) throws IOException
+        {
+            UUID hostId = UUIDSerializer.serializer.deserialize(in, version);
+            return new HintMessage(hostId, ByteBufferUtil.readWithLength(in));
+        }
+
+        public long serializedSize(HintMessage message, int version)
+        {
+            return UUIDSerializer.serializer.serializedSize(message.hostId, version)
+                   + TypeSizes.NATIVE.sizeof(message.batch.remaining())
+                   + message.batch.remaining();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.hints;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.db.WriteResponse;
+import com.codefollower.lealone.atomicdb.net.IVerbHandler;
+import com.codefollower.lealone.atomicdb.net.MessageIn;
+import com.codefollower.lealone.atomicdb.net.MessagingService;
+import com.codefollower.lealone.atomicdb.service.StorageService;
+import com.codefollower.lealone.atomicdb.utils.FBUtilities;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Applies a batch of hints meant for this node, or stores a batch handed over for another node.
+ * The batch is acknowledged only once it has been applied or written to disk.
+ */
+public class HintVerbHandler implements IVerbHandler<HintMessage>
+{
+    private static final Logger logger = LoggerFactory.getLogger(HintVerbHandler.class);
+
+    public void doVerb(MessageIn<HintMessage> message, int id)
+    {
+        HintMessage hints = message.payload;
+        if (!HintsBatch.verify(hints.batch))
+        {
+            // don't reply; the sender times out and keeps its file
+            logger.warn("Dropping corrupt batch of hints from {}", message.from);
+            return;
+        }
+
+        UUID localHostId = StorageService.instance.getTokenMetadata().getHostId(FBUtilities.getBroadcastAddress());
+        try
+        {
+            if (hints.hostId.equals(localHostId))
+                apply(hints);
+            else
+                HintsStore.instance.append(hints.hostId, hints.batch);
+        }
+        catch (IOException e)
+        {
+            logger.error("Error applying hints from {}", message.from, e);
+            return;
+        }
+        MessagingService.instance().sendReply(new WriteResponse().createMessage(), id, message.from);
+    }
+
+    private void apply(HintMessage hints) throws IOException
+    {
+        long now = System.currentTimeMillis();
+        Map<UUID, Long> truncationTimes = new HashMap<>();
+        for (HintsBatch.Hint hint : HintsBatch.decode(hints.batch))
+        {
+            if (!hint.isLive(now))
+                continue;
+
+            Mutation mutation = hint.mutation;
+            for (UUID cfId : ImmutableSet.copyOf(mutation.getColumnFamilyIds()))
+            {
+                Long truncatedAt = truncationTimes.get(cfId);
+                if (truncatedAt == null)
+                {
+                    truncatedAt = Keyspace.open(mutation.getKeyspaceName()).getColumnFamilyStore(cfId).getTruncationTime();
+                    truncationTimes.put(cfId, truncatedAt);
+                }
+                if (hint.createdAt < truncatedAt)
+                {
+                    logger.debug("Skipping hint for truncated columnfamily {}", cfId);
+                    mutation = mutation.without(cfId);
+                }
+            }
+
+            if (!mutation.isEmpty())
+                mutation.apply();
+        }
+    }
+}
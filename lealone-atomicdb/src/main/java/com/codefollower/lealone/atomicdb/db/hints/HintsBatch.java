@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.hints;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.db.UnknownColumnFamilyException;
+import com.codefollower.lealone.atomicdb.io.util.DataOutputBuffer;
+import com.codefollower.lealone.atomicdb.net.MessagingService;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+import com.codefollower.lealone.atomicdb.utils.FBUtilities;
+
+/**
+ * A checksummed group of hints, the unit in which hints are appended to a hints file
+ * and shipped to the target node.
+ *
+ * The layout of a batch is:
+ *
+ *   int  size of the records, in bytes
+ *   int  number of records
+ *   long crc of the two ints above
+ *   records: { long creation time in ms, int ttl in seconds, int messaging version, int length, mutation }
+ *   long crc of the records
+ *
+ * so a reader can detect a torn write at the end of a file as well as a corrupt batch anywhere.
+ */
+public class HintsBatch
+{
+    private static final Logger logger = LoggerFactory.getLogger(HintsBatch.class);
+
+    public static final int HEADER_SIZE = 4 + 4 + 8;
+    public static final int TRAILER_SIZE = 8;
+
+    private HintsBatch()
+    {
+    }
+
+    public static class Builder
+    {
+        private final DataOutputBuffer records = new DataOutputBuffer();
+        private int count;
+
+        public void add(Mutation mutation, long createdAt, int ttl)
+        {
+            byte[] bytes = FBUtilities.serialize(mutation, Mutation.serializer, MessagingService.current_version);
+            try
+            {
+                records.writeLong(createdAt);
+                records.writeInt(ttl);
+                records.writeInt(MessagingService.current_version);
+                records.writeInt(bytes.length);
+                records.write(bytes);
+            }
+            catch (IOException e)
+            {
+                throw new AssertionError(e); // in-memory buffer
+            }
+            count++;
+        }
+
+        public boolean isEmpty()
+        {
+            return count == 0;
+        }
+
+        public int size()
+        {
+            return records.getLength();
+        }
+
+        /**
+         * @return the serialized batch, ready to be appended to a hints file
+         */
+        public ByteBuffer build()
+        {
+            int size = records.getLength();
+            ByteBuffer batch = ByteBuffer.allocate(HEADER_SIZE + size + TRAILER_SIZE);
+            batch.putInt(size);
+            batch.putInt(count);
+            batch.putLong(headerChecksum(size, count));
+            batch.put(records.getData(), 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(records.getData(), 0, size);
+            batch.putLong(crc.getValue());
+            batch.flip();
+            return batch;
+        }
+    }
+
+    private static long headerChecksum(int size, int count)
+    {
+        CRC32 crc = new CRC32();
+        FBUtilities.updateChecksumInt(crc, size);
+        FBUtilities.updateChecksumInt(crc, count);
+        return crc.getValue();
+    }
+
+    /**
+     * Read the next whole batch from a hints file.
+     *
+     * @return the raw batch, or null at the end of the file or if the rest of the file is unreadable
+     */
+    public static ByteBuffer read(DataInput in) throws IOException
+    {
+        int size, count;
+        long headerCrc;
+        try
+        {
+            size = in.readInt();
+            count = in.readInt();
+            headerCrc = in.readLong();
+        }
+        catch (EOFException e)
+        {
+            return null;
+        }
+        if (headerCrc != headerChecksum(size, count) || size < 0)
+        {
+            logger.warn("Corrupt hints batch header, skipping the rest of the file");
+            return null;
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(HEADER_SIZE + size + TRAILER_SIZE);
+        batch.putInt(size);
+        batch.putInt(count);
+        batch.putLong(headerCrc);
+        try
+        {
+            in.readFully(batch.array(), HEADER_SIZE, size + TRAILER_SIZE);
+        }
+        catch (EOFException e)
+        {
+            logger.warn("Truncated hints batch at the end of file, skipping it");
+            return null;
+        }
+        batch.clear();
+        if (!verify(batch))
+        {
+            logger.warn("Hints batch checksum mismatch, skipping the rest of the file");
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * @return true if both checksums of the batch match its contents
+     */
+    public static boolean verify(ByteBuffer batch)
+    {
+        if (batch.remaining() < HEADER_SIZE + TRAILER_SIZE)
+            return false;
+        int position = batch.position();
+        int size = batch.getInt(position);
+        int count = batch.getInt(position + 4);
+        if (size < 0 || batch.getLong(position + 8) != headerChecksum(size, count)
+            || batch.remaining() != HEADER_SIZE + size + TRAILER_SIZE)
+            return false;
+
+        CRC32 crc = new CRC32();
+        if (batch.hasArray())
+        {
+            crc.update(batch.array(), batch.arrayOffset() + position + HEADER_SIZE, size);
+        }
+        else
+        {
+            byte[] records = new byte[size];
+            ByteBuffer dup = batch.duplicate();
+            dup.position(position + HEADER_SIZE);
+            dup.get(records);
+            crc.update(records, 0, size);
+        }
+        return batch.getLong(position + HEADER_SIZE + size) == crc.getValue();
+    }
+
+    public static int count(ByteBuffer batch)
+    {
+        return batch.getInt(batch.position() + 4);
+    }
+
+    /**
+     * Deserialize the hints of a verified batch. Hints for column families that no longer
+     * exist are dropped.
+     */
+    public static List<Hint> decode(ByteBuffer batch) throws IOException
+    {
+        ByteBuffer records = batch.duplicate();
+        records.position(batch.position() + HEADER_SIZE);
+        records.limit(batch.limit() - TRAILER_SIZE);
+        int count = count(batch);
+
+        DataInputStream in = new DataInputStream(ByteBufferUtil.inputStream(records));
+        List<Hint> hints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            long createdAt = in.readLong();
+            int ttl = in.readInt();
+            int version = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            try
+            {
+                Mutation mutation = Mutation.serializer.deserialize(new DataInputStream(ByteBufferUtil.inputStream(ByteBuffer.wrap(bytes))), version);
+                hints.add(new Hint(mutation, createdAt, ttl));
+            }
+            catch (UnknownColumnFamilyException e)
+            {
+                logger.debug("Skipping hint for deleted columnfamily", e);
+            }
+        }
+        return hints;
+    }
+
+    public static class Hint
+    {
+        public final Mutation mutation;
+        public final long createdAt;
+        public final int ttl;
+
+        Hint(Mutation mutation, long createdAt, int ttl)
+        {
+            this.mutation = mutation;
+            this.createdAt = createdAt;
+            this.ttl = ttl;
+        }
+
+        public boolean isLive(long now)
+        {
+            return createdAt + ttl * 1000L > now;
+        }
+    }
+}
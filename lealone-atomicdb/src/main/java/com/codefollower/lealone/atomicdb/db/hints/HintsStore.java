@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.hints;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.io.FSWriteError;
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+
+/**
+ * Stores hints in append-only files, one sequence of files per target host, in the hints directory.
+ *
+ * Hints for a host are buffered in memory and appended to the host's current file as one
+ * checksummed {@link HintsBatch} when the buffer fills up or the periodic flush runs, so
+ * writing a hint costs a buffer copy instead of a write to the system keyspace. Files are named
+ * <code>&lt;host id&gt;-&lt;creation time&gt;.hints</code> and are rolled once they reach
+ * max_hints_file_size_in_mb. Once delivered, a file is deleted as a whole: there are no
+ * per-hint tombstones and no compaction of hints.
+ *
+ * Buffered hints are not durable: if the node crashes, the hints written since the last flush,
+ * up to hints_flush_period_in_ms of them, are lost. Like a hint that was never written, the
+ * missing writes are then repaired by read repair or anti-entropy repair.
+ *
+ * The delivery of a file can be interrupted; the offset up to which its batches have been
+ * acknowledged is kept so that the next attempt resumes there rather than sending the whole
+ * file again. The offsets are only kept in memory, a restart sends the files from the start.
+ */
+public class HintsStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(HintsStore.class);
+
+    public static final String SUFFIX = ".hints";
+    private static final int BATCH_SIZE = 256 * 1024;
+
+    public static final HintsStore instance = new HintsStore(new File(DatabaseDescriptor.getHintsDirectory()));
+
+    private final File directory;
+    private final ConcurrentMap<UUID, HostHints> hosts = new ConcurrentHashMap<>();
+    // the offset of the first batch of a file that has not been acknowledged by its target
+    private final ConcurrentMap<File, Long> dispatchOffsets = new ConcurrentHashMap<>();
+
+    HintsStore(File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Buffer a hint for the given host; it reaches disk with the next flush of the host's buffer.
+     */
+    public void write(UUID hostId, Mutation mutation, long createdAt, int ttl)
+    {
+        get(hostId).add(mutation, createdAt, ttl);
+    }
+
+    /**
+     * Append an already serialized and verified batch, as received from another node.
+     */
+    public void append(UUID hostId, ByteBuffer batch)
+    {
+        get(hostId).append(batch);
+    }
+
+    public void flushAll()
+    {
+        for (HostHints host : hosts.values())
+            host.flush();
+    }
+
+    /**
+     * Flush and close the current file of the host, so that new hints go to a new file,
+     * and list the files holding its hints, oldest first.
+     */
+    public List<File> closeAndList(UUID hostId)
+    {
+        HostHints host = hosts.get(hostId);
+        if (host != null)
+            host.close();
+        return list(hostId);
+    }
+
+    public boolean hasHints(UUID hostId)
+    {
+        HostHints host = hosts.get(hostId);
+        return (host != null && !host.isEmpty()) || !list(hostId).isEmpty();
+    }
+
+    public Set<UUID> hostsWithHints()
+    {
+        Set<UUID> hostIds = new HashSet<>();
+        for (HostHints host : hosts.values())
+        {
+            if (!host.isEmpty())
+                hostIds.add(host.hostId);
+        }
+        for (File file : listAll())
+        {
+            UUID hostId = hostIdOf(file);
+            if (hostId != null)
+                hostIds.add(hostId);
+        }
+        return hostIds;
+    }
+
+    /**
+     * Open a closed hints file at its first batch that has not been delivered yet.
+     */
+    public DataInputStream openForDispatch(File file) throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            in.getChannel().position(getDispatchOffset(file));
+        }
+        catch (IOException e)
+        {
+            in.close();
+            throw e;
+        }
+        return new DataInputStream(new BufferedInputStream(in));
+    }
+
+    public long getDispatchOffset(File file)
+    {
+        Long offset = dispatchOffsets.get(file);
+        return offset == null ? 0 : offset;
+    }
+
+    /**
+     * Record that the batches of <code>file</code> before <code>offset</code> have been delivered.
+     */
+    public void markDispatched(File file, long offset)
+    {
+        dispatchOffsets.put(file, offset);
+    }
+
+    public void delete(File file)
+    {
+        FileUtils.deleteWithConfirm(file);
+        dispatchOffsets.remove(file);
+    }
+
+    public void deleteAll(UUID hostId)
+    {
+        HostHints host = hosts.remove(hostId);
+        if (host != null)
+            host.discard();
+        for (File file : list(hostId))
+            delete(file);
+    }
+
+    public void deleteAll()
+    {
+        for (UUID hostId : hostsWithHints())
+            deleteAll(hostId);
+    }
+
+    private HostHints get(UUID hostId)
+    {
+        HostHints host = hosts.get(hostId);
+        if (host == null)
+        {
+            host = new HostHints(hostId);
+            HostHints previous = hosts.putIfAbsent(hostId, host);
+            if (previous != null)
+                host = previous;
+        }
+        return host;
+    }
+
+    private List<File> list(final UUID hostId)
+    {
+        final String prefix = hostId.toString() + '-';
+        File[] files = directory.listFiles(new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(prefix) && name.endsWith(SUFFIX);
+            }
+        });
+        if (files == null)
+            return Collections.emptyList();
+
+        List<File> result = new ArrayList<>(files.length);
+        Collections.addAll(result, files);
+        Collections.sort(result, new Comparator<File>()
+        {
+            public int compare(File f1, File f2)
+            {
+                long t1 = timestampOf(f1);
+                long t2 = timestampOf(f2);
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    private File[] listAll()
+    {
+        File[] files = directory.listFiles(new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    private static UUID hostIdOf(File file)
+    {
+        String name = file.getName();
+        int index = name.lastIndexOf('-');
+        try
+        {
+            return UUID.fromString(name.substring(0, index));
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e)
+        {
+            logger.warn("Ignoring unexpected file {} in the hints directory", file);
+            return null;
+        }
+    }
+
+    private static long timestampOf(File file)
+    {
+        String name = file.getName();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+
+    private class HostHints
+    {
+        final UUID hostId;
+        private HintsBatch.Builder buffer = new HintsBatch.Builder();
+        private File file;
+        private FileChannel channel;
+        private long lastTimestamp;
+
+        HostHints(UUID hostId)
+        {
+            this.hostId = hostId;
+        }
+
+        synchronized boolean isEmpty()
+        {
+            return buffer.isEmpty() && channel == null;
+        }
+
+        synchronized void add(Mutation mutation, long createdAt, int ttl)
+        {
+            buffer.add(mutation, createdAt, ttl);
+            if (buffer.size() >= BATCH_SIZE)
+                flush();
+        }
+
+        synchronized void append(ByteBuffer batch)
+        {
+            flush();
+            write(batch.duplicate());
+        }
+
+        synchronized void flush()
+        {
+            if (buffer.isEmpty())
+                return;
+            write(buffer.build());
+            buffer = new HintsBatch.Builder();
+        }
+
+        synchronized void close()
+        {
+            flush();
+            closeFile();
+        }
+
+        synchronized void discard()
+        {
+            buffer = new HintsBatch.Builder();
+            closeFile();
+        }
+
+        private void write(ByteBuffer batch)
+        {
+            try
+            {
+                if (channel == null)
+                    openFile();
+                while (batch.hasRemaining())
+                    channel.write(batch);
+                channel.force(false);
+                if (channel.size() >= DatabaseDescriptor.getMaxHintsFileSize())
+                    closeFile();
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, file);
+            }
+        }
+
+        private void openFile() throws IOException
+        {
+            // keep the names of the files of a host unique and ordered even if two are created in the same millisecond
+            lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+            file = new File(directory, hostId.toString() + '-' + lastTimestamp + SUFFIX);
+            channel = new FileOutputStream(file, true).getChannel();
+            logger.debug("Writing hints for {} to {}", hostId, file);
+        }
+
+        private void closeFile()
+        {
+            if (channel == null)
+                return;
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, file);
+            }
+            channel = null;
+            file = null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.hints;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codefollower.lealone.atomicdb.db.Cell;
+import com.codefollower.lealone.atomicdb.db.ColumnFamily;
+import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
+import com.codefollower.lealone.atomicdb.db.DecoratedKey;
+import com.codefollower.lealone.atomicdb.db.ExpiringCell;
+import com.codefollower.lealone.atomicdb.db.HintedHandOffManager;
+import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.db.Row;
+import com.codefollower.lealone.atomicdb.db.RowPosition;
+import com.codefollower.lealone.atomicdb.db.SystemKeyspace;
+import com.codefollower.lealone.atomicdb.db.UnknownColumnFamilyException;
+import com.codefollower.lealone.atomicdb.db.composites.Composite;
+import com.codefollower.lealone.atomicdb.db.composites.Composites;
+import com.codefollower.lealone.atomicdb.db.filter.QueryFilter;
+import com.codefollower.lealone.atomicdb.db.filter.SliceQueryFilter;
+import com.codefollower.lealone.atomicdb.db.marshal.Int32Type;
+import com.codefollower.lealone.atomicdb.dht.Range;
+import com.codefollower.lealone.atomicdb.dht.Token;
+import com.codefollower.lealone.atomicdb.service.StorageService;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+import com.codefollower.lealone.atomicdb.utils.UUIDGen;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Moves the hints left in the system hints table by earlier versions into the hints files,
+ * so that they are delivered like any other hint, then truncates the table.
+ *
+ * The hints keep their creation time and ttl. If the node stops between the move and the
+ * truncation, the hints are moved again on the next start and delivered twice, which is harmless.
+ */
+public class LegacyHintsMigrator
+{
+    private static final Logger logger = LoggerFactory.getLogger(LegacyHintsMigrator.class);
+
+    private static final int PAGE_SIZE = 128;
+
+    private LegacyHintsMigrator()
+    {
+    }
+
+    public static void migrate()
+    {
+        migrate(HintsStore.instance);
+    }
+
+    /**
+     * @return the number of hints moved to <code>store</code>
+     */
+    @VisibleForTesting
+    static int migrate(HintsStore store)
+    {
+        ColumnFamilyStore legacyHints = Keyspace.open(Keyspace.SYSTEM_KS).getColumnFamilyStore(SystemKeyspace.HINTS_CF);
+        if (legacyHints.isEmpty())
+            return 0;
+
+        logger.info("Migrating the hints of the system hints table to the hints files");
+
+        // one row per host; only read the keys here, the hints of each host are paged through below
+        Token minToken = StorageService.getPartitioner().getMinimumToken();
+        List<Row> rows = legacyHints.getRangeSlice(new Range<RowPosition>(minToken.minKeyBound(), minToken.maxKeyBound()),
+                                                   null,
+                                                   new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, false, 1),
+                                                   Integer.MAX_VALUE);
+        int migrated = 0;
+        for (Row row : rows)
+            migrated += migrate(store, legacyHints, row.key);
+
+        store.flushAll();
+        legacyHints.truncateBlocking();
+        logger.info("Migrated {} hints from the system hints table", migrated);
+        return migrated;
+    }
+
+    private static int migrate(HintsStore store, ColumnFamilyStore legacyHints, DecoratedKey key)
+    {
+        UUID hostId = UUIDGen.getUUID(key.key);
+        int migrated = 0;
+        Composite startColumn = Composites.EMPTY;
+        while (true)
+        {
+            long now = System.currentTimeMillis();
+            QueryFilter filter = QueryFilter.getSliceFilter(key,
+                                                            SystemKeyspace.HINTS_CF,
+                                                            startColumn,
+                                                            Composites.EMPTY,
+                                                            false,
+                                                            PAGE_SIZE,
+                                                            now);
+            ColumnFamily hintsPage = ColumnFamilyStore.removeDeleted(legacyHints.getColumnFamily(filter), (int) (now / 1000));
+            if (hintsPage == null)
+                return migrated;
+
+            boolean more = false;
+            for (Cell hint : hintsPage)
+            {
+                // the start of a page is the last hint of the previous one
+                if (hint.name().equals(startColumn))
+                    continue;
+                more = true;
+                startColumn = hint.name();
+                if (!hint.isLive(now))
+                    continue;
+
+                int version = Int32Type.instance.compose(hint.name().get(1));
+                Mutation mutation;
+                try
+                {
+                    mutation = Mutation.serializer.deserialize(new DataInputStream(ByteBufferUtil.inputStream(hint.value())), version);
+                }
+                catch (UnknownColumnFamilyException e)
+                {
+                    logger.debug("Skipping hint for deleted columnfamily", e);
+                    continue;
+                }
+                catch (IOException e)
+                {
+                    throw new AssertionError(e);
+                }
+
+                // legacy hints were written with the ttl as the cell's ttl and their creation time as its timestamp
+                int ttl = hint instanceof ExpiringCell
+                        ? ((ExpiringCell) hint).getTimeToLive()
+                        : HintedHandOffManager.calculateHintTTL(mutation);
+                store.write(hostId, mutation, hint.timestamp(), ttl);
+                migrated++;
+            }
+            if (!more)
+                return migrated;
+        }
+    }
+}
@@ -64,6 +64,9 @@ public abstract class AbstractSimplePerColumnSecondaryIndex extends PerColumnSec
     @Override
     public DecoratedKey getIndexKeyFor(ByteBuffer value)
     {
+        // the index memtable copies the key but not the token, which must not point into an off-heap base memtable
+        if (value.isDirect())
+            value = ByteBufferUtil.clone(value);
         return new DecoratedKey(new LocalToken(getIndexKeyComparator(), value), value);
     }
 
@@ -43,6 +43,7 @@ import com.codefollower.lealone.atomicdb.exceptions.ConfigurationException;
 import com.codefollower.lealone.atomicdb.io.sstable.ReducingKeyIterator;
 import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
 import com.codefollower.lealone.atomicdb.service.StorageService;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
 import com.codefollower.lealone.atomicdb.utils.FBUtilities;
 
 /**
@@ -270,6 +271,9 @@ public abstract class SecondaryIndex
     {
         // FIXME: this imply one column definition per index
         ByteBuffer name = columnDefs.iterator().next().name.bytes;
+        // the index memtable copies the key but not the token, which must not point into an off-heap base memtable
+        if (value.isDirect())
+            value = ByteBufferUtil.clone(value);
         return new DecoratedKey(new LocalToken(baseCfs.metadata.getColumnDefinition(name).type, value), value);
     }
 
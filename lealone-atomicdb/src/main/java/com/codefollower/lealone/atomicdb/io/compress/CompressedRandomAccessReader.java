@@ -23,6 +23,7 @@ import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
+import com.codefollower.lealone.atomicdb.cache.ChunkCache;
 import com.codefollower.lealone.atomicdb.io.FSReadError;
 import com.codefollower.lealone.atomicdb.io.sstable.CorruptSSTableException;
 import com.codefollower.lealone.atomicdb.io.util.CompressedPoolingSegmentedFile;
@@ -84,7 +85,22 @@ public class CompressedRandomAccessReader extends RandomAccessReader
     {
         try
         {
-            decompressChunk(metadata.chunkFor(current));
+            CompressionMetadata.Chunk chunk = metadata.chunkFor(current);
+            if (cachedChunks != null)
+            {
+                int cached = ChunkCache.instance.read(cachedChunks, chunk.offset, buffer);
+                if (cached >= 0)
+                {
+                    validBufferBytes = cached;
+                    bufferOffset = current & ~(buffer.length - 1);
+                    return;
+                }
+            }
+
+            decompressChunk(chunk);
+
+            if (cachedChunks != null)
+                ChunkCache.instance.write(cachedChunks, chunk.offset, buffer, validBufferBytes);
         }
         catch (CorruptBlockException e)
         {
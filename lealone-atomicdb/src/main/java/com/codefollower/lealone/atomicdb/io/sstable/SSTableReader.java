@@ -603,7 +603,7 @@ public class SSTableReader extends SSTable implements Closeable
                                : estimateRowsFromIndex(primaryIndex); // statistics is supposed to be optional
 
             if (recreateBloomFilter)
-                bf = FilterFactory.getFilter(estimatedKeys, metadata.getBloomFilterFpChance(), true);
+                bf = FilterFactory.getFilter(estimatedKeys, metadata.getBloomFilterFpChance(), true, metadata.getBloomFilterType());
 
             IndexSummaryBuilder summaryBuilder = null;
             if (!summaryLoaded)
@@ -17,18 +17,32 @@
  */
 package com.codefollower.lealone.atomicdb.io.util;
 
+import java.io.File;
+
+import com.codefollower.lealone.atomicdb.cache.ChunkCache;
 import com.codefollower.lealone.atomicdb.service.FileCacheService;
 
 public abstract class PoolingSegmentedFile extends SegmentedFile
 {
+    // the chunks of this file in the chunk cache, null if the cache is disabled
+    final ChunkCache.CachedFile cachedChunks;
+
     protected PoolingSegmentedFile(String path, long length)
     {
         super(path, length);
+        cachedChunks = openCachedChunks(path);
     }
 
     protected PoolingSegmentedFile(String path, long length, long onDiskLength)
     {
         super(path, length, onDiskLength);
+        cachedChunks = openCachedChunks(path);
+    }
+
+    private static ChunkCache.CachedFile openCachedChunks(String path)
+    {
+        // readers use the absolute path
+        return ChunkCache.instance.isEnabled() ? ChunkCache.instance.openFile(new File(path).getAbsolutePath()) : null;
     }
 
     public FileDataInput getSegment(long position)
@@ -52,5 +66,7 @@ public abstract class PoolingSegmentedFile extends SegmentedFile
     public void cleanup()
     {
         FileCacheService.instance.invalidate(path);
+        if (cachedChunks != null)
+            ChunkCache.instance.invalidateFile(cachedChunks);
     }
 }
@@ -21,6 +21,7 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+import com.codefollower.lealone.atomicdb.cache.ChunkCache;
 import com.codefollower.lealone.atomicdb.io.FSReadError;
 import com.google.common.annotations.VisibleForTesting;
 
@@ -53,6 +54,9 @@ public class RandomAccessReader extends RandomAccessFile implements FileDataInpu
 
     protected final PoolingSegmentedFile owner;
 
+    // the chunk cache metrics of the table, or null if the buffers of this reader are not cached
+    protected final ChunkCache.CachedFile cachedChunks;
+
     protected RandomAccessReader(File file, int bufferSize, PoolingSegmentedFile owner) throws FileNotFoundException
     {
         super(file, "r");
@@ -78,6 +82,9 @@ public class RandomAccessReader extends RandomAccessFile implements FileDataInpu
             throw new FSReadError(e, filePath);
         }
         validBufferBytes = -1; // that will trigger reBuffer() on demand by read/seek operations
+
+        // only the readers of sstable data and index files have an owner
+        cachedChunks = owner != null ? owner.cachedChunks : null;
     }
 
     public static RandomAccessReader open(File file, PoolingSegmentedFile owner)
@@ -121,6 +128,18 @@ public class RandomAccessReader extends RandomAccessFile implements FileDataInpu
             if (bufferOffset >= channel.size())
                 return;
 
+            if (cachedChunks != null)
+            {
+                // align the buffer so that the same chunks are cached whatever the position we seek to
+                bufferOffset -= bufferOffset % buffer.length;
+                int cached = ChunkCache.instance.read(cachedChunks, bufferOffset, buffer);
+                if (cached >= 0)
+                {
+                    validBufferBytes = cached;
+                    return;
+                }
+            }
+
             channel.position(bufferOffset); // setting channel position
 
             int read = 0;
@@ -134,6 +153,9 @@ public class RandomAccessReader extends RandomAccessFile implements FileDataInpu
             }
 
             validBufferBytes = read;
+
+            if (cachedChunks != null)
+                ChunkCache.instance.write(cachedChunks, bufferOffset, buffer, read);
         }
         catch (IOException e)
         {
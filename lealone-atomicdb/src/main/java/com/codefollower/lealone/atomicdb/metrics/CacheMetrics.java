@@ -45,6 +45,8 @@ public class CacheMetrics
     /** Total number of cache entries */
     public final Gauge<Integer> entries;
 
+    private final MetricNameFactory factory;
+
     private final AtomicLong lastRequests = new AtomicLong(0);
     private final AtomicLong lastHits = new AtomicLong(0);
 
@@ -54,17 +56,27 @@ public class CacheMetrics
      * @param type Type of Cache to identify metrics.
      * @param cache Cache to measure metrics
      */
-    public CacheMetrics(String type, final ICache cache)
+    public CacheMetrics(String type, ICache cache)
     {
-        MetricNameFactory factory = new DefaultNameFactory("Cache", type);
+        this(new DefaultNameFactory("Cache", type), cache);
+    }
 
-        capacity = Metrics.newGauge(factory.createMetricName("Capacity"), new Gauge<Long>()
-        {
-            public Long value()
-            {
-                return cache.capacity();
-            }
-        });
+    /**
+     * Create the hit and request metrics of one table for a cache shared by all tables.
+     * Capacity, size and entries are only reported by the metrics of the cache itself, so they are null here.
+     *
+     * @param type Type of Cache to identify metrics.
+     * @param keyspaceName the keyspace of the table
+     * @param columnFamilyName the table
+     */
+    public CacheMetrics(String type, String keyspaceName, String columnFamilyName)
+    {
+        this(new DefaultNameFactory("Cache", type + "." + keyspaceName + "." + columnFamilyName), null);
+    }
+
+    private CacheMetrics(MetricNameFactory factory, final ICache cache)
+    {
+        this.factory = factory;
         hits = Metrics.newMeter(factory.createMetricName("Hits"), "hits", TimeUnit.SECONDS);
         requests = Metrics.newMeter(factory.createMetricName("Requests"), "requests", TimeUnit.SECONDS);
         hitRate = Metrics.newGauge(factory.createMetricName("HitRate"), new RatioGauge()
@@ -79,6 +91,22 @@ public class CacheMetrics
                 return requests.count();
             }
         });
+
+        if (cache == null)
+        {
+            capacity = null;
+            size = null;
+            entries = null;
+            return;
+        }
+
+        capacity = Metrics.newGauge(factory.createMetricName("Capacity"), new Gauge<Long>()
+        {
+            public Long value()
+            {
+                return cache.capacity();
+            }
+        });
         size = Metrics.newGauge(factory.createMetricName("Size"), new Gauge<Long>()
         {
             public Long value()
@@ -95,6 +123,22 @@ public class CacheMetrics
         });
     }
 
+    /**
+     * Release all associated metrics.
+     */
+    public void release()
+    {
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("Hits"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("Requests"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("HitRate"));
+        if (capacity != null)
+        {
+            Metrics.defaultRegistry().removeMetric(factory.createMetricName("Capacity"));
+            Metrics.defaultRegistry().removeMetric(factory.createMetricName("Size"));
+            Metrics.defaultRegistry().removeMetric(factory.createMetricName("Entries"));
+        }
+    }
+
     // for backward compatibility
     @Deprecated
     public double getRecentHitRate()
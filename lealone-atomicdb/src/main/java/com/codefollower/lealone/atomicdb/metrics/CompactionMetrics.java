@@ -29,6 +29,7 @@ import com.codefollower.lealone.atomicdb.db.compaction.CompactionManager;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
 import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
 import com.yammer.metrics.core.Meter;
 
 
@@ -50,6 +51,10 @@ public class CompactionMetrics implements CompactionManager.CompactionExecutorSt
     public final Meter totalCompactionsCompleted;
     /** Total number of bytes compacted since server [re]start */
     public final Counter bytesCompacted;
+    /** Number of sub-ranges large compactions were split into */
+    public final Meter subRangeCompactions;
+    /** Throughput of each sub-range compaction, in KB/s */
+    public final Histogram subRangeThroughput;
 
     public CompactionMetrics(final ThreadPoolExecutor... collectors)
     {
@@ -80,6 +85,8 @@ public class CompactionMetrics implements CompactionManager.CompactionExecutorSt
         });
         totalCompactionsCompleted = Metrics.newMeter(factory.createMetricName("TotalCompactionsCompleted"), "compaction completed", TimeUnit.SECONDS);
         bytesCompacted = Metrics.newCounter(factory.createMetricName("BytesCompacted"));
+        subRangeCompactions = Metrics.newMeter(factory.createMetricName("SubRangeCompactions"), "sub-range compactions", TimeUnit.SECONDS);
+        subRangeThroughput = Metrics.newHistogram(factory.createMetricName("SubRangeThroughput"), true);
     }
 
     public void beginCompaction(CompactionInfo.Holder ci)
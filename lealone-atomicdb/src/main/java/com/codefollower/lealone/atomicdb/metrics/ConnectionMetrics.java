@@ -48,6 +48,14 @@ public class ConnectionMetrics
     public final Gauge<Integer> responsePendingTasks;
     /** Completed tasks for Response(GOSSIP & RESPONSE) TCP Connections */
     public final Gauge<Long> responseCompletedTasks;
+    /** Average number of messages written per flush of Command TCP Connections */
+    public final Gauge<Double> commandMessagesPerFlush;
+    /** Average time in microseconds Command TCP Connections held messages back to flush them together */
+    public final Gauge<Double> commandCoalescingLatency;
+    /** Average number of messages written per flush of Response TCP Connections */
+    public final Gauge<Double> responseMessagesPerFlush;
+    /** Average time in microseconds Response TCP Connections held messages back to flush them together */
+    public final Gauge<Double> responseCoalescingLatency;
     /** Number of timeouts for specific IP */
     public final Meter timeouts;
 
@@ -103,6 +111,34 @@ public class ConnectionMetrics
                 return connectionPool.ackCon.getCompletedMesssages();
             }
         });
+        commandMessagesPerFlush = Metrics.newGauge(factory.createMetricName("CommandMessagesPerFlush"), new Gauge<Double>()
+        {
+            public Double value()
+            {
+                return connectionPool.cmdCon.getMessagesPerFlush();
+            }
+        });
+        commandCoalescingLatency = Metrics.newGauge(factory.createMetricName("CommandCoalescingLatency"), new Gauge<Double>()
+        {
+            public Double value()
+            {
+                return connectionPool.cmdCon.getAverageCoalescingLatency();
+            }
+        });
+        responseMessagesPerFlush = Metrics.newGauge(factory.createMetricName("ResponseMessagesPerFlush"), new Gauge<Double>()
+        {
+            public Double value()
+            {
+                return connectionPool.ackCon.getMessagesPerFlush();
+            }
+        });
+        responseCoalescingLatency = Metrics.newGauge(factory.createMetricName("ResponseCoalescingLatency"), new Gauge<Double>()
+        {
+            public Double value()
+            {
+                return connectionPool.ackCon.getAverageCoalescingLatency();
+            }
+        });
         timeouts = Metrics.newMeter(factory.createMetricName("Timeouts"), "timeouts", TimeUnit.SECONDS);
     }
 
@@ -113,6 +149,10 @@ public class ConnectionMetrics
         Metrics.defaultRegistry().removeMetric(factory.createMetricName("CommandDroppedTasks"));
         Metrics.defaultRegistry().removeMetric(factory.createMetricName("ResponsePendingTasks"));
         Metrics.defaultRegistry().removeMetric(factory.createMetricName("ResponseCompletedTasks"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("CommandMessagesPerFlush"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("CommandCoalescingLatency"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("ResponseMessagesPerFlush"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("ResponseCoalescingLatency"));
         Metrics.defaultRegistry().removeMetric(factory.createMetricName("Timeouts"));
     }
 
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.net;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.codefollower.lealone.atomicdb.config.Config;
+import com.codefollower.lealone.atomicdb.net.OutboundTcpConnection.QueuedMessage;
+
+/**
+ * Decides how long an {@link OutboundTcpConnection} waits for more messages before writing and
+ * flushing the ones it has, so that several messages share one flush (and one syscall) instead of
+ * each paying for its own.
+ *
+ * <ul>
+ * <li>disabled: never waits; a flush happens whenever the backlog is empty.</li>
+ * <li>fixed: always waits for the whole window after the first message.</li>
+ * <li>moving_average: estimates the gap between messages from the last arrivals and only waits,
+ *     for about as long as it took the messages in hand to arrive, when more messages are
+ *     expected within the window; an idle connection sends at once.</li>
+ * </ul>
+ *
+ * Only the writer thread of the connection calls {@link #coalesce}.
+ */
+abstract class CoalescingStrategy
+{
+    private volatile long coalesced;
+    private volatile long waitedNanos;
+
+    static CoalescingStrategy create(Config.InternodeCoalescing type, int windowInMicros)
+    {
+        long windowNanos = TimeUnit.MICROSECONDS.toNanos(windowInMicros);
+        if (windowNanos == 0)
+            return new Disabled();
+        switch (type)
+        {
+            case fixed:
+                return new Fixed(windowNanos);
+            case moving_average:
+                return new MovingAverage(windowNanos);
+            default:
+                return new Disabled();
+        }
+    }
+
+    /**
+     * Move at least one and at most <code>maxItems</code> messages from <code>input</code> to <code>out</code>,
+     * blocking until one is available.
+     */
+    void coalesce(BlockingQueue<QueuedMessage> input, List<QueuedMessage> out, int maxItems) throws InterruptedException
+    {
+        if (input.drainTo(out, maxItems) == 0)
+        {
+            out.add(input.take());
+            input.drainTo(out, maxItems - 1);
+        }
+        for (QueuedMessage qm : out)
+            arrived(qm.timestampNanos);
+
+        long waitNanos = out.size() < maxItems ? waitNanos(out.size()) : 0;
+        if (waitNanos <= 0)
+            return;
+
+        long start = System.nanoTime();
+        LockSupport.parkNanos(waitNanos);
+        int drained = out.size();
+        input.drainTo(out, maxItems - drained);
+        for (int i = drained; i < out.size(); i++)
+            arrived(out.get(i).timestampNanos);
+
+        waitedNanos += System.nanoTime() - start;
+        coalesced++;
+    }
+
+    /**
+     * @return the average time, in microseconds, added to a batch of messages by waiting for more
+     */
+    double getAverageAddedLatency()
+    {
+        long count = coalesced;
+        return count == 0 ? 0 : waitedNanos / 1000.0 / count;
+    }
+
+    protected void arrived(long timestampNanos)
+    {
+    }
+
+    /**
+     * @return how long to wait for more messages when <code>count</code> are ready to be sent
+     */
+    protected abstract long waitNanos(int count);
+
+    private static class Disabled extends CoalescingStrategy
+    {
+        protected long waitNanos(int count)
+        {
+            return 0;
+        }
+    }
+
+    private static class Fixed extends CoalescingStrategy
+    {
+        private final long windowNanos;
+
+        Fixed(long windowNanos)
+        {
+            this.windowNanos = windowNanos;
+        }
+
+        protected long waitNanos(int count)
+        {
+            return windowNanos;
+        }
+    }
+
+    private static class MovingAverage extends CoalescingStrategy
+    {
+        private static final int SAMPLES = 16;
+
+        private final long windowNanos;
+        // ring of the arrival times of the last messages; once full, the oldest is at index
+        private final long[] arrivals = new long[SAMPLES];
+        private int index;
+        private int samples;
+
+        MovingAverage(long windowNanos)
+        {
+            this.windowNanos = windowNanos;
+        }
+
+        protected void arrived(long timestampNanos)
+        {
+            arrivals[index] = timestampNanos;
+            index = (index + 1) % SAMPLES;
+            if (samples < SAMPLES)
+                samples++;
+        }
+
+        protected long waitNanos(int count)
+        {
+            if (samples < 2)
+                return 0;
+            int newest = (index + SAMPLES - 1) % SAMPLES;
+            int oldest = samples < SAMPLES ? 0 : index;
+            long averageGap = Math.max(0, arrivals[newest] - arrivals[oldest]) / (samples - 1);
+            // messages are too far apart for another one to show up within the window
+            if (averageGap >= windowNanos)
+                return 0;
+            // the last message may already be old; wait from the time it arrived, not from now
+            long wait = Math.min(windowNanos, averageGap * count);
+            return wait - (System.nanoTime() - arrivals[newest]);
+        }
+    }
+}
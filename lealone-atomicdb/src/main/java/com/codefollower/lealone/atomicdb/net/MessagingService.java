@@ -37,6 +37,7 @@ import com.codefollower.lealone.atomicdb.concurrent.TracingAwareExecutorService;
 import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
 import com.codefollower.lealone.atomicdb.config.EncryptionOptions.ServerEncryptionOptions;
 import com.codefollower.lealone.atomicdb.db.*;
+import com.codefollower.lealone.atomicdb.db.hints.HintMessage;
 import com.codefollower.lealone.atomicdb.dht.BootStrapper;
 import com.codefollower.lealone.atomicdb.exceptions.ConfigurationException;
 import com.codefollower.lealone.atomicdb.gms.EchoMessage;
@@ -120,6 +121,7 @@ public final class MessagingService implements MessagingServiceMBean
         PAXOS_PROPOSE,
         PAXOS_COMMIT,
         PAGED_RANGE,
+        HINT,
         // remember to add new verbs at the end, since we serialize by ordinal
         UNUSED_1,
         UNUSED_2,
@@ -136,6 +138,7 @@ public final class MessagingService implements MessagingServiceMBean
         put(Verb.PAXOS_PREPARE, Stage.MUTATION);
         put(Verb.PAXOS_PROPOSE, Stage.MUTATION);
         put(Verb.PAXOS_COMMIT, Stage.MUTATION);
+        put(Verb.HINT, Stage.MUTATION);
 
         put(Verb.READ, Stage.READ);
         put(Verb.RANGE_SLICE, Stage.READ);
@@ -208,6 +211,7 @@ public final class MessagingService implements MessagingServiceMBean
         put(Verb.PAXOS_PREPARE, Commit.serializer);
         put(Verb.PAXOS_PROPOSE, Commit.serializer);
         put(Verb.PAXOS_COMMIT, Commit.serializer);
+        put(Verb.HINT, HintMessage.serializer);
     }};
 
     /**
@@ -218,6 +222,7 @@ public final class MessagingService implements MessagingServiceMBean
         put(Verb.MUTATION, WriteResponse.serializer);
         put(Verb.READ_REPAIR, WriteResponse.serializer);
         put(Verb.COUNTER_MUTATION, WriteResponse.serializer);
+        put(Verb.HINT, WriteResponse.serializer);
         put(Verb.RANGE_SLICE, RangeSliceReply.serializer);
         put(Verb.PAGED_RANGE, RangeSliceReply.serializer);
         put(Verb.READ, ReadResponse.serializer);
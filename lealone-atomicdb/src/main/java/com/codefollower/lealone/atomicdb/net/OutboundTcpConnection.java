@@ -65,24 +65,28 @@ public class OutboundTcpConnection extends Thread
     private static final int OPEN_RETRY_DELAY = 100; // ms between retries
     private static final int WAIT_FOR_VERSION_MAX_TIME = 5000;
     private static final int NO_VERSION = Integer.MIN_VALUE;
+    private static final int MAX_DRAINED_MESSAGES = 128;
 
     static final int LZ4_HASH_SEED = 0x9747b28c;
 
     private final BlockingQueue<QueuedMessage> backlog = new LinkedBlockingQueue<>();
 
     private final OutboundTcpConnectionPool poolReference;
+    private final CoalescingStrategy coalescingStrategy;
 
     private DataOutputStream out;
     private Socket socket;
     private volatile long completed;
+    private volatile long flushes;
     private final AtomicLong dropped = new AtomicLong();
     private volatile int currentMsgBufferCount = 0;
     private int targetVersion;
 
-    public OutboundTcpConnection(OutboundTcpConnectionPool pool)
+    public OutboundTcpConnection(OutboundTcpConnectionPool pool, Config.InternodeCoalescing coalescing)
     {
         super("WRITE-" + pool.endPoint());
         this.poolReference = pool;
+        this.coalescingStrategy = CoalescingStrategy.create(coalescing, DatabaseDescriptor.getInternodeCoalescingWindow());
     }
 
     private static boolean isLocalDC(InetAddress targetHost)
@@ -126,21 +130,17 @@ public class OutboundTcpConnection extends Thread
     public void run()
     {
         // keeping list (batch) size small for now; that way we don't have an unbounded array (that we never resize)
-        final List<QueuedMessage> drainedMessages = new ArrayList<>(128);
+        final List<QueuedMessage> drainedMessages = new ArrayList<>(MAX_DRAINED_MESSAGES);
         outer:
         while (true)
         {
-            if (backlog.drainTo(drainedMessages, drainedMessages.size()) == 0)
+            try
             {
-                try
-                {
-                    drainedMessages.add(backlog.take());
-                }
-                catch (InterruptedException e)
-                {
-                    throw new AssertionError(e);
-                }
-
+                coalescingStrategy.coalesce(backlog, drainedMessages, MAX_DRAINED_MESSAGES);
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
             }
             currentMsgBufferCount = drainedMessages.size();
 
@@ -192,6 +192,20 @@ public class OutboundTcpConnection extends Thread
         return dropped.get();
     }
 
+    public double getMessagesPerFlush()
+    {
+        long count = flushes;
+        return count == 0 ? 0 : (double) completed / count;
+    }
+
+    /**
+     * @return the average time in microseconds messages were held back to be flushed together
+     */
+    public double getAverageCoalescingLatency()
+    {
+        return coalescingStrategy.getAverageAddedLatency();
+    }
+
     private boolean shouldCompressConnection()
     {
         // assumes version >= 1.2
@@ -226,7 +240,10 @@ public class OutboundTcpConnection extends Thread
 
             completed++;
             if (flush)
+            {
                 out.flush();
+                flushes++;
+            }
         }
         catch (Exception e)
         {
@@ -462,17 +479,19 @@ public class OutboundTcpConnection extends Thread
     }
 
     /** messages that have not been retried yet */
-    private static class QueuedMessage
+    static class QueuedMessage
     {
         final MessageOut<?> message;
         final int id;
         final long timestamp;
+        final long timestampNanos;
 
         QueuedMessage(MessageOut<?> message, int id)
         {
             this.message = message;
             this.id = id;
             this.timestamp = System.currentTimeMillis();
+            this.timestampNanos = System.nanoTime();
         }
 
         boolean shouldRetry()
@@ -47,9 +47,9 @@ public class OutboundTcpConnectionPool
         id = remoteEp;
         resetedEndpoint = SystemKeyspace.getPreferredIP(remoteEp);
 
-        cmdCon = new OutboundTcpConnection(this);
+        cmdCon = new OutboundTcpConnection(this, DatabaseDescriptor.getInternodeCommandCoalescing());
         cmdCon.start();
-        ackCon = new OutboundTcpConnection(this);
+        ackCon = new OutboundTcpConnection(this, DatabaseDescriptor.getInternodeResponseCoalescing());
         ackCon.start();
 
         metrics = new ConnectionMetrics(id, this);
@@ -42,7 +42,6 @@ import com.codefollower.lealone.atomicdb.db.ColumnFamily;
 import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
 import com.codefollower.lealone.atomicdb.db.DecoratedKey;
 import com.codefollower.lealone.atomicdb.db.RowIndexEntry;
-import com.codefollower.lealone.atomicdb.db.filter.QueryFilter;
 import com.codefollower.lealone.atomicdb.io.sstable.Descriptor;
 import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
 import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
@@ -326,7 +325,7 @@ public class CacheService implements CacheServiceMBean
                 public Pair<RowCacheKey, IRowCacheEntry> call() throws Exception
                 {
                     DecoratedKey key = cfs.partitioner.decorateKey(buffer);
-                    ColumnFamily data = cfs.getTopLevelColumns(QueryFilter.getIdentityFilter(key, cfs.name, Long.MIN_VALUE), Integer.MIN_VALUE);
+                    ColumnFamily data = cfs.getTopLevelColumns(cfs.rowCacheFilter(key, Long.MIN_VALUE), Integer.MIN_VALUE);
                     return Pair.create(new RowCacheKey(cfs.metadata.cfId, key), (IRowCacheEntry) data);
                 }
             });
@@ -47,6 +47,8 @@ import com.codefollower.lealone.atomicdb.config.KSMetaData;
 import com.codefollower.lealone.atomicdb.config.Schema;
 import com.codefollower.lealone.atomicdb.db.*;
 import com.codefollower.lealone.atomicdb.db.commitlog.CommitLog;
+import com.codefollower.lealone.atomicdb.db.hints.HintVerbHandler;
+import com.codefollower.lealone.atomicdb.db.hints.HintsStore;
 import com.codefollower.lealone.atomicdb.db.index.SecondaryIndex;
 import com.codefollower.lealone.atomicdb.dht.*;
 import com.codefollower.lealone.atomicdb.dht.Range;
@@ -232,6 +234,7 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
         MessagingService.instance().registerVerbHandlers(MessagingService.Verb.PAXOS_PREPARE, new PrepareVerbHandler());
         MessagingService.instance().registerVerbHandlers(MessagingService.Verb.PAXOS_PROPOSE, new ProposeVerbHandler());
         MessagingService.instance().registerVerbHandlers(MessagingService.Verb.PAXOS_COMMIT, new CommitVerbHandler());
+        MessagingService.instance().registerVerbHandlers(MessagingService.Verb.HINT, new HintVerbHandler());
 
         // see BootStrapper for a summary of how the bootstrap verbs interact
         MessagingService.instance().registerVerbHandlers(MessagingService.Verb.REPLICATION_FINISHED, new ReplicationFinishedVerbHandler());
@@ -524,6 +527,7 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
                 mutationStage.shutdown();
                 mutationStage.awaitTermination(3600, TimeUnit.SECONDS);
                 StorageProxy.instance.verifyNoHintsInProgress();
+                HintsStore.instance.flushAll();
 
                 List<Future<?>> flushes = new ArrayList<Future<?>>();
                 for (Keyspace keyspace : Keyspace.all())
@@ -2768,7 +2772,7 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
         setMode(Mode.LEAVING, "streaming data to other nodes", true);
 
         Future<StreamState> streamSuccess = streamRanges(rangesToStream);
-        Future<StreamState> hintsSuccess = streamHints();
+        Future<?> hintsSuccess = streamHints();
 
         // wait for the transfer runnables to signal the latch.
         logger.debug("waiting for stream aks.");
@@ -2786,7 +2790,7 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
         onFinish.run();
     }
 
-    private Future<StreamState> streamHints()
+    private Future<?> streamHints()
     {
         if (HintedHandOffManager.instance.listEndpointsPendingHints().size() == 0)
             return Futures.immediateFuture(null);
@@ -2812,15 +2816,8 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
             DatabaseDescriptor.getEndpointSnitch().sortByProximity(FBUtilities.getBroadcastAddress(), candidates);
             InetAddress hintsDestinationHost = candidates.get(0);
 
-            // stream all hints -- range list will be a singleton of "the entire ring"
-            Token token = StorageService.getPartitioner().getMinimumToken();
-            List<Range<Token>> ranges = Collections.singletonList(new Range<Token>(token, token));
-
-            return new StreamPlan("Hints").transferRanges(hintsDestinationHost,
-                                                                      Keyspace.SYSTEM_KS,
-                                                                      ranges,
-                                                                      SystemKeyspace.HINTS_CF)
-                                                      .execute();
+            // hand the hint files over as is; the destination keeps them for their original targets
+            return HintedHandOffManager.instance.transferAllHints(hintsDestinationHost);
         }
     }
 
@@ -3263,6 +3260,7 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
         mutationStage.awaitTermination(3600, TimeUnit.SECONDS);
 
         StorageProxy.instance.verifyNoHintsInProgress();
+        HintsStore.instance.flushAll();
 
         setMode(Mode.DRAINING, "flushing column families", false);
         // count CFs first, since forceFlush could block for the flushWriter to get a queue slot empty
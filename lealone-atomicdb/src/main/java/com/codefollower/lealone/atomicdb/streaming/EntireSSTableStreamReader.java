@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.streaming;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.codefollower.lealone.atomicdb.config.Schema;
+import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
+import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.io.sstable.Component;
+import com.codefollower.lealone.atomicdb.io.sstable.Descriptor;
+import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
+import com.codefollower.lealone.atomicdb.io.sstable.SSTableWriter;
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+import com.codefollower.lealone.atomicdb.streaming.messages.FileMessageHeader;
+import com.codefollower.lealone.atomicdb.utils.Pair;
+import com.google.common.base.Throwables;
+
+/**
+ * EntireSSTableStreamReader receives the component files sent by {@link EntireSSTableStreamWriter}
+ * straight into a new SSTable of the local column family, without deserializing and rewriting the rows.
+ */
+public class EntireSSTableStreamReader extends StreamReader
+{
+    private static final int TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private final List<Pair<String, Long>> components;
+
+    public EntireSSTableStreamReader(FileMessageHeader header, StreamSession session)
+    {
+        super(header, session);
+        this.components = header.components;
+    }
+
+    /**
+     * @param channel where this reads data from
+     * @return SSTable transferred
+     * @throws IOException if reading the remote sstable fails. Will throw an RTE if local write fails.
+     */
+    @Override
+    public SSTableReader read(ReadableByteChannel channel) throws IOException
+    {
+        long totalSize = totalSize();
+        long bytesRead = 0;
+
+        Pair<String, String> kscf = Schema.instance.getCF(cfId);
+        ColumnFamilyStore cfs = Keyspace.open(kscf.left).getColumnFamilyStore(kscf.right);
+
+        Set<Component> received = new HashSet<>();
+        try
+        {
+            // the files are kept as is, so they must be in the format this node writes
+            if (!inputVersion.equals(Descriptor.Version.CURRENT))
+                throw new IOException("Unable to receive an entire SSTable of version " + inputVersion);
+
+            desc = createDescriptor(cfs, totalSize);
+            for (Pair<String, Long> component : components)
+            {
+                File file = new File(desc.filenameFor(component.left));
+                received.add(Component.fromFilename(file.getParentFile(), file.getName()).right);
+                bytesRead += receive(channel, file, component.right, bytesRead, totalSize);
+            }
+
+            Descriptor newdesc = desc.asTemporary(false);
+            SSTableWriter.rename(desc, newdesc, received);
+            // the level of the sender means nothing here, start from L0 as streamed rows do
+            newdesc.getMetadataSerializer().mutateLevel(newdesc, 0);
+
+            // the cached rows it may change are invalidated by StreamReceiveTask, once for all the sstables received
+            return SSTableReader.open(newdesc, received, cfs.metadata, cfs.partitioner);
+        }
+        catch (Throwable e)
+        {
+            if (desc != null)
+            {
+                for (Component component : received)
+                    FileUtils.delete(desc.filenameFor(component));
+            }
+            drain(channel, bytesRead);
+            if (e instanceof IOException)
+                throw (IOException) e;
+            else
+                throw Throwables.propagate(e);
+        }
+    }
+
+    private long receive(ReadableByteChannel channel, File file, long length, long progress, long totalSize) throws IOException
+    {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try
+        {
+            FileChannel fc = out.getChannel();
+            long position = 0;
+            while (position < length)
+            {
+                long transferred = fc.transferFrom(channel, position, Math.min(TRANSFER_CHUNK_SIZE, length - position));
+                if (transferred <= 0)
+                    throw new EOFException("Stream ended after " + position + " of " + length + " bytes of " + file);
+                position += transferred;
+                session.progress(desc, ProgressInfo.Direction.IN, progress + position, totalSize);
+            }
+            fc.force(true);
+            return position;
+        }
+        finally
+        {
+            FileUtils.closeQuietly(out);
+        }
+    }
+
+    private void drain(ReadableByteChannel channel, long bytesRead) throws IOException
+    {
+        long toSkip = totalSize() - bytesRead;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(TRANSFER_CHUNK_SIZE, Math.max(toSkip, 1)));
+        while (toSkip > 0)
+        {
+            buffer.clear();
+            if (toSkip < buffer.capacity())
+                buffer.limit((int) toSkip);
+            int read = channel.read(buffer);
+            if (read < 0)
+                break;
+            toSkip -= read;
+        }
+    }
+
+    @Override
+    protected long totalSize()
+    {
+        long size = 0;
+        for (Pair<String, Long> component : components)
+            size += component.right;
+        return size;
+    }
+}
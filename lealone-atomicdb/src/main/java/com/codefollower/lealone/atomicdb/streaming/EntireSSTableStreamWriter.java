@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.streaming;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+
+import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+import com.codefollower.lealone.atomicdb.utils.Pair;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * EntireSSTableStreamWriter sends every component file of the SSTable as is.
+ *
+ * Files are copied to the channel with {@link FileChannel#transferTo}, so the bytes go from the page cache
+ * to the socket without passing through the heap, and are neither deserialized nor compressed on the wire.
+ */
+public class EntireSSTableStreamWriter
+{
+    private static final int TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private final SSTableReader sstable;
+    private final Collection<Pair<String, Long>> components;
+    private final RateLimiter limiter = StreamManager.getRateLimiter();
+    private final StreamSession session;
+
+    public EntireSSTableStreamWriter(SSTableReader sstable, Collection<Pair<String, Long>> components, StreamSession session)
+    {
+        this.session = session;
+        this.sstable = sstable;
+        this.components = components;
+    }
+
+    /**
+     * Stream the component files, in the order of the header, to given channel.
+     *
+     * @param channel where this writes data to
+     * @throws IOException on any I/O error
+     */
+    public void write(WritableByteChannel channel) throws IOException
+    {
+        long totalSize = totalSize();
+        long progress = 0L;
+
+        for (Pair<String, Long> component : components)
+        {
+            RandomAccessFile file = new RandomAccessFile(sstable.descriptor.filenameFor(component.left), "r");
+            try
+            {
+                FileChannel fc = file.getChannel();
+                // send exactly the announced length even if the file has grown since, the receiver relies on it
+                long length = component.right;
+                long position = 0;
+                while (position < length)
+                {
+                    int toTransfer = (int) Math.min(TRANSFER_CHUNK_SIZE, length - position);
+                    limiter.acquire(toTransfer);
+                    long transferred = fc.transferTo(position, toTransfer, channel);
+                    if (transferred <= 0)
+                        throw new IOException("Unable to transfer " + sstable.descriptor.filenameFor(component.left)
+                                              + " at position " + position + " of " + length);
+                    position += transferred;
+                    progress += transferred;
+                    session.progress(sstable.descriptor, ProgressInfo.Direction.OUT, progress, totalSize);
+                }
+            }
+            finally
+            {
+                FileUtils.closeQuietly(file);
+            }
+        }
+
+        // release reference only when completed successfully
+        sstable.releaseReference();
+    }
+
+    private long totalSize()
+    {
+        long size = 0;
+        for (Pair<String, Long> component : components)
+            size += component.right;
+        return size;
+    }
+}
@@ -103,13 +103,17 @@ public class StreamReader
     }
 
     protected SSTableWriter createWriter(ColumnFamilyStore cfs, long totalSize) throws IOException
+    {
+        desc = createDescriptor(cfs, totalSize);
+        return new SSTableWriter(desc.filenameFor(Component.DATA), estimatedKeys);
+    }
+
+    protected Descriptor createDescriptor(ColumnFamilyStore cfs, long totalSize) throws IOException
     {
         Directories.DataDirectory localDir = cfs.directories.getWriteableLocation();
         if (localDir == null)
             throw new IOException("Insufficient disk space to store " + totalSize + " bytes");
-        desc = Descriptor.fromFilename(cfs.getTempSSTablePath(cfs.directories.getLocationForDisk(localDir)));
-
-        return new SSTableWriter(desc.filenameFor(Component.DATA), estimatedKeys);
+        return Descriptor.fromFilename(cfs.getTempSSTablePath(cfs.directories.getLocationForDisk(localDir)));
     }
 
     protected void drain(InputStream dis, long bytesRead) throws IOException
@@ -19,11 +19,14 @@ package com.codefollower.lealone.atomicdb.streaming;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import com.codefollower.lealone.atomicdb.config.Schema;
 import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
 import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.RowPosition;
+import com.codefollower.lealone.atomicdb.dht.Bounds;
 import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
 import com.codefollower.lealone.atomicdb.utils.Pair;
 
@@ -40,6 +43,9 @@ public class StreamReceiveTask extends StreamTask
     //  holds references to SSTables received
     protected Collection<SSTableReader> sstables;
 
+    // key bounds of the SSTables received as is, whose rows did not invalidate the row cache
+    private final List<Bounds<RowPosition>> entireSSTableBounds = new ArrayList<>();
+
     public StreamReceiveTask(StreamSession session, UUID cfId, int totalFiles, long totalSize)
     {
         super(session, cfId);
@@ -52,12 +58,15 @@ public class StreamReceiveTask extends StreamTask
      * Process received file.
      *
      * @param sstable SSTable file received.
+     * @param entire true if the component files were received as is
      */
-    public void received(SSTableReader sstable)
+    public void received(SSTableReader sstable, boolean entire)
     {
         assert cfId.equals(sstable.metadata.cfId);
 
         sstables.add(sstable);
+        if (entire)
+            entireSSTableBounds.add(new Bounds<RowPosition>(sstable.first, sstable.last));
         if (sstables.size() == totalFiles)
             complete();
     }
@@ -83,6 +92,9 @@ public class StreamReceiveTask extends StreamTask
             ColumnFamilyStore cfs = Keyspace.open(kscf.left).getColumnFamilyStore(kscf.right);
             // add sstables and build secondary indexes
             cfs.addSSTables(sstables);
+            // after adding them, so that a read cannot cache the old rows again; one pass over the row cache
+            if (!entireSSTableBounds.isEmpty())
+                cfs.invalidateCachedRows(entireSSTableBounds);
             cfs.indexManager.maybeBuildSecondaryIndexes(sstables, cfs.indexManager.allIndexesNames());
         }
         finally
@@ -26,6 +26,7 @@ import com.codefollower.lealone.atomicdb.concurrent.DebuggableThreadPoolExecutor
 import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
 import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
 import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.Memtable;
 import com.codefollower.lealone.atomicdb.db.RowPosition;
 import com.codefollower.lealone.atomicdb.dht.AbstractBounds;
 import com.codefollower.lealone.atomicdb.dht.Range;
@@ -252,6 +253,8 @@ public class StreamSession implements IEndpointStateChangeSubscriber, IFailureDe
                 rowBoundsList.add(range.toRowBounds());
             ColumnFamilyStore.ViewFragment view = cfStore.markReferenced(rowBoundsList);
             sstables.addAll(view.sstables);
+            // only the sstables are streamed, they stay referenced until the transfer completes
+            Memtable.releaseReferences(view.memtables);
         }
         addTransferFiles(normalizedRanges, sstables);
     }
@@ -465,7 +468,7 @@ public class StreamSession implements IEndpointStateChangeSubscriber, IFailureDe
         metrics.incomingBytes.inc(headerSize);
         // send back file received message
         handler.sendMessage(new ReceivedMessage(message.header.cfId, message.header.sequenceNumber));
-        receivers.get(message.header.cfId).received(message.sstable);
+        receivers.get(message.header.cfId).received(message.sstable, message.header.isEntireSSTable());
     }
 
     public void progress(Descriptor desc, ProgressInfo.Direction direction, long bytes, long total)
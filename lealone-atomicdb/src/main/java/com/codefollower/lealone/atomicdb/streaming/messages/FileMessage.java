@@ -18,16 +18,24 @@
 package com.codefollower.lealone.atomicdb.streaming.messages;
 
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
 import com.codefollower.lealone.atomicdb.io.compress.CompressionMetadata;
+import com.codefollower.lealone.atomicdb.io.sstable.Component;
+import com.codefollower.lealone.atomicdb.io.sstable.Descriptor;
 import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
+import com.codefollower.lealone.atomicdb.streaming.EntireSSTableStreamReader;
+import com.codefollower.lealone.atomicdb.streaming.EntireSSTableStreamWriter;
 import com.codefollower.lealone.atomicdb.streaming.StreamReader;
 import com.codefollower.lealone.atomicdb.streaming.StreamSession;
 import com.codefollower.lealone.atomicdb.streaming.StreamWriter;
@@ -47,8 +55,12 @@ public class FileMessage extends StreamMessage
         {
             DataInputStream input = new DataInputStream(Channels.newInputStream(in));
             FileMessageHeader header = FileMessageHeader.serializer.deserialize(input, version);
-            StreamReader reader = header.compressionInfo == null ? new StreamReader(header, session)
-                                          : new CompressedStreamReader(header, session);
+            StreamReader reader;
+            if (header.isEntireSSTable())
+                reader = new EntireSSTableStreamReader(header, session);
+            else
+                reader = header.compressionInfo == null ? new StreamReader(header, session)
+                                                        : new CompressedStreamReader(header, session);
 
             try
             {
@@ -65,6 +77,12 @@ public class FileMessage extends StreamMessage
         {
             DataOutput output = new DataOutputStream(Channels.newOutputStream(out));
             FileMessageHeader.serializer.serialize(message.header, output, version);
+            if (message.header.isEntireSSTable())
+            {
+                new EntireSSTableStreamWriter(message.sstable, message.header.components, session).write(out);
+                session.fileSent(message.header);
+                return;
+            }
             StreamWriter writer = message.header.compressionInfo == null ?
                                           new StreamWriter(message.sstable, message.header.sections, session) :
                                           new CompressedStreamWriter(message.sstable,
@@ -90,8 +108,13 @@ public class FileMessage extends StreamMessage
         super(Type.FILE);
         this.sstable = sstable;
 
+        List<Pair<String, Long>> components = Collections.emptyList();
         CompressionInfo compressionInfo = null;
-        if (sstable.compression)
+        if (canStreamEntireSSTable(sstable, sections))
+        {
+            components = getComponents(sstable);
+        }
+        else if (sstable.compression)
         {
             CompressionMetadata meta = sstable.getCompressionMetadata();
             compressionInfo = new CompressionInfo(meta.getChunksForSections(sections), meta.parameters);
@@ -101,7 +124,42 @@ public class FileMessage extends StreamMessage
                                             sstable.descriptor.version.toString(),
                                             estimatedKeys,
                                             sections,
-                                            compressionInfo);
+                                            compressionInfo,
+                                            components);
+    }
+
+    /**
+     * The component files can be sent as is when the requested ranges cover the whole SSTable
+     * and the receiver understands its format, otherwise the rows have to be streamed and rewritten.
+     * Counter SSTables are always rewritten, the receiver has to clear the deltas of their counter contexts.
+     */
+    private static boolean canStreamEntireSSTable(SSTableReader sstable, List<Pair<Long, Long>> sections)
+    {
+        if (!DatabaseDescriptor.streamEntireSSTables() || !sstable.descriptor.version.equals(Descriptor.Version.CURRENT))
+            return false;
+
+        if (sstable.metadata.getDefaultValidator().isCommutative())
+            return false;
+
+        if (sections.size() != 1)
+            return false;
+        Pair<Long, Long> section = sections.get(0);
+        return section.left == 0 && section.right == sstable.uncompressedLength();
+    }
+
+    private static List<Pair<String, Long>> getComponents(SSTableReader sstable)
+    {
+        List<Pair<String, Long>> components = new ArrayList<>();
+        for (Component.Type type : Component.Type.values())
+        {
+            if (type == Component.Type.CUSTOM)
+                continue;
+            Component component = new Component(type);
+            File file = new File(sstable.descriptor.filenameFor(component));
+            if (file.exists())
+                components.add(Pair.create(component.name, file.length()));
+        }
+        return components;
     }
 
     @Override
@@ -21,6 +21,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -46,6 +47,11 @@ public class FileMessageHeader
     public final long estimatedKeys;
     public final List<Pair<Long, Long>> sections;
     public final CompressionInfo compressionInfo;
+    /**
+     * Name and length of every component file when the whole SSTable is transferred as is,
+     * empty when only sections of the data file are streamed.
+     */
+    public final List<Pair<String, Long>> components;
 
     public FileMessageHeader(UUID cfId,
                              int sequenceNumber,
@@ -53,6 +59,17 @@ public class FileMessageHeader
                              long estimatedKeys,
                              List<Pair<Long, Long>> sections,
                              CompressionInfo compressionInfo)
+    {
+        this(cfId, sequenceNumber, version, estimatedKeys, sections, compressionInfo, Collections.<Pair<String, Long>>emptyList());
+    }
+
+    public FileMessageHeader(UUID cfId,
+                             int sequenceNumber,
+                             String version,
+                             long estimatedKeys,
+                             List<Pair<Long, Long>> sections,
+                             CompressionInfo compressionInfo,
+                             List<Pair<String, Long>> components)
     {
         this.cfId = cfId;
         this.sequenceNumber = sequenceNumber;
@@ -60,6 +77,15 @@ public class FileMessageHeader
         this.estimatedKeys = estimatedKeys;
         this.sections = sections;
         this.compressionInfo = compressionInfo;
+        this.components = components;
+    }
+
+    /**
+     * @return true if all the component files of the SSTable are transferred without being rewritten
+     */
+    public boolean isEntireSSTable()
+    {
+        return !components.isEmpty();
     }
 
     /**
@@ -68,7 +94,12 @@ public class FileMessageHeader
     public long size()
     {
         long size = 0;
-        if (compressionInfo != null)
+        if (isEntireSSTable())
+        {
+            for (Pair<String, Long> component : components)
+                size += component.right;
+        }
+        else if (compressionInfo != null)
         {
             // calculate total length of transferring chunks
             for (CompressionMetadata.Chunk chunk : compressionInfo.chunks)
@@ -92,6 +123,7 @@ public class FileMessageHeader
         sb.append(", estimated keys: ").append(estimatedKeys);
         sb.append(", transfer size: ").append(size());
         sb.append(", compressed?: ").append(compressionInfo != null);
+        sb.append(", entire sstable?: ").append(isEntireSSTable());
         sb.append(')');
         return sb.toString();
     }
@@ -129,6 +161,16 @@ public class FileMessageHeader
                 out.writeLong(section.right);
             }
             CompressionInfo.serializer.serialize(header.compressionInfo, out, version);
+
+            if (version >= 2)
+            {
+                out.writeInt(header.components.size());
+                for (Pair<String, Long> component : header.components)
+                {
+                    out.writeUTF(component.left);
+                    out.writeLong(component.right);
+                }
+            }
         }
 
         public FileMessageHeader deserialize(DataInput in, int version) throws IOException
@@ -142,7 +184,16 @@ public class FileMessageHeader
             for (int k = 0; k < count; k++)
                 sections.add(Pair.create(in.readLong(), in.readLong()));
             CompressionInfo compressionInfo = CompressionInfo.serializer.deserialize(in, MessagingService.current_version);
-            return new FileMessageHeader(cfId, sequenceNumber, sstableVersion, estimatedKeys, sections, compressionInfo);
+
+            List<Pair<String, Long>> components = Collections.emptyList();
+            if (version >= 2)
+            {
+                count = in.readInt();
+                components = new ArrayList<>(count);
+                for (int k = 0; k < count; k++)
+                    components.add(Pair.create(in.readUTF(), in.readLong()));
+            }
+            return new FileMessageHeader(cfId, sequenceNumber, sstableVersion, estimatedKeys, sections, compressionInfo, components);
         }
 
         public long serializedSize(FileMessageHeader header, int version)
@@ -159,6 +210,16 @@ public class FileMessageHeader
                 size += TypeSizes.NATIVE.sizeof(section.right);
             }
             size += CompressionInfo.serializer.serializedSize(header.compressionInfo, version);
+
+            if (version >= 2)
+            {
+                size += TypeSizes.NATIVE.sizeof(header.components.size());
+                for (Pair<String, Long> component : header.components)
+                {
+                    size += TypeSizes.NATIVE.sizeof(component.left);
+                    size += TypeSizes.NATIVE.sizeof(component.right);
+                }
+            }
             return size;
         }
     }
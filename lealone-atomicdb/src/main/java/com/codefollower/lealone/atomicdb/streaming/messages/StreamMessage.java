@@ -31,8 +31,8 @@ import com.codefollower.lealone.atomicdb.streaming.StreamSession;
  */
 public abstract class StreamMessage
 {
-    /** Streaming protocol version */
-    public static final int CURRENT_VERSION = 1;
+    /** Streaming protocol version, 2 adds the component list of entire SSTable transfers to FileMessageHeader */
+    public static final int CURRENT_VERSION = 2;
 
     public static void serialize(StreamMessage message, WritableByteChannel out, int version, StreamSession session) throws IOException
     {
@@ -38,4 +38,28 @@ public abstract class Allocator
     public abstract ByteBuffer allocate(int size);
 
     public abstract long getMinimumSize();
+
+    /**
+     * @return true if the allocated buffers live outside the java heap
+     */
+    public boolean isOffHeap()
+    {
+        return false;
+    }
+
+    /**
+     * Free the memory of all the buffers allocated so far. Called once, when nothing references
+     * them any longer; on-heap allocators leave this to the garbage collector.
+     */
+    public void free()
+    {
+    }
+
+    /**
+     * @return the exact number of bytes this allocator holds outside the java heap
+     */
+    public long getOffHeapSize()
+    {
+        return 0;
+    }
 }
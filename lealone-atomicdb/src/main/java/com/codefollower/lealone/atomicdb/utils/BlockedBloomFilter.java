@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.utils;
+
+import java.nio.ByteBuffer;
+
+import com.codefollower.lealone.atomicdb.db.TypeSizes;
+import com.codefollower.lealone.atomicdb.utils.obs.IBitSet;
+
+/**
+ * A Bloom filter that sets all the bits of a key within one 512 bit (64 byte) block of the bitset,
+ * so a lookup touches one or two cache lines instead of up to one per hash function.
+ *
+ * The first half of the murmur3 hash picks the block, the second half the bits in it, using the
+ * same combinatorial generation as {@link BloomFilter} but within the block. For the same number
+ * of bits per key the false positive rate is a little higher than for {@link Murmur3BloomFilter};
+ * {@link FilterFactory} sizes blocked filters with that in mind.
+ */
+public class BlockedBloomFilter extends BloomFilter
+{
+    public static final BlockedBloomFilterSerializer serializer = new BlockedBloomFilterSerializer();
+
+    static final int BLOCK_BITS = 512;
+
+    private final long blocks;
+
+    public BlockedBloomFilter(int hashes, IBitSet bs)
+    {
+        super(hashes, bs);
+        blocks = bs.capacity() / BLOCK_BITS;
+        assert blocks > 0 : "bitset smaller than one block: " + bs.capacity();
+    }
+
+    /**
+     * @return the number of bits to allocate for at least <code>numBits</code>, a whole number of blocks
+     */
+    static long roundToBlocks(long numBits)
+    {
+        return Math.max(1, (numBits + BLOCK_BITS - 1) / BLOCK_BITS) * BLOCK_BITS;
+    }
+
+    public long serializedSize()
+    {
+        return serializer.serializedSize(this, TypeSizes.NATIVE);
+    }
+
+    protected long[] hash(ByteBuffer b, int position, int remaining, long seed)
+    {
+        return MurmurHash.hash3_x64_128(b, position, remaining, seed);
+    }
+
+    public void add(ByteBuffer key)
+    {
+        long[] hash = hash(key, key.position(), key.remaining(), 0L);
+        long block = blockStart(hash[0]);
+        int h1 = (int) hash[1];
+        // odd, so the hashCount bits of a key are all different
+        int h2 = (int) (hash[1] >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++)
+            bitset.set(block + ((h1 + i * h2) & (BLOCK_BITS - 1)));
+    }
+
+    public boolean isPresent(ByteBuffer key)
+    {
+        long[] hash = hash(key, key.position(), key.remaining(), 0L);
+        long block = blockStart(hash[0]);
+        int h1 = (int) hash[1];
+        int h2 = (int) (hash[1] >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            if (!bitset.get(block + ((h1 + i * h2) & (BLOCK_BITS - 1))))
+                return false;
+        }
+        return true;
+    }
+
+    private long blockStart(long hash)
+    {
+        return Math.abs(hash % blocks) * BLOCK_BITS;
+    }
+
+    public static class BlockedBloomFilterSerializer extends BloomFilterSerializer
+    {
+        protected int version()
+        {
+            return VERSION_BLOCKED;
+        }
+
+        protected BloomFilter createFilter(int hashes, IBitSet bs)
+        {
+            return new BlockedBloomFilter(hashes, bs);
+        }
+    }
+}
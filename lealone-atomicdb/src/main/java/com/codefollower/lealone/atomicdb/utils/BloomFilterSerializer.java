@@ -29,8 +29,17 @@ import com.codefollower.lealone.atomicdb.utils.obs.OpenBitSet;
 
 abstract class BloomFilterSerializer implements ISerializer<BloomFilter>
 {
+    /**
+     * The original murmur3 filters start with their hash count. Filters in any other format
+     * start with a negative serialization version instead, followed by the hash count.
+     */
+    static final int VERSION_MURMUR3 = 0;
+    static final int VERSION_BLOCKED = -1;
+
     public void serialize(BloomFilter bf, DataOutput out) throws IOException
     {
+        if (version() != VERSION_MURMUR3)
+            out.writeInt(version());
         out.writeInt(bf.hashCount);
         bf.bitset.serialize(out);
     }
@@ -42,11 +51,29 @@ abstract class BloomFilterSerializer implements ISerializer<BloomFilter>
 
     public BloomFilter deserialize(DataInput in, boolean offheap) throws IOException
     {
-        int hashes = in.readInt();
+        if (version() != VERSION_MURMUR3)
+        {
+            int version = in.readInt();
+            if (version != version())
+                throw new IOException("Unexpected bloom filter serialization version " + version);
+        }
+        return deserialize(in, in.readInt(), offheap);
+    }
+
+    /**
+     * Deserialize the rest of a filter whose header has already been read.
+     */
+    BloomFilter deserialize(DataInput in, int hashes, boolean offheap) throws IOException
+    {
         IBitSet bs = offheap ? OffHeapBitSet.deserialize(in) : OpenBitSet.deserialize(in);
         return createFilter(hashes, bs);
     }
 
+    protected int version()
+    {
+        return VERSION_MURMUR3;
+    }
+
     protected abstract BloomFilter createFilter(int hashes, IBitSet bs);
 
     /**
@@ -60,6 +87,8 @@ abstract class BloomFilterSerializer implements ISerializer<BloomFilter>
     public long serializedSize(BloomFilter bf, TypeSizes typeSizes)
     {
         int size = typeSizes.sizeof(bf.hashCount); // hash count
+        if (version() != VERSION_MURMUR3)
+            size += typeSizes.sizeof(version());
         size += bf.bitset.serializedSize(typeSizes);
         return size;
     }
@@ -22,10 +22,12 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.codefollower.lealone.atomicdb.db.TypeSizes;
+import com.codefollower.lealone.atomicdb.exceptions.ConfigurationException;
 import com.codefollower.lealone.atomicdb.utils.obs.IBitSet;
 import com.codefollower.lealone.atomicdb.utils.obs.OffHeapBitSet;
 import com.codefollower.lealone.atomicdb.utils.obs.OpenBitSet;
@@ -34,17 +36,49 @@ public class FilterFactory
 {
     public static final IFilter AlwaysPresent = new AlwaysPresentFilter();
 
+    /**
+     * The kind of bloom filter built for the sstables of a table (its bloom_filter_type option).
+     */
+    public enum Type
+    {
+        /** k bits anywhere in the bitset */
+        STANDARD,
+        /** k bits within one cache line sized block, see {@link BlockedBloomFilter} */
+        BLOCKED;
+
+        public static Type fromString(String type) throws ConfigurationException
+        {
+            try
+            {
+                return valueOf(type.toUpperCase());
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new ConfigurationException(String.format("%s not found, available types: %s.", type, StringUtils.join(values(), ", ")));
+            }
+        }
+    }
+
     private static final Logger logger = LoggerFactory.getLogger(FilterFactory.class);
     private static final long BITSET_EXCESS = 20;
 
     public static void serialize(IFilter bf, DataOutput output) throws IOException
     {
-        Murmur3BloomFilter.serializer.serialize((Murmur3BloomFilter) bf, output);
+        if (bf instanceof BlockedBloomFilter)
+            BlockedBloomFilter.serializer.serialize((BlockedBloomFilter) bf, output);
+        else
+            Murmur3BloomFilter.serializer.serialize((Murmur3BloomFilter) bf, output);
     }
 
     public static IFilter deserialize(DataInput input, boolean offheap) throws IOException
     {
-        return Murmur3BloomFilter.serializer.deserialize(input, offheap);
+        // either the hash count of a murmur3 filter or the (negative) version of another format
+        int header = input.readInt();
+        if (header == BloomFilterSerializer.VERSION_BLOCKED)
+            return BlockedBloomFilter.serializer.deserialize(input, input.readInt(), offheap);
+        if (header < 0)
+            throw new IOException("Unknown bloom filter serialization version " + header);
+        return Murmur3BloomFilter.serializer.deserialize(input, header, offheap);
     }
 
     /**
@@ -71,19 +105,46 @@ public class FilterFactory
      *         filter.
      */
     public static IFilter getFilter(long numElements, double maxFalsePosProbability, boolean offheap)
+    {
+        return getFilter(numElements, maxFalsePosProbability, offheap, Type.STANDARD);
+    }
+
+    public static IFilter getFilter(long numElements, double maxFalsePosProbability, boolean offheap, Type type)
     {
         assert maxFalsePosProbability <= 1.0 : "Invalid probability";
         if (maxFalsePosProbability == 1.0)
             return new AlwaysPresentFilter();
         int bucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
-        BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability);
-        return createFilter(spec.K, numElements, spec.bucketsPerElement, offheap);
+        BloomCalculations.BloomSpecification spec = null;
+        if (type == Type.BLOCKED)
+        {
+            // keeping the bits of a key in one block raises the false positive rate somewhat above
+            // what the standard calculations predict, so aim at half the requested rate when we can
+            try
+            {
+                spec = BloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability / 2);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                // fall back to the requested rate
+            }
+        }
+        if (spec == null)
+            spec = BloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability);
+        return createFilter(spec.K, numElements, spec.bucketsPerElement, offheap, type);
     }
 
     private static IFilter createFilter(int hash, long numElements, int bucketsPer, boolean offheap)
+    {
+        return createFilter(hash, numElements, bucketsPer, offheap, Type.STANDARD);
+    }
+
+    private static IFilter createFilter(int hash, long numElements, int bucketsPer, boolean offheap, Type type)
     {
         long numBits = (numElements * bucketsPer) + BITSET_EXCESS;
+        if (type == Type.BLOCKED)
+            numBits = BlockedBloomFilter.roundToBlocks(numBits);
         IBitSet bitset = offheap ? new OffHeapBitSet(numBits) : new OpenBitSet(numBits);
-        return new Murmur3BloomFilter(hash, bitset);
+        return type == Type.BLOCKED ? new BlockedBloomFilter(hash, bitset) : new Murmur3BloomFilter(hash, bitset);
     }
 }
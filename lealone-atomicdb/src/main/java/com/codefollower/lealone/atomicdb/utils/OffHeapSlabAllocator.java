@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+
+/**
+ * A SlabAllocator whose regions are direct buffers, so the cell names and values (and partition keys)
+ * of a memtable are kept in native memory and never have to be copied or scanned by the old generation
+ * collector. Select it with memtable_allocator: OffHeapSlabAllocator.
+ * <p/>
+ * The memory is freed explicitly, with the cleaner of the direct buffers, when the memtable is released:
+ * it has left the DataTracker view and no read references it any more (see Memtable.releaseReference).
+ * Reads copy the cells they return to the heap, so nothing outlives the memtable that points into a
+ * freed region. If the cleaner cannot be used the regions are left to the garbage collector.
+ * <p/>
+ * Since every byte comes from a region or a direct allocation, the native memory used is known
+ * exactly, and the memtable does not need the liveRatio estimate for it.
+ */
+public class OffHeapSlabAllocator extends SlabAllocator
+{
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapSlabAllocator.class);
+
+    private static volatile boolean cleanerFailed = !FileUtils.isCleanerAvailable();
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    @Override
+    protected ByteBuffer allocateBuffer(int size)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    @Override
+    public void free()
+    {
+        ByteBuffer buffer;
+        while ((buffer = buffers.poll()) != null)
+        {
+            if (cleanerFailed)
+                continue;
+            try
+            {
+                // direct buffers are MappedByteBuffers, and have the same cleaner
+                FileUtils.clean((MappedByteBuffer) buffer);
+            }
+            catch (RuntimeException e)
+            {
+                cleanerFailed = true;
+                logger.warn("Cannot free off-heap memtable memory explicitly, leaving it to the garbage collector", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return true;
+    }
+
+    @Override
+    public long getOffHeapSize()
+    {
+        return getAllocatedSize();
+    }
+}
@@ -62,7 +62,7 @@ public class SlabAllocator extends Allocator
         if (size > MAX_CLONED_SIZE)
         {
             unslabbed.addAndGet(size);
-            return ByteBuffer.allocate(size);
+            return allocateBuffer(size);
         }
 
         while (true)
@@ -98,7 +98,7 @@ public class SlabAllocator extends Allocator
             if (currentRegion.compareAndSet(null, region))
             {
                 // we won race - now we need to actually do the expensive allocation step
-                region.init();
+                region.init(allocateBuffer(REGION_SIZE));
                 regionCount.incrementAndGet();
                 logger.trace("{} regions now allocated in {}", regionCount, this);
                 return region;
@@ -108,6 +108,14 @@ public class SlabAllocator extends Allocator
         }
     }
 
+    /**
+     * Allocate the memory of a region, or of an allocation too large for a region.
+     */
+    protected ByteBuffer allocateBuffer(int size)
+    {
+        return ByteBuffer.allocate(size);
+    }
+
     /**
      * @return a lower bound on how much space has been allocated
      */
@@ -116,6 +124,14 @@ public class SlabAllocator extends Allocator
         return unslabbed.get() + (regionCount.get() - 1) * (long)REGION_SIZE;
     }
 
+    /**
+     * @return the space allocated so far, including the unused part of the current region
+     */
+    protected long getAllocatedSize()
+    {
+        return unslabbed.get() + regionCount.get() * (long)REGION_SIZE;
+    }
+
     /**
      * A region of memory out of which allocations are sliced.
      *
@@ -164,10 +180,11 @@ public class SlabAllocator extends Allocator
          * the thread that constructed the region. It is thread-safe against other
          * threads calling alloc(), who will block until the allocation is complete.
          */
-        public void init()
+        public void init(ByteBuffer data)
         {
             assert nextFreeOffset.get() == UNINITIALIZED;
-            data = ByteBuffer.allocate(size);
+            assert data.capacity() == size;
+            this.data = data;
             assert data.remaining() == data.capacity();
             // Mark that it's ready for use
             boolean initted = nextFreeOffset.compareAndSet(UNINITIALIZED, 0);
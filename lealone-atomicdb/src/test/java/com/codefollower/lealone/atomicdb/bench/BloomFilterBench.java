@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.bench;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.codefollower.lealone.atomicdb.config.Config;
+import com.codefollower.lealone.atomicdb.utils.FilterFactory;
+import com.codefollower.lealone.atomicdb.utils.IFilter;
+
+/**
+ * 比较标准的BloomFilter(k个bit分布在整个bitset中)和BlockedBloomFilter(k个bit都在同一个64字节的block中)
+ * 的查找延迟和误判率。
+ *
+ * 为了模拟一次读要查询多个SSTable的情况，会同时创建多个filter，每个key依次查询所有filter，
+ * 所以filter的总大小应该远大于CPU的缓存。
+ *
+ * 用法: BloomFilterBench [每个filter的key数] [filter个数] [误判率]
+ */
+public class BloomFilterBench {
+    private static final int LOOKUPS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        long keys = args.length > 0 ? Long.parseLong(args[0]) : 2000000;
+        int filters = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        double fpChance = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+
+        //off-heap的bitset只需要默认配置
+        Config.setClientMode(true);
+
+        for (int i = 0; i < 2; i++) {
+            //第一轮是预热
+            boolean print = i > 0;
+            run(FilterFactory.Type.STANDARD, keys, filters, fpChance, print);
+            run(FilterFactory.Type.BLOCKED, keys, filters, fpChance, print);
+        }
+    }
+
+    private static void run(FilterFactory.Type type, long keys, int filters, double fpChance, boolean print)
+            throws Exception {
+        IFilter[] bfs = new IFilter[filters];
+        ByteBuffer key = ByteBuffer.allocate(16);
+        for (int f = 0; f < filters; f++) {
+            bfs[f] = FilterFactory.getFilter(keys, fpChance, true, type);
+            for (long k = 0; k < keys; k++) {
+                key.putLong(0, f).putLong(8, k);
+                bfs[f].add(key);
+            }
+        }
+
+        //查找的key都没有加入过filter，所以每次命中都是误判
+        Random random = new Random(1);
+        long falsePositives = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            key.putLong(0, -1 - random.nextInt(filters)).putLong(8, random.nextLong());
+            for (IFilter bf : bfs) {
+                if (bf.isPresent(key))
+                    falsePositives++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (print) {
+            long probes = (long) LOOKUPS * filters;
+            System.out.println(type + ": filter size=" + bfs[0].serializedSize() / 1024 + "KB" //
+                    + ", lookup=" + elapsed / probes + "ns" //
+                    + ", false positive rate=" + (double) falsePositives / probes);
+        }
+        for (IFilter bf : bfs)
+            bf.close();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.codefollower.lealone.atomicdb.utils.Allocator;
+import com.codefollower.lealone.atomicdb.utils.OffHeapSlabAllocator;
+import com.codefollower.lealone.atomicdb.utils.SlabAllocator;
+
+/**
+ * 以固定的写入速率把cell的name和value复制到memtable的allocator中，
+ * 比较SlabAllocator和OffHeapSlabAllocator的GC次数和GC时间。
+ *
+ * 为了模拟flush，每个memtable写满后还会保留几个memtable(相当于等待flush的memtable)，然后再丢弃。
+ *
+ * 用法: MemtableAllocatorBench [写入数/秒] [秒数] [value字节数]，建议加上-Xmx1g -verbose:gc
+ */
+public class MemtableAllocatorBench {
+    private static final int CELLS_PER_MEMTABLE = 200000;
+    private static final int PENDING_MEMTABLES = 3;
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int valueSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        //先各跑一次预热
+        run(new SlabAllocator(), rate, 2, valueSize, false);
+        run(new OffHeapSlabAllocator(), rate, 2, valueSize, false);
+
+        run(new SlabAllocator(), rate, seconds, valueSize, true);
+        run(new OffHeapSlabAllocator(), rate, seconds, valueSize, true);
+    }
+
+    private static void run(Allocator first, int rate, int seconds, int valueSize, boolean print) throws Exception {
+        System.gc();
+        long gcCount = getGcCount();
+        long gcTime = getGcTime();
+        long start = System.nanoTime();
+
+        Random random = new Random(1);
+        byte[] value = new byte[valueSize];
+        ArrayDeque<ConcurrentSkipListMap<ByteBuffer, ByteBuffer>> pending = new ArrayDeque<ConcurrentSkipListMap<ByteBuffer, ByteBuffer>>();
+        ConcurrentSkipListMap<ByteBuffer, ByteBuffer> memtable = new ConcurrentSkipListMap<ByteBuffer, ByteBuffer>();
+        Allocator allocator = first;
+        long writes = (long) rate * seconds;
+        long nanosPerBatch = 1000000000L / 100; //每秒分100批写入
+        int batch = Math.max(1, rate / 100);
+        for (long i = 0; i < writes; i++) {
+            ByteBuffer name = ByteBuffer.allocate(16);
+            name.putLong(0, random.nextLong()).putLong(8, i);
+            random.nextBytes(value);
+            memtable.put(allocator.clone(name), allocator.clone(ByteBuffer.wrap(value)));
+
+            if (memtable.size() >= CELLS_PER_MEMTABLE) {
+                pending.addLast(memtable);
+                if (pending.size() > PENDING_MEMTABLES)
+                    pending.removeFirst();
+                memtable = new ConcurrentSkipListMap<ByteBuffer, ByteBuffer>();
+                allocator = first.isOffHeap() ? new OffHeapSlabAllocator() : new SlabAllocator();
+            }
+
+            if ((i + 1) % batch == 0) {
+                long expected = start + (i + 1) / batch * nanosPerBatch;
+                long sleep = expected - System.nanoTime();
+                if (sleep > 0)
+                    Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (print) {
+            System.out.println(first.getClass().getSimpleName() + ": writes=" + writes //
+                    + ", elapsed=" + elapsed / 1000000 + "ms" //
+                    + ", gc count=" + (getGcCount() - gcCount) //
+                    + ", gc time=" + (getGcTime() - gcTime) + "ms");
+        }
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(0, gc.getCollectionTime());
+        return time;
+    }
+}
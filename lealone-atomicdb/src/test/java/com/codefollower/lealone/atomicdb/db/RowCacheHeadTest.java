@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.atomicdb.config.CFMetaData;
+import com.codefollower.lealone.atomicdb.config.LealoneConfigurationLoader;
+import com.codefollower.lealone.atomicdb.db.composites.CellName;
+import com.codefollower.lealone.atomicdb.db.composites.CellNames;
+import com.codefollower.lealone.atomicdb.db.composites.Composites;
+import com.codefollower.lealone.atomicdb.db.filter.ColumnSlice;
+import com.codefollower.lealone.atomicdb.db.filter.IDiskAtomFilter;
+import com.codefollower.lealone.atomicdb.db.filter.SliceQueryFilter;
+import com.codefollower.lealone.atomicdb.db.marshal.BytesType;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+
+public class RowCacheHeadTest
+{
+    //缓存每个分区的前5个cell
+    private static final int CELLS = 5;
+
+    private static CFMetaData metadata;
+
+    @BeforeClass
+    public static void setUp()
+    {
+        System.setProperty("cassandra.config", "lealone.yaml");
+        System.setProperty("cassandra.config.loader", LealoneConfigurationLoader.class.getCanonicalName());
+        metadata = CFMetaData.denseCFMetaData("RowCacheHeadTest", "Standard1", BytesType.instance);
+    }
+
+    @Test
+    public void run()
+    {
+        testForward();
+        testBounded();
+        testReversed();
+        testMultiSlice();
+        testShortHead();
+        testHeadOf();
+    }
+
+    //从分区开头查询，缓存中的cell多于count个才能回答
+    void testForward()
+    {
+        ColumnFamily head = cf(0, CELLS);
+        assertTrue(covered(new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, false, 3), head));
+        assertTrue(covered(new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, false, 4), head));
+        assertFalse(covered(new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, false, 5), head));
+    }
+
+    //有边界的slice，只统计slice选中的cell
+    void testBounded()
+    {
+        ColumnFamily head = cf(0, CELLS);
+        assertTrue(covered(new SliceQueryFilter(Composites.EMPTY, name(3), false, 100), head));
+        assertTrue(covered(new SliceQueryFilter(name(2), name(6), false, 2), head));
+        assertFalse(covered(new SliceQueryFilter(name(2), name(6), false, 3), head));
+        assertFalse(covered(new SliceQueryFilter(name(5), Composites.EMPTY, false, 1), head));
+    }
+
+    //反向查询要读到缓存之后的cell时不能用缓存
+    void testReversed()
+    {
+        ColumnFamily head = cf(0, CELLS);
+        assertTrue(covered(new SliceQueryFilter(name(4), Composites.EMPTY, true, 100), head));
+        assertFalse(covered(new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, true, 1), head));
+        assertFalse(covered(new SliceQueryFilter(name(6), Composites.EMPTY, true, 1), head));
+    }
+
+    //多个slice时，第二个slice落在缓存之外
+    void testMultiSlice()
+    {
+        ColumnFamily head = cf(0, CELLS);
+        ColumnSlice[] slices = new ColumnSlice[] { new ColumnSlice(Composites.EMPTY, name(1)),
+                                                   new ColumnSlice(name(7), Composites.EMPTY) };
+        assertFalse(covered(new SliceQueryFilter(slices, false, 2), head));
+        assertTrue(covered(new SliceQueryFilter(slices, false, 1), head));
+    }
+
+    //cell少于限制说明缓存的就是整个分区
+    void testShortHead()
+    {
+        ColumnFamily head = cf(0, CELLS - 2);
+        assertTrue(covered(new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, false, 100), head));
+        assertTrue(covered(new SliceQueryFilter(Composites.EMPTY, Composites.EMPTY, true, 100), head));
+        assertTrue(covered(new SliceQueryFilter(name(7), Composites.EMPTY, false, 1), head));
+    }
+
+    //从一次读出的更长的行中截取缓存的部分，删除的cell不计数
+    void testHeadOf()
+    {
+        long now = System.currentTimeMillis();
+        ColumnFamily row = cf(0, 10);
+        row.addColumn(new DeletedCell(name(1), (int) (now / 1000), 2));
+
+        ColumnFamily head = ColumnFamilyStore.headOf(row, CELLS, now);
+        assertEquals(CELLS + 1, head.getColumnCount());
+        assertEquals(name(5), head.getReverseSortedColumns().iterator().next().name());
+
+        assertEquals(row.getColumnCount(), ColumnFamilyStore.headOf(row, 100, now).getColumnCount());
+    }
+
+    private static boolean covered(IDiskAtomFilter filter, ColumnFamily head)
+    {
+        return ColumnFamilyStore.isFilterFullyCoveredBy(filter, head, CELLS, System.currentTimeMillis());
+    }
+
+    private static ColumnFamily cf(int from, int to)
+    {
+        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(metadata);
+        for (int i = from; i < to; i++)
+            cf.addColumn(new Cell(name(i), ByteBufferUtil.bytes(i), 1));
+        return cf;
+    }
+
+    private static CellName name(int i)
+    {
+        return CellNames.simpleDense(ByteBufferUtil.bytes(i));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.commitlog;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.atomicdb.config.CFMetaData;
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+import com.codefollower.lealone.atomicdb.config.KSMetaData;
+import com.codefollower.lealone.atomicdb.config.LealoneConfigurationLoader;
+import com.codefollower.lealone.atomicdb.config.Schema;
+import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.db.composites.CellNames;
+import com.codefollower.lealone.atomicdb.db.marshal.BytesType;
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+import com.codefollower.lealone.atomicdb.locator.SimpleStrategy;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+
+//commitlog_compression: true时写入的segment能完整重放，损坏的section及其后的记录不会被重放
+public class CommitLogReplayTest
+{
+    private static final String KEYSPACE = "CommitLogReplayTest";
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        System.setProperty("cassandra.config", "lealone.yaml");
+        System.setProperty("cassandra.config.loader", LealoneConfigurationLoader.class.getCanonicalName());
+
+        //在CommitLog创建第一个segment之前打开压缩
+        DatabaseDescriptor.setCommitLogCompression(true);
+        deleteRecursive(DatabaseDescriptor.getCommitLogLocation());
+        for (String dir : DatabaseDescriptor.getAllDataFileLocations())
+            deleteRecursive(dir);
+        DatabaseDescriptor.createAllDirectories();
+
+        Schema.instance.load(KSMetaData.testMetadata(KEYSPACE, SimpleStrategy.class, KSMetaData.optsWithRF(1),
+                                                     CFMetaData.denseCFMetaData(KEYSPACE, "Standard1", BytesType.instance),
+                                                     CFMetaData.denseCFMetaData(KEYSPACE, "Standard2", BytesType.instance)));
+        Keyspace.open(KEYSPACE);
+    }
+
+    private static void deleteRecursive(String dir)
+    {
+        if (new File(dir).exists())
+            FileUtils.deleteRecursive(new File(dir));
+    }
+
+    @Test
+    public void run() throws Exception
+    {
+        testReplay();
+        testCorruptedSection();
+    }
+
+    //包括大于一个压缩块的记录
+    void testReplay() throws Exception
+    {
+        for (int i = 0; i < 100; i++)
+            CommitLog.instance.add(mutation("Standard1", i, i % 10 == 0 ? 200 * 1024 : 100));
+
+        assertEquals(100, replay(copySegments()));
+    }
+
+    //batch模式下每次add都单独sync，所以每个section只有一条记录
+    void testCorruptedSection() throws Exception
+    {
+        for (int i = 0; i < 50; i++)
+            CommitLog.instance.add(mutation("Standard2", i, 100));
+
+        File dir = copySegments();
+        List<long[]> sections = new ArrayList<long[]>();
+        File last = null;
+        for (File file : segments(dir))
+        {
+            List<long[]> s = getSections(file);
+            if (!s.isEmpty())
+            {
+                sections = s;
+                last = file;
+            }
+        }
+        assertTrue(last != null && sections.size() >= 50);
+
+        //只改压缩后的数据，不改section的头
+        long[] section = sections.get(sections.size() - 10);
+        RandomAccessFile raf = new RandomAccessFile(last, "rw");
+        try
+        {
+            long position = section[0] + CommitLogSegment.COMPRESSED_MARKER_SIZE + section[1] / 2;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        //Standard1在第一次重放后已经flush，不会再重放；Standard2从损坏的section开始的10条记录都不重放
+        assertEquals(40, replay(dir));
+    }
+
+    private static Mutation mutation(String cfName, int key, int valueSize)
+    {
+        Mutation rm = new Mutation(KEYSPACE, ByteBufferUtil.bytes(key));
+        ByteBuffer value = ByteBuffer.allocate(valueSize);
+        for (int i = 0; i < valueSize; i++)
+            value.put(i, (byte) (i % 7)); //可以压缩
+        rm.add(cfName, CellNames.simpleDense(ByteBufferUtil.bytes("c")), value, key);
+        return rm;
+    }
+
+    private static int replay(File dir) throws IOException
+    {
+        CommitLogReplayer replayer = new CommitLogReplayer();
+        replayer.recover(segments(dir));
+        return replayer.blockForWrites();
+    }
+
+    private static File[] segments(File dir)
+    {
+        List<File> files = new ArrayList<File>();
+        for (File file : dir.listFiles())
+        {
+            if (CommitLogDescriptor.isValid(file.getName()))
+                files.add(file);
+        }
+        Collections.sort(files, new CommitLogSegment.CommitLogSegmentFileComparator());
+        return files.toArray(new File[files.size()]);
+    }
+
+    //复制当前的segment文件，重放复制的文件
+    private static File copySegments() throws IOException
+    {
+        File dir = FileUtils.createTempFile("commitlog", "");
+        FileUtils.deleteWithConfirm(dir);
+        FileUtils.createDirectory(dir);
+        for (File file : segments(new File(DatabaseDescriptor.getCommitLogLocation())))
+            Files.copy(file.toPath(), new File(dir, file.getName()).toPath());
+        return dir;
+    }
+
+    //返回每个section的位置和压缩后的长度
+    private static List<long[]> getSections(File file) throws IOException
+    {
+        List<long[]> sections = new ArrayList<long[]>();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            long position = 0;
+            while (position + CommitLogSegment.COMPRESSED_MARKER_SIZE <= raf.length())
+            {
+                raf.seek(position);
+                int end = raf.readInt();
+                int compressedLength = raf.readInt();
+                if (end == 0)
+                    break;
+                sections.add(new long[] { position, compressedLength });
+                position += CommitLogSegment.COMPRESSED_MARKER_SIZE + compressedLength;
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+        return sections;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.compaction;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.atomicdb.config.CFMetaData;
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+import com.codefollower.lealone.atomicdb.config.KSMetaData;
+import com.codefollower.lealone.atomicdb.config.LealoneConfigurationLoader;
+import com.codefollower.lealone.atomicdb.config.Schema;
+import com.codefollower.lealone.atomicdb.db.ColumnFamilyStore;
+import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.db.composites.CellNames;
+import com.codefollower.lealone.atomicdb.db.marshal.BytesType;
+import com.codefollower.lealone.atomicdb.io.sstable.SSTableReader;
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+import com.codefollower.lealone.atomicdb.locator.SimpleStrategy;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+
+//超过subrange_compaction_threshold_in_mb的compaction只对允许拆分的策略拆分
+public class SubRangeCompactionTest
+{
+    private static final String KEYSPACE = "SubRangeCompactionTest";
+    private static final int SSTABLES = 4;
+    private static final int KEYS_PER_SSTABLE = 300;
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        System.setProperty("cassandra.config", "lealone.yaml");
+        System.setProperty("cassandra.config.loader", LealoneConfigurationLoader.class.getCanonicalName());
+
+        deleteRecursive(DatabaseDescriptor.getCommitLogLocation());
+        for (String dir : DatabaseDescriptor.getAllDataFileLocations())
+            deleteRecursive(dir);
+        DatabaseDescriptor.createAllDirectories();
+
+        //4个sstable一共1.2M左右，超过拆分的阈值
+        DatabaseDescriptor.setConcurrentSubRangeCompactors(SSTABLES);
+        DatabaseDescriptor.setSubRangeCompactionThreshold(1);
+
+        //只按大小分组，不忽略没有读过的sstable
+        Map<String, String> sizeTieredOptions = new HashMap<>();
+        sizeTieredOptions.put("cold_reads_to_omit", "0.0");
+        Schema.instance.load(KSMetaData.testMetadata(KEYSPACE, SimpleStrategy.class, KSMetaData.optsWithRF(1),
+                                                     CFMetaData.denseCFMetaData(KEYSPACE, "Standard1", BytesType.instance)
+                                                               .compactionStrategyOptions(sizeTieredOptions),
+                                                     CFMetaData.denseCFMetaData(KEYSPACE, "Leveled1", BytesType.instance)
+                                                               .compactionStrategyClass(LeveledCompactionStrategy.class)));
+        Keyspace.open(KEYSPACE);
+    }
+
+    private static void deleteRecursive(String dir)
+    {
+        if (new File(dir).exists())
+            FileUtils.deleteRecursive(new File(dir));
+    }
+
+    @Test
+    public void run() throws Exception
+    {
+        testSizeTiered();
+        testLeveled();
+    }
+
+    //major compaction只输出一个sstable，STCS不会再选中它
+    void testSizeTiered() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore("Standard1");
+        assertFalse(cfs.getCompactionStrategy().supportsSubRangeCompaction());
+        cfs.disableAutoCompaction();
+        write(cfs);
+        assertEquals(SSTABLES, cfs.getSSTables().size());
+
+        cfs.forceMajorCompaction();
+        assertEquals(1, cfs.getSSTables().size());
+        assertEquals(SSTABLES * KEYS_PER_SSTABLE, SSTableReader.getApproximateKeyCount(cfs.getSSTables()), KEYS_PER_SSTABLE);
+
+        cfs.enableAutoCompaction(true);
+        assertNull(cfs.getCompactionStrategy().getNextBackgroundTask(cfs.gcBefore(System.currentTimeMillis())));
+        assertEquals(1, cfs.getSSTables().size());
+    }
+
+    //LCS拆分后输出的sstable互不重叠
+    void testLeveled() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore("Leveled1");
+        assertTrue(cfs.getCompactionStrategy().supportsSubRangeCompaction());
+        cfs.disableAutoCompaction();
+        write(cfs);
+
+        cfs.forceMajorCompaction();
+        List<SSTableReader> sstables = new ArrayList<>(cfs.getSSTables());
+        assertTrue(sstables.size() > 1);
+        Collections.sort(sstables, SSTableReader.sstableComparator);
+        for (int i = 1; i < sstables.size(); i++)
+            assertTrue(sstables.get(i - 1).last.compareTo(sstables.get(i).first) < 0);
+    }
+
+    private static void write(ColumnFamilyStore cfs)
+    {
+        ByteBuffer value = ByteBuffer.allocate(1024);
+        for (int i = 0; i < SSTABLES; i++)
+        {
+            for (int j = 0; j < KEYS_PER_SSTABLE; j++)
+            {
+                Mutation rm = new Mutation(KEYSPACE, ByteBufferUtil.bytes(i * KEYS_PER_SSTABLE + j));
+                rm.add(cfs.name, CellNames.simpleDense(ByteBufferUtil.bytes("c")), value, 0);
+                rm.applyUnsafe();
+            }
+            cfs.forceBlockingFlush();
+        }
+    }
+}
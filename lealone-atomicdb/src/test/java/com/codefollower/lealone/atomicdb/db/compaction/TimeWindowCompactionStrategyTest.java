@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.compaction;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.codefollower.lealone.atomicdb.utils.Pair;
+
+public class TimeWindowCompactionStrategyTest
+{
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void run() throws Exception
+    {
+        testWindowStart();
+        testNegativeWindowStart();
+        testWindows();
+    }
+
+    void testWindowStart()
+    {
+        assertEquals(0, TimeWindowCompactionStrategy.getWindowStart(0, HOUR));
+        assertEquals(0, TimeWindowCompactionStrategy.getWindowStart(HOUR - 1, HOUR));
+        assertEquals(HOUR, TimeWindowCompactionStrategy.getWindowStart(HOUR, HOUR));
+        assertEquals(3 * HOUR, TimeWindowCompactionStrategy.getWindowStart(3 * HOUR + 1234, HOUR));
+    }
+
+    //纪元之前的时间也向下取整
+    void testNegativeWindowStart()
+    {
+        assertEquals(-HOUR, TimeWindowCompactionStrategy.getWindowStart(-1, HOUR));
+        assertEquals(-HOUR, TimeWindowCompactionStrategy.getWindowStart(-HOUR, HOUR));
+        assertEquals(-2 * HOUR, TimeWindowCompactionStrategy.getWindowStart(-HOUR - 1, HOUR));
+    }
+
+    //按最大时间戳分组，最新的窗口排在最前面
+    void testWindows()
+    {
+        List<Pair<String, Long>> files = new ArrayList<Pair<String, Long>>();
+        files.add(Pair.create("a", 10L));
+        files.add(Pair.create("b", 2 * HOUR + 5));
+        files.add(Pair.create("c", HOUR - 1));
+        files.add(Pair.create("d", 2 * HOUR));
+        files.add(Pair.create("e", 5 * HOUR + 1));
+
+        NavigableMap<Long, List<String>> windows = TimeWindowCompactionStrategy.getWindows(files, HOUR);
+        assertEquals(Arrays.asList(5 * HOUR, 2 * HOUR, 0L), new ArrayList<Long>(windows.keySet()));
+        assertEquals(Arrays.asList("e"), windows.get(5 * HOUR));
+        assertEquals(Arrays.asList("b", "d"), windows.get(2 * HOUR));
+        assertEquals(Arrays.asList("a", "c"), windows.get(0L));
+        assertEquals(Long.valueOf(5 * HOUR), windows.firstKey());
+
+        //窗口更大时合并成一个
+        windows = TimeWindowCompactionStrategy.getWindows(files, TimeUnit.DAYS.toMillis(1));
+        assertEquals(1, windows.size());
+        assertEquals(5, windows.get(0L).size());
+
+        assertEquals(0, TimeWindowCompactionStrategy.getWindows(new ArrayList<Pair<String, Long>>(), HOUR).size());
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.db.hints;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.atomicdb.config.CFMetaData;
+import com.codefollower.lealone.atomicdb.config.DatabaseDescriptor;
+import com.codefollower.lealone.atomicdb.config.KSMetaData;
+import com.codefollower.lealone.atomicdb.config.LealoneConfigurationLoader;
+import com.codefollower.lealone.atomicdb.config.Schema;
+import com.codefollower.lealone.atomicdb.db.Keyspace;
+import com.codefollower.lealone.atomicdb.db.Mutation;
+import com.codefollower.lealone.atomicdb.db.SystemKeyspace;
+import com.codefollower.lealone.atomicdb.db.composites.CellName;
+import com.codefollower.lealone.atomicdb.db.composites.CellNames;
+import com.codefollower.lealone.atomicdb.db.marshal.BytesType;
+import com.codefollower.lealone.atomicdb.db.marshal.UUIDType;
+import com.codefollower.lealone.atomicdb.io.util.FileUtils;
+import com.codefollower.lealone.atomicdb.locator.SimpleStrategy;
+import com.codefollower.lealone.atomicdb.net.MessagingService;
+import com.codefollower.lealone.atomicdb.utils.ByteBufferUtil;
+import com.codefollower.lealone.atomicdb.utils.FBUtilities;
+import com.codefollower.lealone.atomicdb.utils.UUIDGen;
+
+public class HintsStoreTest
+{
+    private static final String KEYSPACE = "HintsStoreTest";
+    private static final String CF = "Standard1";
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        System.setProperty("cassandra.config", "lealone.yaml");
+        System.setProperty("cassandra.config.loader", LealoneConfigurationLoader.class.getCanonicalName());
+
+        deleteRecursive(DatabaseDescriptor.getCommitLogLocation());
+        for (String dir : DatabaseDescriptor.getAllDataFileLocations())
+            deleteRecursive(dir);
+        DatabaseDescriptor.createAllDirectories();
+
+        Schema.instance.load(KSMetaData.testMetadata(KEYSPACE, SimpleStrategy.class, KSMetaData.optsWithRF(1),
+                                                     CFMetaData.denseCFMetaData(KEYSPACE, CF, BytesType.instance)));
+        Keyspace.open(KEYSPACE);
+    }
+
+    private static void deleteRecursive(String dir)
+    {
+        if (new File(dir).exists())
+            FileUtils.deleteRecursive(new File(dir));
+    }
+
+    @Test
+    public void run() throws Exception
+    {
+        testBatch();
+        testCorruptBatch();
+        testStore();
+        testResume();
+        testLegacyHints();
+    }
+
+    void testBatch() throws Exception
+    {
+        HintsBatch.Builder builder = new HintsBatch.Builder();
+        assertTrue(builder.isEmpty());
+        builder.add(mutation(1), 1000, 60);
+        builder.add(mutation(2), 2000, 120);
+        ByteBuffer batch = builder.build();
+        assertTrue(HintsBatch.verify(batch));
+        assertEquals(2, HintsBatch.count(batch));
+
+        ByteBuffer read = HintsBatch.read(input(batch, batch.remaining()));
+        assertEquals(batch, read);
+
+        List<HintsBatch.Hint> hints = HintsBatch.decode(read);
+        assertEquals(2, hints.size());
+        assertEquals(ByteBufferUtil.bytes(2), hints.get(1).mutation.key());
+        assertEquals(2000, hints.get(1).createdAt);
+        assertEquals(120, hints.get(1).ttl);
+        assertTrue(hints.get(0).isLive(1000 + 59 * 1000));
+        assertFalse(hints.get(0).isLive(1000 + 60 * 1000));
+    }
+
+    //被截断或者损坏的batch不会被读出来
+    void testCorruptBatch() throws Exception
+    {
+        HintsBatch.Builder builder = new HintsBatch.Builder();
+        builder.add(mutation(1), 1000, 60);
+        ByteBuffer batch = builder.build();
+
+        assertNull(HintsBatch.read(input(batch, batch.remaining() - 1)));
+        assertNull(HintsBatch.read(input(batch, 0)));
+
+        ByteBuffer corrupt = ByteBufferUtil.clone(batch);
+        int position = HintsBatch.HEADER_SIZE + 10;
+        corrupt.put(position, (byte) (corrupt.get(position) ^ 0xFF));
+        assertFalse(HintsBatch.verify(corrupt));
+        assertNull(HintsBatch.read(input(corrupt, corrupt.remaining())));
+    }
+
+    void testStore() throws Exception
+    {
+        HintsStore store = new HintsStore(createDirectory());
+        UUID hostId = UUID.randomUUID();
+        assertFalse(store.hasHints(hostId));
+
+        //缓冲中的hint也算
+        store.write(hostId, mutation(1), System.currentTimeMillis(), 60);
+        assertTrue(store.hasHints(hostId));
+        assertEquals(Arrays.asList(hostId), new ArrayList<UUID>(store.hostsWithHints()));
+
+        List<File> files = store.closeAndList(hostId);
+        assertEquals(1, files.size());
+        assertEquals(1, readAll(store, files.get(0)).size());
+
+        //关闭后新的hint写到新的文件
+        store.write(hostId, mutation(2), System.currentTimeMillis(), 60);
+        files = store.closeAndList(hostId);
+        assertEquals(2, files.size());
+        assertEquals(ByteBufferUtil.bytes(2), HintsBatch.decode(readAll(store, files.get(1)).get(0)).get(0).mutation.key());
+
+        store.deleteAll(hostId);
+        assertFalse(store.hasHints(hostId));
+        assertEquals(0, store.closeAndList(hostId).size());
+    }
+
+    //从最后一个确认的batch之后继续发送
+    void testResume() throws Exception
+    {
+        HintsStore store = new HintsStore(createDirectory());
+        UUID hostId = UUID.randomUUID();
+        for (int i = 0; i < 3; i++)
+        {
+            store.write(hostId, mutation(i), System.currentTimeMillis(), 60);
+            store.flushAll();
+        }
+        File file = store.closeAndList(hostId).get(0);
+        List<ByteBuffer> batches = readAll(store, file);
+        assertEquals(3, batches.size());
+
+        store.markDispatched(file, batches.get(0).remaining());
+        List<ByteBuffer> rest = readAll(store, file);
+        assertEquals(batches.subList(1, 3), rest);
+
+        store.markDispatched(file, file.length());
+        assertEquals(0, readAll(store, file).size());
+
+        store.delete(file);
+        assertFalse(file.exists());
+        assertEquals(0, store.getDispatchOffset(file));
+    }
+
+    //system.hints中的hint移到文件中，保留创建时间和ttl
+    void testLegacyHints() throws Exception
+    {
+        UUID hostId = UUID.randomUUID();
+        long createdAt = System.currentTimeMillis() - 1000;
+        for (int i = 0; i < 3; i++)
+            writeLegacyHint(hostId, mutation(i), createdAt + i, 3600);
+
+        HintsStore store = new HintsStore(createDirectory());
+        assertEquals(3, LegacyHintsMigrator.migrate(store));
+        assertTrue(Keyspace.open(Keyspace.SYSTEM_KS).getColumnFamilyStore(SystemKeyspace.HINTS_CF).isEmpty());
+
+        List<HintsBatch.Hint> hints = new ArrayList<>();
+        for (File file : store.closeAndList(hostId))
+        {
+            for (ByteBuffer batch : readAll(store, file))
+                hints.addAll(HintsBatch.decode(batch));
+        }
+        assertEquals(3, hints.size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(ByteBufferUtil.bytes(i), hints.get(i).mutation.key());
+            assertEquals(createdAt + i, hints.get(i).createdAt);
+            assertEquals(3600, hints.get(i).ttl);
+        }
+
+        //表已经空了，不会再迁移
+        assertEquals(0, LegacyHintsMigrator.migrate(store));
+    }
+
+    //以前的版本写入system.hints的格式
+    private static void writeLegacyHint(UUID hostId, Mutation mutation, long createdAt, int ttl)
+    {
+        CellName name = CFMetaData.HintsCf.comparator.makeCellName(UUIDGen.getTimeUUID(), MessagingService.current_version);
+        ByteBuffer value = ByteBuffer.wrap(FBUtilities.serialize(mutation, Mutation.serializer, MessagingService.current_version));
+        Mutation hint = new Mutation(Keyspace.SYSTEM_KS, UUIDType.instance.decompose(hostId));
+        hint.add(SystemKeyspace.HINTS_CF, name, value, createdAt, ttl);
+        hint.applyUnsafe();
+    }
+
+    private static Mutation mutation(int key)
+    {
+        Mutation rm = new Mutation(KEYSPACE, ByteBufferUtil.bytes(key));
+        rm.add(CF, CellNames.simpleDense(ByteBufferUtil.bytes("c")), ByteBufferUtil.bytes(key), key);
+        return rm;
+    }
+
+    private static DataInputStream input(ByteBuffer batch, int length)
+    {
+        return new DataInputStream(new ByteArrayInputStream(batch.array(), batch.arrayOffset() + batch.position(), length));
+    }
+
+    private static List<ByteBuffer> readAll(HintsStore store, File file) throws IOException
+    {
+        List<ByteBuffer> batches = new ArrayList<>();
+        try (DataInputStream in = store.openForDispatch(file))
+        {
+            ByteBuffer batch;
+            while ((batch = HintsBatch.read(in)) != null)
+                batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static File createDirectory() throws IOException
+    {
+        File dir = FileUtils.createTempFile("hints", "");
+        FileUtils.deleteWithConfirm(dir);
+        FileUtils.createDirectory(dir);
+        return dir;
+    }
+}
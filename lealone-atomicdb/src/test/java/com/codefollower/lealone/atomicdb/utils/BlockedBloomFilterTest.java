@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.atomicdb.utils;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.atomicdb.config.LealoneConfigurationLoader;
+
+public class BlockedBloomFilterTest
+{
+    private static final int KEYS = 100000;
+    private static final int LOOKUPS = 200000;
+
+    @BeforeClass
+    public static void setUp()
+    {
+        //off-heap的bitset要用到配置
+        System.setProperty("cassandra.config", "lealone.yaml");
+        System.setProperty("cassandra.config.loader", LealoneConfigurationLoader.class.getCanonicalName());
+    }
+
+    @Test
+    public void run() throws Exception
+    {
+        testFalsePositiveRate(0.01);
+        testFalsePositiveRate(0.1);
+        testSerialization();
+        testHashRange();
+    }
+
+    private static ByteBuffer key(long k)
+    {
+        ByteBuffer key = ByteBuffer.allocate(8);
+        key.putLong(0, k);
+        return key;
+    }
+
+    private static IFilter newFilter(double fpChance)
+    {
+        IFilter bf = FilterFactory.getFilter(KEYS, fpChance, false, FilterFactory.Type.BLOCKED);
+        assertTrue(bf instanceof BlockedBloomFilter);
+        for (long k = 0; k < KEYS; k++)
+            bf.add(key(k));
+        return bf;
+    }
+
+    //加入过的key一定能找到，没有加入过的key误判率不超过要求的值
+    void testFalsePositiveRate(double fpChance) throws Exception
+    {
+        IFilter bf = newFilter(fpChance);
+        for (long k = 0; k < KEYS; k++)
+            assertTrue(bf.isPresent(key(k)));
+
+        int falsePositives = 0;
+        for (long k = KEYS; k < KEYS + LOOKUPS; k++)
+        {
+            if (bf.isPresent(key(k)))
+                falsePositives++;
+        }
+        double rate = (double) falsePositives / LOOKUPS;
+        assertTrue("false positive rate " + rate + " above " + fpChance, rate <= fpChance);
+        bf.close();
+    }
+
+    //反序列化后的filter还是BlockedBloomFilter，结果和原来的完全一样
+    void testSerialization() throws Exception
+    {
+        IFilter bf = newFilter(0.01);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        FilterFactory.serialize(bf, out);
+        out.close();
+        assertEquals(bf.serializedSize(), bytes.size());
+
+        for (boolean offheap : new boolean[] { false, true })
+        {
+            IFilter bf2 = FilterFactory.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), offheap);
+            assertTrue(bf2 instanceof BlockedBloomFilter);
+            assertEquals(bf.serializedSize(), bf2.serializedSize());
+            for (long k = 0; k < KEYS + LOOKUPS; k++)
+                assertEquals(bf.isPresent(key(k)), bf2.isPresent(key(k)));
+            bf2.close();
+        }
+        bf.close();
+    }
+
+    //只对给定范围内的字节做hash
+    void testHashRange() throws Exception
+    {
+        BlockedBloomFilter bf = (BlockedBloomFilter) newFilter(0.01);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(0, -1).putLong(4, 42);
+        assertTrue(Arrays.equals(bf.hash(key(42), 0, 8, 0L), bf.hash(buffer, 4, 8, 0L)));
+        assertFalse(Arrays.equals(bf.hash(key(42), 0, 8, 0L), bf.hash(buffer, 0, 8, 0L)));
+        bf.close();
+    }
+}
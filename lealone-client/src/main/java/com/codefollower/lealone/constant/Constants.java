@@ -88,6 +88,16 @@ public class Constants {
      */
     public static final int TCP_PROTOCOL_VERSION_12 = 12;
 
+    /**
+     * The TCP protocol version number 13.
+     */
+    public static final int TCP_PROTOCOL_VERSION_13 = 13;
+
+    /**
+     * The TCP protocol version number 14.
+     */
+    public static final int TCP_PROTOCOL_VERSION_14 = 14;
+
     /**
      * The major version of this database.
      */
@@ -192,7 +202,11 @@ public class Constants {
     /**
      * The number of milliseconds after which to check for a deadlock if locking
      * is not successful.
+     *
+     * @deprecated deadlocks are detected when a session starts to wait for a
+     *             lock, waiting sessions no longer poll
      */
+    @Deprecated
     public static final int DEADLOCK_CHECK = 100;
 
     /**
@@ -56,6 +56,19 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeSample = get("ANALYZE_SAMPLE", 10000);
 
+    /**
+     * Database setting <code>CSV_LOAD_BATCH_SIZE</code> (default: 1000).<br />
+     * The number of rows the CSVLOAD function writes with one statement.
+     */
+    public final int csvLoadBatchSize = get("CSV_LOAD_BATCH_SIZE", 1000);
+
+    /**
+     * Database setting <code>CSV_LOAD_THREADS</code> (default: 0).<br />
+     * The number of threads the CSVLOAD function uses to parse a file. The
+     * value 0 means the number of available processors.
+     */
+    public final int csvLoadThreads = get("CSV_LOAD_THREADS", 0);
+
     /**
      * Database setting <code>DATABASE_TO_UPPER</code> (default: true).<br />
      * Database short names are converted to uppercase for the DATABASE()
@@ -139,6 +152,14 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean largeTransactions = get("LARGE_TRANSACTIONS", true);
 
+    /**
+     * Database setting <code>LINKED_CONNECTION_POOL_SIZE</code>
+     * (default: 4).<br />
+     * The maximum number of JDBC connections that are opened to the same
+     * database for linked tables.
+     */
+    public final int linkedConnectionPoolSize = get("LINKED_CONNECTION_POOL_SIZE", 4);
+
     /**
      * Database setting <code>MAX_COMPACT_COUNT</code>
      * (default: Integer.MAX_VALUE).<br />
@@ -161,6 +182,15 @@ public class DbSettings extends SettingsBase {
      */
     public final int maxMemoryRowsDistinct = get("MAX_MEMORY_ROWS_DISTINCT", 10000);
 
+    /**
+     * Database setting <code>METRICS_STATEMENT_COUNT</code> (default: 1000).<br />
+     * The maximum number of distinct statements (SQL text without literals)
+     * for which execution metrics are kept, see
+     * INFORMATION_SCHEMA.STATEMENT_STATISTICS. If there are more, the least
+     * recently used statement is removed. The value 0 disables the metrics.
+     */
+    public final int metricsStatementCount = get("METRICS_STATEMENT_COUNT", 1000);
+
     /**
      * Database setting <code>MAX_QUERY_TIMEOUT</code> (default: 0).<br />
      * The maximum timeout of a query in milliseconds. The default is 0, meaning
@@ -264,6 +294,15 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean pageStoreTrim = get("PAGE_STORE_TRIM", true);
 
+    /**
+     * Database setting <code>PLAN_CACHE_SIZE</code> (default: 256).<br />
+     * The number of distinct SQL statements kept in the database wide plan
+     * cache. Idle statements of closed sessions and internal statements are
+     * put in this cache so that other sessions can re-use them without parsing
+     * and optimizing them again. Set to 0 to disable the plan cache.
+     */
+    public final int planCacheSize = get("PLAN_CACHE_SIZE", 256);
+
     /**
      * Database setting <code>QUERY_CACHE_SIZE</code> (default: 8).<br />
      * The size of the query cache, in number of cached statements. Each session
@@ -136,6 +136,17 @@ public class SysProperties {
      */
     public static final String CLIENT_TRACE_DIRECTORY = getProperty("client.trace.directory", "trace.db/");
 
+    /**
+     * System property <code>client.result.prefetch</code> (default: false).<br />
+     * Request the next batch of a remote result set as soon as the current
+     * batch was received, so that the rows are transferred while the
+     * application processes the current batch. This keeps up to two batches
+     * of each open result set in client memory, and the batch size grows
+     * while the application waits for rows, so it is off by default. It can
+     * also be enabled for a connection with PREFETCH_RESULT=TRUE.
+     */
+    public static final boolean CLIENT_RESULT_PREFETCH = getProperty("client.result.prefetch", false);
+
     /**
      * System property <code>collator.cache.size</code> (default: 32000).<br />
      * The cache size for collation keys (in elements). Used when a collator has
@@ -307,6 +318,14 @@ public class SysProperties {
      */
     public static final int SERVER_RESULT_SET_FETCH_SIZE = getProperty("server.resultset.fetch.size", 100);
 
+    /**
+     * System property <code>server.resultset.compress.threshold</code>
+     * (default: 4096).<br />
+     * If a connection was opened with COMPRESS_RESULT, result set batches
+     * smaller than this number of bytes are sent uncompressed.
+     */
+    public static final int SERVER_RESULT_SET_COMPRESS_THRESHOLD = getProperty("server.resultset.compress.threshold", 4096);
+
     /**
      * System property <code>socket.connect.retry</code> (default: 16).<br />
      * The number of times to retry opening a socket. Windows sometimes fails
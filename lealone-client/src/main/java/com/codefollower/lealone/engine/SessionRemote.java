@@ -25,6 +25,7 @@ import com.codefollower.lealone.jdbc.JdbcSQLException;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.message.Trace;
 import com.codefollower.lealone.message.TraceSystem;
+import com.codefollower.lealone.result.ResultRemote;
 import com.codefollower.lealone.store.DataHandler;
 import com.codefollower.lealone.store.FileStore;
 import com.codefollower.lealone.store.LobStorage;
@@ -64,6 +65,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
     public static final int SESSION_SET_AUTOCOMMIT = 15;
     public static final int SESSION_UNDO_LOG_POS = 16;
     public static final int LOB_READ = 17;
+    public static final int SESSION_SET_COMPRESS_RESULT = 18;
 
     public static final int COMMAND_EXECUTE_DISTRIBUTED_QUERY = 100;
     public static final int COMMAND_EXECUTE_DISTRIBUTED_UPDATE = 101;
@@ -105,6 +107,9 @@ public class SessionRemote extends SessionWithState implements DataHandler {
     private LobStorage lobStorage;
     private boolean cluster;
     private Transaction transaction;
+    private String compressResult;
+    private ResultRemote prefetchingResult;
+    private boolean prefetchResult = SysProperties.CLIENT_RESULT_PREFETCH;
 
     public SessionRemote(ConnectionInfo ci) {
         this.connectionInfo = ci;
@@ -116,7 +121,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         trans.setSSL(ci.isSSL());
         trans.init();
         trans.writeInt(Constants.TCP_PROTOCOL_VERSION_6);
-        trans.writeInt(Constants.TCP_PROTOCOL_VERSION_12);
+        trans.writeInt(Constants.TCP_PROTOCOL_VERSION_14);
         trans.writeString(db);
         trans.writeString(ci.getOriginalURL());
         trans.writeString(ci.getUserName());
@@ -134,6 +139,12 @@ public class SessionRemote extends SessionWithState implements DataHandler {
             trans.writeInt(SessionRemote.SESSION_SET_ID);
             trans.writeString(sessionId);
             done(trans);
+            if (compressResult != null && clientVersion >= Constants.TCP_PROTOCOL_VERSION_13) {
+                trans.writeInt(SessionRemote.SESSION_SET_COMPRESS_RESULT);
+                trans.writeString(compressResult);
+                done(trans);
+                trans.setCompressResult(compressResult);
+            }
         } catch (DbException e) {
             trans.close();
             throw e;
@@ -398,6 +409,9 @@ public class SessionRemote extends SessionWithState implements DataHandler {
                 }
             }
         }
+        // the server is told about it after the handshake, see initTransfer
+        compressResult = ci.removeProperty("COMPRESS_RESULT", compressResult);
+        prefetchResult = ci.removeProperty("PREFETCH_RESULT", prefetchResult);
         cipher = ci.getProperty("CIPHER");
         if (cipher != null) {
             fileEncryptionKey = MathUtils.secureRandomBytes(32);
@@ -584,6 +598,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
      *             and server
      */
     public void done(Transfer transfer) throws IOException {
+        readPrefetchedRows();
         //正常来讲不会出现这种情况，如果出现了，说明存在bug，找出为什么transfer的输入流没正常读完的原因
         if (transfer.available() > 0) {
             throw DbException.throwInternalError("before transfer flush, the available bytes was " + transfer.available());
@@ -604,6 +619,47 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         }
     }
 
+    /**
+     * Remember the result that has sent a RESULT_FETCH_ROWS request without
+     * reading the response yet. Responses arrive in the order of the requests,
+     * so the outstanding rows are read before any other response.
+     *
+     * @param result the result
+     */
+    public void setPrefetchingResult(ResultRemote result) throws IOException {
+        readPrefetchedRows();
+        prefetchingResult = result;
+    }
+
+    /**
+     * Forget the prefetching result, because it reads the response itself.
+     *
+     * @param result the result
+     */
+    public void removePrefetchingResult(ResultRemote result) {
+        if (prefetchingResult == result) {
+            prefetchingResult = null;
+        }
+    }
+
+    /**
+     * Check if remote results of this session request the next batch of rows
+     * before the application needs it.
+     *
+     * @return true if results prefetch
+     */
+    public boolean isPrefetchResult() {
+        return prefetchResult;
+    }
+
+    private void readPrefetchedRows() throws IOException {
+        if (prefetchingResult != null) {
+            ResultRemote result = prefetchingResult;
+            prefetchingResult = null;
+            result.readPrefetchedRows();
+        }
+    }
+
     public void parseError(Transfer transfer) throws IOException {
         String sqlstate = transfer.readString();
         String message = transfer.readString();
@@ -9,6 +9,7 @@ package com.codefollower.lealone.result;
 import java.io.IOException;
 import java.util.ArrayList;
 
+import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.constant.SysProperties;
 import com.codefollower.lealone.engine.SessionRemote;
 import com.codefollower.lealone.message.DbException;
@@ -19,6 +20,18 @@ import com.codefollower.lealone.value.Value;
 
 public abstract class ResultRemote implements ResultInterface {
 
+    /**
+     * The upper bound of the estimated size of a batch when the fetch size is
+     * increased.
+     */
+    private static final int MAX_BATCH_MEMORY = 4 * 1024 * 1024;
+
+    /**
+     * If the application had to wait longer than this for a prefetched batch,
+     * the next batches are made larger.
+     */
+    private static final long PREFETCH_WAIT_NANOS = 1000000;
+
     protected int fetchSize;
     protected SessionRemote session;
     protected Transfer transfer;
@@ -30,6 +43,21 @@ public abstract class ResultRemote implements ResultInterface {
     protected ArrayList<Value[]> result;
     protected final Trace trace;
 
+    /**
+     * The number of rows of the outstanding RESULT_FETCH_ROWS request, or 0.
+     */
+    private int prefetchSize;
+    private int nextFetchSize;
+    private ArrayList<Value[]> prefetched;
+    private boolean prefetchedEnd;
+    private DbException prefetchError;
+
+    /**
+     * The time the server spent executing the query and producing the rows
+     * read so far, in nanoseconds.
+     */
+    private long serverNanos;
+
     public ResultRemote(SessionRemote session, Transfer transfer, int id, int columnCount, int rowCount, int fetchSize)
             throws IOException {
         this.session = session;
@@ -44,6 +72,7 @@ public abstract class ResultRemote implements ResultInterface {
         rowId = -1;
         result = New.arrayList();
         this.fetchSize = fetchSize;
+        nextFetchSize = fetchSize;
         fetchRows(false);
     }
 
@@ -100,6 +129,7 @@ public abstract class ResultRemote implements ResultInterface {
         synchronized (session) {
             session.checkClosed();
             try {
+                discardPrefetch();
                 session.traceOperation("RESULT_RESET", id);
                 transfer.writeInt(SessionRemote.RESULT_RESET).writeInt(id).flush();
             } catch (IOException e) {
@@ -131,6 +161,7 @@ public abstract class ResultRemote implements ResultInterface {
         // TODO result sets: no reset possible for larger remote result sets
         try {
             synchronized (session) {
+                discardPrefetch();
                 session.traceOperation("RESULT_CLOSE", id);
                 transfer.writeInt(SessionRemote.RESULT_CLOSE).writeInt(id);
             }
@@ -183,12 +214,185 @@ public abstract class ResultRemote implements ResultInterface {
 
     public void setFetchSize(int fetchSize) {
         this.fetchSize = fetchSize;
+        nextFetchSize = fetchSize;
     }
 
     public boolean needToClose() {
         return true;
     }
 
+    /**
+     * Get the time the server spent executing the query and producing the
+     * rows read so far. The rest of the time spent waiting for rows is network
+     * and transfer time. Servers that use a protocol version older than 14
+     * don't send this time, in this case 0 is returned.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getServerNanos() {
+        return serverNanos;
+    }
+
+    /**
+     * Get the next batch of rows, either from the outstanding prefetch request
+     * or by sending a new request. The rows are appended to the current batch.
+     *
+     * @param count the number of rows to request if nothing was prefetched
+     * @return true if the server marked the end of the result
+     */
+    protected boolean fetchBatch(int count) throws IOException {
+        if (prefetchSize > 0) {
+            session.removePrefetchingResult(this);
+            long start = System.nanoTime();
+            boolean isEnd = receivePrefetch(result);
+            adjustFetchSize(System.nanoTime() - start);
+            return isEnd;
+        } else if (prefetched != null || prefetchError != null) {
+            DbException e = prefetchError;
+            prefetchError = null;
+            if (e != null) {
+                prefetched = null;
+                throw e;
+            }
+            result.addAll(prefetched);
+            prefetched = null;
+            return prefetchedEnd;
+        }
+        sendFetch(count);
+        return readRows(result, count);
+    }
+
+    /**
+     * Request the next batch of rows without waiting for the response. The
+     * response is read by the next fetchBatch call, or by the session if
+     * another request is sent on the same connection first.
+     *
+     * @param count the maximum number of rows
+     */
+    protected void prefetch(int count) throws IOException {
+        if (!session.isPrefetchResult() || count <= 0 || fetchSize == Integer.MAX_VALUE) {
+            return;
+        }
+        session.setPrefetchingResult(this);
+        session.traceOperation("RESULT_FETCH_ROWS", id);
+        transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).writeInt(id).writeInt(count);
+        transfer.flush();
+        prefetchSize = count;
+    }
+
+    /**
+     * Get the number of rows to request with the next fetch. It starts with
+     * the fetch size and grows while the application has to wait for rows.
+     *
+     * @return the number of rows
+     */
+    protected int getNextFetchSize() {
+        return nextFetchSize;
+    }
+
+    /**
+     * Read the response of the outstanding prefetch request and keep the rows
+     * until they are needed. This is called by the session before another
+     * response is read from the same connection.
+     */
+    public void readPrefetchedRows() throws IOException {
+        if (prefetchSize <= 0) {
+            return;
+        }
+        ArrayList<Value[]> rows = New.arrayList();
+        try {
+            prefetchedEnd = receivePrefetch(rows);
+        } catch (DbException e) {
+            prefetchError = e;
+        }
+        prefetched = rows;
+    }
+
+    private boolean receivePrefetch(ArrayList<Value[]> rows) throws IOException {
+        int count = prefetchSize;
+        prefetchSize = 0;
+        int status = transfer.readInt();
+        if (status == SessionRemote.STATUS_ERROR) {
+            session.parseError(transfer);
+        }
+        return readRows(rows, count);
+    }
+
+    private void discardPrefetch() throws IOException {
+        if (prefetchSize > 0) {
+            session.removePrefetchingResult(this);
+            readPrefetchedRows();
+        }
+        prefetched = null;
+        prefetchError = null;
+    }
+
+    private void adjustFetchSize(long waitNanos) {
+        int size = result.size();
+        if (waitNanos < PREFETCH_WAIT_NANOS || size < nextFetchSize) {
+            return;
+        }
+        long memory = 0;
+        for (Value[] row : result) {
+            for (Value v : row) {
+                memory += v.getMemory();
+            }
+        }
+        long maxRows = Math.max(fetchSize, MAX_BATCH_MEMORY / Math.max(1, memory / size));
+        nextFetchSize = (int) Math.min(maxRows, 2L * nextFetchSize);
+    }
+
+    /**
+     * Read at most count rows sent by the server and append them to the
+     * current batch.
+     *
+     * @param count the maximum number of rows
+     * @return true if the server marked the end of the result
+     */
+    protected boolean readRows(int count) throws IOException {
+        return readRows(result, count);
+    }
+
+    /**
+     * Read at most count rows sent by the server.
+     *
+     * @param rows the list to add the rows to
+     * @param count the maximum number of rows
+     * @return true if the server marked the end of the result
+     */
+    private boolean readRows(ArrayList<Value[]> rows, int count) throws IOException {
+        if (count <= 0) {
+            return false;
+        }
+        boolean isEnd = false;
+        transfer.beginReadResultBatch();
+        try {
+            int len = columns.length;
+            for (int r = 0; r < count; r++) {
+                boolean row = transfer.readBoolean();
+                if (!row) {
+                    isEnd = true;
+                    break;
+                }
+                Value[] values = new Value[len];
+                for (int i = 0; i < len; i++) {
+                    Value v = transfer.readValue();
+                    values[i] = v;
+                }
+                rows.add(values);
+            }
+            if (transfer.getVersion() >= Constants.TCP_PROTOCOL_VERSION_14) {
+                serverNanos += transfer.readLong();
+            }
+        } finally {
+            transfer.endReadResultBatch();
+        }
+        if (isEnd && transfer.available() > 0) {
+            fetchRowsThrowException();
+        }
+        return isEnd;
+    }
+
     protected void fetchRowsThrowException() throws IOException {
         int available = transfer.available();
         if (transfer.readInt() == SessionRemote.STATUS_ERROR)
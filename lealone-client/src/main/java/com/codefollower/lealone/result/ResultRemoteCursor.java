@@ -11,7 +11,6 @@ import java.io.IOException;
 import com.codefollower.lealone.engine.SessionRemote;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.value.Transfer;
-import com.codefollower.lealone.value.Value;
 
 public class ResultRemoteCursor extends ResultRemote {
     //不能在这初始化为false，在super的构造函数中会调用fetchRows有可能把isEnd设为true了，
@@ -59,28 +58,15 @@ public class ResultRemoteCursor extends ResultRemote {
                 rowOffset += result.size();
                 result.clear();
                 if (sendFetch) {
-                    sendFetch(fetchSize);
-                }
-                for (int r = 0; r < fetchSize; r++) {
-                    boolean row = transfer.readBoolean();
-                    if (!row) {
-                        isEnd = true;
-                        if (transfer.available() > 0) {
-                            fetchRowsThrowException();
-                        }
-                        break;
-                    }
-                    int len = columns.length;
-                    Value[] values = new Value[len];
-                    for (int i = 0; i < len; i++) {
-                        Value v = transfer.readValue();
-                        values[i] = v;
-                    }
-                    result.add(values);
+                    isEnd = fetchBatch(getNextFetchSize());
+                } else {
+                    isEnd = readRows(fetchSize);
                 }
 
                 if (isEnd)
                     sendClose();
+                else
+                    prefetch(getNextFetchSize());
             } catch (IOException e) {
                 throw DbException.convertIOException(e, null);
             }
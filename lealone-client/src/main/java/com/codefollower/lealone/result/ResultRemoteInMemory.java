@@ -11,7 +11,6 @@ import java.io.IOException;
 import com.codefollower.lealone.engine.SessionRemote;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.value.Transfer;
-import com.codefollower.lealone.value.Value;
 
 /**
  * The client side part of a result set that is kept on the server.
@@ -48,28 +47,16 @@ public class ResultRemoteInMemory extends ResultRemote {
             try {
                 rowOffset += result.size();
                 result.clear();
-                int fetch = Math.min(fetchSize, rowCount - rowOffset);
                 if (sendFetch) {
-                    sendFetch(fetch);
+                    fetchBatch(Math.min(getNextFetchSize(), rowCount - rowOffset));
+                } else {
+                    readRows(Math.min(fetchSize, rowCount - rowOffset));
                 }
-                for (int r = 0; r < fetch; r++) {
-                    boolean row = transfer.readBoolean();
-                    if (!row) {
-                        if (transfer.available() > 0) {
-                            fetchRowsThrowException();
-                        }
-                        break;
-                    }
-                    int len = columns.length;
-                    Value[] values = new Value[len];
-                    for (int i = 0; i < len; i++) {
-                        Value v = transfer.readValue();
-                        values[i] = v;
-                    }
-                    result.add(values);
-                }
-                if (rowOffset + result.size() >= rowCount) {
+                int remaining = rowCount - rowOffset - result.size();
+                if (remaining <= 0) {
                     sendClose();
+                } else {
+                    prefetch(Math.min(getNextFetchSize(), remaining));
                 }
             } catch (IOException e) {
                 throw DbException.convertIOException(e, null);
@@ -8,6 +8,8 @@ package com.codefollower.lealone.value;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -24,12 +26,14 @@ import java.sql.Timestamp;
 
 import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.constant.SysProperties;
 import com.codefollower.lealone.engine.SessionInterface;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.message.TraceSystem;
 import com.codefollower.lealone.security.SHA256;
 import com.codefollower.lealone.store.Data;
 import com.codefollower.lealone.store.DataReader;
+import com.codefollower.lealone.tools.CompressTool;
 import com.codefollower.lealone.tools.SimpleResultSet;
 import com.codefollower.lealone.util.DataUtils;
 import com.codefollower.lealone.util.DateTimeUtils;
@@ -58,6 +62,13 @@ public class Transfer {
     private int version;
     private byte[] lobMacSalt;
 
+    private boolean compressResult;
+    private String compressAlgorithm;
+    private CompressTool compressTool;
+    private ByteArrayOutputStream batchBuffer;
+    private DataOutputStream batchOut;
+    private DataInputStream batchIn;
+
     /**
      * Create a new transfer object for the specified session.
      *
@@ -326,6 +337,82 @@ public class Transfer {
         }
     }
 
+    /**
+     * Enable or disable the compression of result set batches. Both sides of
+     * the connection must use the same setting.
+     *
+     * @param algorithm the compression algorithm used when writing (LZF,
+     *            DEFLATE), or null to disable compression
+     */
+    public void setCompressResult(String algorithm) {
+        compressResult = algorithm != null;
+        compressAlgorithm = algorithm;
+        if (compressResult && compressTool == null) {
+            compressTool = CompressTool.getInstance();
+        }
+    }
+
+    public boolean isCompressResult() {
+        return compressResult;
+    }
+
+    /**
+     * Start writing a batch of result rows. If result compression is enabled,
+     * the rows are buffered until endWriteResultBatch is called.
+     */
+    public void beginWriteResultBatch() {
+        if (!compressResult) {
+            return;
+        }
+        if (batchBuffer == null) {
+            batchBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        }
+        batchBuffer.reset();
+        batchOut = out;
+        out = new DataOutputStream(batchBuffer);
+    }
+
+    /**
+     * Finish writing a batch of result rows. Batches that are at least
+     * SERVER_RESULT_SET_COMPRESS_THRESHOLD bytes long are compressed.
+     */
+    public void endWriteResultBatch() throws IOException {
+        if (batchOut == null) {
+            return;
+        }
+        out.flush();
+        out = batchOut;
+        batchOut = null;
+        byte[] data = batchBuffer.toByteArray();
+        String algorithm = data.length < SysProperties.SERVER_RESULT_SET_COMPRESS_THRESHOLD ? "NO" : compressAlgorithm;
+        writeBytes(compressTool.compress(data, algorithm));
+    }
+
+    /**
+     * Start reading a batch of result rows. If result compression is enabled,
+     * the whole batch is read and expanded, and the rows are then read from
+     * memory until endReadResultBatch is called.
+     */
+    public void beginReadResultBatch() throws IOException {
+        if (!compressResult) {
+            return;
+        }
+        byte[] data = compressTool.expand(readBytes());
+        batchIn = in;
+        in = new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Finish reading a batch of result rows.
+     */
+    public void endReadResultBatch() {
+        if (batchIn == null) {
+            return;
+        }
+        in = batchIn;
+        batchIn = null;
+    }
+
     /**
      * Write a value.
      *
@@ -722,6 +809,10 @@ public class Transfer {
         this.version = version;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     public synchronized boolean isClosed() {
         return socket == null || socket.isClosed();
     }
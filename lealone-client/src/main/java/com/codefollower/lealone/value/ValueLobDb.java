@@ -49,7 +49,7 @@ public class ValueLobDb extends Value implements Value.ValueClob, Value.ValueBlo
     private FileStore tempFile;
     private String fileName;
 
-    private ValueLobDb(int type, LobStorage lobStorage, int tableId, long lobId, byte[] hmac, long precision) {
+    protected ValueLobDb(int type, LobStorage lobStorage, int tableId, long lobId, byte[] hmac, long precision) {
         this.type = type;
         this.lobStorage = lobStorage;
         this.tableId = tableId;
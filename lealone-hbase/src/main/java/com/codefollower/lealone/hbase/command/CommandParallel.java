@@ -33,6 +33,7 @@ import org.apache.hadoop.hbase.util.Threads;
 import com.codefollower.lealone.command.CommandInterface;
 import com.codefollower.lealone.command.CommandRemote;
 import com.codefollower.lealone.command.Prepared;
+import com.codefollower.lealone.command.dml.ExplainStatistics;
 import com.codefollower.lealone.command.dml.Select;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.hbase.command.dml.SQLRoutingInfo;
@@ -72,9 +73,17 @@ public class CommandParallel {
     public static ResultInterface executeQuery(Session session, SQLRoutingInfo sqlRoutingInfo, Select select, final int maxRows,
             final boolean scrollable) {
 
+        //执行EXPLAIN ANALYZE时统计每个远程命令和本地Region的执行时间
+        ExplainStatistics statistics = session.getExplainStatistics();
         List<CommandInterface> commands = new ArrayList<CommandInterface>();
         if (sqlRoutingInfo.remoteCommands != null) {
-            commands.addAll(sqlRoutingInfo.remoteCommands);
+            int i = 0;
+            for (CommandRemote c : sqlRoutingInfo.remoteCommands) {
+                if (statistics != null)
+                    commands.add(new ProfiledCommand(c, statistics, "remote command " + (++i) + ": " + c));
+                else
+                    commands.add(c);
+            }
         }
         if (sqlRoutingInfo.localRegions != null) {
             for (String regionName : sqlRoutingInfo.localRegions) {
@@ -84,7 +93,10 @@ public class CommandParallel {
                 if (p instanceof WithWhereClause) {
                     ((WithWhereClause) p).getWhereClauseSupport().setRegionName(regionName);
                 }
-                commands.add(new CommandWrapper(p));
+                if (statistics != null)
+                    commands.add(new ProfiledCommand(new CommandWrapper(p), statistics, "local region " + regionName));
+                else
+                    commands.add(new CommandWrapper(p));
             }
         }
         //originalSelect.isGroupQuery()如果是false，那么按org.apache.hadoop.hbase.client.ClientScanner的功能来实现。
@@ -112,14 +124,21 @@ public class CommandParallel {
             throwException(e);
         }
 
-        if (!select.isGroupQuery() && select.getSortOrder() != null)
-            return new HBaseSortedResult(maxRows, session, select, results);
-
-        String newSQL = select.getPlanSQL(true);
-        Select newSelect = (Select) session.prepare(newSQL, true);
-        newSelect.setExecuteDirec(true);
+        long start = statistics != null ? System.nanoTime() : 0;
+        ResultInterface result;
+        if (!select.isGroupQuery() && select.getSortOrder() != null) {
+            result = new HBaseSortedResult(maxRows, session, select, results);
+        } else {
+            String newSQL = select.getPlanSQL(true);
+            Select newSelect = (Select) session.prepare(newSQL, true);
+            newSelect.setExecuteDirec(true);
 
-        return new HBaseMergedResult(results, newSelect, select);
+            result = new HBaseMergedResult(results, newSelect, select);
+        }
+        //合并是在读取结果集时进行的，所以要统计到结果集读完为止
+        if (statistics != null)
+            result = new ProfiledResult(result, statistics, "coordinator merge", System.nanoTime() - start, results);
+        return result;
     }
 
     public static int executeUpdate(List<CommandInterface> commands) {
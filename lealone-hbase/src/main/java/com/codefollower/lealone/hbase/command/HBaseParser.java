@@ -205,7 +205,10 @@ public class HBaseParser extends Parser {
         if (readIf("NEXT")) {
             readIf("VALUE");
             readIf("MARGIN");
-            return new AlterSequenceNextValueMargin(session, sequence.getSchema(), sequence);
+            AlterSequenceNextValueMargin command = new AlterSequenceNextValueMargin(session, sequence.getSchema(), sequence);
+            if (readIf("CACHE"))
+                command.setCacheSize(readExpression());
+            return command;
         }
         AlterSequence command = new AlterSequence(session, sequence.getSchema());
         command.setSequence(sequence);
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.hbase.command;
+
+import java.util.ArrayList;
+
+import com.codefollower.lealone.command.CommandInterface;
+import com.codefollower.lealone.command.dml.ExplainStatistics;
+import com.codefollower.lealone.expression.ParameterInterface;
+import com.codefollower.lealone.result.ResultInterface;
+
+/**
+ * 
+ * 执行EXPLAIN ANALYZE时包装发往各个Region的命令，
+ * 查询返回的结果集也被包装，这样统计的是从执行到读完所有记录的时间，见{@link ProfiledResult}
+ *
+ */
+class ProfiledCommand implements CommandInterface {
+    private final CommandInterface c;
+    private final ExplainStatistics statistics;
+    private final String name;
+
+    ProfiledCommand(CommandInterface c, ExplainStatistics statistics, String name) {
+        this.c = c;
+        this.statistics = statistics;
+        this.name = name;
+    }
+
+    @Override
+    public int getCommandType() {
+        return c.getCommandType();
+    }
+
+    @Override
+    public boolean isQuery() {
+        return c.isQuery();
+    }
+
+    @Override
+    public ArrayList<? extends ParameterInterface> getParameters() {
+        return c.getParameters();
+    }
+
+    @Override
+    public ResultInterface executeQuery(int maxRows, boolean scrollable) {
+        long start = System.nanoTime();
+        ResultInterface result = c.executeQuery(maxRows, scrollable);
+        return new ProfiledResult(result, statistics, name, System.nanoTime() - start, null);
+    }
+
+    @Override
+    public int executeUpdate() {
+        long start = System.nanoTime();
+        try {
+            return c.executeUpdate();
+        } finally {
+            statistics.addTime(name, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() {
+        c.close();
+    }
+
+    @Override
+    public void cancel() {
+        c.cancel();
+    }
+
+    @Override
+    public ResultInterface getMetaData() {
+        return c.getMetaData();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.hbase.command;
+
+import java.util.List;
+
+import com.codefollower.lealone.command.dml.ExplainStatistics;
+import com.codefollower.lealone.result.ResultInterface;
+import com.codefollower.lealone.result.ResultRemote;
+import com.codefollower.lealone.value.Value;
+
+/**
+ * 
+ * 执行EXPLAIN ANALYZE时包装各个Region的结果集和协调者合并后的结果集，
+ * 统计从执行到读完所有记录的整个时间，而不只是第一批记录的时间。
+ * 
+ * 远程结果集还会单独统计RegionServer上的执行时间，剩下的就是网络传输时间。
+ * 合并结果集的时间不包括读取各个Region结果集的时间。
+ *
+ */
+class ProfiledResult implements ResultInterface, Runnable {
+    private final ResultInterface r;
+    private final ExplainStatistics statistics;
+    private final String name;
+    private final List<ResultInterface> children;
+    private final long queryNanos;
+    private long nextNanos;
+    private long rows;
+    private boolean flushed;
+
+    /**
+     * @param r 被包装的结果集
+     * @param statistics 当前EXPLAIN ANALYZE语句的统计信息
+     * @param name 统计项的名称
+     * @param queryNanos 得到结果集用的时间
+     * @param children 合并结果集时被合并的那些结果集，其他情况是null
+     */
+    ProfiledResult(ResultInterface r, ExplainStatistics statistics, String name, long queryNanos,
+            List<ResultInterface> children) {
+        this.r = r;
+        this.statistics = statistics;
+        this.name = name;
+        this.queryNanos = queryNanos;
+        this.children = children;
+        //结果集没有读完就被丢弃时，由EXPLAIN语句在最后统计
+        statistics.addFlusher(this);
+    }
+
+    long getNextNanos() {
+        return nextNanos;
+    }
+
+    @Override
+    public boolean next() {
+        long start = System.nanoTime();
+        boolean found = r.next();
+        nextNanos += System.nanoTime() - start;
+        if (found)
+            rows++;
+        else
+            run();
+        return found;
+    }
+
+    @Override
+    public void close() {
+        r.close();
+        run();
+    }
+
+    /**
+     * 把统计结果加到EXPLAIN ANALYZE语句的统计信息中，只加一次。
+     */
+    @Override
+    public synchronized void run() {
+        if (flushed)
+            return;
+        flushed = true;
+        long nanos = queryNanos + nextNanos;
+        if (children != null) {
+            for (ResultInterface child : children) {
+                if (child instanceof ProfiledResult)
+                    nanos -= ((ProfiledResult) child).getNextNanos();
+            }
+            statistics.addResult(name, rows, Math.max(0, nanos));
+        } else if (r instanceof ResultRemote) {
+            statistics.addRemoteResult(name, rows, nanos, ((ResultRemote) r).getServerNanos());
+        } else {
+            statistics.addResult(name, rows, nanos);
+        }
+    }
+
+    @Override
+    public void reset() {
+        r.reset();
+    }
+
+    @Override
+    public Value[] currentRow() {
+        return r.currentRow();
+    }
+
+    @Override
+    public int getRowId() {
+        return r.getRowId();
+    }
+
+    @Override
+    public int getVisibleColumnCount() {
+        return r.getVisibleColumnCount();
+    }
+
+    @Override
+    public int getRowCount() {
+        return r.getRowCount();
+    }
+
+    @Override
+    public boolean needToClose() {
+        return r.needToClose();
+    }
+
+    @Override
+    public String getAlias(int i) {
+        return r.getAlias(i);
+    }
+
+    @Override
+    public String getSchemaName(int i) {
+        return r.getSchemaName(i);
+    }
+
+    @Override
+    public String getTableName(int i) {
+        return r.getTableName(i);
+    }
+
+    @Override
+    public String getColumnName(int i) {
+        return r.getColumnName(i);
+    }
+
+    @Override
+    public int getColumnType(int i) {
+        return r.getColumnType(i);
+    }
+
+    @Override
+    public long getColumnPrecision(int i) {
+        return r.getColumnPrecision(i);
+    }
+
+    @Override
+    public int getColumnScale(int i) {
+        return r.getColumnScale(i);
+    }
+
+    @Override
+    public int getDisplaySize(int i) {
+        return r.getDisplaySize(i);
+    }
+
+    @Override
+    public boolean isAutoIncrement(int i) {
+        return r.isAutoIncrement(i);
+    }
+
+    @Override
+    public int getNullable(int i) {
+        return r.getNullable(i);
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        r.setFetchSize(fetchSize);
+    }
+
+    @Override
+    public int getFetchSize() {
+        return r.getFetchSize();
+    }
+}
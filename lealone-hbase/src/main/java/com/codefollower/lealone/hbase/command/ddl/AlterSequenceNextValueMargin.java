@@ -23,6 +23,7 @@ import com.codefollower.lealone.command.ddl.AlterSequence;
 import com.codefollower.lealone.dbobject.Schema;
 import com.codefollower.lealone.dbobject.Sequence;
 import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.expression.Expression;
 import com.codefollower.lealone.hbase.dbobject.HBaseSequence;
 import com.codefollower.lealone.result.ResultInterface;
 import com.codefollower.lealone.value.Value;
@@ -30,20 +31,32 @@ import com.codefollower.lealone.value.ValueLong;
 
 public class AlterSequenceNextValueMargin extends AlterSequence {
     private HBaseSequence sequence;
+    private Expression cacheSize;
 
     public AlterSequenceNextValueMargin(Session session, Schema schema, Sequence sequence) {
         super(session, schema);
         this.sequence = (HBaseSequence) sequence;
     }
 
+    public void setCacheSize(Expression cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
     @Override
     public int update() {
-        sequence.alterNextValueMargin(session);
+        alterNextValueMargin();
         return 0;
     }
 
     public ResultInterface query(int maxrows) {
-        return new ResultInterfaceImpl(sequence.alterNextValueMargin(session));
+        return new ResultInterfaceImpl(alterNextValueMargin());
+    }
+
+    private long alterNextValueMargin() {
+        if (cacheSize == null)
+            return sequence.alterNextValueMargin(session);
+        else
+            return sequence.alterNextValueMargin(session, cacheSize.optimize(session).getValue(session).getLong());
     }
 
     private static class ResultInterfaceImpl implements ResultInterface {
@@ -38,6 +38,12 @@ public class HBaseInsert extends Insert implements InsertOrMerge {
         //不使用sortedInsertMode，因为只有在PageStore中才用得到
     }
 
+    @Override
+    public void setSession(Session currentSession) {
+        super.setSession(currentSession);
+        insertOrMergeSupport.setSession(currentSession);
+    }
+
     @Override
     public void prepare() {
         super.prepare();
@@ -33,6 +33,12 @@ public class HBaseMerge extends Merge implements InsertOrMerge {
         insertOrMergeSupport = new InsertOrMergeSupport(session, this, false);
     }
 
+    @Override
+    public void setSession(Session currentSession) {
+        super.setSession(currentSession);
+        insertOrMergeSupport.setSession(currentSession);
+    }
+
     @Override
     public void prepare() {
         super.prepare();
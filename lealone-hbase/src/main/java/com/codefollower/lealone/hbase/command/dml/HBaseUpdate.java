@@ -30,6 +30,12 @@ public class HBaseUpdate extends Update implements UpdateOrDelete {
         updateOrDeleteSupport = new UpdateOrDeleteSupport(session, this);
     }
 
+    @Override
+    public void setSession(Session currentSession) {
+        super.setSession(currentSession);
+        updateOrDeleteSupport.setSession(currentSession);
+    }
+
     @Override
     public void prepare() {
         super.prepare();
@@ -38,6 +38,7 @@ import com.codefollower.lealone.engine.SessionInterface;
 import com.codefollower.lealone.expression.Expression;
 import com.codefollower.lealone.hbase.command.CommandParallel;
 import com.codefollower.lealone.hbase.dbobject.table.HBaseTable;
+import com.codefollower.lealone.hbase.engine.HBaseLobStorage;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.engine.SessionRemotePool;
 import com.codefollower.lealone.hbase.result.HBaseRow;
@@ -55,7 +56,7 @@ import com.codefollower.lealone.value.ValueUuid;
 
 public class InsertOrMergeSupport {
     private final Map<String, Map<String, List<String>>> servers = New.hashMap();
-    private final HBaseSession session;
+    private HBaseSession session;
     private final InsertOrMerge iom;
     private final boolean isInsert;
     private Query query;
@@ -75,6 +76,10 @@ public class InsertOrMergeSupport {
         this.isInsert = isInsert;
     }
 
+    public void setSession(Session session) {
+        this.session = (HBaseSession) session;
+    }
+
     public void postPrepare(Table table, Query query, ArrayList<Expression[]> list, Column[] columns, Column[] keys) {
         this.table = (HBaseTable) table;
         this.list = list;
@@ -306,10 +311,10 @@ public class InsertOrMergeSupport {
                 row.setValue(c.getColumnId(), v);
 
                 if (!c.isRowKeyColumn())
-                    put.add(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes(), HBaseUtils.toBytes(v));
+                    HBaseLobStorage.addColumn(session.getRegionServer(), row.getRegionName(), put, c, v);
             } else {
                 if (!c.isRowKeyColumn())
-                    put.add(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes(), HBaseUtils.toBytes(ValueNull.INSTANCE));
+                    HBaseLobStorage.addColumn(session.getRegionServer(), row.getRegionName(), put, c, ValueNull.INSTANCE);
             }
         }
         return row;
@@ -337,7 +342,7 @@ public class InsertOrMergeSupport {
             row.setValue(index, v);
 
             if (!c.isRowKeyColumn())
-                put.add(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes(), HBaseUtils.toBytes(v));
+                HBaseLobStorage.addColumn(session.getRegionServer(), row.getRegionName(), put, c, v);
         }
 
         return row;
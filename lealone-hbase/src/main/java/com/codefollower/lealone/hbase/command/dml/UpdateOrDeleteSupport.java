@@ -32,7 +32,7 @@ import com.codefollower.lealone.message.DbException;
 
 public class UpdateOrDeleteSupport implements Callable<Integer> {
     private final WhereClauseSupport whereClauseSupport = new WhereClauseSupport();
-    private final HBaseSession session;
+    private HBaseSession session;
     private final UpdateOrDelete uod;
     private final Prepared prepared;
 
@@ -44,6 +44,10 @@ public class UpdateOrDeleteSupport implements Callable<Integer> {
         this.prepared = (Prepared) uod;
     }
 
+    public void setSession(Session session) {
+        this.session = (HBaseSession) session;
+    }
+
     public void postPrepare(TableFilter tableFilter) {
         tableFilter.setPrepared(prepared);
         whereClauseSupport.setTableFilter(tableFilter);
@@ -19,51 +19,209 @@
  */
 package com.codefollower.lealone.hbase.dbobject;
 
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import com.codefollower.lealone.command.CommandRemote;
 import com.codefollower.lealone.dbobject.Schema;
 import com.codefollower.lealone.dbobject.Sequence;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.engine.SessionRemote;
+import com.codefollower.lealone.hbase.command.CommandParallel;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.engine.SessionRemotePool;
+import com.codefollower.lealone.hbase.util.HBaseUtils;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.ResultInterface;
 
+import static com.codefollower.lealone.hbase.engine.HBaseConstants.*;
+
+/**
+ * RegionServer上的序列值是从Master那里一段一段预分配过来的。
+ * 
+ * 每段的大小会根据使用速度自动调整(用得越快预分配得越多)，
+ * 当前这一段用掉一半时就在后台异步向Master申请下一段，所以正常情况下getNext不需要等待远程调用。
+ */
 public class HBaseSequence extends Sequence {
+    private static final Log log = LogFactory.getLog(HBaseSequence.class);
+    private static final int MAX_RANGE_SIZE = HBaseUtils.getConfiguration().getInt(SEQUENCE_RANGE_MAX_SIZE,
+            DEFAULT_SEQUENCE_RANGE_MAX_SIZE);
+    private static final int FAST_REFILL_MILLIS = HBaseUtils.getConfiguration().getInt(SEQUENCE_RANGE_FAST_REFILL_MILLIS,
+            DEFAULT_SEQUENCE_RANGE_FAST_REFILL_MILLIS);
+
+    //下一次向Master申请的序列值个数
+    private long rangeSize;
+    //当前这一段开始使用的时间
+    private long rangeStartTime;
+
+    //异步预分配好的下一段: [nextValue, nextValueWithMargin)
+    private boolean hasNextRange;
+    private long nextValue;
+    private long nextValueWithMargin;
+    private boolean refilling;
+    //后台申请失败时的异常，由下一次需要新的一段的getNext抛出
+    private Throwable refillException;
 
     public HBaseSequence(Schema schema, int id, String name, boolean belongsToTable) {
         super(schema, id, name, belongsToTable);
     }
 
+    @Override
+    public synchronized long getNext(Session session) {
+        HBaseSession s = (HBaseSession) session;
+        if (s.getRegionServer() == null)
+            return super.getNext(session);
+
+        if (isExhausted()) {
+            if (!hasNextRange) {
+                while (refilling) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw DbException.convert(e);
+                    }
+                }
+                if (refillException != null) {
+                    Throwable e = refillException;
+                    refillException = null;
+                    throw DbException.convert(e);
+                }
+                //线程池拒绝了异步申请时同步申请，出错就直接抛给调用者
+                if (!hasNextRange) {
+                    long size = getRangeSize();
+                    setNextRange(fetchRange(s.getOriginalProperties(), size), size);
+                }
+            }
+            switchToNextRange();
+        }
+
+        long v = value;
+        value += increment;
+
+        if (!hasNextRange && !refilling && refillException == null && getRemaining() <= rangeSize / 2)
+            refillAsync(s.getOriginalProperties());
+        return v;
+    }
+
+    private boolean isExhausted() {
+        return (increment > 0 && value >= valueWithMargin) || (increment < 0 && value <= valueWithMargin);
+    }
+
+    private long getRemaining() {
+        return (valueWithMargin - value) / increment;
+    }
+
+    private long getRangeSize() {
+        if (rangeSize < cacheSize)
+            rangeSize = cacheSize;
+        return rangeSize;
+    }
+
+    private void setNextRange(long end, long size) {
+        nextValueWithMargin = end;
+        nextValue = end - increment * size;
+        hasNextRange = true;
+    }
+
+    private void switchToNextRange() {
+        long now = System.currentTimeMillis();
+        if (rangeStartTime > 0) {
+            long elapsed = now - rangeStartTime;
+            if (elapsed < FAST_REFILL_MILLIS)
+                rangeSize = Math.min(getRangeSize() * 2, Math.max(MAX_RANGE_SIZE, cacheSize));
+            else if (elapsed > FAST_REFILL_MILLIS * 10L)
+                rangeSize = Math.max(getRangeSize() / 2, cacheSize);
+        }
+        rangeStartTime = now;
+        value = nextValue;
+        valueWithMargin = nextValueWithMargin;
+        hasNextRange = false;
+    }
+
+    private void refillAsync(final Properties info) {
+        final long size = getRangeSize();
+        refilling = true;
+        try {
+            CommandParallel.getThreadPoolExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    long end = 0;
+                    Throwable exception = null;
+                    try {
+                        end = fetchRange(info, size);
+                    } catch (Throwable t) {
+                        log.error("Failed to fetch the next range of sequence " + getSQL(), t);
+                        exception = t;
+                    } finally {
+                        synchronized (HBaseSequence.this) {
+                            if (exception == null)
+                                setNextRange(end, size);
+                            else
+                                refillException = exception;
+                            refilling = false;
+                            HBaseSequence.this.notifyAll();
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            //线程池拒绝时等用完了再同步申请
+            refilling = false;
+        }
+    }
+
+    /**
+     * 向Master申请size个序列值。
+     * 
+     * @return 这一段的结束值(不包含)
+     */
+    private long fetchRange(Properties info, long size) {
+        long start = System.nanoTime();
+        SessionRemote sr = null;
+        CommandRemote cr = null;
+        try {
+            sr = SessionRemotePool.getMasterSessionRemote(info);
+            cr = SessionRemotePool.getCommandRemote(sr, "ALTER SEQUENCE " + getSQL() + " NEXT VALUE MARGIN CACHE " + size,
+                    null, 1);
+            ResultInterface ri = cr.executeQuery(-1, false);
+            ri.next();
+            return ri.currentRow()[0].getLong();
+        } catch (Exception e) {
+            throw DbException.convert(e);
+        } finally {
+            SessionRemotePool.release(sr);
+            if (cr != null)
+                cr.close();
+            addRefillTime(System.nanoTime() - start);
+        }
+    }
+
     @Override
     public synchronized void flush(Session session) {
         HBaseSession s = (HBaseSession) session;
         if (s.getRegionServer() != null) {
-            SessionRemote sr = null;
-            CommandRemote cr = null;
-            try {
-                sr = SessionRemotePool.getMasterSessionRemote(s.getOriginalProperties());
-                cr = SessionRemotePool.getCommandRemote(sr, "ALTER SEQUENCE " + getSQL() + " NEXT VALUE MARGIN", null, 1);
-                //cr.executeUpdate();
-                ResultInterface ri = cr.executeQuery(-1, false);
-                ri.next();
-                valueWithMargin = ri.currentRow()[0].getLong();
-                value = valueWithMargin - increment * cacheSize;
-            } catch (Exception e) {
-                throw DbException.convert(e);
-            } finally {
-                SessionRemotePool.release(sr);
-                if (cr != null)
-                    cr.close();
-            }
+            long size = getRangeSize();
+            valueWithMargin = fetchRange(s.getOriginalProperties(), size);
+            value = valueWithMargin - increment * size;
         } else if (s.getMaster() != null) {
             super.flush(session);
         }
     }
 
     public synchronized long alterNextValueMargin(Session session) {
+        return alterNextValueMargin(session, cacheSize);
+    }
+
+    /**
+     * 在Master上为RegionServer预留size个序列值。
+     * 
+     * @return 预留的这一段的结束值(不包含)
+     */
+    public synchronized long alterNextValueMargin(Session session, long size) {
         long value = this.value;
-        long valueWithMargin = increment * cacheSize;
+        long valueWithMargin = increment * Math.max(1, size);
         value = value + valueWithMargin;
         setStartValue(value);
 
@@ -84,7 +84,7 @@ public class HBaseDelegateIndex extends BaseIndex {
     }
 
     @Override
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
         int mask = masks[columns[0].getColumnId()];
         if (mask != 0)
             return 3;
@@ -39,6 +39,7 @@ import com.codefollower.lealone.dbobject.table.TableFilter;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.hbase.dbobject.table.HBaseTable;
 import com.codefollower.lealone.hbase.engine.HBaseConstants;
+import com.codefollower.lealone.hbase.engine.HBaseLobStorage;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.result.HBaseRow;
 import com.codefollower.lealone.message.DbException;
@@ -82,6 +83,8 @@ public class HBasePrimaryIndex extends BaseIndex {
                     for (Map.Entry<byte[], List<KeyValue>> e : oldPut.getFamilyMap().entrySet()) {
                         for (KeyValue kv : e.getValue()) {
                             delete.deleteColumn(e.getKey(), kv.getQualifier(), kv.getTimestamp());
+                            //数据块是单独写入的，不在Put中
+                            HBaseLobStorage.addChunkDeletes(delete, kv);
                         }
                     }
                     hs.getRegionServer().delete(hr.getRegionName(), delete);
@@ -100,6 +103,7 @@ public class HBasePrimaryIndex extends BaseIndex {
                                 && Bytes.equals(kv.getFamily(), defaultColumnFamilyName))
                             continue;
                         put.add(kv.getFamily(), kv.getQualifier(), null);
+                        HBaseLobStorage.addChunkDeletes(put, kv);
                     }
                     hs.getRegionServer().put(hr.getRegionName(), put);
                     hr.setPut(put);
@@ -126,8 +130,8 @@ public class HBasePrimaryIndex extends BaseIndex {
     }
 
     @Override
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
-        return 10 * Constants.COST_ROW_OFFSET + 100;
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
+        return 10 * (table.getRowCountApproximation() + Constants.COST_ROW_OFFSET) + 100;
     }
 
     @Override
@@ -40,14 +40,13 @@ import com.codefollower.lealone.dbobject.table.TableFilter;
 import com.codefollower.lealone.hbase.command.dml.WithWhereClause;
 import com.codefollower.lealone.hbase.dbobject.table.HBaseTable;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
-import com.codefollower.lealone.hbase.result.HBaseRow;
+import com.codefollower.lealone.hbase.result.LazyHBaseRow;
 import com.codefollower.lealone.hbase.transaction.ValidityChecker;
 import com.codefollower.lealone.hbase.util.HBaseUtils;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.Row;
 import com.codefollower.lealone.result.SearchRow;
 import com.codefollower.lealone.value.Value;
-import com.codefollower.lealone.value.ValueString;
 
 //执行select、delete、update语句都会触发此类
 public class HBasePrimaryIndexCursor implements Cursor {
@@ -61,6 +60,8 @@ public class HBasePrimaryIndexCursor implements Cursor {
     private final int columnCount;
     //所要查询的列，不一定是表中的所有列，所以columnCount >= columns.size()
     private final List<Column> columns;
+    //按列id索引的所要查询的列，用于按需解码
+    private final Column[] columnsById;
 
     private final boolean isGet;
     private long scannerId;
@@ -71,6 +72,8 @@ public class HBasePrimaryIndexCursor implements Cursor {
     private InternalScanner scanner;
     private boolean isEnd = false;
     private ArrayList<Result> tmpResultList;
+    //同一行多次调用get()时不再重复创建Row
+    private Row currentRow;
 
     /**
      * 
@@ -103,6 +106,12 @@ public class HBasePrimaryIndexCursor implements Cursor {
         else
             columns = Arrays.asList(filter.getTable().getColumns()); //delete、update语句
 
+        columnsById = new Column[columnCount];
+        if (columns != null) {
+            for (Column c : columns)
+                columnsById[c.getColumnId()] = c;
+        }
+
         Value startValue = null;
         Value endValue = null;
         if (first != null)
@@ -113,7 +122,16 @@ public class HBasePrimaryIndexCursor implements Cursor {
         //优化where pk = xxx，对于这样的等号查询，startValue和endValue相等，直接使用get方式获取数据
         if (startValue != null && endValue != null && (startValue == endValue || startValue.equals(endValue))) {
             try {
-                Result r = rs.get(regionName, new Get(Bytes.toBytes(startValue.getString())));
+                Get get = new Get(Bytes.toBytes(startValue.getString()));
+                //与scan一样只读取用到的列族，避免把存放大字段数据块的列族也读出来
+                if (columns != null) {
+                    for (Column c : columns) {
+                        if (!c.isRowKeyColumn())
+                            get.addFamily(c.getColumnFamilyNameAsBytes());
+                    }
+                }
+                get.addFamily(defaultColumnFamilyName);
+                Result r = rs.get(regionName, get);
                 r = ValidityChecker.checkResult(defaultColumnFamilyName, session, rs, regionName, session.getTransaction(), r);
                 if (r != null)
                     result = new Result[] { r };
@@ -191,24 +209,9 @@ public class HBasePrimaryIndexCursor implements Cursor {
 
     @Override
     public Row get() {
-        if (result != null && index < result.length) {
-            Result r = result[index];
-            Value[] data = new Value[columnCount];
-            Value rowKey = ValueString.get(Bytes.toString(r.getRow()));
-            if (columns != null) {
-                int i = 0;
-                for (Column c : columns) {
-                    i = c.getColumnId();
-                    if (c.isRowKeyColumn())
-                        data[i] = rowKey;
-                    else
-                        data[i] = HBaseUtils.toValue( //
-                                r.getValue(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes()), c.getType());
-                }
-            }
-            return new HBaseRow(regionName, rowKey, data, Row.MEMORY_CALCULATE, r);
-        }
-        return null;
+        if (currentRow == null && result != null && index < result.length)
+            currentRow = new LazyHBaseRow(regionName, columnsById, result[index]);
+        return currentRow;
     }
 
     @Override
@@ -218,6 +221,7 @@ public class HBasePrimaryIndexCursor implements Cursor {
 
     @Override
     public boolean next() {
+        currentRow = null;
         index++;
         if (result != null && index < result.length)
             return true;
@@ -109,26 +109,34 @@ public class HBaseSecondaryIndex extends BaseIndex {
     public void add(Session session, Row row) {
         if (indexType.isUnique()) {
             byte[] key = getStartKey(row);
-            Prepared p = session.prepare(select, true);
-            p.getParameters().get(0).setValue(ValueString.get(Bytes.toString(key)));
-            ResultInterface r = p.query(1);
+            Prepared p = session.prepareCached(select);
             try {
-                if (r.next()) {
-                    SearchRow r2 = getRow(new Buffer(Bytes.toBytes(r.currentRow()[0].getString())));
-                    if (compareRows(row, r2) == 0) {
-                        if (!containsNullAndAllowMultipleNull(r2)) {
-                            throw getDuplicateKeyException();
+                p.getParameters().get(0).setValue(ValueString.get(Bytes.toString(key)));
+                ResultInterface r = p.query(1);
+                try {
+                    if (r.next()) {
+                        SearchRow r2 = getRow(new Buffer(Bytes.toBytes(r.currentRow()[0].getString())));
+                        if (compareRows(row, r2) == 0) {
+                            if (!containsNullAndAllowMultipleNull(r2)) {
+                                throw getDuplicateKeyException();
+                            }
                         }
                     }
+                } finally {
+                    r.close();
                 }
             } finally {
-                r.close();
+                session.releasePrepared(select, p);
             }
         }
 
-        Prepared p = session.prepare(insert, true);
-        p.getParameters().get(0).setValue(ValueString.get(Bytes.toString(getKey(row))));
-        p.update();
+        Prepared p = session.prepareCached(insert);
+        try {
+            p.getParameters().get(0).setValue(ValueString.get(Bytes.toString(getKey(row))));
+            p.update();
+        } finally {
+            session.releasePrepared(insert, p);
+        }
     }
 
     //参数row是主表的记录，并不是索引表的记录
@@ -139,9 +147,13 @@ public class HBaseSecondaryIndex extends BaseIndex {
             return;
 
         //删除操作转成insert null操作
-        Prepared p = session.prepare(delete, true);
-        p.getParameters().get(0).setValue(ValueString.get(Bytes.toString(getKey(row))));
-        p.update();
+        Prepared p = session.prepareCached(delete);
+        try {
+            p.getParameters().get(0).setValue(ValueString.get(Bytes.toString(getKey(row))));
+            p.update();
+        } finally {
+            session.releasePrepared(delete, p);
+        }
     }
 
     @Override
@@ -300,8 +312,10 @@ public class HBaseSecondaryIndex extends BaseIndex {
     }
 
     @Override
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
-        return 10 * getCostRangeIndex(masks, 100, sortOrder);
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
+        //没有执行过ANALYZE时行数未知，按100行估算
+        long rowCount = table.getRowCountApproximation();
+        return 10 * getCostRangeIndex(masks, rowCount > 0 ? rowCount : 100, filter, sortOrder);
     }
 
     @Override
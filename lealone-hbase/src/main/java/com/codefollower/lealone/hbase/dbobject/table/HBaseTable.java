@@ -41,6 +41,7 @@ import com.codefollower.lealone.dbobject.index.IndexType;
 import com.codefollower.lealone.dbobject.table.Column;
 import com.codefollower.lealone.dbobject.table.IndexColumn;
 import com.codefollower.lealone.dbobject.table.TableBase;
+import com.codefollower.lealone.dbobject.table.TableStatistics;
 import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.hbase.command.CommandParallel;
@@ -48,7 +49,9 @@ import com.codefollower.lealone.hbase.command.ddl.Options;
 import com.codefollower.lealone.hbase.dbobject.index.HBaseDelegateIndex;
 import com.codefollower.lealone.hbase.dbobject.index.HBasePrimaryIndex;
 import com.codefollower.lealone.hbase.dbobject.index.HBaseSecondaryIndex;
+import com.codefollower.lealone.hbase.engine.HBaseConstants;
 import com.codefollower.lealone.hbase.engine.HBaseDatabase;
+import com.codefollower.lealone.hbase.engine.HBaseLobStorage;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.metadata.MetaDataAdmin;
 import com.codefollower.lealone.hbase.result.HBaseRow;
@@ -63,6 +66,8 @@ import com.codefollower.lealone.value.Value;
 public class HBaseTable extends TableBase {
 
     public static final String DEFAULT_COLUMN_FAMILY_NAME = Bytes.toString(MetaDataAdmin.DEFAULT_COLUMN_FAMILY);
+    private static final boolean ANALYZE_AUTO = HBaseUtils.getConfiguration().getBoolean(HBaseConstants.ANALYZE_AUTO,
+            HBaseConstants.DEFAULT_ANALYZE_AUTO);
 
     /**
      * 使用create static table建立的表被称为静态表，静态表只有一个列族，并且列族名是CF，
@@ -135,6 +140,19 @@ public class HBaseTable extends TableBase {
 
         this.columnFamilyMap = columnFamilyMap;
 
+        //有BLOB、CLOB字段时增加一个存放大字段数据块的列族，数据块很少被重复读取，所以不使用block cache
+        if (!htd.hasFamily(HBaseConstants.LOB_COLUMN_FAMILY)) {
+            for (Column c : data.columns) {
+                if (c.getType() == Value.BLOB || c.getType() == Value.CLOB) {
+                    HColumnDescriptor hcd = new HColumnDescriptor(HBaseConstants.LOB_COLUMN_FAMILY);
+                    hcd.setMaxVersions(htd.getFamily(defaultColumnFamilyNameAsBytes).getMaxVersions());
+                    hcd.setBlockCacheEnabled(false);
+                    htd.addFamily(hcd);
+                    break;
+                }
+            }
+        }
+
         hTableDescriptor = htd;
 
         createIfNotExists(data.session, tableName, htd, splitKeys);
@@ -474,7 +492,7 @@ public class HBaseTable extends TableBase {
             put = ((HBaseSession) session).getTransaction().createHBasePut(defaultColumnFamilyNameAsBytes, n.getRowKey());
             for (int i = 0; i < columnCount; i++) {
                 c = columns[i];
-                put.add(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes(), HBaseUtils.toBytes(n.getValue(i)));
+                HBaseLobStorage.addColumn(((HBaseSession) session).getRegionServer(), n.getRegionName(), put, c, n.getValue(i));
                 n.setPut(put);
             }
         }
@@ -541,9 +559,22 @@ public class HBaseTable extends TableBase {
         return 0;
     }
 
+    //HBase表无法快速得到行数，这里使用最近一次ANALYZE时统计到的行数，没有执行过ANALYZE时返回0
     @Override
     public long getRowCountApproximation() {
-        return 0;
+        TableStatistics statistics = getStatistics();
+        return statistics != null ? statistics.getRowCount() : 0;
+    }
+
+    @Override
+    public boolean canAnalyze() {
+        return true;
+    }
+
+    //分析HBase表要在所有Region上执行COUNT(*)和抽样，所以默认只通过ANALYZE TABLE显式分析
+    @Override
+    public boolean isAnalyzedAutomatically() {
+        return ANALYZE_AUTO;
     }
 
     @Override
@@ -39,6 +39,13 @@ public class HBaseConstants {
             Constants.PROJECT_NAME_PREFIX + "transaction.meta.column.name",
             "_" + Constants.PROJECT_NAME.toUpperCase() + "_TRANSACTION_META_"));
 
+    /**
+     * 存放BLOB、CLOB大字段数据块的列族，只在表中有BLOB、CLOB字段时才会创建，
+     * 查询时不会扫描这个列族，只有读取大字段的内容时才按块读取。
+     */
+    public static final byte[] LOB_COLUMN_FAMILY = Bytes.toBytes(HBaseUtils.getConfiguration().get(
+            Constants.PROJECT_NAME_PREFIX + "lob.column.family.name", "_LOB_"));
+
     public static class Tag {
         public static final short DELETE = 0;
         public static final short ADD = 1;
@@ -96,6 +103,33 @@ public class HBaseConstants {
     public static final String METADATA_MAX_DDL_REDO_RECORDS = Constants.PROJECT_NAME_PREFIX + "metadata.max.ddl.redo.records";
     public static final int DEFAULT_METADATA_MAX_DDL_REDO_RECORDS = 5000;
 
+    //sequence相关参数
+    //-------------------------------
+    //RegionServer一次从Master预分配的序列值个数的上限
+    public static final String SEQUENCE_RANGE_MAX_SIZE = Constants.PROJECT_NAME_PREFIX + "sequence.range.max.size";
+    public static final int DEFAULT_SEQUENCE_RANGE_MAX_SIZE = 1 << 16;
+
+    //一段序列值在这个时间(毫秒)内就用完了，下次预分配的个数就加倍，用得很慢时减半
+    public static final String SEQUENCE_RANGE_FAST_REFILL_MILLIS = Constants.PROJECT_NAME_PREFIX
+            + "sequence.range.fast.refill.millis";
+    public static final int DEFAULT_SEQUENCE_RANGE_FAST_REFILL_MILLIS = 1000;
+
+    //analyze相关参数
+    //-------------------------------
+    //为true时HBase表也像其他表一样自动分析，并且不指定表名的ANALYZE语句也会分析HBase表
+    public static final String ANALYZE_AUTO = Constants.PROJECT_NAME_PREFIX + "analyze.auto";
+    public static final boolean DEFAULT_ANALYZE_AUTO = false;
+
+    //lob相关参数
+    //-------------------------------
+    //BLOB、CLOB字段按这个大小(字节)分块存放，不超过一块的值直接存放在字段所在的列中
+    public static final String LOB_CHUNK_SIZE = Constants.PROJECT_NAME_PREFIX + "lob.chunk.size";
+    public static final int DEFAULT_LOB_CHUNK_SIZE = 64 * 1024;
+
+    //读取大字段时一次从HBase取回的块数
+    public static final String LOB_PREFETCH_CHUNKS = Constants.PROJECT_NAME_PREFIX + "lob.prefetch.chunks";
+    public static final int DEFAULT_LOB_PREFETCH_CHUNKS = 4;
+
     //transaction相关参数
     //-------------------------------
     public static final String TRANSACTION_COMMIT_CACHE_SIZE = Constants.PROJECT_NAME_PREFIX + "transaction.commit.cache.size";
@@ -35,6 +35,7 @@ import com.codefollower.lealone.hbase.dbobject.table.HBaseTableEngine;
 import com.codefollower.lealone.hbase.metadata.DDLRedoTable;
 import com.codefollower.lealone.hbase.metadata.MetaDataTable;
 import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.store.LobStorage;
 import com.codefollower.lealone.util.New;
 
 public class HBaseDatabase extends Database {
@@ -44,6 +45,7 @@ public class HBaseDatabase extends Database {
     private MetaDataTable metaDataTable;
     private DDLRedoTable ddlRedoTable;
     private boolean fromZookeeper;
+    private HBaseLobStorage lobStorage;
 
     public HBaseDatabase(DatabaseEngine dbEngine) {
         super(dbEngine, false);
@@ -189,6 +191,13 @@ public class HBaseDatabase extends Database {
         return null;
     }
 
+    @Override
+    public synchronized LobStorage getLobStorage() {
+        if (lobStorage == null)
+            lobStorage = new HBaseLobStorage(this);
+        return lobStorage;
+    }
+
     @Override
     public boolean isMultiThreaded() {
         return true; //HBase总是使用多线程
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.hbase.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.HTablePool;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HRegionServer;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.hbase.dbobject.table.HBaseTable;
+import com.codefollower.lealone.hbase.util.HBaseUtils;
+import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.store.DataHandler;
+import com.codefollower.lealone.store.LobStorage;
+import com.codefollower.lealone.util.IOUtils;
+import com.codefollower.lealone.util.MathUtils;
+import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueLobDb;
+import com.codefollower.lealone.value.ValueNull;
+
+/**
+ * HBase表中BLOB、CLOB字段的存储。
+ * 
+ * 不超过一块的值直接存放在字段所在的列中；更大的值按固定大小分块存放到LOB列族中，
+ * 字段所在的列族中只多存放一个很小的头信息(字节数、字符数、块大小、数据块的时间戳)。
+ * 扫描记录时只会读到头信息，读取大字段的内容时才按块从HBase中读取，
+ * 所以大字段不会整个放到region server的内存中，也不会整个出现在一次RPC中。
+ * 
+ * 读到的大字段是一个HBaseLobValue，它自己记着数据块所在的表、记录和字段，读取时直接按块去HBase中取，
+ * 所以这里不需要登记读到的大字段，不管一条语句读到多少条记录都不会找不到数据块。
+ * 它的lob id是一个负数，只用来区分同一个连接上发给client的不同大字段，
+ * client端通过RemoteInputStream读取时再按位置找到对应的块(跳过前面的块不需要读取)。
+ */
+public class HBaseLobStorage extends LobStorage {
+
+    //列名后加上这个后缀就是存放头信息的列名，列名中不会出现0这个字节
+    private static final byte[] HEADER_SUFFIX = { 0, 'L', 'O', 'B' };
+    private static final int HEADER_LENGTH = 8 + 8 + 4 + 8;
+
+    private static final int CHUNK_SIZE = HBaseUtils.getConfiguration().getInt(HBaseConstants.LOB_CHUNK_SIZE,
+            HBaseConstants.DEFAULT_LOB_CHUNK_SIZE);
+    private static final int PREFETCH_CHUNKS = Math.max(1, HBaseUtils.getConfiguration().getInt(
+            HBaseConstants.LOB_PREFETCH_CHUNKS, HBaseConstants.DEFAULT_LOB_PREFETCH_CHUNKS));
+
+    //读数据块用的HTable，所有读大字段的流共用，用完放回池中
+    private static final HTablePool TABLE_POOL = new HTablePool(HBaseUtils.getConfiguration(), 16);
+
+    //不同的region server从不同的随机位置开始分配，同一个连接上转发过来的lob id不会重复
+    private final AtomicLong nextLobId = new AtomicLong(-1 - (MathUtils.secureRandomLong() >>> 2));
+
+    public HBaseLobStorage(DataHandler handler) {
+        super(handler);
+    }
+
+    /**
+     * 读取一个BLOB或CLOB字段。
+     *
+     * @param c 字段
+     * @param r 记录
+     * @return 字段值
+     */
+    public Value getValue(Column c, Result r) {
+        byte[] header = r.getValue(c.getColumnFamilyNameAsBytes(), getHeaderQualifier(c));
+        if (header == null || header.length == 0)
+            return HBaseUtils.toValue(r.getValue(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes()), c.getType());
+
+        HBaseLob lob = new HBaseLob(((HBaseTable) c.getTable()).getTableNameAsBytes(), r.getRow(), getChunkPrefix(c), header);
+        return new HBaseLobValue(c.getType(), this, c.getTable().getId(), nextLobId.decrementAndGet(), lob);
+    }
+
+    //HBaseLobValue自己读取数据块，不会走到这里
+    @Override
+    public InputStream getInputStream(long lobId, byte[] hmac, long byteCount) throws IOException {
+        if (lobId >= 0)
+            return super.getInputStream(lobId, hmac, byteCount);
+        throw DbException.convertToIOException(DbException.get(ErrorCode.IO_EXCEPTION_1, "Missing lob: " + lobId));
+    }
+
+    //数据属于HBase表中的记录，关闭字段值时不能删除
+    @Override
+    public void removeLob(long lobId) {
+        if (lobId >= 0)
+            super.removeLob(lobId);
+    }
+
+    @Override
+    public ValueLobDb copyLob(int type, long oldLobId, int tableId, long length) {
+        if (oldLobId >= 0)
+            return super.copyLob(type, oldLobId, tableId, length);
+        throw DbException.throwInternalError("copyLob: " + oldLobId);
+    }
+
+    @Override
+    public void setTable(long lobId, int table) {
+        if (lobId >= 0)
+            super.setTable(lobId, table);
+    }
+
+    /**
+     * 把字段值加到Put中。
+     * 
+     * 表的LOB列族存在时，超过一块的BLOB、CLOB值分块存放，
+     * 数据块不放在记录的Put中，而是每次最多攒PREFETCH_CHUNKS块就直接写到region中，Put中只放头信息；
+     * 如果值就是这条记录中这个字段原有的值(比如update其他字段)，只重写头信息，继续使用原有的数据块。
+     *
+     * @param rs region server
+     * @param regionName 记录所在的region
+     * @param put 记录的Put
+     * @param c 字段
+     * @param v 字段值
+     */
+    public static void addColumn(HRegionServer rs, byte[] regionName, Put put, Column c, Value v) {
+        int type = c.getType();
+        if (type != Value.BLOB && type != Value.CLOB || !hasLobColumnFamily(rs, regionName)) {
+            put.add(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes(), HBaseUtils.toBytes(v));
+            return;
+        }
+        byte[] header = HConstants.EMPTY_BYTE_ARRAY;
+        byte[] value;
+        if (v == ValueNull.INSTANCE) {
+            value = HBaseUtils.toBytes(v);
+        } else {
+            HBaseLob old = getStoredLob(c, put.getRow(), v);
+            if (old != null) {
+                header = old.getHeader();
+                value = HConstants.EMPTY_BYTE_ARRAY;
+            } else {
+                InputStream in = v.getInputStream();
+                try {
+                    byte[] chunk = readChunk(in, -1);
+                    int next = chunk.length < CHUNK_SIZE ? -1 : in.read();
+                    if (next < 0) {
+                        value = chunk;
+                    } else {
+                        long byteCount = 0;
+                        byte[] prefix = getChunkPrefix(c);
+                        int seq = 0;
+                        try {
+                            Put chunkPut = null;
+                            for (; chunk.length > 0; seq++) {
+                                byteCount += chunk.length;
+                                if (chunkPut == null)
+                                    chunkPut = new Put(put.getRow(), put.getTimeStamp());
+                                chunkPut.add(HBaseConstants.LOB_COLUMN_FAMILY, getChunkQualifier(prefix, seq), chunk);
+                                if (chunkPut.size() >= PREFETCH_CHUNKS) {
+                                    rs.put(regionName, chunkPut);
+                                    chunkPut = null;
+                                }
+                                chunk = readChunk(in, next);
+                                next = -1;
+                            }
+                            if (chunkPut != null)
+                                rs.put(regionName, chunkPut);
+                        } catch (IOException e) {
+                            //头信息还没写，已写入的数据块读不到，尽量删掉
+                            deleteChunks(rs, regionName, put.getRow(), prefix, seq + 1, put.getTimeStamp());
+                            throw e;
+                        }
+                        long precision = type == Value.BLOB ? byteCount : v.getPrecision();
+                        header = new HBaseLob(null, null, prefix, byteCount, precision, CHUNK_SIZE, put.getTimeStamp())
+                                .getHeader();
+                        value = HConstants.EMPTY_BYTE_ARRAY;
+                    }
+                } catch (IOException e) {
+                    throw DbException.convertIOException(e, null);
+                } finally {
+                    IOUtils.closeSilently(in);
+                }
+            }
+        }
+        put.add(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes(), value);
+        //每次都写头信息，这样从大字段改成小字段后不会再读到原来的数据块
+        put.add(c.getColumnFamilyNameAsBytes(), getHeaderQualifier(c), header);
+    }
+
+    /**
+     * 读一块数据。
+     *
+     * @param in 输入流
+     * @param first 已经读出的第一个字节，没有时是-1
+     * @return 数据块，已经读完时长度为0
+     */
+    private static byte[] readChunk(InputStream in, int first) throws IOException {
+        byte[] buff = new byte[CHUNK_SIZE];
+        int off = 0;
+        if (first >= 0)
+            buff[off++] = (byte) first;
+        int len = off + IOUtils.readFully(in, buff, off, CHUNK_SIZE - off);
+        if (len == CHUNK_SIZE)
+            return buff;
+        byte[] b = new byte[len];
+        System.arraycopy(buff, 0, b, 0, len);
+        return b;
+    }
+
+    private static void deleteChunks(HRegionServer rs, byte[] regionName, byte[] row, byte[] prefix, int count,
+            long timestamp) {
+        Delete delete = new Delete(row);
+        for (int seq = 0; seq < count; seq++)
+            delete.deleteColumn(HBaseConstants.LOB_COLUMN_FAMILY, getChunkQualifier(prefix, seq), timestamp);
+        try {
+            rs.delete(regionName, delete);
+        } catch (IOException e) {
+            //忽略，这些数据块没有头信息指向它们
+        }
+    }
+
+    /**
+     * 撤消插入或更新时，把这次写入的数据块也删除。
+     * 
+     * 数据块不在记录的Put中，要通过Put中的头信息找到它们；沿用的原有数据块时间戳不同，不会被删除。
+     *
+     * @param delete 撤消用的Delete
+     * @param kv 被撤消的Put中的一个KeyValue
+     */
+    public static void addChunkDeletes(Delete delete, KeyValue kv) {
+        HBaseLob lob = getLob(kv);
+        if (lob == null || lob.timestamp != kv.getTimestamp())
+            return;
+        for (int seq = 0, count = lob.getChunkCount(); seq < count; seq++)
+            delete.deleteColumn(HBaseConstants.LOB_COLUMN_FAMILY, getChunkQualifier(lob.chunkPrefix, seq), lob.timestamp);
+    }
+
+    /**
+     * 删除记录时，把字段的数据块也标记为删除。
+     * 
+     * 跟记录的其他列一样用带删除标记的Put写入空值，事务未提交时其他事务仍能按原来的时间戳读到数据块。
+     *
+     * @param put 带删除标记的Put
+     * @param kv 被删除记录中的一个KeyValue
+     */
+    public static void addChunkDeletes(Put put, KeyValue kv) {
+        HBaseLob lob = getLob(kv);
+        if (lob == null)
+            return;
+        for (int seq = 0, count = lob.getChunkCount(); seq < count; seq++)
+            put.add(HBaseConstants.LOB_COLUMN_FAMILY, getChunkQualifier(lob.chunkPrefix, seq), null);
+    }
+
+    //kv是一个非空的头信息时返回对应的大字段
+    private static HBaseLob getLob(KeyValue kv) {
+        byte[] qualifier = kv.getQualifier();
+        byte[] header = kv.getValue();
+        if (header == null || header.length != HEADER_LENGTH || qualifier.length <= HEADER_SUFFIX.length
+                || !Bytes.equals(Bytes.tail(qualifier, HEADER_SUFFIX.length), HEADER_SUFFIX))
+            return null;
+        byte[] name = Bytes.head(qualifier, qualifier.length - HEADER_SUFFIX.length);
+        byte[] prefix = Bytes.add(kv.getFamily(), new byte[] { 0 }, name);
+        return new HBaseLob(null, kv.getRow(), prefix, header);
+    }
+
+    private static HBaseLob getStoredLob(Column c, byte[] row, Value v) {
+        if (!(v instanceof HBaseLobValue))
+            return null;
+        HBaseLob lob = ((HBaseLobValue) v).lob;
+        if (Bytes.equals(lob.row, row) && Bytes.equals(lob.chunkPrefix, getChunkPrefix(c))
+                && Bytes.equals(lob.tableName, ((HBaseTable) c.getTable()).getTableNameAsBytes()))
+            return lob;
+        return null;
+    }
+
+    private static boolean hasLobColumnFamily(HRegionServer rs, byte[] regionName) {
+        if (rs == null || regionName == null)
+            return false;
+        HRegion region = rs.getOnlineRegion(regionName);
+        return region != null && region.getTableDesc().hasFamily(HBaseConstants.LOB_COLUMN_FAMILY);
+    }
+
+    private static byte[] getHeaderQualifier(Column c) {
+        return Bytes.add(c.getNameAsBytes(), HEADER_SUFFIX);
+    }
+
+    private static byte[] getChunkPrefix(Column c) {
+        return Bytes.add(c.getColumnFamilyNameAsBytes(), new byte[] { 0 }, c.getNameAsBytes());
+    }
+
+    private static byte[] getChunkQualifier(byte[] prefix, int seq) {
+        return Bytes.add(prefix, Bytes.toBytes(seq));
+    }
+
+    /**
+     * 分块存放的一个大字段。
+     */
+    private static class HBaseLob {
+        final byte[] tableName;
+        final byte[] row;
+        final byte[] chunkPrefix;
+        final long byteCount;
+        final long precision;
+        final int chunkSize;
+        final long timestamp; //数据块的时间戳
+
+        HBaseLob(byte[] tableName, byte[] row, byte[] chunkPrefix, long byteCount, long precision, int chunkSize,
+                long timestamp) {
+            this.tableName = tableName;
+            this.row = row;
+            this.chunkPrefix = chunkPrefix;
+            this.byteCount = byteCount;
+            this.precision = precision;
+            this.chunkSize = chunkSize;
+            this.timestamp = timestamp;
+        }
+
+        HBaseLob(byte[] tableName, byte[] row, byte[] chunkPrefix, byte[] header) {
+            this.tableName = tableName;
+            this.row = row;
+            this.chunkPrefix = chunkPrefix;
+            if (header.length != HEADER_LENGTH)
+                throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "lob header length: " + header.length);
+            ByteBuffer buff = ByteBuffer.wrap(header);
+            byteCount = buff.getLong();
+            precision = buff.getLong();
+            chunkSize = buff.getInt();
+            timestamp = buff.getLong();
+        }
+
+        int getChunkCount() {
+            return (int) ((byteCount + chunkSize - 1) / chunkSize);
+        }
+
+        byte[] getHeader() {
+            ByteBuffer buff = ByteBuffer.allocate(HEADER_LENGTH);
+            buff.putLong(byteCount).putLong(precision).putInt(chunkSize).putLong(timestamp);
+            return buff.array();
+        }
+    }
+
+    /**
+     * 从HBase表中读到的分块存放的大字段，记着数据块的位置，
+     * 读取内容时直接按块从HBase中读取，不需要通过lob id去找。
+     */
+    private static class HBaseLobValue extends ValueLobDb {
+        final HBaseLob lob;
+
+        HBaseLobValue(int type, HBaseLobStorage lobStorage, int tableId, long lobId, HBaseLob lob) {
+            super(type, lobStorage, tableId, lobId, null, lob.precision);
+            this.lob = lob;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ChunkInputStream(lob);
+        }
+
+        //数据块属于HBase表中的记录，写回记录时由addColumn处理，不需要复制
+        @Override
+        public Value link(DataHandler h, int tabId) {
+            return this;
+        }
+    }
+
+    /**
+     * 按块读取大字段，每次从HBase取回几个块；skip不需要读取被跳过的块。
+     */
+    private static class ChunkInputStream extends InputStream {
+        private final HBaseLob lob;
+        private HTableInterface table;
+        private long pos;
+        private byte[][] chunks;
+        private int firstSeq = -1;
+
+        ChunkInputStream(HBaseLob lob) {
+            this.lob = lob;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int len = read(b, 0, 1);
+            return len < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (pos >= lob.byteCount)
+                return -1;
+            int seq = (int) (pos / lob.chunkSize);
+            if (firstSeq < 0 || seq < firstSeq || seq >= firstSeq + chunks.length)
+                fetch(seq);
+            byte[] chunk = chunks[seq - firstSeq];
+            int offset = (int) (pos % lob.chunkSize);
+            len = Math.min(len, chunk.length - offset);
+            if (len <= 0)
+                throw new IOException("Missing lob data at position " + pos);
+            System.arraycopy(chunk, offset, b, off, len);
+            pos += len;
+            return len;
+        }
+
+        private void fetch(int seq) throws IOException {
+            if (table == null)
+                table = TABLE_POOL.getTable(lob.tableName);
+            int count = Math.min(PREFETCH_CHUNKS, lob.getChunkCount() - seq);
+            Get get = new Get(lob.row);
+            get.setTimeStamp(lob.timestamp);
+            for (int i = 0; i < count; i++)
+                get.addColumn(HBaseConstants.LOB_COLUMN_FAMILY, getChunkQualifier(lob.chunkPrefix, seq + i));
+            Result r = table.get(get);
+            byte[][] list = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                list[i] = r.getValue(HBaseConstants.LOB_COLUMN_FAMILY, getChunkQualifier(lob.chunkPrefix, seq + i));
+                if (list[i] == null)
+                    throw new IOException("Missing lob chunk: " + (seq + i) + " of row " + Bytes.toStringBinary(lob.row));
+            }
+            chunks = list;
+            firstSeq = seq;
+        }
+
+        @Override
+        public long skip(long n) {
+            n = Math.max(0, Math.min(n, lob.byteCount - pos));
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (table != null) {
+                table.close(); //放回池中
+                table = null;
+            }
+            chunks = null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.hbase.result;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.hbase.engine.HBaseLobStorage;
+import com.codefollower.lealone.hbase.util.HBaseUtils;
+import com.codefollower.lealone.result.Row;
+import com.codefollower.lealone.store.Data;
+import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueString;
+
+/**
+ * 按需解码的行。
+ * 
+ * 扫描时不再预先把Result中的所有字段都转成Value，而是在某一列第一次被访问时才解码，
+ * 被where条件过滤掉的行，只有条件中用到的列会被解码，其他列不会产生任何Value对象。
+ */
+public class LazyHBaseRow extends HBaseRow {
+    //按列id索引，只包含需要查询的列，其他位置是null
+    private final Column[] columns;
+    private boolean decodedAll;
+
+    public LazyHBaseRow(byte[] regionName, Column[] columns, Result result) {
+        super(regionName, null, new Value[columns.length], Row.MEMORY_CALCULATE, result);
+        this.columns = columns;
+    }
+
+    @Override
+    public Value getRowKey() {
+        Value rowKey = super.getRowKey();
+        if (rowKey == null) {
+            rowKey = ValueString.get(Bytes.toString(getResult().getRow()));
+            setRowKey(rowKey);
+        }
+        return rowKey;
+    }
+
+    @Override
+    public Value getValue(int i) {
+        if (i == -2)
+            return getRowKey();
+        Value v = super.getValue(i);
+        if (v == null && i >= 0 && columns[i] != null) {
+            v = decode(columns[i]);
+            setValue(i, v);
+        }
+        return v;
+    }
+
+    private Value decode(Column c) {
+        if (c.isRowKeyColumn())
+            return getRowKey();
+        //分块存放的大字段只在这里登记，真正读取内容时才从HBase中按块读取
+        if (c.getType() == Value.BLOB || c.getType() == Value.CLOB)
+            return ((HBaseLobStorage) c.getTable().getDatabase().getLobStorage()).getValue(c, getResult());
+        return HBaseUtils.toValue(getResult().getValue(c.getColumnFamilyNameAsBytes(), c.getNameAsBytes()), c.getType());
+    }
+
+    private void decodeAll() {
+        if (!decodedAll) {
+            decodedAll = true;
+            for (int i = 0, len = columns.length; i < len; i++)
+                getValue(i);
+        }
+    }
+
+    @Override
+    public Value[] getValueList() {
+        decodeAll();
+        return super.getValueList();
+    }
+
+    @Override
+    public Row getCopy() {
+        decodeAll();
+        return super.getCopy();
+    }
+
+    @Override
+    public int getByteCount(Data dummy) {
+        decodeAll();
+        return super.getByteCount(dummy);
+    }
+
+    @Override
+    public int getMemory() {
+        decodeAll();
+        return super.getMemory();
+    }
+
+    @Override
+    public String toString() {
+        decodeAll();
+        return super.toString();
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.engine.Metrics;
 import com.codefollower.lealone.hbase.engine.HBaseConstants;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.metadata.TransactionStatusTable;
@@ -170,7 +171,9 @@ public class Transaction implements com.codefollower.lealone.transaction.Transac
                 cacheCommittedRows();
 
                 //TODO 考虑如何缓存事务id和提交时间戳? 难点是: 当前节点提交了，但是还不能完全确定全局事务正常提交
+                addMetrics("transaction.commits");
             } catch (Exception e) {
+                addMetrics("transaction.commit_failures");
                 rollback();
                 throw DbException.convert(e);
             } finally {
@@ -194,6 +197,7 @@ public class Transaction implements com.codefollower.lealone.transaction.Transac
                 for (HBaseRow row : undoRows) {
                     long oldCommitTimestamp = commitHashMap.getLatestWriteForRow(row.hashCode());
                     if (oldCommitTimestamp != 0 && oldCommitTimestamp > transactionId) {
+                        addMetrics("transaction.conflicts");
                         throw new RuntimeException("Write-write conflict: oldCommitTimestamp " + oldCommitTimestamp
                                 + ", startTimestamp " + transactionId + ", rowKey " + row.getRowKey());
                     }
@@ -204,6 +208,7 @@ public class Transaction implements com.codefollower.lealone.transaction.Transac
                     String hostAndPort = session.getHostAndPort();
                     for (Long tid : halfSuccessfulTransactions) {
                         if (!transactionStatusTable.isFullSuccessful(hostAndPort, tid)) {
+                            addMetrics("transaction.conflicts");
                             throw new RuntimeException("Write-write conflict: transaction "
                                     + getTransactionName(hostAndPort, tid) + " is not full successful, current transaction: "
                                     + transactionName);
@@ -226,6 +231,7 @@ public class Transaction implements com.codefollower.lealone.transaction.Transac
 
     public void rollback() {
         if (!autoCommit) {
+            addMetrics("transaction.rollbacks");
             try {
                 undo();
             } catch (Exception e) {
@@ -236,6 +242,12 @@ public class Transaction implements com.codefollower.lealone.transaction.Transac
         }
     }
 
+    private void addMetrics(String name) {
+        Metrics metrics = session.getDatabase().getMetrics();
+        if (metrics != null)
+            metrics.addCounter(name, 1);
+    }
+
     private void undo() {
         if (undoRows != null) {
             for (int i = undoRows.size() - 1; i >= 0; i--) {
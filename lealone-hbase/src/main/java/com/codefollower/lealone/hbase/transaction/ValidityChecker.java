@@ -29,6 +29,7 @@ import org.apache.hadoop.hbase.regionserver.HRegionServer;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import com.codefollower.lealone.command.dml.ExplainStatistics;
 import com.codefollower.lealone.hbase.engine.HBaseConstants;
 import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.metadata.TransactionStatusTable;
@@ -74,6 +75,9 @@ public class ValidityChecker {
             Get get = new Get(r.getRow());
             get.setMaxVersions(1);
             get.setTimeRange(0, oldTid - 1);
+            //只读取原来的Result中已有的列族
+            for (KeyValue kv : r.raw())
+                get.addFamily(kv.getFamily());
             r = regionServer.get(regionName, get);
             return checkResult(defaultColumnFamilyName, session, regionServer, regionName, t, r);
         } else {
@@ -81,17 +85,30 @@ public class ValidityChecker {
         }
     }
 
+    //EXPLAIN ANALYZE时分别统计从HBase读取记录的时间和事务有效性检查的时间
+    private static void addStatistics(ExplainStatistics statistics, byte[] regionName, int scanned, int valid,
+            long scanNanos, long checkNanos) {
+        String region = "region " + Bytes.toStringBinary(regionName);
+        statistics.addRows(region + " hbase scan", scanned, valid, scanNanos);
+        statistics.addTime(region + " validity check", checkNanos);
+    }
+
     public static Result[] fetchResults(byte[] defaultColumnFamilyName, HBaseSession session, //
             byte[] regionName, long scannerId, int fetchSize) throws IOException {
         Transaction t = session.getTransaction();
         Result r;
+        ExplainStatistics statistics = session.getExplainStatistics();
+        long start = statistics != null ? System.nanoTime() : 0;
         Result[] result = session.getRegionServer().next(scannerId, fetchSize);
+        long scanEnd = statistics != null ? System.nanoTime() : 0;
         ArrayList<Result> list = new ArrayList<Result>(result.length);
         for (int i = 0; i < result.length; i++) {
             r = checkResult(defaultColumnFamilyName, session, session.getRegionServer(), regionName, t, result[i]);
             if (r != null)
                 list.add(r);
         }
+        if (statistics != null)
+            addStatistics(statistics, regionName, result.length, list.size(), scanEnd - start, System.nanoTime() - scanEnd);
 
         return list.toArray(new Result[list.size()]);
     }
@@ -102,20 +119,32 @@ public class ValidityChecker {
         Result r;
         List<KeyValue> kvs = new ArrayList<KeyValue>();
 
-        //long start = System.nanoTime();
+        ExplainStatistics statistics = session.getExplainStatistics();
+        long start = statistics != null ? System.nanoTime() : 0;
+        long checkNanos = 0;
+        int scanned = 0;
+        int oldSize = list.size();
         boolean hasMoreRows = true;
         for (int i = 0; hasMoreRows && i < fetchSize; i++) {
             hasMoreRows = scanner.next(kvs);
             if (!kvs.isEmpty()) {
-                r = checkResult(defaultColumnFamilyName, session, session.getRegionServer(), regionName, t, new Result(kvs));
+                scanned++;
+                if (statistics != null) {
+                    long checkStart = System.nanoTime();
+                    r = checkResult(defaultColumnFamilyName, session, session.getRegionServer(), regionName, t, new Result(kvs));
+                    checkNanos += System.nanoTime() - checkStart;
+                } else {
+                    r = checkResult(defaultColumnFamilyName, session, session.getRegionServer(), regionName, t, new Result(kvs));
+                }
                 if (r != null)
                     list.add(r);
             }
 
             kvs.clear();
         }
-        //long end = System.nanoTime();
-        //System.out.println((end - start) / 1000000 + " ms count="+list.size());
+        if (statistics != null)
+            addStatistics(statistics, regionName, scanned, list.size() - oldSize, System.nanoTime() - start - checkNanos,
+                    checkNanos);
         return hasMoreRows;
     }
 }
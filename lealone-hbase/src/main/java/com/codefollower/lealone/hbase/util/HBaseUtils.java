@@ -44,6 +44,7 @@ import org.apache.hadoop.hbase.util.Pair;
 import com.codefollower.lealone.command.Prepared;
 import com.codefollower.lealone.command.dml.Select;
 import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.engine.Metrics;
 import com.codefollower.lealone.hbase.command.dml.SQLRoutingInfo;
 import com.codefollower.lealone.hbase.command.dml.WhereClauseSupport;
 import com.codefollower.lealone.hbase.engine.HBaseConstants;
@@ -51,6 +52,7 @@ import com.codefollower.lealone.hbase.engine.HBaseSession;
 import com.codefollower.lealone.hbase.engine.SessionRemotePool;
 import com.codefollower.lealone.hbase.zookeeper.ZooKeeperAdmin;
 import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.store.LobStorage;
 import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.StringUtils;
 import com.codefollower.lealone.value.Value;
@@ -136,9 +138,8 @@ public class HBaseUtils {
         case Value.STRING_FIXED:
             return ValueStringFixed.get(toString(b));
         case Value.BLOB:
-            return ValueBytes.get(b);
         case Value.CLOB:
-            return ValueBytes.get(b);
+            return LobStorage.createSmallLob(type, b);
         case Value.ARRAY:
             return ValueBytes.get(b);
         case Value.RESULT_SET:
@@ -419,7 +420,9 @@ public class HBaseUtils {
             HBaseRegionInfo hri = HBaseUtils.getHBaseRegionInfo(tableName, start);
             if (isLocal(session, hri)) {
                 sqlRoutingInfo.localRegion = hri.getRegionName();
+                addRoutingMetrics(session, "routing.local_regions", 1);
             } else {
+                addRoutingMetrics(session, "routing.server." + hri.getRegionServerURL(), 1);
                 sqlRoutingInfo.remoteCommand = SessionRemotePool.getCommandRemote(session, prepared, hri.getRegionServerURL(),
                         createSQL(hri.getRegionName(), sql));
             }
@@ -448,7 +451,10 @@ public class HBaseUtils {
                 if (prepared.isQuery())
                     planSQL = getPlanSQL((Select) prepared);
 
+                if (sqlRoutingInfo.localRegions != null)
+                    addRoutingMetrics(session, "routing.local_regions", sqlRoutingInfo.localRegions.size());
                 for (Map.Entry<String, List<HBaseRegionInfo>> e : servers.entrySet()) {
+                    addRoutingMetrics(session, "routing.server." + e.getKey(), 1);
                     if (sqlRoutingInfo.remoteCommands == null)
                         sqlRoutingInfo.remoteCommands = New.arrayList();
                     sqlRoutingInfo.remoteCommands.add(SessionRemotePool.getCommandRemote(session, prepared, e.getKey(),
@@ -459,9 +465,17 @@ public class HBaseUtils {
                 throw new RuntimeException(e);
             }
         }
+        addRoutingMetrics(session, oneRegion ? "routing.single_region_statements" : "routing.multi_region_statements", 1);
         return sqlRoutingInfo;
     }
 
+    //统计SQL被路由到本地region和各个region server的次数
+    private static void addRoutingMetrics(HBaseSession session, String name, long delta) {
+        Metrics metrics = session.getDatabase().getMetrics();
+        if (metrics != null)
+            metrics.addCounter(name, delta);
+    }
+
     public static String createSQL(String regionName, String sql) {
         StringBuilder buff = new StringBuilder("IN THE REGION ");
         buff.append(StringUtils.quoteStringSQL(regionName)).append(" ").append(sql);
@@ -19,7 +19,9 @@
  */
 package com.codefollower.lealone.command;
 
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.expression.Parameter;
@@ -79,21 +81,38 @@ public class BackendBatchCommand implements CommandInterface {
         } else {
             int size = batchParameters.size();
             result = new int[size];
-            Value[] values;
-            ArrayList<? extends ParameterInterface> params = preparedCommand.getParameters();
-            int paramsSize = params.size();
-            for (int i = 0; i < size; i++) {
-                values = batchParameters.get(i);
-                for (int j = 0; j < paramsSize; j++) {
-                    Parameter p = (Parameter) params.get(j);
-                    p.setValue(values[j], true);
+            Prepared prepared = preparedCommand.getPrepared();
+            //INSERT/MERGE ... VALUES(?, ...)这类语句把所有参数组合成一条多行的语句，只执行一次，
+            //这样在HBase表上会按region分组批量写入，并且在自动提交模式下整个batch只用一个事务
+            if (size > 1 && prepared != null && prepared.setBatchParameters(batchParameters)) {
+                try {
+                    //最后一组参数用于通过checkParameters的检查
+                    setParameters(batchParameters.get(size - 1));
+                    int updateCount = preparedCommand.executeUpdate();
+                    Arrays.fill(result, updateCount == size ? 1 : Statement.SUCCESS_NO_INFO);
+                } finally {
+                    //执行前语句可能被重新编译，batch会转到新的Prepared上
+                    prepared.clearBatchParameters();
+                    preparedCommand.getPrepared().clearBatchParameters();
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    setParameters(batchParameters.get(i));
+                    result[i] = preparedCommand.executeUpdate();
                 }
-                result[i] = preparedCommand.executeUpdate();
             }
         }
         return 0;
     }
 
+    private void setParameters(Value[] values) {
+        ArrayList<? extends ParameterInterface> params = preparedCommand.getParameters();
+        for (int j = 0, paramsSize = params.size(); j < paramsSize; j++) {
+            Parameter p = (Parameter) params.get(j);
+            p.setValue(values[j], true);
+        }
+    }
+
     @Override
     public void close() {
         if (session == null || session.isClosed()) {
@@ -12,6 +12,7 @@ import com.codefollower.lealone.command.CommandInterface;
 import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.constant.ErrorCode;
 import com.codefollower.lealone.engine.Database;
+import com.codefollower.lealone.engine.Metrics;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.expression.ParameterInterface;
 import com.codefollower.lealone.message.DbException;
@@ -48,6 +49,14 @@ public abstract class Command implements CommandInterface {
 
     private boolean canReuse;
 
+    /**
+     * The metrics entry of this statement, or null if metrics are disabled.
+     */
+    private Metrics.StatementMetrics metrics;
+    private boolean metricsChecked;
+    private long parseNanos;
+    private long planNanos;
+
     protected Command(Session session, String sql) {
         this.session = session;
         this.sql = sql;
@@ -128,6 +137,41 @@ public abstract class Command implements CommandInterface {
         }
     }
 
+    /**
+     * Set the time used to parse and optimize this statement. It is added to
+     * the statement metrics when the statement is executed.
+     *
+     * @param parseNanos the parse time in nanoseconds
+     * @param planNanos the time used by the optimizer in nanoseconds
+     */
+    void setPrepareNanos(long parseNanos, long planNanos) {
+        this.parseNanos = parseNanos;
+        this.planNanos = planNanos;
+    }
+
+    private Metrics.StatementMetrics getMetrics() {
+        // the entry may have been removed to make room for other statements
+        if (!metricsChecked || metrics != null && metrics.isEvicted()) {
+            metricsChecked = true;
+            Metrics m = session.getDatabase().getMetrics();
+            if (m != null) {
+                metrics = m.getStatementMetrics(sql);
+            }
+        }
+        return metrics;
+    }
+
+    private void addMetrics(long start, long rows, boolean error) {
+        Metrics.StatementMetrics m = getMetrics();
+        if (m != null) {
+            if (parseNanos != 0 || planNanos != 0) {
+                m.addPrepare(parseNanos, planNanos);
+                parseNanos = planNanos = 0;
+            }
+            m.addExecution(System.nanoTime() - start, rows, error);
+        }
+    }
+
     void setProgress(int state) {
         session.getDatabase().setProgress(state, sql, 0, 0);
     }
@@ -189,11 +233,14 @@ public abstract class Command implements CommandInterface {
         }
         synchronized (sync) {
             session.setCurrentCommand(this);
+            long metricsStart = System.nanoTime();
             try {
                 while (true) {
                     database.checkPowerOff();
                     try {
-                        return query(maxrows);
+                        ResultInterface result = query(maxrows);
+                        addMetrics(metricsStart, result.getRowCount(), false);
+                        return result;
                     } catch (DbException e) {
                         start = filterConcurrentUpdate(e, start);
                     } catch (Throwable e) {
@@ -201,6 +248,7 @@ public abstract class Command implements CommandInterface {
                     }
                 }
             } catch (DbException e) {
+                addMetrics(metricsStart, 0, true);
                 e.addSQL(sql);
                 database.exceptionThrown(e.getSQLException(), sql);
                 throw e;
@@ -228,11 +276,14 @@ public abstract class Command implements CommandInterface {
         synchronized (sync) {
             int rollback = session.getUndoLogPos();
             session.setCurrentCommand(this);
+            long metricsStart = System.nanoTime();
             try {
                 while (true) {
                     database.checkPowerOff();
                     try {
-                        return update();
+                        int updateCount = update();
+                        addMetrics(metricsStart, updateCount, false);
+                        return updateCount;
                     } catch (DbException e) {
                         start = filterConcurrentUpdate(e, start);
                     } catch (Throwable e) {
@@ -240,6 +291,7 @@ public abstract class Command implements CommandInterface {
                     }
                 }
             } catch (DbException e) {
+                addMetrics(metricsStart, 0, true);
                 e = e.addSQL(sql);
                 SQLException s = e.getSQLException();
                 database.exceptionThrown(s, sql);
@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import com.codefollower.lealone.api.DatabaseEventListener;
 import com.codefollower.lealone.expression.Parameter;
 import com.codefollower.lealone.expression.ParameterInterface;
+import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.ResultInterface;
 import com.codefollower.lealone.value.Value;
 import com.codefollower.lealone.value.ValueNull;
@@ -24,6 +25,7 @@ public class CommandContainer extends Command {
     protected Prepared prepared;
     private boolean readOnlyKnown;
     private boolean readOnly;
+    private boolean released;
 
     protected CommandContainer(Parser parser, String sql, Prepared prepared) {
         super(parser, sql);
@@ -49,6 +51,10 @@ public class CommandContainer extends Command {
             prepared.setModificationMetaId(0);
             String sql = prepared.getSQL();
             ArrayList<Parameter> oldParams = prepared.getParameters();
+            ArrayList<Value[]> batchParameters = prepared.getBatchParameters();
+            if (batchParameters != null) {
+                prepared.clearBatchParameters();
+            }
             Parser parser = session.createParser();
             prepared = parser.parse(sql);
             long mod = prepared.getModificationMetaId();
@@ -64,6 +70,11 @@ public class CommandContainer extends Command {
             }
             prepared.prepare();
             prepared.setModificationMetaId(mod);
+            // a JDBC batch is bound to the statement, not to the parameters,
+            // so it has to move to the new statement, otherwise only the last row is executed
+            if (batchParameters != null && !prepared.setBatchParameters(batchParameters)) {
+                throw DbException.throwInternalError("batch parameters of " + sql);
+            }
         }
     }
 
@@ -118,6 +129,15 @@ public class CommandContainer extends Command {
         return prepared.getType();
     }
 
+    @Override
+    public void close() {
+        super.close();
+        if (!released) {
+            // the statement may be taken by another session from now on
+            released = session.releaseCommand(sql, this);
+        }
+    }
+
     @Override
     public Prepared getPrepared() {
         return prepared;
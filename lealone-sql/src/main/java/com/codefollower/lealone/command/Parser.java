@@ -59,6 +59,7 @@ import com.codefollower.lealone.command.ddl.DropView;
 import com.codefollower.lealone.command.ddl.GrantRevoke;
 import com.codefollower.lealone.command.ddl.PrepareProcedure;
 import com.codefollower.lealone.command.ddl.SetComment;
+import com.codefollower.lealone.command.ddl.SetStatistics;
 import com.codefollower.lealone.command.ddl.TruncateTable;
 import com.codefollower.lealone.command.dml.BackupCommand;
 import com.codefollower.lealone.command.dml.Call;
@@ -217,9 +218,12 @@ public class Parser {
      */
     public Command prepareCommand(String sql) {
         try {
+            long start = System.nanoTime();
             Prepared p = parse(sql);
+            long parsed = System.nanoTime();
             p.prepare();
             Command c = createCommand(p, sql);
+            c.setPrepareNanos(parsed - start, System.nanoTime() - parsed);
             if (isToken(";")) {
                 String remaining = originalSQL.substring(parseIndex);
                 if (remaining.trim().length() != 0) {
@@ -509,12 +513,42 @@ public class Parser {
 
     private Prepared parseAnalyze() {
         Analyze command = new Analyze(session);
+        if (readIf("TABLE")) {
+            Table table = readTableOrView();
+            if (readIf("ROW_COUNT")) {
+                return parseSetStatistics(table);
+            }
+            command.setTable(table);
+        }
         if (readIf("SAMPLE_SIZE")) {
             command.setTop(getPositiveInt());
         }
         return command;
     }
 
+    private SetStatistics parseSetStatistics(Table table) {
+        SetStatistics command = new SetStatistics(session, table);
+        command.setRowCount(readLong());
+        while (readIf("COLUMN")) {
+            String columnName = readColumnIdentifier();
+            read("NULL_FRACTION");
+            double nullFraction = readExpression().optimize(session).getValue(session).getDouble();
+            read("DISTINCT");
+            long distinctCount = readLong();
+            read("HISTOGRAM");
+            read("(");
+            ArrayList<Value> bounds = New.arrayList();
+            if (!readIf(")")) {
+                do {
+                    bounds.add(readExpression().optimize(session).getValue(session));
+                } while (readIf(","));
+                read(")");
+            }
+            command.addColumn(columnName, nullFraction, distinctCount, bounds.toArray(new Value[bounds.size()]));
+        }
+        return command;
+    }
+
     private TransactionCommand parseBegin() {
         TransactionCommand command;
         if (!readIf("WORK")) {
@@ -3652,10 +3686,7 @@ public class Parser {
             Sequence sequence = readSequence();
             column.setSequence(sequence);
         }
-        if (readIf("SELECTIVITY")) {
-            int value = getPositiveInt();
-            column.setSelectivity(value);
-        }
+        parseSelectivity(column);
         String comment = readCommentIf();
         if (comment != null) {
             column.setComment(comment);
@@ -3663,6 +3694,13 @@ public class Parser {
         return column;
     }
 
+    private void parseSelectivity(Column column) {
+        if (readIf("SELECTIVITY")) {
+            int value = getPositiveInt();
+            column.setSelectivity(value);
+        }
+    }
+
     private void parseAutoIncrement(Column column) {
         long start = 1, increment = 1;
         if (readIf("(")) {
@@ -4650,6 +4688,10 @@ public class Parser {
             readIfEqualOrTo();
             read();
             return new NoOperation(session);
+        } else if (readIf("COMPRESS_RESULT")) {
+            readIfEqualOrTo();
+            read();
+            return new NoOperation(session);
         } else if (readIf("ASSERT")) {
             readIfEqualOrTo();
             read();
@@ -5345,6 +5387,8 @@ public class Parser {
         } else {
             readIf("NULL");
         }
+        // Column.getCreateSQL() writes SELECTIVITY after ROW KEY NOT NULL
+        parseSelectivity(column);
         if (readIf("CHECK")) {
             Expression expr = readExpression();
             column.addCheckConstraint(session, expr);
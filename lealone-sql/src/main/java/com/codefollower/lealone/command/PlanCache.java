@@ -0,0 +1,220 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.command;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codefollower.lealone.engine.Database;
+import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.expression.Parameter;
+import com.codefollower.lealone.util.New;
+import com.codefollower.lealone.util.SmallLRUCache;
+
+/**
+ * A database wide cache of parsed and optimized statements.
+ *
+ * Sessions hand statements back to this cache when they are closed, and other
+ * sessions (or the same session, for the same SQL text, user, schema and
+ * schema version) take them out again instead of running the parser and the
+ * optimizer once more. A statement is only ever used by one session at a time;
+ * when it is taken by another session, the whole plan is bound to that session.
+ * All entries are dropped as soon as the meta data of the database changes.
+ * Statements created while their session had local temporary tables are
+ * never given back, as they may use tables no other session can see (and
+ * creating or dropping such a table does not change the meta data of the
+ * database).
+ *
+ * The entries are spread over a number of independently locked stripes, so
+ * that sessions preparing different statements (for example the per-row
+ * statements of secondary index maintenance) do not wait for each other.
+ */
+public class PlanCache {
+
+    /**
+     * The maximum number of idle copies kept for one SQL statement.
+     */
+    private static final int MAX_COPIES_PER_KEY = 8;
+
+    private static final int STRIPES = 16;
+
+    private final Database database;
+    private final Stripe[] stripes;
+    private volatile long modificationMetaId;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PlanCache(Database database, int maxSize) {
+        this.database = database;
+        this.modificationMetaId = database.getModificationMetaId();
+        int stripeSize = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * Take an idle statement out of the cache and bind it to the given session.
+     *
+     * @param session the session that is going to execute the statement
+     * @param sql the SQL statement
+     * @param rightsChecked true if the rights have already been checked
+     * @return the statement, or null if there is none
+     */
+    public Prepared take(Session session, String sql, boolean rightsChecked) {
+        checkModificationMetaId();
+        String key = getKey(session, sql, rightsChecked);
+        Prepared p = getStripe(key).take(key);
+        if (p == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        p.setSession(session);
+        ArrayList<Parameter> parameters = p.getParameters();
+        for (int i = 0, size = parameters.size(); i < size; i++) {
+            parameters.get(i).setValue(null, true);
+        }
+        hits.incrementAndGet();
+        return p;
+    }
+
+    /**
+     * Give a statement that is not used any longer back to the cache.
+     *
+     * @param session the session that used the statement
+     * @param sql the SQL statement
+     * @param rightsChecked true if the rights had already been checked
+     * @param p the statement
+     */
+    public void release(Session session, String sql, boolean rightsChecked, Prepared p) {
+        if (p == null || !p.isCacheable() || p.isSessionScoped() || p.needRecompile()) {
+            return;
+        }
+        checkModificationMetaId();
+        String key = getKey(session, sql, rightsChecked);
+        getStripe(key).release(key, p);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private void checkModificationMetaId() {
+        long id = database.getModificationMetaId();
+        if (id != modificationMetaId) {
+            synchronized (this) {
+                if (id != modificationMetaId) {
+                    if (getSize() > 0) {
+                        clear();
+                        invalidations.incrementAndGet();
+                    }
+                    modificationMetaId = id;
+                }
+            }
+        }
+    }
+
+    private Stripe getStripe(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % STRIPES];
+    }
+
+    private static String getKey(Session session, String sql, boolean rightsChecked) {
+        StringBuilder buff = new StringBuilder(sql.length() + 32);
+        buff.append(rightsChecked ? '1' : '0').append(session.getUser().getName()).append('/');
+        buff.append(session.getCurrentSchemaName()).append('/').append(sql);
+        return buff.toString();
+    }
+
+    /**
+     * A part of the cache with its own lock.
+     */
+    private static class Stripe {
+
+        private final SmallLRUCache<String, ArrayList<Prepared>> plans;
+
+        Stripe(int maxSize) {
+            plans = SmallLRUCache.newInstance(maxSize);
+        }
+
+        synchronized Prepared take(String key) {
+            ArrayList<Prepared> list = plans.get(key);
+            while (list != null && !list.isEmpty()) {
+                Prepared p = list.remove(list.size() - 1);
+                if (!p.needRecompile()) {
+                    return p;
+                }
+            }
+            return null;
+        }
+
+        synchronized void release(String key, Prepared p) {
+            ArrayList<Prepared> list = plans.get(key);
+            if (list == null) {
+                list = New.arrayList(2);
+                plans.put(key, list);
+            }
+            if (list.size() < MAX_COPIES_PER_KEY && !list.contains(p)) {
+                list.add(p);
+            }
+        }
+
+        synchronized void clear() {
+            plans.clear();
+        }
+
+        synchronized int size() {
+            int size = 0;
+            for (ArrayList<Prepared> list : plans.values()) {
+                size += list.size();
+            }
+            return size;
+        }
+    }
+}
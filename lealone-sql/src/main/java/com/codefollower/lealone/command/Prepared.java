@@ -15,9 +15,11 @@ import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.expression.Expression;
 import com.codefollower.lealone.expression.Parameter;
+import com.codefollower.lealone.expression.ValueExpression;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.message.Trace;
 import com.codefollower.lealone.result.ResultInterface;
+import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.StatementBuilder;
 import com.codefollower.lealone.value.Value;
 
@@ -53,6 +55,13 @@ public abstract class Prepared {
      */
     protected boolean prepareAlways;
 
+    /**
+     * If the session had local temporary tables when this statement was
+     * created, so that the statement may use objects only this session can
+     * see.
+     */
+    private final boolean sessionScoped;
+
     private long modificationMetaId;
     private Command command;
     private int objectId;
@@ -67,6 +76,7 @@ public abstract class Prepared {
     public Prepared(Session session) {
         this.session = session;
         modificationMetaId = session.getDatabase().getModificationMetaId();
+        sessionScoped = session.hasLocalTempTables();
     }
 
     /**
@@ -422,6 +432,74 @@ public abstract class Prepared {
         return false;
     }
 
+    /**
+     * Check if this statement may use local temporary tables (or their
+     * indexes) of the session it was created in, and so must not be used by
+     * any other session.
+     *
+     * @return true if it may
+     */
+    public boolean isSessionScoped() {
+        return sessionScoped;
+    }
+
+    /**
+     * Bind all parameter sets of a JDBC batch to this statement, so that the
+     * whole batch is executed by one call of update().
+     *
+     * @param batchParameters the parameter sets
+     * @return false if this statement can't execute a batch at once
+     */
+    public boolean setBatchParameters(ArrayList<Value[]> batchParameters) {
+        return false;
+    }
+
+    /**
+     * Get the parameter sets bound by {@link #setBatchParameters(ArrayList)}.
+     *
+     * @return the parameter sets, or null if no batch is bound
+     */
+    public ArrayList<Value[]> getBatchParameters() {
+        return null;
+    }
+
+    /**
+     * Undo {@link #setBatchParameters(ArrayList)}.
+     */
+    public void clearBatchParameters() {
+        // nothing to do
+    }
+
+    /**
+     * Create one row of values for each parameter set of a batch.
+     *
+     * @param template the row that contains the parameters
+     * @param batchParameters the parameter sets
+     * @return the rows, or null if the template contains expressions other
+     *         than parameters and constants
+     */
+    protected static ArrayList<Expression[]> bindBatchRows(Expression[] template, ArrayList<Value[]> batchParameters) {
+        for (Expression e : template) {
+            if (e != null && !(e instanceof Parameter) && !e.isConstant()) {
+                return null;
+            }
+        }
+        int len = template.length;
+        ArrayList<Expression[]> rows = New.arrayList(batchParameters.size());
+        for (Value[] values : batchParameters) {
+            Expression[] row = new Expression[len];
+            for (int i = 0; i < len; i++) {
+                Expression e = template[i];
+                if (e instanceof Parameter) {
+                    e = ValueExpression.get(values[((Parameter) e).getIndex()]);
+                }
+                row[i] = e;
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
     public Command getCommand() {
         return command;
     }
@@ -6,20 +6,25 @@
  */
 package com.codefollower.lealone.command.ddl;
 
+import java.util.ArrayList;
+
 import com.codefollower.lealone.command.CommandInterface;
 import com.codefollower.lealone.command.Prepared;
 import com.codefollower.lealone.dbobject.Right;
 import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.dbobject.table.ColumnStatistics;
 import com.codefollower.lealone.dbobject.table.Table;
+import com.codefollower.lealone.dbobject.table.TableStatistics;
 import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.result.ResultInterface;
+import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.StatementBuilder;
 import com.codefollower.lealone.value.Value;
 
 /**
  * This class represents the statement
- * ANALYZE
+ * ANALYZE [TABLE tableName] [SAMPLE_SIZE n]
  */
 public class Analyze extends DefineCommand {
 
@@ -28,6 +33,11 @@ public class Analyze extends DefineCommand {
      */
     private int sampleRows;
 
+    /**
+     * The table to analyze, or null to analyze all tables.
+     */
+    private Table table;
+
     public Analyze(Session session) {
         super(session);
         sampleRows = session.getDatabase().getSettings().analyzeSample;
@@ -37,8 +47,14 @@ public class Analyze extends DefineCommand {
         session.commit(true);
         session.getUser().checkAdmin();
         Database db = session.getDatabase();
-        for (Table table : db.getAllTablesAndViews(false)) {
+        if (table != null) {
             analyzeTable(session, table, sampleRows, true);
+        } else {
+            for (Table t : db.getAllTablesAndViews(false)) {
+                if (t.isAnalyzedAutomatically()) {
+                    analyzeTable(session, t, sampleRows, true);
+                }
+            }
         }
         return 0;
     }
@@ -52,10 +68,13 @@ public class Analyze extends DefineCommand {
      * @param manual whether the command was called by the user
      */
     public static void analyzeTable(Session session, Table table, int sample, boolean manual) {
-        if (!(table.getTableType().equals(Table.TABLE)) || table.isHidden() || session == null) {
+        if (!table.canAnalyze() || table.isHidden() || session == null) {
             return;
         }
         if (!manual) {
+            if (!table.isAnalyzedAutomatically()) {
+                return;
+            }
             if (session.getDatabase().isSysTableLocked()) {
                 return;
             }
@@ -77,33 +96,73 @@ public class Analyze extends DefineCommand {
             return;
         }
         Database db = session.getDatabase();
-        StatementBuilder buff = new StatementBuilder("SELECT ");
         Column[] columns = table.getColumns();
+        // can not index LOB columns, so calculating
+        // the statistics is not required
+        ArrayList<Column> sampled = New.arrayList();
+        StatementBuilder buff = new StatementBuilder("SELECT ");
         for (Column col : columns) {
-            buff.appendExceptFirst(", ");
-            int type = col.getType();
-            if (type == Value.BLOB || type == Value.CLOB) {
-                // can not index LOB columns, so calculating
-                // the selectivity is not required
-                buff.append("100");
+            if (ColumnStatistics.isSupported(col.getType())) {
+                buff.appendExceptFirst(", ");
+                buff.append(col.getSQL());
+                sampled.add(col);
             } else {
-                buff.append("SELECTIVITY(").append(col.getSQL()).append(')');
+                col.setSelectivity(100);
             }
         }
+        if (sampled.isEmpty()) {
+            return;
+        }
         buff.append(" FROM ").append(table.getSQL());
         if (sample > 0) {
-            buff.append(" LIMIT 1 SAMPLE_SIZE ").append(sample);
+            // no limit on the rows that are returned, but each
+            // (local or distributed) scan reads at most 'sample' rows
+            buff.append(" LIMIT -1 SAMPLE_SIZE ").append(sample);
         }
-        String sql = buff.toString();
-        Prepared command = session.prepare(sql);
-        ResultInterface result = command.query(0);
-        result.next();
-        for (int j = 0; j < columns.length; j++) {
-            int selectivity = result.currentRow()[j].getInt();
-            columns[j].setSelectivity(selectivity);
+        int size = sampled.size();
+        ColumnStatistics.Collector[] collectors = new ColumnStatistics.Collector[size];
+        for (int j = 0; j < size; j++) {
+            collectors[j] = new ColumnStatistics.Collector();
+        }
+        long sampleRows = 0;
+        ResultInterface result = session.prepare(buff.toString()).query(0);
+        try {
+            while (result.next()) {
+                Value[] row = result.currentRow();
+                for (int j = 0; j < size; j++) {
+                    collectors[j].add(row[j]);
+                }
+                sampleRows++;
+            }
+        } finally {
+            result.close();
+        }
+        long rowCount;
+        if (table.canGetRowCount()) {
+            // the approximation of some tables (linked tables) is the row
+            // count of the last analyze
+            rowCount = manual ? table.getRowCount(session) : table.getRowCountApproximation();
+        } else if (sample > 0 && sampleRows >= sample) {
+            // the sample did not cover the whole table; a table that is
+            // distributed (for example over HBase regions) counts its rows
+            // in parallel
+            Prepared count = session.prepare("SELECT COUNT(*) FROM " + table.getSQL());
+            ResultInterface r = count.query(0);
+            r.next();
+            rowCount = r.currentRow()[0].getLong();
+            r.close();
+        } else {
+            rowCount = sampleRows;
+        }
+        rowCount = Math.max(rowCount, sampleRows);
+        for (int j = 0; j < size; j++) {
+            Column col = sampled.get(j);
+            col.setSelectivity(collectors[j].getSelectivity());
+            col.setStatistics(collectors[j].build(rowCount, db.getCompareMode()));
         }
         if (manual) {
             db.update(session, table);
+            setStatistics(session, table, rowCount, 0);
         } else {
             Session s = db.getSystemSession();
             if (s != session) {
@@ -112,15 +171,44 @@ public class Analyze extends DefineCommand {
                 // then we can't update the statistics because
                 // that would unlock all locked objects
                 db.update(s, table);
+                setStatistics(s, table, rowCount, 0);
                 s.commit(true);
             }
         }
     }
 
+    /**
+     * Persist the statistics of a table. The statistics of the columns must
+     * already be set.
+     *
+     * @param session the session
+     * @param table the table
+     * @param rowCount the number of rows
+     * @param id the object id of new statistics, or 0 to allocate one
+     */
+    static void setStatistics(Session session, Table table, long rowCount, int id) {
+        Database db = session.getDatabase();
+        TableStatistics statistics = db.findTableStatistics(table);
+        if (statistics == null) {
+            statistics = new TableStatistics(db, id != 0 ? id : db.allocateObjectId(), table);
+            statistics.setRowCount(rowCount);
+            table.setStatistics(statistics);
+            db.addDatabaseObject(session, statistics);
+        } else {
+            statistics.setRowCount(rowCount);
+            table.setStatistics(statistics);
+            db.update(session, statistics);
+        }
+    }
+
     public void setTop(int top) {
         this.sampleRows = top;
     }
 
+    public void setTable(Table table) {
+        this.table = table;
+    }
+
     public int getType() {
         return CommandInterface.ANALYZE;
     }
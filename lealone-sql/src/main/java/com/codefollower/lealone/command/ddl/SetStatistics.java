@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.command.ddl;
+
+import java.util.ArrayList;
+
+import com.codefollower.lealone.command.CommandInterface;
+import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.dbobject.table.ColumnStatistics;
+import com.codefollower.lealone.dbobject.table.Table;
+import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.util.New;
+import com.codefollower.lealone.value.Value;
+
+/**
+ * This class represents the statement
+ * ANALYZE TABLE tableName ROW_COUNT n
+ * {COLUMN columnName NULL_FRACTION d DISTINCT n HISTOGRAM(value, ...)}
+ *
+ * It restores the statistics written by {@link com.codefollower.lealone.dbobject.table.TableStatistics}.
+ */
+public class SetStatistics extends DefineCommand {
+
+    private final Table table;
+    private long rowCount;
+    private final ArrayList<String> columnNames = New.arrayList();
+    private final ArrayList<ColumnStatistics> columnStatistics = New.arrayList();
+
+    public SetStatistics(Session session, Table table) {
+        super(session);
+        this.table = table;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Add the statistics of a column.
+     *
+     * @param columnName the column name
+     * @param nullFraction the fraction of NULL values
+     * @param distinctCount the estimated number of distinct values
+     * @param bounds the bounds of the histogram buckets
+     */
+    public void addColumn(String columnName, double nullFraction, long distinctCount, Value[] bounds) {
+        columnNames.add(columnName);
+        columnStatistics.add(new ColumnStatistics(rowCount, nullFraction, distinctCount, bounds));
+    }
+
+    public int update() {
+        session.commit(true);
+        session.getUser().checkAdmin();
+        for (int i = 0, size = columnNames.size(); i < size; i++) {
+            String name = columnNames.get(i);
+            // the column may have been dropped or changed since the table was analyzed
+            if (!table.doesColumnExist(name)) {
+                continue;
+            }
+            Column col = table.getColumn(name);
+            ColumnStatistics s = columnStatistics.get(i);
+            Value[] bounds = s.getBounds();
+            try {
+                for (int j = 0; j < bounds.length; j++) {
+                    bounds[j] = bounds[j].convertTo(col.getType());
+                }
+            } catch (DbException e) {
+                continue;
+            }
+            col.setStatistics(new ColumnStatistics(rowCount, s.getNullFraction(), s.getDistinctCount(), bounds));
+        }
+        int id = session.getDatabase().findTableStatistics(table) == null ? getObjectId() : 0;
+        Analyze.setStatistics(session, table, rowCount, id);
+        return 0;
+    }
+
+    public int getType() {
+        return CommandInterface.ANALYZE;
+    }
+
+}
@@ -13,6 +13,8 @@ import java.util.Map.Entry;
 import com.codefollower.lealone.command.CommandInterface;
 import com.codefollower.lealone.command.Prepared;
 import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.dbobject.table.TableFilter;
+import com.codefollower.lealone.dbobject.table.TableFilter.TableFilterVisitor;
 import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.expression.Expression;
@@ -61,13 +63,29 @@ public class Explain extends Prepared {
         if (maxrows >= 0) {
             String plan;
             if (executeCommand) {
+                ExplainStatistics explainStatistics = new ExplainStatistics();
+                long rows;
+                long start = System.nanoTime();
                 db.statisticsStart();
-                if (command.isQuery()) {
-                    command.query(maxrows);
-                } else {
-                    command.update();
+                session.setExplainStatistics(explainStatistics);
+                try {
+                    if (command.isQuery()) {
+                        rows = readAll(command.query(maxrows));
+                        flushExplainStatistics();
+                    } else {
+                        rows = command.update();
+                    }
+                } finally {
+                    session.setExplainStatistics(null);
                 }
+                long nanos = System.nanoTime() - start;
+                explainStatistics.flush();
                 plan = command.getPlanSQL();
+                StringBuilder analyzed = new StringBuilder();
+                analyzed.append("rows: ").append(rows).append(", time: ").append(ExplainStatistics.formatNanos(nanos))
+                        .append('\n');
+                analyzed.append(explainStatistics.toString());
+                plan += "\n/*\n" + analyzed.toString() + "*/";
                 Map<String, Integer> statistics = db.statisticsEnd();
                 if (statistics != null) {
                     int total = 0;
@@ -95,6 +113,38 @@ public class Explain extends Prepared {
         return result;
     }
 
+    /**
+     * Read all rows of the result, so that results that are fetched lazily
+     * (for example from other region servers) are fully executed as well.
+     *
+     * @param r the result
+     * @return the number of rows
+     */
+    private static long readAll(ResultInterface r) {
+        long rows = 0;
+        try {
+            while (r.next()) {
+                rows++;
+            }
+        } finally {
+            r.close();
+        }
+        return rows;
+    }
+
+    private void flushExplainStatistics() {
+        if (command instanceof Select) {
+            TableFilterVisitor visitor = new TableFilterVisitor() {
+                public void accept(TableFilter f) {
+                    f.flushExplainStatistics();
+                }
+            };
+            for (TableFilter f : ((Select) command).getTopFilters()) {
+                f.visit(visitor);
+            }
+        }
+    }
+
     private void add(String text) {
         Value[] row = { ValueString.get(text) };
         result.addRow(row);
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.command.dml;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The execution statistics collected while an EXPLAIN ANALYZE statement runs.
+ *
+ * Each entry is identified by a name, for example the table filter or the
+ * region it belongs to. A distributed query updates the entries from several
+ * threads at the same time.
+ */
+public class ExplainStatistics {
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private final ArrayList<Runnable> flushers = new ArrayList<Runnable>();
+
+    /**
+     * Add the rows scanned and returned by an operator.
+     *
+     * @param name the name of the operator
+     * @param scanned the number of rows read
+     * @param returned the number of rows passed on
+     * @param nanos the time spent, in nanoseconds
+     */
+    public synchronized void addRows(String name, long scanned, long returned, long nanos) {
+        Entry e = getEntry(name);
+        e.rows = true;
+        e.scanned += scanned;
+        e.returned += returned;
+        e.nanos += nanos;
+    }
+
+    /**
+     * Add the time of one call.
+     *
+     * @param name the name of the call
+     * @param nanos the time spent, in nanoseconds
+     */
+    public synchronized void addTime(String name, long nanos) {
+        Entry e = getEntry(name);
+        e.calls++;
+        e.nanos += nanos;
+    }
+
+    /**
+     * Add the rows returned by a result and the time spent until the result
+     * was read to the end.
+     *
+     * @param name the name of the result
+     * @param rows the number of rows
+     * @param nanos the time spent, in nanoseconds
+     */
+    public synchronized void addResult(String name, long rows, long nanos) {
+        Entry e = getEntry(name);
+        e.result = true;
+        e.returned += rows;
+        e.nanos += nanos;
+    }
+
+    /**
+     * Add the rows returned by the result of another server. The time the
+     * other server spent executing the query is reported separately, the rest
+     * is network and transfer time.
+     *
+     * @param name the name of the result
+     * @param rows the number of rows
+     * @param nanos the time spent, in nanoseconds
+     * @param serverNanos the part of the time spent on the other server
+     */
+    public synchronized void addRemoteResult(String name, long rows, long nanos, long serverNanos) {
+        Entry e = getEntry(name);
+        e.result = true;
+        e.remote = true;
+        e.returned += rows;
+        e.nanos += nanos;
+        e.serverNanos += serverNanos;
+    }
+
+    /**
+     * Register a callback that adds counters kept somewhere else, for example
+     * in a result that is still open. The callbacks are called by flush().
+     *
+     * @param flusher the callback
+     */
+    public synchronized void addFlusher(Runnable flusher) {
+        flushers.add(flusher);
+    }
+
+    /**
+     * Call all registered callbacks, so that the statistics are complete even
+     * if a result was not read to the end.
+     */
+    public void flush() {
+        Runnable[] list;
+        synchronized (this) {
+            list = flushers.toArray(new Runnable[flushers.size()]);
+            flushers.clear();
+        }
+        for (Runnable r : list) {
+            r.run();
+        }
+    }
+
+    private Entry getEntry(String name) {
+        Entry e = entries.get(name);
+        if (e == null) {
+            e = new Entry();
+            entries.put(name, e);
+        }
+        return e;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized String toString() {
+        StringBuilder buff = new StringBuilder();
+        for (Map.Entry<String, Entry> me : entries.entrySet()) {
+            Entry e = me.getValue();
+            buff.append(me.getKey()).append(": ");
+            if (e.rows) {
+                buff.append("scanned: ").append(e.scanned).append(", returned: ").append(e.returned);
+            } else if (e.result) {
+                buff.append("rows: ").append(e.returned);
+            } else {
+                buff.append("calls: ").append(e.calls);
+            }
+            buff.append(", time: ").append(formatNanos(e.nanos));
+            if (e.remote) {
+                buff.append(" (server: ").append(formatNanos(e.serverNanos));
+                buff.append(", network: ").append(formatNanos(Math.max(0, e.nanos - e.serverNanos))).append(')');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Format a time span as milliseconds.
+     *
+     * @param nanos the time in nanoseconds
+     * @return the formatted time
+     */
+    static String formatNanos(long nanos) {
+        long micros = nanos / 1000;
+        StringBuilder buff = new StringBuilder();
+        buff.append(micros / 1000).append('.');
+        String fraction = Long.toString(micros % 1000);
+        for (int i = fraction.length(); i < 3; i++) {
+            buff.append('0');
+        }
+        return buff.append(fraction).append(" ms").toString();
+    }
+
+    /**
+     * The counters of one entry.
+     */
+    private static class Entry {
+        boolean rows;
+        boolean result;
+        boolean remote;
+        long scanned;
+        long returned;
+        long calls;
+        long nanos;
+        long serverNanos;
+    }
+}
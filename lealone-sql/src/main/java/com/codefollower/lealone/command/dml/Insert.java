@@ -39,6 +39,8 @@ public class Insert extends Prepared implements ResultTarget {
     protected Column[] columns;
     protected ArrayList<Expression[]> list = New.arrayList();
     protected Query query;
+    private Expression[] batchTemplate;
+    private ArrayList<Value[]> batchParameters;
     protected boolean sortedInsertMode;
     protected int rowNumber;
     protected boolean insertFromSelect;
@@ -62,6 +64,14 @@ public class Insert extends Prepared implements ResultTarget {
         this.columns = columns;
     }
 
+    public Table getTable() {
+        return table;
+    }
+
+    public Column[] getColumns() {
+        return columns;
+    }
+
     public void setQuery(Query query) {
         this.query = query;
     }
@@ -285,6 +295,45 @@ public class Insert extends Prepared implements ResultTarget {
         this.insertFromSelect = value;
     }
 
+    @Override
+    public boolean setBatchParameters(ArrayList<Value[]> batchParameters) {
+        if (query != null || list.size() != 1) {
+            return false;
+        }
+        ArrayList<Expression[]> rows = bindBatchRows(list.get(0), batchParameters);
+        if (rows == null) {
+            return false;
+        }
+        batchTemplate = list.get(0);
+        this.batchParameters = batchParameters;
+        list.clear();
+        list.addAll(rows);
+        return true;
+    }
+
+    @Override
+    public ArrayList<Value[]> getBatchParameters() {
+        return batchParameters;
+    }
+
+    @Override
+    public void clearBatchParameters() {
+        if (batchTemplate != null) {
+            list.clear();
+            list.add(batchTemplate);
+            batchTemplate = null;
+            batchParameters = null;
+        }
+    }
+
+    @Override
+    public void setSession(Session currentSession) {
+        super.setSession(currentSession);
+        if (query != null) {
+            query.setSession(currentSession);
+        }
+    }
+
     public boolean isCacheable() {
         return true;
     }
@@ -39,6 +39,8 @@ public class Merge extends Prepared {
     protected Column[] keys;
     protected final ArrayList<Expression[]> list = New.arrayList();
     protected Query query;
+    private Expression[] batchTemplate;
+    private ArrayList<Value[]> batchParameters;
     protected Prepared update;
 
     public Merge(Session session) {
@@ -314,6 +316,45 @@ public class Merge extends Prepared {
         return CommandInterface.MERGE;
     }
 
+    @Override
+    public boolean setBatchParameters(ArrayList<Value[]> batchParameters) {
+        if (query != null || list.size() != 1) {
+            return false;
+        }
+        ArrayList<Expression[]> rows = bindBatchRows(list.get(0), batchParameters);
+        if (rows == null) {
+            return false;
+        }
+        batchTemplate = list.get(0);
+        this.batchParameters = batchParameters;
+        list.clear();
+        list.addAll(rows);
+        return true;
+    }
+
+    @Override
+    public ArrayList<Value[]> getBatchParameters() {
+        return batchParameters;
+    }
+
+    @Override
+    public void clearBatchParameters() {
+        if (batchTemplate != null) {
+            list.clear();
+            list.add(batchTemplate);
+            batchTemplate = null;
+            batchParameters = null;
+        }
+    }
+
+    @Override
+    public void setSession(Session currentSession) {
+        super.setSession(currentSession);
+        if (query != null) {
+            query.setSession(currentSession);
+        }
+    }
+
     public boolean isCacheable() {
         return true;
     }
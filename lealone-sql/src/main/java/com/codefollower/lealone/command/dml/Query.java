@@ -324,6 +324,15 @@ public abstract class Query extends Prepared {
         }
     }
 
+    @Override
+    public void setSession(Session currentSession) {
+        if (currentSession != session) {
+            // the cached result belongs to the old session, which may still read it
+            lastResult = null;
+        }
+        super.setSession(currentSession);
+    }
+
     /**
      * Initialize the order by list. This call may extend the expressions list.
      *
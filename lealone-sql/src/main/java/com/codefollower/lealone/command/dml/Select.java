@@ -1416,6 +1416,16 @@ public class Select extends Query {
         return !isForUpdate;
     }
 
+    @Override
+    public void setSession(Session currentSession) {
+        if (currentSession != session) {
+            for (int i = 0, size = filters.size(); i < size; i++) {
+                filters.get(i).rebind(currentSession);
+            }
+        }
+        super.setSession(currentSession);
+    }
+
     public int getType() {
         return CommandInterface.SELECT;
     }
@@ -1427,6 +1437,10 @@ public class Select extends Query {
         return false;
     }
 
+    public Expression getCondition() {
+        return condition;
+    }
+
     public SortOrder getSortOrder() {
         return sort;
     }
@@ -93,6 +93,11 @@ public interface DbObject {
      */
     int AGGREGATE = 14;
 
+    /**
+     * This object holds the statistics of a table.
+     */
+    int STATISTICS = 15;
+
     /**
      * Get the SQL name of this object (may be quoted).
      *
@@ -28,6 +28,10 @@ public class Sequence extends SchemaObjectBase {
     protected long cacheSize = DEFAULT_CACHE_SIZE;
     private boolean belongsToTable;
 
+    private long refillCount;
+    private long refillTimeTotal;
+    private long refillTimeMax;
+
     public Sequence(Schema schema, int id, String name, boolean belongsToTable) {
         initSchemaObjectBase(schema, id, name, Trace.SEQUENCE);
         this.belongsToTable = belongsToTable;
@@ -88,7 +92,9 @@ public class Sequence extends SchemaObjectBase {
     public synchronized long getNext(Session session) {
         if ((increment > 0 && value >= valueWithMargin) || (increment < 0 && value <= valueWithMargin)) {
             valueWithMargin += increment * cacheSize;
+            long start = System.nanoTime();
             flush(session);
+            addRefillTime(System.nanoTime() - start);
         }
         long v = value;
         value += increment;
@@ -171,4 +177,39 @@ public class Sequence extends SchemaObjectBase {
         return cacheSize;
     }
 
+    /**
+     * Record the time it took to reserve a new range of values.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    protected synchronized void addRefillTime(long nanos) {
+        refillCount++;
+        refillTimeTotal += nanos;
+        if (nanos > refillTimeMax) {
+            refillTimeMax = nanos;
+        }
+    }
+
+    public synchronized long getRefillCount() {
+        return refillCount;
+    }
+
+    /**
+     * Get the average time it took to reserve a new range of values.
+     *
+     * @return the time in microseconds
+     */
+    public synchronized long getRefillTimeAvg() {
+        return refillCount == 0 ? 0 : refillTimeTotal / refillCount / 1000;
+    }
+
+    /**
+     * Get the longest time it took to reserve a new range of values.
+     *
+     * @return the time in microseconds
+     */
+    public synchronized long getRefillTimeMax() {
+        return refillTimeMax / 1000;
+    }
+
 }
@@ -122,10 +122,11 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
      *
      * @param masks the search mask
      * @param rowCount the number of rows in the index
+     * @param filter the table filter, or null if unknown
      * @param sortOrder the sort order
      * @return the estimated cost
      */
-    protected long getCostRangeIndex(int[] masks, long rowCount, SortOrder sortOrder) {
+    protected long getCostRangeIndex(int[] masks, long rowCount, TableFilter filter, SortOrder sortOrder) {
         rowCount += Constants.COST_ROW_OFFSET;
         long cost = rowCount;
         long rows = rowCount;
@@ -150,13 +151,13 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
                 rows = Math.max(rowCount / distinctRows, 1);
                 cost = 2 + rows;
             } else if ((mask & IndexCondition.RANGE) == IndexCondition.RANGE) {
-                cost = 2 + rows / 4;
+                cost = 2 + getRangeRows(column, rows, 4, filter);
                 break;
             } else if ((mask & IndexCondition.START) == IndexCondition.START) {
-                cost = 2 + rows / 3;
+                cost = 2 + getRangeRows(column, rows, 3, filter);
                 break;
             } else if ((mask & IndexCondition.END) == IndexCondition.END) {
-                cost = rows / 3;
+                cost = getRangeRows(column, rows, 3, filter);
                 break;
             } else {
                 break;
@@ -195,6 +196,21 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
         return cost;
     }
 
+    /**
+     * Estimate the number of rows of a range scan. If the column was analyzed
+     * and the range has constant bounds, the histogram is used, otherwise a
+     * fixed part of the rows.
+     */
+    private static long getRangeRows(Column column, long rows, int divisor, TableFilter filter) {
+        if (filter != null) {
+            double fraction = IndexCondition.getRangeFraction(filter.getSession(), filter.getIndexConditions(), column);
+            if (fraction >= 0) {
+                return Math.max(1, (long) (rows * fraction));
+            }
+        }
+        return rows / divisor;
+    }
+
     public int compareRows(SearchRow rowData, SearchRow compare) {
         if (rowData == compare) {
             return 0;
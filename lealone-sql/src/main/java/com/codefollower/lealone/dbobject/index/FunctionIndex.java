@@ -8,6 +8,7 @@ package com.codefollower.lealone.dbobject.index;
 
 import com.codefollower.lealone.dbobject.table.FunctionTable;
 import com.codefollower.lealone.dbobject.table.IndexColumn;
+import com.codefollower.lealone.dbobject.table.TableFilter;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.Row;
@@ -46,7 +47,7 @@ public class FunctionIndex extends BaseIndex {
         return new FunctionCursor(functionTable.getResult(session));
     }
 
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
         if (masks != null) {
             throw DbException.getUnsupportedException("ALIAS");
         }
@@ -14,6 +14,7 @@ import java.util.List;
 
 import com.codefollower.lealone.command.dml.Query;
 import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.dbobject.table.ColumnStatistics;
 import com.codefollower.lealone.dbobject.table.Table;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.expression.Comparison;
@@ -25,6 +26,7 @@ import com.codefollower.lealone.result.ResultInterface;
 import com.codefollower.lealone.util.StatementBuilder;
 import com.codefollower.lealone.value.CompareMode;
 import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueNull;
 
 /**
  * A index condition object is made for each condition that can potentially use
@@ -304,6 +306,45 @@ public class IndexCondition {
         return compareType;
     }
 
+    /**
+     * Estimate the fraction of the rows that match the range conditions on
+     * the given column, using the histogram computed by ANALYZE. Only
+     * conditions with a constant value are used, as other values are not
+     * known when the plan is chosen.
+     *
+     * @param session the session
+     * @param indexConditions all index conditions
+     * @param column the column
+     * @return the fraction, or -1 if it can not be estimated
+     */
+    public static double getRangeFraction(Session session, ArrayList<IndexCondition> indexConditions, Column column) {
+        ColumnStatistics statistics = column.getStatistics();
+        if (statistics == null || session == null) {
+            return -1;
+        }
+        CompareMode compareMode = session.getDatabase().getCompareMode();
+        Value min = null, max = null;
+        for (IndexCondition c : indexConditions) {
+            if (c.column != column || c.expression == null || !c.expression.isConstant()) {
+                continue;
+            }
+            Value v = c.expression.getValue(session);
+            if (v == ValueNull.INSTANCE) {
+                continue;
+            }
+            if (c.isStart() && (min == null || min.compareTo(v, compareMode) < 0)) {
+                min = v;
+            }
+            if (c.isEnd() && (max == null || max.compareTo(v, compareMode) > 0)) {
+                max = v;
+            }
+        }
+        if (min == null && max == null) {
+            return -1;
+        }
+        return statistics.getRangeFraction(min, max, compareMode);
+    }
+
     /**
      * Get the referenced column.
      *
@@ -16,8 +16,10 @@ import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.Row;
 import com.codefollower.lealone.result.SearchRow;
+import com.codefollower.lealone.util.JdbcUtils;
 import com.codefollower.lealone.value.DataType;
 import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueNull;
 
 /**
  * The cursor implementation for the linked index.
@@ -29,14 +31,25 @@ public class LinkedCursor implements Cursor {
     private final String sql;
     private final Session session;
     private final ResultSet rs;
+    private final int[] columnIds;
+    private final Object lock;
     private Row current;
+    private boolean closed;
 
-    LinkedCursor(TableLink tableLink, ResultSet rs, Session session, String sql, PreparedStatement prep) {
+    /**
+     * Create a new cursor.
+     *
+     * @param columnIds the ids of the columns in the result set, or null if
+     *            the result set contains all columns
+     */
+    LinkedCursor(TableLink tableLink, ResultSet rs, Session session, String sql, PreparedStatement prep, int[] columnIds) {
         this.session = session;
         this.tableLink = tableLink;
         this.rs = rs;
         this.sql = sql;
         this.prep = prep;
+        this.columnIds = columnIds;
+        lock = tableLink.getLock(prep);
     }
 
     public Row get() {
@@ -48,26 +61,64 @@ public class LinkedCursor implements Cursor {
     }
 
     public boolean next() {
+        if (closed) {
+            current = null;
+            return false;
+        }
+        Row row = tableLink.getTemplateRow();
         try {
-            boolean result = rs.next();
-            if (!result) {
-                rs.close();
-                tableLink.reusePreparedStatement(prep, sql);
-                current = null;
-                return false;
+            // the connection may be shared with other statements
+            synchronized (lock) {
+                if (!rs.next()) {
+                    close();
+                    current = null;
+                    return false;
+                }
+                if (columnIds == null) {
+                    for (int i = 0; i < row.getColumnCount(); i++) {
+                        Column col = tableLink.getColumn(i);
+                        Value v = DataType.readValue(session, rs, i + 1, col.getType());
+                        row.setValue(i, v);
+                    }
+                } else {
+                    // the other columns are not used by the query
+                    for (int i = 0; i < row.getColumnCount(); i++) {
+                        row.setValue(i, ValueNull.INSTANCE);
+                    }
+                    for (int i = 0; i < columnIds.length; i++) {
+                        Column col = tableLink.getColumn(columnIds[i]);
+                        Value v = DataType.readValue(session, rs, i + 1, col.getType());
+                        row.setValue(columnIds[i], v);
+                    }
+                }
             }
         } catch (SQLException e) {
+            close();
             throw DbException.convert(e);
+        } catch (DbException e) {
+            close();
+            throw e;
         }
-        current = tableLink.getTemplateRow();
-        for (int i = 0; i < current.getColumnCount(); i++) {
-            Column col = tableLink.getColumn(i);
-            Value v = DataType.readValue(session, rs, i + 1, col.getType());
-            current.setValue(i, v);
-        }
+        current = row;
         return true;
     }
 
+    /**
+     * Close the result and give back the statement and its connection. This
+     * is done when the last row was read, or at the end of the statement
+     * if the cursor was not read to the end.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (lock) {
+            JdbcUtils.closeSilently(rs);
+        }
+        tableLink.reusePreparedStatement(prep, sql);
+    }
+
     public boolean previous() {
         throw DbException.throwInternalError();
     }
@@ -10,23 +10,42 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
 
+import com.codefollower.lealone.command.dml.Select;
 import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.dbobject.table.Column;
 import com.codefollower.lealone.dbobject.table.IndexColumn;
+import com.codefollower.lealone.dbobject.table.TableFilter;
 import com.codefollower.lealone.dbobject.table.TableLink;
 import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.expression.Comparison;
+import com.codefollower.lealone.expression.ConditionAndOr;
+import com.codefollower.lealone.expression.ConditionIn;
+import com.codefollower.lealone.expression.ConditionInConstantSet;
+import com.codefollower.lealone.expression.ConditionNot;
+import com.codefollower.lealone.expression.Expression;
+import com.codefollower.lealone.expression.ExpressionColumn;
+import com.codefollower.lealone.expression.Parameter;
+import com.codefollower.lealone.expression.ValueExpression;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.Row;
 import com.codefollower.lealone.result.SearchRow;
 import com.codefollower.lealone.result.SortOrder;
 import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.StatementBuilder;
+import com.codefollower.lealone.value.CompareMode;
 import com.codefollower.lealone.value.Value;
 import com.codefollower.lealone.value.ValueNull;
 
 /**
  * A linked index is a index for a linked (remote) table.
  * It is backed by an index on the remote table which is accessed over JDBC.
+ *
+ * When the table is read by a query, the columns that are used, the
+ * conditions that only refer to the linked table, and (if the query reads
+ * nothing else, and the remote database evaluates every condition exactly as
+ * it is evaluated locally) the sort order and the limit are sent to the remote
+ * database, so that it only returns the rows and columns that are needed. The
+ * conditions are evaluated again locally.
  */
 public class LinkedIndex extends BaseIndex {
 
@@ -82,8 +101,85 @@ public class LinkedIndex extends BaseIndex {
         ArrayList<Value> params = New.arrayList();
         StatementBuilder buff = new StatementBuilder("SELECT * FROM ");
         buff.append(targetTableName).append(" T");
-        for (int i = 0; first != null && i < first.getColumnCount(); i++) {
-            Value v = first.getValue(i);
+        appendRange(buff, params, first, ">=");
+        appendRange(buff, params, last, "<=");
+        return find(session, buff.toString(), params, null, 0);
+    }
+
+    public Cursor find(TableFilter filter, SearchRow first, SearchRow last) {
+        Select select = filter.getSelect();
+        if (select == null) {
+            // delete and update need the complete rows
+            return find(filter.getSession(), first, last);
+        }
+        Session session = filter.getSession();
+        ArrayList<Value> params = New.arrayList();
+        int[] columnIds = getColumnIds(select.getColumns(filter));
+        StatementBuilder buff = new StatementBuilder("SELECT ");
+        if (columnIds.length == 0) {
+            buff.append('1');
+        }
+        for (int id : columnIds) {
+            buff.appendExceptFirst(", ");
+            buff.append(table.getColumn(id).getSQL());
+        }
+        buff.append(" FROM ").append(targetTableName).append(" T");
+        buff.resetCount();
+        // the remote database may return more rows than match a string
+        // condition, so then the limit can only be applied locally
+        boolean[] inexact = new boolean[1];
+        inexact[0] |= !appendRange(buff, params, first, ">=");
+        inexact[0] |= !appendRange(buff, params, last, "<=");
+        boolean allConditions = appendConditions(buff, params, filter.getFilterCondition(), filter, inexact);
+        if (filter.isJoinOuter() || filter.isJoinOuterIndirect()) {
+            // the where condition also sees the rows of an outer join
+            // that don't match
+            allConditions = false;
+        } else {
+            allConditions &= appendConditions(buff, params, select.getCondition(), filter, inexact);
+        }
+        int maxRows = 0;
+        if (allConditions && !inexact[0] && select.getTopTableFilter() == filter && filter.getJoin() == null
+                && filter.getJoinCondition() == null && !select.isGroupQuery() && !select.isDistinct()
+                && select.getLimit() != null) {
+            // no other table, and every condition is evaluated exactly by
+            // the remote database: it can sort the rows and apply the limit
+            long limit = select.getLimitRows();
+            if (select.getOffset() != null) {
+                limit += Math.max(0, select.getOffset().getValue(session).getInt());
+            }
+            StringBuilder orderBy = new StringBuilder();
+            if (limit > 0 && (select.getSortOrder() == null || appendOrderBy(orderBy, select, filter))) {
+                buff.append(orderBy.toString());
+                maxRows = (int) Math.min(limit, Integer.MAX_VALUE);
+            }
+        }
+        return find(session, buff.toString(), params, columnIds, maxRows);
+    }
+
+    private Cursor find(Session session, String sql, ArrayList<Value> params, int[] columnIds, int maxRows) {
+        try {
+            PreparedStatement prep = link.execute(sql, params, false, maxRows);
+            ResultSet rs = prep.getResultSet();
+            LinkedCursor cursor = new LinkedCursor(link, rs, session, sql, prep, columnIds);
+            if (session != null) {
+                session.addLinkedCursor(cursor);
+            }
+            return cursor;
+        } catch (Exception e) {
+            throw TableLink.wrapException(sql, e);
+        }
+    }
+
+    /**
+     * Append the range condition of one end of an index lookup.
+     *
+     * @return false if the remote database may compare the values differently
+     */
+    private boolean appendRange(StatementBuilder buff, ArrayList<Value> params, SearchRow row, String compare) {
+        boolean exact = true;
+        for (int i = 0; row != null && i < row.getColumnCount(); i++) {
+            Value v = row.getValue(i);
             if (v != null) {
                 buff.appendOnlyFirst(" WHERE ");
                 buff.appendExceptFirst(" AND ");
@@ -92,36 +188,269 @@ public class LinkedIndex extends BaseIndex {
                 if (v == ValueNull.INSTANCE) {
                     buff.append(" IS NULL");
                 } else {
-                    buff.append(">=");
+                    buff.append(compare);
                     addParameter(buff, col);
                     params.add(v);
+                    exact &= isSortable(col.getType());
                 }
             }
         }
-        for (int i = 0; last != null && i < last.getColumnCount(); i++) {
-            Value v = last.getValue(i);
-            if (v != null) {
-                buff.appendOnlyFirst(" WHERE ");
-                buff.appendExceptFirst(" AND ");
-                Column col = table.getColumn(i);
-                buff.append(col.getSQL());
-                if (v == ValueNull.INSTANCE) {
-                    buff.append(" IS NULL");
-                } else {
-                    buff.append("<=");
-                    addParameter(buff, col);
-                    params.add(v);
+        return exact;
+    }
+
+    private int[] getColumnIds(ArrayList<Column> list) {
+        boolean[] used = new boolean[table.getColumns().length];
+        int count = 0;
+        if (list != null) {
+            for (Column c : list) {
+                if (!used[c.getColumnId()]) {
+                    used[c.getColumnId()] = true;
+                    count++;
                 }
             }
         }
-        String sql = buff.toString();
-        try {
-            PreparedStatement prep = link.execute(sql, params, false);
-            ResultSet rs = prep.getResultSet();
-            return new LinkedCursor(link, rs, session, sql, prep);
-        } catch (Exception e) {
-            throw TableLink.wrapException(sql, e);
+        int[] columnIds = new int[count];
+        for (int i = 0, j = 0; i < used.length; i++) {
+            if (used[i]) {
+                columnIds[j++] = i;
+            }
+        }
+        return columnIds;
+    }
+
+    /**
+     * Append the parts of an AND condition that can be evaluated by the remote
+     * database to the WHERE clause.
+     *
+     * @param inexact set to true if a condition was appended that the remote
+     *            database may evaluate to true for more rows
+     * @return true if the complete condition was appended
+     */
+    private boolean appendConditions(StatementBuilder buff, ArrayList<Value> params, Expression condition,
+            TableFilter filter, boolean[] inexact) {
+        if (condition == null) {
+            return true;
+        }
+        if (condition instanceof ConditionAndOr && ((ConditionAndOr) condition).getAndOrType() == ConditionAndOr.AND) {
+            ConditionAndOr and = (ConditionAndOr) condition;
+            boolean left = appendConditions(buff, params, and.getExpression(true), filter, inexact);
+            boolean right = appendConditions(buff, params, and.getExpression(false), filter, inexact);
+            return left && right;
+        }
+        StringBuilder sql = new StringBuilder();
+        ArrayList<Value> values = New.arrayList();
+        if (!appendCondition(sql, values, condition, filter, false, inexact)) {
+            return false;
         }
+        buff.appendOnlyFirst(" WHERE ");
+        buff.appendExceptFirst(" AND ");
+        buff.append(sql.toString());
+        params.addAll(values);
+        return true;
+    }
+
+    /**
+     * Append a condition in plain SQL, with the constants and parameters as
+     * JDBC parameters. Only simple conditions are sent, as functions and
+     * other operators are not the same in all databases.
+     *
+     * @param negated whether the condition is within a NOT condition
+     * @param inexact set to true if strings are compared, see
+     *            {@link #isComparable(int, boolean)}
+     * @return false if the condition can not be sent to the remote database
+     */
+    private boolean appendCondition(StringBuilder buff, ArrayList<Value> params, Expression e, TableFilter filter,
+            boolean negated, boolean[] inexact) {
+        if (e instanceof Comparison) {
+            Comparison c = (Comparison) e;
+            String op;
+            boolean strings = false;
+            switch (c.getCompareType()) {
+            case Comparison.IS_NULL:
+                return appendOperand(buff, params, c.getExpression(true), filter, true) && append(buff, " IS NULL");
+            case Comparison.IS_NOT_NULL:
+                return appendOperand(buff, params, c.getExpression(true), filter, true)
+                        && append(buff, " IS NOT NULL");
+            case Comparison.EQUAL:
+                op = "=";
+                strings = !negated;
+                break;
+            case Comparison.NOT_EQUAL:
+                op = "<>";
+                break;
+            case Comparison.BIGGER_EQUAL:
+                op = ">=";
+                break;
+            case Comparison.BIGGER:
+                op = ">";
+                break;
+            case Comparison.SMALLER_EQUAL:
+                op = "<=";
+                break;
+            case Comparison.SMALLER:
+                op = "<";
+                break;
+            default:
+                return false;
+            }
+            if (!appendOperand(buff, params, c.getExpression(true), filter, strings) || !append(buff, op)
+                    || !appendOperand(buff, params, c.getExpression(false), filter, strings)) {
+                return false;
+            }
+            inexact[0] |= isString(c.getExpression(true)) || isString(c.getExpression(false));
+            return true;
+        } else if (e instanceof ConditionAndOr) {
+            ConditionAndOr c = (ConditionAndOr) e;
+            String op = c.getAndOrType() == ConditionAndOr.AND ? " AND " : " OR ";
+            return append(buff, "(") && appendCondition(buff, params, c.getExpression(true), filter, negated, inexact)
+                    && append(buff, op)
+                    && appendCondition(buff, params, c.getExpression(false), filter, negated, inexact)
+                    && append(buff, ")");
+        } else if (e instanceof ConditionNot) {
+            return append(buff, "NOT(")
+                    && appendCondition(buff, params, ((ConditionNot) e).getCondition(), filter, !negated, inexact)
+                    && append(buff, ")");
+        } else if (e instanceof ConditionIn) {
+            ConditionIn c = (ConditionIn) e;
+            return appendIn(buff, params, c.getLeft(), c.getValueList(), filter, !negated, inexact);
+        } else if (e instanceof ConditionInConstantSet) {
+            ConditionInConstantSet c = (ConditionInConstantSet) e;
+            return appendIn(buff, params, c.getLeft(), c.getValueList(), filter, !negated, inexact);
+        }
+        return false;
+    }
+
+    private boolean appendIn(StringBuilder buff, ArrayList<Value> params, Expression left, ArrayList<Expression> values,
+            TableFilter filter, boolean strings, boolean[] inexact) {
+        if (!appendOperand(buff, params, left, filter, strings)) {
+            return false;
+        }
+        buff.append(" IN(");
+        for (int i = 0, size = values.size(); i < size; i++) {
+            if (i > 0) {
+                buff.append(", ");
+            }
+            if (!appendOperand(buff, params, values.get(i), filter, strings)) {
+                return false;
+            }
+        }
+        buff.append(')');
+        inexact[0] |= isString(left);
+        return true;
+    }
+
+    private static boolean isString(Expression e) {
+        int type = e.getType();
+        return type == Value.STRING || type == Value.STRING_FIXED;
+    }
+
+    private static boolean append(StringBuilder buff, String s) {
+        buff.append(s);
+        return true;
+    }
+
+    /**
+     * Append a column or a constant.
+     *
+     * @param strings whether string values may be compared by the remote
+     *            database, see {@link #isComparable(int, boolean)}
+     * @return false if the operand can not be sent to the remote database
+     */
+    private boolean appendOperand(StringBuilder buff, ArrayList<Value> params, Expression e, TableFilter filter,
+            boolean strings) {
+        if (e instanceof ExpressionColumn) {
+            ExpressionColumn c = (ExpressionColumn) e;
+            if (c.getTableFilter() != filter || !isComparable(c.getColumn().getType(), strings)) {
+                return false;
+            }
+            if (c.getColumn().getType() == Value.STRING_FIXED && link.isOracle()) {
+                // see addParameter
+                return false;
+            }
+            buff.append(c.getColumn().getSQL());
+            return true;
+        } else if (e instanceof ValueExpression || e instanceof Parameter) {
+            Value v = e.getValue(filter.getSession());
+            if (v == ValueNull.INSTANCE || !isComparable(v.getType(), strings)) {
+                return false;
+            }
+            buff.append('?');
+            params.add(v);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if values of this type can be compared by the remote database.
+     * Strings are only compared by the remote database for equality, and not
+     * within NOT: if the collation of the remote database ignores the case or
+     * trailing spaces, it then returns more rows than required, and these are
+     * removed by the local condition. The local collation must not ignore
+     * anything. Case insensitive strings are compared locally only.
+     *
+     * @param type the value type
+     * @param strings whether strings may be compared
+     */
+    private boolean isComparable(int type, boolean strings) {
+        switch (type) {
+        case Value.STRING:
+        case Value.STRING_FIXED:
+            return strings && CompareMode.OFF.equals(database.getCompareMode().getName());
+        default:
+            return isSortable(type);
+        }
+    }
+
+    /**
+     * Check if values of this type are sorted the same way by all databases.
+     * Strings are not, as the collation may be different.
+     */
+    private static boolean isSortable(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DECIMAL:
+        case Value.FLOAT:
+        case Value.DOUBLE:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private boolean appendOrderBy(StringBuilder buff, Select select, TableFilter filter) {
+        SortOrder sort = select.getSortOrder();
+        int[] indexes = sort.getIndexes();
+        int[] sortTypes = sort.getSortTypes();
+        buff.append(" ORDER BY ");
+        for (int i = 0; i < indexes.length; i++) {
+            Expression e = select.getExpressions().get(indexes[i]).getNonAliasExpression();
+            if (!(e instanceof ExpressionColumn)) {
+                return false;
+            }
+            ExpressionColumn c = (ExpressionColumn) e;
+            if (c.getTableFilter() != filter || !isSortable(c.getColumn().getType())) {
+                return false;
+            }
+            String col = c.getColumn().getSQL();
+            // databases don't agree where NULL is sorted
+            boolean nullsFirst = SortOrder.compareNull(true, sortTypes[i]) < 0;
+            if (i > 0) {
+                buff.append(", ");
+            }
+            buff.append("CASE WHEN ").append(col).append(" IS NULL THEN ").append(nullsFirst ? 0 : 1).append(" ELSE ")
+                    .append(nullsFirst ? 1 : 0).append(" END, ").append(col);
+            if ((sortTypes[i] & SortOrder.DESCENDING) != 0) {
+                buff.append(" DESC");
+            }
+        }
+        return true;
     }
 
     private void addParameter(StatementBuilder buff, Column col) {
@@ -136,8 +465,8 @@ public class LinkedIndex extends BaseIndex {
         }
     }
 
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
-        return 100 + getCostRangeIndex(masks, rowCount + Constants.COST_ROW_OFFSET, sortOrder);
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
+        return 100 + getCostRangeIndex(masks, link.getRowCountApproximation() + Constants.COST_ROW_OFFSET, filter, sortOrder);
     }
 
     public void remove(Session session) {
@@ -157,13 +486,18 @@ public class LinkedIndex extends BaseIndex {
     }
 
     public boolean canGetFirstOrLast() {
-        return false;
+        // used for MIN and MAX, that are then run on the remote index
+        return isSortable(columns[0].getType());
     }
 
     public Cursor findFirstOrLast(Session session, boolean first) {
-        // TODO optimization: could get the first or last value (in any case;
-        // maybe not optimized)
-        throw DbException.getUnsupportedException("LINKED");
+        String col = columns[0].getSQL();
+        String sql = "SELECT * FROM " + targetTableName + " T WHERE " + col + " IS NOT NULL ORDER BY " + col
+                + (first ? "" : " DESC");
+        LinkedCursor cursor = (LinkedCursor) find(session, sql, null, null, 1);
+        Row row = cursor.next() ? cursor.get() : null;
+        cursor.close();
+        return new SingleRowCursor(row);
     }
 
     public void remove(Session session, Row row) {
@@ -187,9 +521,13 @@ public class LinkedIndex extends BaseIndex {
         String sql = buff.toString();
         try {
             PreparedStatement prep = link.execute(sql, params, false);
-            int count = prep.executeUpdate();
-            link.reusePreparedStatement(prep, sql);
-            rowCount -= count;
+            try {
+                synchronized (link.getLock(prep)) {
+                    rowCount -= prep.getUpdateCount();
+                }
+            } finally {
+                link.reusePreparedStatement(prep, sql);
+            }
         } catch (Exception e) {
             throw TableLink.wrapException(sql, e);
         }
@@ -245,7 +583,7 @@ public class LinkedIndex extends BaseIndex {
     }
 
     public long getRowCountApproximation() {
-        return rowCount;
+        return link.getRowCountApproximation();
     }
 
     public long getDiskSpaceUsed() {
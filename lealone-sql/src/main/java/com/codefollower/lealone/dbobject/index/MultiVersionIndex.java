@@ -125,8 +125,8 @@ public class MultiVersionIndex implements Index {
         return cursor;
     }
 
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
-        return base.getCost(session, masks, sortOrder);
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
+        return base.getCost(session, masks, filter, sortOrder);
     }
 
     public boolean needRebuild() {
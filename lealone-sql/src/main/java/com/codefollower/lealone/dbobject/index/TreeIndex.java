@@ -309,8 +309,8 @@ public class TreeIndex extends BaseIndex {
         return new TreeCursor(this, x, first, last);
     }
 
-    public double getCost(Session session, int[] masks, SortOrder sortOrder) {
-        return getCostRangeIndex(masks, tableData.getRowCountApproximation(), sortOrder);
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
+        return getCostRangeIndex(masks, tableData.getRowCountApproximation(), filter, sortOrder);
     }
 
     public void remove(Session session) {
@@ -78,6 +78,20 @@ public class ViewIndex extends BaseIndex {
         return createSession;
     }
 
+    /**
+     * Get an index of the same view, with the same index masks, that runs the
+     * view query in the given session.
+     *
+     * @param session the session
+     * @return this index if it was created by the session, or a new index
+     */
+    public ViewIndex forSession(Session session) {
+        if (session == createSession || createSession == null) {
+            return this;
+        }
+        return new ViewIndex(view, this, session, indexMasks);
+    }
+
     public String getPlanSQL() {
         return planSQL;
     }
@@ -110,7 +124,7 @@ public class ViewIndex extends BaseIndex {
         double cost;
     }
 
-    public synchronized double getCost(Session session, int[] masks, SortOrder sortOrder) {
+    public synchronized double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
         if (recursive) {
             return 1000;
         }
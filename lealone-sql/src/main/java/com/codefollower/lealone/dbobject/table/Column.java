@@ -88,6 +88,7 @@ public class Column {
     private boolean isComputed;
     private TableFilter computeTableFilter;
     private int selectivity;
+    private ColumnStatistics statistics;
     private SingleColumnResolver resolver;
     private String comment;
     private boolean primaryKey;
@@ -634,6 +635,20 @@ public class Column {
         this.selectivity = selectivity;
     }
 
+    /**
+     * Get the statistics computed by the last ANALYZE statement. They are
+     * persisted by the {@link TableStatistics} of the table.
+     *
+     * @return the statistics, or null if the column was not analyzed
+     */
+    public ColumnStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(ColumnStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Add a check constraint expression to this column. An existing check
      * constraint constraint is added using AND.
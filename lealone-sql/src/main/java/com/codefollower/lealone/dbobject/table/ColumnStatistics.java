@@ -0,0 +1,272 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.dbobject.table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import com.codefollower.lealone.util.HyperLogLog;
+import com.codefollower.lealone.util.New;
+import com.codefollower.lealone.value.CompareMode;
+import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueNull;
+
+/**
+ * The statistics of a column, as computed by the ANALYZE statement: the
+ * number of rows of the table, the fraction of NULL values, the estimated
+ * number of distinct values, and an equi-depth histogram of the non-NULL
+ * values. Each bucket of the histogram (between two neighbouring bounds)
+ * contains about the same number of rows.
+ */
+public class ColumnStatistics {
+
+    /**
+     * The maximum number of buckets of a histogram.
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    private final long rowCount;
+    private final double nullFraction;
+    private final long distinctCount;
+    private final Value[] bounds;
+
+    public ColumnStatistics(long rowCount, double nullFraction, long distinctCount, Value[] bounds) {
+        this.rowCount = rowCount;
+        this.nullFraction = nullFraction;
+        this.distinctCount = distinctCount;
+        this.bounds = bounds;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public double getNullFraction() {
+        return nullFraction;
+    }
+
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    /**
+     * Get the bounds of the histogram buckets, in ascending order.
+     *
+     * @return the bounds
+     */
+    public Value[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Estimate the fraction of all rows where the value of the column is
+     * within the given range.
+     *
+     * @param min the lower bound (inclusive), or null for no limit
+     * @param max the upper bound (inclusive), or null for no limit
+     * @param compareMode the compare mode
+     * @return the fraction, or -1 if there is no histogram
+     */
+    public double getRangeFraction(Value min, Value max, CompareMode compareMode) {
+        int buckets = bounds.length - 1;
+        if (buckets < 1) {
+            return -1;
+        }
+        double low = min == null ? 0 : getPosition(min, compareMode);
+        double high = max == null ? buckets : getPosition(max, compareMode);
+        double fraction = (high - low) / buckets;
+        if (fraction <= 0) {
+            // the range is empty, or between two neighbouring sample values
+            fraction = distinctCount > 0 ? 1.0 / distinctCount : 1.0 / (buckets + 1);
+        }
+        return Math.min(1, fraction) * (1 - nullFraction);
+    }
+
+    /**
+     * Get the position of a value in the histogram, from 0 (at or before the
+     * first bound) to the number of buckets (at or after the last bound).
+     */
+    private double getPosition(Value v, CompareMode compareMode) {
+        int buckets = bounds.length - 1;
+        if (v.compareTo(bounds[0], compareMode) <= 0) {
+            return 0;
+        }
+        if (v.compareTo(bounds[buckets], compareMode) >= 0) {
+            return buckets;
+        }
+        // find the bucket i with bounds[i] < v <= bounds[i + 1]
+        int lo = 0, hi = buckets;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (bounds[mid].compareTo(v, compareMode) < 0) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo + getPositionInBucket(bounds[lo], bounds[hi], v);
+    }
+
+    private static double getPositionInBucket(Value lower, Value upper, Value v) {
+        switch (v.getType()) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DECIMAL:
+        case Value.DOUBLE:
+        case Value.FLOAT: {
+            double a = lower.getDouble(), b = upper.getDouble();
+            if (b > a) {
+                return (v.getDouble() - a) / (b - a);
+            }
+            break;
+        }
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP: {
+            double a = lower.getTimestamp().getTime(), b = upper.getTimestamp().getTime();
+            if (b > a) {
+                return (v.getTimestamp().getTime() - a) / (b - a);
+            }
+            break;
+        }
+        default:
+        }
+        return 0.5;
+    }
+
+    /**
+     * Check whether statistics can be collected and persisted for columns of
+     * this data type.
+     *
+     * @param type the data type
+     * @return true if they can
+     */
+    public static boolean isSupported(int type) {
+        switch (type) {
+        case Value.BLOB:
+        case Value.CLOB:
+        case Value.ARRAY:
+        case Value.RESULT_SET:
+        case Value.JAVA_OBJECT:
+        case Value.UNKNOWN:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Collects the sampled values of one column.
+     */
+    public static class Collector {
+
+        /**
+         * The maximum number of values kept for the histogram. If there are
+         * more, a uniform random subset (reservoir sample) is kept.
+         */
+        private static final int MAX_VALUES = 20000;
+
+        private final HyperLogLog distinct = new HyperLogLog();
+        private final ArrayList<Value> values = New.arrayList();
+        private final Random random = new Random(1);
+        private long nullCount;
+        private long valueCount;
+
+        /**
+         * Add a sampled value.
+         *
+         * @param v the value
+         */
+        public void add(Value v) {
+            if (v == ValueNull.INSTANCE) {
+                nullCount++;
+            } else {
+                distinct.add(v.hashCode());
+                valueCount++;
+                if (values.size() < MAX_VALUES) {
+                    values.add(v);
+                } else {
+                    long i = (long) (random.nextDouble() * valueCount);
+                    if (i < MAX_VALUES) {
+                        values.set((int) i, v);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get the selectivity of the sampled values, the same way as the
+         * SELECTIVITY aggregate function computes it.
+         *
+         * @return the selectivity (1 to 100)
+         */
+        public int getSelectivity() {
+            long count = valueCount + nullCount;
+            if (count == 0) {
+                return 0;
+            }
+            long d = Math.min(getDistinctCount(), valueCount) + (nullCount > 0 ? 1 : 0);
+            return (int) Math.max(1, Math.min(100, 100 * d / count));
+        }
+
+        private long getDistinctCount() {
+            return valueCount == 0 ? 0 : Math.max(1, distinct.estimate());
+        }
+
+        /**
+         * Build the statistics.
+         *
+         * @param rowCount the number of rows of the table
+         * @param compareMode the compare mode
+         * @return the statistics
+         */
+        public ColumnStatistics build(long rowCount, final CompareMode compareMode) {
+            long sampleCount = valueCount + nullCount;
+            double nullFraction = sampleCount == 0 ? 0 : (double) nullCount / sampleCount;
+            long distinctCount = Math.min(getDistinctCount(), valueCount);
+            if (sampleCount > 0 && sampleCount < rowCount && distinctCount * 10 > valueCount * 9) {
+                // (almost) all sampled values are different,
+                // so the column is probably unique in the whole table
+                distinctCount = Math.round(rowCount * (1 - nullFraction));
+            }
+            Collections.sort(values, new Comparator<Value>() {
+                public int compare(Value a, Value b) {
+                    return a.compareTo(b, compareMode);
+                }
+            });
+            int size = values.size();
+            int buckets = Math.min(HISTOGRAM_BUCKETS, size - 1);
+            Value[] bounds;
+            if (buckets < 1) {
+                bounds = size == 0 ? new Value[0] : new Value[] { values.get(0) };
+            } else {
+                bounds = new Value[buckets + 1];
+                for (int i = 0; i <= buckets; i++) {
+                    bounds[i] = values.get((int) ((long) i * (size - 1) / buckets));
+                }
+            }
+            return new ColumnStatistics(rowCount, nullFraction, distinctCount, bounds);
+        }
+    }
+}
@@ -17,8 +17,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import com.codefollower.lealone.command.Command;
+import com.codefollower.lealone.command.PlanCache;
 import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.dbobject.Constant;
 import com.codefollower.lealone.dbobject.DbObject;
@@ -44,6 +46,7 @@ import com.codefollower.lealone.dbobject.index.MultiVersionIndex;
 import com.codefollower.lealone.engine.Csv;
 import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.engine.InDoubtTransaction;
+import com.codefollower.lealone.engine.Metrics;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.expression.ValueExpression;
 import com.codefollower.lealone.message.DbException;
@@ -102,7 +105,10 @@ public class MetaTable extends Table {
     private static final int SESSIONS = 25;
     private static final int LOCKS = 26;
     private static final int SESSION_STATE = 27;
-    private static final int META_TABLE_TYPE_COUNT = SESSION_STATE + 1;
+    private static final int LOCK_STATISTICS = 28;
+    private static final int STATEMENT_STATISTICS = 29;
+    private static final int METRICS = 30;
+    private static final int META_TABLE_TYPE_COUNT = METRICS + 1;
 
     private final int type;
     private final int indexColumn;
@@ -173,7 +179,8 @@ public class MetaTable extends Table {
         case SEQUENCES:
             setObjectName("SEQUENCES");
             cols = createColumns("SEQUENCE_CATALOG", "SEQUENCE_SCHEMA", "SEQUENCE_NAME", "CURRENT_VALUE BIGINT",
-                    "INCREMENT BIGINT", "IS_GENERATED BIT", "REMARKS", "CACHE BIGINT", "ID INT");
+                    "INCREMENT BIGINT", "IS_GENERATED BIT", "REMARKS", "CACHE BIGINT", "ID INT", "REFILL_COUNT BIGINT",
+                    "REFILL_TIME_AVG BIGINT", "REFILL_TIME_MAX BIGINT");
             break;
         case USERS:
             setObjectName("USERS");
@@ -276,6 +283,23 @@ public class MetaTable extends Table {
             cols = createColumns("KEY", "SQL");
             break;
         }
+        case LOCK_STATISTICS: {
+            setObjectName("LOCK_STATISTICS");
+            cols = createColumns("TABLE_SCHEMA", "TABLE_NAME", "LOCK_WAITS BIGINT", "LOCK_WAIT_TIME BIGINT",
+                    "LOCK_TIMEOUTS BIGINT", "DEADLOCKS BIGINT");
+            break;
+        }
+        case STATEMENT_STATISTICS: {
+            setObjectName("STATEMENT_STATISTICS");
+            cols = createColumns("STATEMENT", "EXECUTIONS BIGINT", "ERRORS BIGINT", "ROWS BIGINT", "TOTAL_TIME DOUBLE",
+                    "MAX_TIME DOUBLE", "AVERAGE_TIME DOUBLE", "PARSE_TIME DOUBLE", "PLAN_TIME DOUBLE");
+            break;
+        }
+        case METRICS: {
+            setObjectName("METRICS");
+            cols = createColumns("NAME", "VALUE BIGINT");
+            break;
+        }
         default:
             throw DbException.throwInternalError("type=" + type);
         }
@@ -367,6 +391,10 @@ public class MetaTable extends Table {
         return true;
     }
 
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
     private static String replaceNullWithEmpty(String s) {
         return s == null ? "" : s;
     }
@@ -620,6 +648,13 @@ public class MetaTable extends Table {
             add(rows, "info.VERSION_MAJOR", "" + Constants.VERSION_MAJOR);
             add(rows, "info.VERSION_MINOR", "" + Constants.VERSION_MINOR);
             add(rows, "info.VERSION", "" + Constants.getFullVersion());
+            PlanCache planCache = database.getPlanCache();
+            if (planCache != null) {
+                add(rows, "info.PLAN_CACHE_HITS", "" + planCache.getHits());
+                add(rows, "info.PLAN_CACHE_MISSES", "" + planCache.getMisses());
+                add(rows, "info.PLAN_CACHE_INVALIDATIONS", "" + planCache.getInvalidations());
+                add(rows, "info.PLAN_CACHE_SIZE", "" + planCache.getSize());
+            }
             if (admin) {
                 String[] settings = { "java.runtime.version", "java.vm.name", "java.vendor", "os.name", "os.arch", "os.version",
                         "sun.os.patch.level", "file.separator", "path.separator", "line.separator", "user.country",
@@ -733,7 +768,13 @@ public class MetaTable extends Table {
                         // CACHE
                         String.valueOf(s.getCacheSize()),
                         // ID
-                        "" + s.getId());
+                        "" + s.getId(),
+                        // REFILL_COUNT
+                        String.valueOf(s.getRefillCount()),
+                        // REFILL_TIME_AVG
+                        String.valueOf(s.getRefillTimeAvg()),
+                        // REFILL_TIME_MAX
+                        String.valueOf(s.getRefillTimeMax()));
             }
             break;
         }
@@ -1335,6 +1376,69 @@ public class MetaTable extends Table {
             }
             break;
         }
+        case LOCK_STATISTICS: {
+            for (Table table : getAllTables(session)) {
+                if (!(table instanceof TableBase) || hideTable(table, session)) {
+                    continue;
+                }
+                TableBase t = (TableBase) table;
+                add(rows,
+                // TABLE_SCHEMA
+                        identifier(t.getSchema().getName()),
+                        // TABLE_NAME
+                        identifier(t.getName()),
+                        // LOCK_WAITS
+                        "" + t.getLockWaits(),
+                        // LOCK_WAIT_TIME
+                        "" + t.getLockWaitNanos() / 1000000,
+                        // LOCK_TIMEOUTS
+                        "" + t.getLockTimeouts(),
+                        // DEADLOCKS
+                        "" + t.getDeadlocks());
+            }
+            break;
+        }
+        case STATEMENT_STATISTICS: {
+            Metrics metrics = database.getMetrics();
+            if (metrics != null && admin) {
+                for (Metrics.StatementMetrics m : metrics.getStatementMetrics()) {
+                    long executions = m.getExecutions();
+                    add(rows,
+                    // STATEMENT
+                            m.getFingerprint(),
+                            // EXECUTIONS
+                            "" + executions,
+                            // ERRORS
+                            "" + m.getErrors(),
+                            // ROWS
+                            "" + m.getRows(),
+                            // TOTAL_TIME
+                            "" + toMillis(m.getTotalNanos()),
+                            // MAX_TIME
+                            "" + toMillis(m.getMaxNanos()),
+                            // AVERAGE_TIME
+                            "" + (executions == 0 ? 0 : toMillis(m.getTotalNanos() / executions)),
+                            // PARSE_TIME
+                            "" + toMillis(m.getParseNanos()),
+                            // PLAN_TIME
+                            "" + toMillis(m.getPlanNanos()));
+                }
+            }
+            break;
+        }
+        case METRICS: {
+            Metrics metrics = database.getMetrics();
+            if (metrics != null) {
+                for (Map.Entry<String, Long> e : metrics.getCounters().entrySet()) {
+                    add(rows,
+                    // NAME
+                            e.getKey(),
+                            // VALUE
+                            "" + e.getValue());
+                }
+            }
+            break;
+        }
         default:
             DbException.throwInternalError("type=" + type);
         }
@@ -1501,6 +1605,9 @@ public class MetaTable extends Table {
         case SESSIONS:
         case LOCKS:
         case SESSION_STATE:
+        case LOCK_STATISTICS:
+        case STATEMENT_STATISTICS:
+        case METRICS:
             return Long.MAX_VALUE;
         }
         return database.getModificationDataId();
@@ -112,6 +112,7 @@ public abstract class Table extends SchemaObjectBase {
     private boolean checkForeignKeyConstraints = true;
     private boolean onCommitDrop, onCommitTruncate;
     private Row nullRow;
+    private TableStatistics statistics;
 
     public Table(Schema schema, int id, String name, boolean persistIndexes, boolean persistData) {
         columnMap = schema.getDatabase().newStringMap();
@@ -278,6 +279,40 @@ public abstract class Table extends SchemaObjectBase {
         return true;
     }
 
+    /**
+     * Check if the ANALYZE statement computes statistics for this table.
+     *
+     * @return true if it does
+     */
+    public boolean canAnalyze() {
+        return TABLE.equals(getTableType());
+    }
+
+    /**
+     * Check if this table is analyzed without being named, that is
+     * automatically after many rows were changed, and by an ANALYZE statement
+     * for the whole database. Tables that are expensive to analyze are only
+     * analyzed by ANALYZE TABLE.
+     *
+     * @return true if it is
+     */
+    public boolean isAnalyzedAutomatically() {
+        return canAnalyze();
+    }
+
+    /**
+     * Get the statistics computed by the last ANALYZE statement.
+     *
+     * @return the statistics, or null if the table was not analyzed
+     */
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(TableStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Check if this table can be dropped.
      *
@@ -641,18 +676,19 @@ public abstract class Table extends SchemaObjectBase {
      * @param session the session
      * @param masks per-column comparison bit masks, null means 'always false',
      *              see constants in IndexCondition
+     * @param filter the table filter, or null if unknown
      * @param sortOrder the sort order
      * @return the plan item
      */
-    public PlanItem getBestPlanItem(Session session, int[] masks, SortOrder sortOrder) {
+    public PlanItem getBestPlanItem(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
         PlanItem item = new PlanItem();
         item.setIndex(getScanIndex(session));
-        item.cost = item.getIndex().getCost(session, null, null);
+        item.cost = item.getIndex().getCost(session, null, filter, null);
         ArrayList<Index> indexes = getIndexes();
         if (indexes != null && masks != null) {
             for (int i = 1, size = indexes.size(); i < size; i++) {
                 Index index = indexes.get(i);
-                double cost = index.getCost(session, masks, sortOrder);
+                double cost = index.getCost(session, masks, filter, sortOrder);
                 if (cost < item.cost) {
                     item.cost = cost;
                     item.setIndex(index);
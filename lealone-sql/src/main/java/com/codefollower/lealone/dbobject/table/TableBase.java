@@ -9,8 +9,9 @@ package com.codefollower.lealone.dbobject.table;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.codefollower.lealone.api.DatabaseEventListener;
 import com.codefollower.lealone.command.ddl.Analyze;
@@ -53,7 +54,7 @@ public abstract class TableBase extends Table {
     protected final ArrayList<Index> indexes = New.arrayList();
 
     private volatile Session lockExclusive;
-    private HashSet<Session> lockShared;
+    private Set<Session> lockShared;
     private Trace traceLock;
     protected long lastModificationId;
     private int changesSinceAnalyze;
@@ -67,6 +68,12 @@ public abstract class TableBase extends Table {
      */
     private boolean waitForLock;
 
+    // lock contention statistics, see INFORMATION_SCHEMA.LOCK_STATISTICS
+    private final AtomicLong lockWaits = new AtomicLong();
+    private final AtomicLong lockWaitNanos = new AtomicLong();
+    private final AtomicLong lockTimeouts = new AtomicLong();
+    private final AtomicLong deadlocks = new AtomicLong();
+
     public TableBase(CreateTableData data) {
         super(data.schema, data.id, data.tableName, data.persistIndexes, data.persistData);
         this.tableEngine = data.tableEngine;
@@ -83,7 +90,8 @@ public abstract class TableBase extends Table {
         }
 
         traceLock = database.getTrace(Trace.LOCK);
-        lockShared = New.hashSet();
+        // the deadlock check reads the lock holders of other tables
+        lockShared = Collections.newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
     }
 
     protected void initColumns(ArrayList<Column> columns) {
@@ -377,7 +385,7 @@ public abstract class TableBase extends Table {
         if (lockExclusive == session) {
             return;
         }
-        synchronized (database) {
+        synchronized (getLockSync()) {
             try {
                 doLock(session, lockMode, exclusive);
             } finally {
@@ -386,88 +394,109 @@ public abstract class TableBase extends Table {
         }
     }
 
+    /**
+     * Get the object to synchronize on when changing the lock state of this
+     * table. If only one thread may run at any time, this is the database (the
+     * thread that runs a statement already holds this monitor), otherwise each
+     * table has its own monitor, so that sessions working on different tables
+     * don't block each other.
+     *
+     * @return the object to synchronize on
+     */
+    private Object getLockSync() {
+        return database.isMultiThreaded() ? this : database;
+    }
+
     private void doLock(Session session, int lockMode, boolean exclusive) {
         traceLock(session, exclusive, "requesting for");
         // don't get the current time unless necessary
         long max = 0;
-        boolean checkDeadlock = false;
-        while (true) {
-            if (lockExclusive == session) {
-                return;
-            }
-            if (exclusive) {
-                if (lockExclusive == null) {
-                    if (lockShared.isEmpty()) {
-                        traceLock(session, exclusive, "added for");
-                        session.addLock(this);
-                        lockExclusive = session;
-                        return;
-                    } else if (lockShared.size() == 1 && lockShared.contains(session)) {
-                        traceLock(session, exclusive, "add (upgraded) for ");
-                        lockExclusive = session;
-                        return;
-                    }
+        long waitStart = 0;
+        try {
+            while (true) {
+                if (lockExclusive == session) {
+                    return;
                 }
-            } else {
-                if (lockExclusive == null) {
-                    if (lockMode == Constants.LOCK_MODE_READ_COMMITTED) {
-                        if (!database.isMultiThreaded() && !database.isMultiVersion()) {
-                            // READ_COMMITTED: a read lock is acquired,
-                            // but released immediately after the operation
-                            // is complete.
-                            // When allowing only one thread, no lock is
-                            // required.
-                            // Row level locks work like read committed.
+                if (exclusive) {
+                    if (lockExclusive == null) {
+                        if (lockShared.isEmpty()) {
+                            traceLock(session, exclusive, "added for");
+                            session.addLock(this);
+                            lockExclusive = session;
+                            return;
+                        } else if (lockShared.size() == 1 && lockShared.contains(session)) {
+                            traceLock(session, exclusive, "add (upgraded) for ");
+                            lockExclusive = session;
                             return;
                         }
                     }
-                    if (!lockShared.contains(session)) {
-                        traceLock(session, exclusive, "ok");
-                        session.addLock(this);
-                        lockShared.add(session);
+                } else {
+                    if (lockExclusive == null) {
+                        if (lockMode == Constants.LOCK_MODE_READ_COMMITTED) {
+                            if (!database.isMultiThreaded() && !database.isMultiVersion()) {
+                                // READ_COMMITTED: a read lock is acquired,
+                                // but released immediately after the operation
+                                // is complete.
+                                // When allowing only one thread, no lock is
+                                // required.
+                                // Row level locks work like read committed.
+                                return;
+                            }
+                        }
+                        if (!lockShared.contains(session)) {
+                            traceLock(session, exclusive, "ok");
+                            session.addLock(this);
+                            lockShared.add(session);
+                        }
+                        return;
                     }
-                    return;
                 }
-            }
-            session.setWaitForLock(this);
-            if (checkDeadlock) {
+                // the sessions waiting for a lock and the lock holders form a
+                // wait-for graph: a deadlock can only appear when an edge is added,
+                // and the session that adds the last edge of a cycle finds it
+                session.setWaitForLock(this);
                 ArrayList<Session> sessions = checkDeadlock(session, null, null);
                 if (sessions != null) {
+                    deadlocks.incrementAndGet();
                     throw DbException.get(ErrorCode.DEADLOCK_1, getDeadlockDetails(sessions));
                 }
-            } else {
-                // check for deadlocks from now on
-                checkDeadlock = true;
-            }
-            long now = System.currentTimeMillis();
-            if (max == 0) {
-                // try at least one more time
-                max = now + session.getLockTimeout();
-            } else if (now >= max) {
-                traceLock(session, exclusive, "timeout after " + session.getLockTimeout());
-                throw DbException.get(ErrorCode.LOCK_TIMEOUT_1, getName());
-            }
-            try {
-                traceLock(session, exclusive, "waiting for");
-                if (database.getLockMode() == Constants.LOCK_MODE_TABLE_GC) {
-                    for (int i = 0; i < 20; i++) {
-                        long free = Runtime.getRuntime().freeMemory();
-                        System.gc();
-                        long free2 = Runtime.getRuntime().freeMemory();
-                        if (free == free2) {
-                            break;
+                long now = System.currentTimeMillis();
+                if (max == 0) {
+                    // try at least one more time
+                    max = now + session.getLockTimeout();
+                } else if (now >= max) {
+                    traceLock(session, exclusive, "timeout after " + session.getLockTimeout());
+                    lockTimeouts.incrementAndGet();
+                    throw DbException.get(ErrorCode.LOCK_TIMEOUT_1, getName());
+                }
+                try {
+                    traceLock(session, exclusive, "waiting for");
+                    if (waitStart == 0) {
+                        waitStart = System.nanoTime();
+                        lockWaits.incrementAndGet();
+                    }
+                    if (database.getLockMode() == Constants.LOCK_MODE_TABLE_GC) {
+                        for (int i = 0; i < 20; i++) {
+                            long free = Runtime.getRuntime().freeMemory();
+                            System.gc();
+                            long free2 = Runtime.getRuntime().freeMemory();
+                            if (free == free2) {
+                                break;
+                            }
                         }
                     }
+                    // unlock wakes up the waiting sessions,
+                    // so there is no need to poll for deadlocks
+                    long sleep = Math.max(1, max - now);
+                    waitForLock = true;
+                    getLockSync().wait(sleep);
+                } catch (InterruptedException e) {
+                    // ignore
                 }
-                // don't wait too long so that deadlocks are detected early
-                long sleep = Math.min(Constants.DEADLOCK_CHECK, max - now);
-                if (sleep == 0) {
-                    sleep = 1;
-                }
-                waitForLock = true;
-                database.wait(sleep);
-            } catch (InterruptedException e) {
-                // ignore
+            }
+        } finally {
+            if (waitStart != 0) {
+                lockWaitNanos.addAndGet(System.nanoTime() - waitStart);
             }
         }
     }
@@ -549,6 +578,32 @@ public abstract class TableBase extends Table {
         }
     }
 
+    /**
+     * Get the number of times a session had to wait for a lock on this table.
+     *
+     * @return the number of lock waits
+     */
+    public long getLockWaits() {
+        return lockWaits.get();
+    }
+
+    /**
+     * Get the total time sessions waited for a lock on this table.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getLockWaitNanos() {
+        return lockWaitNanos.get();
+    }
+
+    public long getLockTimeouts() {
+        return lockTimeouts.get();
+    }
+
+    public long getDeadlocks() {
+        return deadlocks.get();
+    }
+
     @Override
     public boolean isLockedExclusively() {
         return lockExclusive != null;
@@ -566,9 +621,10 @@ public abstract class TableBase extends Table {
             }
             // TODO lock: maybe we need we fifo-queue to make sure nobody
             // starves. check what other databases do
-            synchronized (database) {
+            Object sync = getLockSync();
+            synchronized (sync) {
                 if (database.getSessionCount() > 1 && waitForLock) {
-                    database.notifyAll();
+                    sync.notifyAll();
                 }
             }
         }
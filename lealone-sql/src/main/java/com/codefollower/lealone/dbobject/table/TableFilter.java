@@ -10,12 +10,14 @@ import java.util.ArrayList;
 
 import com.codefollower.lealone.command.Parser;
 import com.codefollower.lealone.command.Prepared;
+import com.codefollower.lealone.command.dml.ExplainStatistics;
 import com.codefollower.lealone.command.dml.Select;
 import com.codefollower.lealone.constant.SysProperties;
 import com.codefollower.lealone.dbobject.Right;
 import com.codefollower.lealone.dbobject.index.Index;
 import com.codefollower.lealone.dbobject.index.IndexCondition;
 import com.codefollower.lealone.dbobject.index.IndexCursor;
+import com.codefollower.lealone.dbobject.index.ViewIndex;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.engine.UndoLogRecord;
 import com.codefollower.lealone.expression.Comparison;
@@ -56,6 +58,14 @@ public class TableFilter implements ColumnResolver {
     private int scanCount;
     private boolean evaluatable;
 
+    /**
+     * The statistics of the running EXPLAIN ANALYZE statement, or null.
+     */
+    private ExplainStatistics statistics;
+    private long profileScanned;
+    private long profileReturned;
+    private long profileNanos;
+
     /**
      * Indicates that this filter is used in the plan.
      */
@@ -164,7 +174,7 @@ public class TableFilter implements ColumnResolver {
         if (indexConditions.size() == 0) {
             item = new PlanItem();
             item.setIndex(table.getScanIndex(s));
-            item.cost = item.getIndex().getCost(s, null, null);
+            item.cost = item.getIndex().getCost(s, null, this, null);
         } else {
             int len = table.getColumns().length;
             int[] masks = new int[len];
@@ -184,7 +194,7 @@ public class TableFilter implements ColumnResolver {
             if (select != null) {
                 sortOrder = select.getSortOrder();
             }
-            item = table.getBestPlanItem(s, masks, sortOrder);
+            item = table.getBestPlanItem(s, masks, this, sortOrder);
             // The more index conditions, the earlier the table.
             // This is to ensure joins without indexes run quickly:
             // x (x.a=10); y (x.b=y.b) - see issue 113
@@ -297,6 +307,8 @@ public class TableFilter implements ColumnResolver {
     public void startQuery(Session s) {
         this.session = s;
         scanCount = 0;
+        statistics = s.getExplainStatistics();
+        profileScanned = profileReturned = profileNanos = 0;
         if (nestedJoin != null) {
             nestedJoin.startQuery(s);
         }
@@ -328,7 +340,13 @@ public class TableFilter implements ColumnResolver {
         if (state == AFTER_LAST) {
             return false;
         } else if (state == BEFORE_FIRST) {
-            cursor.find(session, indexConditions);
+            if (statistics != null) {
+                long start = System.nanoTime();
+                cursor.find(session, indexConditions);
+                profileNanos += System.nanoTime() - start;
+            } else {
+                cursor.find(session, indexConditions);
+            }
             if (!cursor.isAlwaysFalse()) {
                 if (nestedJoin != null) {
                     nestedJoin.reset();
@@ -359,7 +377,7 @@ public class TableFilter implements ColumnResolver {
                 if ((++scanCount & 4095) == 0) {
                     checkTimeout();
                 }
-                if (cursor.next()) {
+                if (statistics != null ? profileNext() : cursor.next()) {
                     currentSearchRow = cursor.getSearchRow();
                     current = null;
                     state = FOUND;
@@ -404,13 +422,42 @@ public class TableFilter implements ColumnResolver {
             }
             // check if it's ok
             if (state == NULL_ROW || joinConditionOk) {
+                if (statistics != null) {
+                    profileReturned++;
+                }
                 return true;
             }
         }
         state = AFTER_LAST;
+        if (statistics != null) {
+            flushExplainStatistics();
+        }
         return false;
     }
 
+    private boolean profileNext() {
+        long start = System.nanoTime();
+        boolean found = cursor.next();
+        profileNanos += System.nanoTime() - start;
+        if (found) {
+            profileScanned++;
+        }
+        return found;
+    }
+
+    /**
+     * Add the rows and the time counted since the last call to the
+     * statistics of the running EXPLAIN ANALYZE statement. This is done
+     * whenever a scan ends, and for queries that stop early (for example
+     * because of a LIMIT) by the EXPLAIN statement itself.
+     */
+    public void flushExplainStatistics() {
+        if (statistics != null && (profileScanned > 0 || profileReturned > 0 || profileNanos > 0)) {
+            statistics.addRows("table " + getTableAlias(), profileScanned, profileReturned, profileNanos);
+            profileScanned = profileReturned = profileNanos = 0;
+        }
+    }
+
     /**
      * Set the state of this and all nested tables to the NULL row.
      */
@@ -746,6 +793,29 @@ public class TableFilter implements ColumnResolver {
         this.session = session;
     }
 
+    /**
+     * Bind this table filter, the filters joined to it and the view indexes
+     * they use to another session. This is needed when a cached plan is
+     * executed by another session than the one that prepared it.
+     *
+     * @param s the new session
+     */
+    public void rebind(Session s) {
+        this.session = s;
+        if (index instanceof ViewIndex) {
+            ViewIndex viewIndex = ((ViewIndex) index).forSession(s);
+            if (viewIndex != index) {
+                setIndex(viewIndex);
+            }
+        }
+        if (nestedJoin != null) {
+            nestedJoin.rebind(s);
+        }
+        if (join != null) {
+            join.rebind(s);
+        }
+    }
+
     /**
      * Remove the joined table
      */
@@ -1028,6 +1098,10 @@ public class TableFilter implements ColumnResolver {
         return session;
     }
 
+    public ArrayList<IndexCondition> getIndexConditions() {
+        return indexConditions;
+    }
+
     /**
      * A visitor for table filters.
      */
@@ -6,6 +6,7 @@
  */
 package com.codefollower.lealone.dbobject.table;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -22,6 +23,7 @@ import com.codefollower.lealone.dbobject.Schema;
 import com.codefollower.lealone.dbobject.index.Index;
 import com.codefollower.lealone.dbobject.index.IndexType;
 import com.codefollower.lealone.dbobject.index.LinkedIndex;
+import com.codefollower.lealone.dbobject.table.TableLinkConnection.PooledConnection;
 import com.codefollower.lealone.engine.Session;
 import com.codefollower.lealone.engine.UndoLogRecord;
 import com.codefollower.lealone.jdbc.JdbcSQLException;
@@ -52,7 +54,6 @@ public class TableLink extends Table {
     private final String originalSchema;
     private String driver, url, user, password, originalTable, qualifiedTableName;
     private TableLinkConnection conn;
-    private HashMap<String, PreparedStatement> preparedMap = New.hashMap();
     private final ArrayList<Index> indexes = New.arrayList();
     private final boolean emitUpdates;
     private LinkedIndex linkedIndex;
@@ -92,16 +93,18 @@ public class TableLink extends Table {
         for (int retry = 0;; retry++) {
             try {
                 conn = database.getLinkConnection(driver, url, user, password);
-                synchronized (conn) {
-                    try {
-                        readMetaData();
-                        return;
-                    } catch (Exception e) {
-                        // could be SQLException or RuntimeException
-                        conn.close(true);
-                        conn = null;
-                        throw DbException.convert(e);
+                PooledConnection c = conn.borrow();
+                try {
+                    synchronized (c) {
+                        readMetaData(c.conn);
                     }
+                    conn.release(c);
+                    return;
+                } catch (Exception e) {
+                    // could be SQLException or RuntimeException
+                    conn.close(true);
+                    conn = null;
+                    throw DbException.convert(e);
                 }
             } catch (DbException e) {
                 if (retry >= MAX_RETRY) {
@@ -112,8 +115,9 @@ public class TableLink extends Table {
         }
     }
 
-    private void readMetaData() throws SQLException {
-        DatabaseMetaData meta = conn.getConnection().getMetaData();
+    private void readMetaData(Connection c) throws SQLException {
+        indexes.clear();
+        DatabaseMetaData meta = c.getMetaData();
         storesLowerCase = meta.storesLowerCaseIdentifiers();
         storesMixedCase = meta.storesMixedCaseIdentifiers();
         storesMixedCaseQuoted = meta.storesMixedCaseQuotedIdentifiers();
@@ -167,7 +171,7 @@ public class TableLink extends Table {
         // check if the table is accessible
         Statement stat = null;
         try {
-            stat = conn.getConnection().createStatement();
+            stat = c.createStatement();
             rs = stat.executeQuery("SELECT * FROM " + qualifiedTableName + " T WHERE 1=0");
             if (columnList.size() == 0) {
                 // alternative solution
@@ -408,16 +412,21 @@ public class TableLink extends Table {
         }
     }
 
-    public synchronized long getRowCount(Session session) {
+    public long getRowCount(Session session) {
         String sql = "SELECT COUNT(*) FROM " + qualifiedTableName;
         try {
             PreparedStatement prep = execute(sql, null, false);
-            ResultSet rs = prep.getResultSet();
-            rs.next();
-            long count = rs.getLong(1);
-            rs.close();
-            reusePreparedStatement(prep, sql);
-            return count;
+            try {
+                synchronized (getLock(prep)) {
+                    ResultSet rs = prep.getResultSet();
+                    rs.next();
+                    long count = rs.getLong(1);
+                    rs.close();
+                    return count;
+                }
+            } finally {
+                reusePreparedStatement(prep, sql);
+            }
         } catch (Exception e) {
             throw wrapException(sql, e);
         }
@@ -449,16 +458,32 @@ public class TableLink extends Table {
      * @return the prepared statement, or null if it is re-used
      */
     public PreparedStatement execute(String sql, ArrayList<Value> params, boolean reusePrepared) {
+        return execute(sql, params, reusePrepared, 0);
+    }
+
+    /**
+     * Execute a SQL statement using the given parameters. The statements run
+     * on one of the pooled connections; if the prepared statement is not
+     * re-used immediately, it needs to be given back using
+     * {@link #reusePreparedStatement(PreparedStatement, String)}.
+     *
+     * @param sql the SQL statement
+     * @param params the parameters or null
+     * @param reusePrepared if the prepared statement can be re-used immediately
+     * @param maxRows the maximum number of rows to read, 0 for no limit
+     * @return the prepared statement, or null if it is re-used
+     */
+    public PreparedStatement execute(String sql, ArrayList<Value> params, boolean reusePrepared, int maxRows) {
         if (conn == null) {
             throw connectException;
         }
         for (int retry = 0;; retry++) {
+            PooledConnection c = conn.borrow();
+            boolean lent = false;
             try {
-                synchronized (conn) {
-                    PreparedStatement prep = preparedMap.remove(sql);
-                    if (prep == null) {
-                        prep = conn.getConnection().prepareStatement(sql);
-                    }
+                PreparedStatement prep;
+                synchronized (c) {
+                    prep = c.prepareStatement(sql);
                     if (trace.isDebugEnabled()) {
                         StatementBuilder buff = new StatementBuilder();
                         buff.append(getName()).append(":\n").append(sql);
@@ -480,23 +505,44 @@ public class TableLink extends Table {
                             v.set(prep, i + 1);
                         }
                     }
+                    prep.setMaxRows(maxRows);
                     prep.execute();
                     if (reusePrepared) {
-                        reusePreparedStatement(prep, sql);
-                        return null;
+                        c.reuse(sql, prep);
                     }
-                    return prep;
                 }
+                if (reusePrepared) {
+                    return null;
+                }
+                conn.lend(c, prep);
+                lent = true;
+                return prep;
             } catch (SQLException e) {
+                conn.discard(c);
                 if (retry >= MAX_RETRY) {
                     throw DbException.convert(e);
                 }
-                conn.close(true);
-                connect();
+            } finally {
+                if (!lent) {
+                    conn.release(c);
+                }
             }
         }
     }
 
+    /**
+     * Get the object to synchronize on while the result of a statement
+     * returned by {@link #execute(String, ArrayList, boolean, int)} is read,
+     * as other statements may use the same connection.
+     *
+     * @param prep the statement
+     * @return the object to synchronize on
+     */
+    public Object getLock(PreparedStatement prep) {
+        TableLinkConnection c = conn;
+        return c == null ? prep : c.getLock(prep);
+    }
+
     public void unlock(Session s) {
         // nothing to do
     }
@@ -531,7 +577,6 @@ public class TableLink extends Table {
         database.removeMeta(session, getId());
         driver = null;
         url = user = password = originalTable = null;
-        preparedMap = null;
         invalidate();
     }
 
@@ -586,8 +631,28 @@ public class TableLink extends Table {
         this.readOnly = readOnly;
     }
 
+    /**
+     * Get the row count of the last ANALYZE TABLE statement. The optimizer
+     * calls this method for each statement, so the remote database is not
+     * asked.
+     *
+     * @return the approximated row count
+     */
     public long getRowCountApproximation() {
-        return ROW_COUNT_APPROXIMATION;
+        TableStatistics statistics = getStatistics();
+        return statistics == null ? ROW_COUNT_APPROXIMATION : statistics.getRowCount();
+    }
+
+    public boolean canAnalyze() {
+        return true;
+    }
+
+    /**
+     * Reading the remote table is expensive, so linked tables are only
+     * analyzed by ANALYZE TABLE.
+     */
+    public boolean isAnalyzedAutomatically() {
+        return false;
     }
 
     public long getDiskSpaceUsed() {
@@ -601,8 +666,10 @@ public class TableLink extends Table {
      * @param sql the SQL statement
      */
     public void reusePreparedStatement(PreparedStatement prep, String sql) {
-        synchronized (conn) {
-            preparedMap.put(sql, prep);
+        if (conn == null) {
+            JdbcUtils.closeSilently(prep);
+        } else {
+            conn.release(prep, sql);
         }
     }
 
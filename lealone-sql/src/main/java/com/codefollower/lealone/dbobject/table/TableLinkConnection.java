@@ -7,17 +7,25 @@
 package com.codefollower.lealone.dbobject.table;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.util.JdbcUtils;
+import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.StringUtils;
 import com.codefollower.lealone.util.Utils;
 
 /**
  * A connection for a linked table. The same connection may be used for multiple
  * tables, that means a connection may be shared.
+ *
+ * Internally this is a small pool of JDBC connections to the same database, so
+ * that sessions that access linked tables at the same time do not have to wait
+ * for each other.
  */
 public class TableLinkConnection {
 
@@ -32,9 +40,20 @@ public class TableLinkConnection {
     private final String driver, url, user, password;
 
     /**
-     * The database connection.
+     * The maximum number of JDBC connections.
      */
-    private Connection conn;
+    private final int maxConnections;
+
+    /**
+     * The open JDBC connections.
+     */
+    private final ArrayList<PooledConnection> connections = New.arrayList();
+
+    /**
+     * The connections of the statements that were executed and not given back
+     * yet.
+     */
+    private final IdentityHashMap<PreparedStatement, PooledConnection> owners = new IdentityHashMap<PreparedStatement, PooledConnection>();
 
     /**
      * How many times the connection is used.
@@ -42,12 +61,13 @@ public class TableLinkConnection {
     private int useCounter;
 
     private TableLinkConnection(HashMap<TableLinkConnection, TableLinkConnection> map, String driver, String url, String user,
-            String password) {
+            String password, int maxConnections) {
         this.map = map;
         this.driver = driver;
         this.url = url;
         this.user = user;
         this.password = password;
+        this.maxConnections = Math.max(1, maxConnections);
     }
 
     /**
@@ -60,19 +80,20 @@ public class TableLinkConnection {
      * @param user the user name
      * @param password the password
      * @param shareLinkedConnections if connections should be shared
+     * @param maxConnections the maximum number of JDBC connections to open
      * @return a connection
      */
     public static TableLinkConnection open(HashMap<TableLinkConnection, TableLinkConnection> map, String driver, String url,
-            String user, String password, boolean shareLinkedConnections) {
-        TableLinkConnection t = new TableLinkConnection(map, driver, url, user, password);
+            String user, String password, boolean shareLinkedConnections, int maxConnections) {
+        TableLinkConnection t = new TableLinkConnection(map, driver, url, user, password, maxConnections);
         if (!shareLinkedConnections) {
-            t.open();
+            t.openConnection();
             return t;
         }
         synchronized (map) {
             TableLinkConnection result = map.get(t);
             if (result == null) {
-                t.open();
+                t.openConnection();
                 // put the connection in the map after is has been opened,
                 // when we know it works
                 map.put(t, t);
@@ -83,9 +104,11 @@ public class TableLinkConnection {
         }
     }
 
-    private void open() {
+    private PooledConnection openConnection() {
         try {
-            conn = JdbcUtils.getConnection(driver, url, user, password);
+            PooledConnection c = new PooledConnection(JdbcUtils.getConnection(driver, url, user, password));
+            connections.add(c);
+            return c;
         } catch (SQLException e) {
             throw DbException.convert(e);
         }
@@ -105,14 +128,103 @@ public class TableLinkConnection {
     }
 
     /**
-     * Get the connection.
-     * This method and methods on the statement must be
-     * synchronized on this object.
+     * Get a connection for the next statement. An idle connection is used if
+     * there is one, otherwise a new connection is opened as long as the pool
+     * is not full. If it is full, the connection with the fewest users is
+     * shared. The connection must be given back using
+     * {@link #release(PooledConnection)}, and the connection and its
+     * statements must be used while synchronized on the returned object.
      *
      * @return the connection
      */
-    Connection getConnection() {
-        return conn;
+    synchronized PooledConnection borrow() {
+        PooledConnection best = null;
+        for (PooledConnection c : connections) {
+            if (best == null || c.users < best.users) {
+                best = c;
+            }
+        }
+        if (best == null || best.users > 0 && connections.size() < maxConnections) {
+            best = openConnection();
+        }
+        best.users++;
+        return best;
+    }
+
+    /**
+     * Give back a connection.
+     *
+     * @param c the connection
+     */
+    synchronized void release(PooledConnection c) {
+        if (c.users > 0) {
+            c.users--;
+        }
+    }
+
+    /**
+     * Remember the connection of a statement that is used after it was
+     * executed, for example to read its result. The connection stays
+     * borrowed until the statement is given back using
+     * {@link #release(PreparedStatement, String)}.
+     *
+     * @param c the connection
+     * @param prep the statement
+     */
+    synchronized void lend(PooledConnection c, PreparedStatement prep) {
+        owners.put(prep, c);
+    }
+
+    /**
+     * Get the object to synchronize on while a statement or its result is
+     * used, as the connection may be shared with other statements.
+     *
+     * @param prep the statement
+     * @return the object to synchronize on
+     */
+    synchronized Object getLock(PreparedStatement prep) {
+        PooledConnection owner = owners.get(prep);
+        return owner == null ? prep : owner;
+    }
+
+    /**
+     * Give back the connection of a statement, and keep the statement for
+     * re-use.
+     *
+     * @param prep the statement
+     * @param sql the SQL statement
+     */
+    void release(PreparedStatement prep, String sql) {
+        PooledConnection owner;
+        synchronized (this) {
+            owner = owners.remove(prep);
+            if (owner != null) {
+                release(owner);
+                if (!connections.contains(owner)) {
+                    // the connection was discarded or closed in the meantime
+                    owner = null;
+                }
+            }
+        }
+        if (owner == null) {
+            JdbcUtils.closeSilently(prep);
+            return;
+        }
+        synchronized (owner) {
+            owner.reuse(sql, prep);
+        }
+    }
+
+    /**
+     * Close a connection that is broken, so that it is not used any longer.
+     *
+     * @param c the connection
+     */
+    void discard(PooledConnection c) {
+        synchronized (this) {
+            connections.remove(c);
+        }
+        c.close();
     }
 
     /**
@@ -130,6 +242,77 @@ public class TableLinkConnection {
             }
         }
         if (actuallyClose) {
+            ArrayList<PooledConnection> list;
+            synchronized (this) {
+                list = New.arrayList(connections);
+                connections.clear();
+                owners.clear();
+            }
+            for (PooledConnection c : list) {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * One JDBC connection of the pool, with the prepared statements that can
+     * be re-used.
+     */
+    static class PooledConnection {
+
+        /**
+         * The JDBC connection.
+         */
+        final Connection conn;
+
+        /**
+         * The number of statements or cursors that currently use the
+         * connection.
+         */
+        int users;
+
+        private final HashMap<String, PreparedStatement> preparedMap = New.hashMap();
+
+        PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        /**
+         * Get a prepared statement for the given SQL statement. A cached
+         * statement is removed from the cache until it is given back.
+         *
+         * @param sql the SQL statement
+         * @return the prepared statement
+         */
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement prep = preparedMap.remove(sql);
+            if (prep == null) {
+                prep = conn.prepareStatement(sql);
+            }
+            return prep;
+        }
+
+        /**
+         * Keep a prepared statement for re-use.
+         *
+         * @param sql the SQL statement
+         * @param prep the prepared statement
+         */
+        void reuse(String sql, PreparedStatement prep) {
+            PreparedStatement old = preparedMap.put(sql, prep);
+            if (old != null && old != prep) {
+                JdbcUtils.closeSilently(old);
+            }
+        }
+
+        /**
+         * Close the connection and all its statements.
+         */
+        synchronized void close() {
+            for (PreparedStatement prep : preparedMap.values()) {
+                JdbcUtils.closeSilently(prep);
+            }
+            preparedMap.clear();
             JdbcUtils.closeSilently(conn);
         }
     }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.dbobject.table;
+
+import com.codefollower.lealone.dbobject.DbObject;
+import com.codefollower.lealone.dbobject.DbObjectBase;
+import com.codefollower.lealone.engine.Database;
+import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.message.Trace;
+import com.codefollower.lealone.util.StatementBuilder;
+import com.codefollower.lealone.value.Value;
+
+/**
+ * The statistics of a table computed by the last ANALYZE statement: the
+ * number of rows, and the statistics of each analyzed column. They are kept
+ * in a meta data record of their own, so that analyzing a table does not
+ * change its definition.
+ */
+public class TableStatistics extends DbObjectBase {
+
+    private final Table table;
+    private long rowCount;
+
+    public TableStatistics(Database database, int id, Table table) {
+        initDbObjectBase(database, id, getKey(table), Trace.DATABASE);
+        this.table = table;
+    }
+
+    /**
+     * Get the key that is used to find the statistics of a table. The id of
+     * the table is used, so that the key doesn't change if the table is
+     * renamed.
+     *
+     * @param table the table
+     * @return the key
+     */
+    public static String getKey(Table table) {
+        return "TABLE " + table.getId();
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public String getCreateSQLForCopy(Table t, String quotedName) {
+        throw DbException.throwInternalError();
+    }
+
+    public String getDropSQL() {
+        return null;
+    }
+
+    public String getCreateSQL() {
+        StringBuilder buff = new StringBuilder("ANALYZE TABLE ");
+        buff.append(table.getSQL()).append(" ROW_COUNT ").append(rowCount);
+        for (Column col : table.getColumns()) {
+            ColumnStatistics statistics = col.getStatistics();
+            if (statistics == null) {
+                continue;
+            }
+            buff.append(" COLUMN ").append(col.getSQL());
+            buff.append(" NULL_FRACTION ").append(statistics.getNullFraction());
+            buff.append(" DISTINCT ").append(statistics.getDistinctCount());
+            StatementBuilder bounds = new StatementBuilder(" HISTOGRAM(");
+            for (Value v : statistics.getBounds()) {
+                bounds.appendExceptFirst(", ");
+                bounds.append(v.getSQL());
+            }
+            buff.append(bounds.append(')').toString());
+        }
+        return buff.toString();
+    }
+
+    public int getType() {
+        return DbObject.STATISTICS;
+    }
+
+    public void removeChildrenAndResources(Session session) {
+        for (Column col : table.getColumns()) {
+            col.setStatistics(null);
+        }
+        if (table.getStatistics() == this) {
+            table.setStatistics(null);
+        }
+        database.removeMeta(session, getId());
+    }
+
+    public void checkRename() {
+        DbException.throwInternalError();
+    }
+
+}
@@ -29,6 +29,7 @@ import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.constant.ErrorCode;
 import com.codefollower.lealone.constant.SysProperties;
 import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.result.ResultInterface;
 import com.codefollower.lealone.store.fs.FileUtils;
 import com.codefollower.lealone.tools.SimpleResultSet;
 import com.codefollower.lealone.tools.SimpleRowSource;
@@ -36,6 +37,8 @@ import com.codefollower.lealone.util.IOUtils;
 import com.codefollower.lealone.util.JdbcUtils;
 import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.StringUtils;
+import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueNull;
 
 /**
  * A facility to read from and write to CSV (comma separated values) files. When
@@ -186,6 +189,50 @@ public class Csv implements SimpleRowSource {
         return rows;
     }
 
+    /**
+     * Writes a query result to a file in the CSV format. The values are
+     * converted to text directly, without the JDBC result set conversions.
+     * The result is closed afterwards.
+     *
+     * @param outputFileName the file name
+     * @param result the result
+     * @param charset the charset or null to use the system default charset
+     *          (see system property file.encoding)
+     * @return the number of rows written
+     * @throws SQLException
+     */
+    public int write(String outputFileName, ResultInterface result, String charset) throws SQLException {
+        init(outputFileName, charset);
+        try {
+            initWrite();
+            int columnCount = result.getVisibleColumnCount();
+            String[] row = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = result.getAlias(i);
+            }
+            if (writeColumnHeader) {
+                writeRow(row);
+            }
+            int rows = 0;
+            while (result.next()) {
+                Value[] values = result.currentRow();
+                for (int i = 0; i < columnCount; i++) {
+                    Value v = values[i];
+                    row[i] = v == ValueNull.INSTANCE ? null : v.getString();
+                }
+                writeRow(row);
+                rows++;
+            }
+            output.close();
+            return rows;
+        } catch (IOException e) {
+            throw convertException("IOException writing " + outputFileName, e);
+        } finally {
+            close();
+            result.close();
+        }
+    }
+
     /**
      * Reads from the CSV file and returns a result set. The rows in the result
      * set are created on demand, that means the file is kept open until all
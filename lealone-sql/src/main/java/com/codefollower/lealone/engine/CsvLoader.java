@@ -0,0 +1,529 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.engine;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.codefollower.lealone.api.DatabaseEventListener;
+import com.codefollower.lealone.command.Command;
+import com.codefollower.lealone.command.Parser;
+import com.codefollower.lealone.command.Prepared;
+import com.codefollower.lealone.command.dml.Insert;
+import com.codefollower.lealone.constant.Constants;
+import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.constant.SysProperties;
+import com.codefollower.lealone.dbobject.table.Column;
+import com.codefollower.lealone.expression.Parameter;
+import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.message.Trace;
+import com.codefollower.lealone.store.fs.FileUtils;
+import com.codefollower.lealone.util.IOUtils;
+import com.codefollower.lealone.util.New;
+import com.codefollower.lealone.util.StatementBuilder;
+import com.codefollower.lealone.util.StringUtils;
+import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueDecimal;
+import com.codefollower.lealone.value.ValueDouble;
+import com.codefollower.lealone.value.ValueInt;
+import com.codefollower.lealone.value.ValueLong;
+import com.codefollower.lealone.value.ValueNull;
+import com.codefollower.lealone.value.ValueString;
+
+/**
+ * Loads a CSV file into a table, this is the CSVLOAD function.
+ *
+ * Large files are split into chunks at line boundaries, and the chunks are
+ * parsed by several threads at the same time. The fields are converted to the
+ * types of the target columns right away. The rows are written by the calling
+ * session in batches, using one multi-row INSERT statement per batch, so that
+ * rows of HBase tables are grouped by region.
+ */
+public class CsvLoader {
+
+    /**
+     * Files smaller than two chunks of this size are parsed by one thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * How often the progress is reported, in milliseconds.
+     */
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    /**
+     * Marks the end of a chunk in the queue.
+     */
+    private static final ArrayList<Value[]> END = New.arrayList();
+
+    private final Session session;
+    private final Database database;
+    private final Trace trace;
+    private final String tableName;
+    private final String fileName;
+    private final String[] columnList;
+    private final String options;
+    private final String charset;
+    private final Csv csv;
+    private final int batchSize;
+
+    private String[] columnNames;
+    private Column[] columns;
+    private ArrayBlockingQueue<ArrayList<Value[]>> queue;
+    private volatile boolean stopped;
+    private volatile Throwable exception;
+
+    /**
+     * Create a new loader.
+     *
+     * @param session the session
+     * @param tableName the name of the target table
+     * @param fileName the file name
+     * @param columnList the column names, or null to read them from the file
+     * @param options the CSV options, or null
+     */
+    public CsvLoader(Session session, String tableName, String fileName, String columnList, String options) {
+        this.session = session;
+        this.database = session.getDatabase();
+        this.trace = database.getTrace(Trace.FUNCTION);
+        this.tableName = tableName;
+        this.fileName = fileName;
+        this.options = options;
+        csv = new Csv();
+        String cs = options == null ? null : csv.setOptions(options);
+        charset = cs == null ? SysProperties.FILE_ENCODING : cs;
+        this.columnList = columnList == null ? null : StringUtils.arraySplit(columnList, csv.getFieldSeparatorRead(), true);
+        batchSize = Math.max(1, database.getSettings().csvLoadBatchSize);
+    }
+
+    /**
+     * Load the file.
+     *
+     * @return the number of rows inserted
+     */
+    public int load() {
+        readColumnNames();
+        if (columnNames.length == 0) {
+            return 0;
+        }
+        Command command = prepareInsert();
+        long[] bounds = split();
+        int chunks = bounds.length - 1;
+        queue = new ArrayBlockingQueue<ArrayList<Value[]>>(2 * chunks);
+        Chunk[] threads = new Chunk[chunks];
+        for (int i = 0; i < chunks; i++) {
+            threads[i] = new Chunk(bounds[i], bounds[i + 1], i == 0 && columnList == null);
+            threads[i].start();
+        }
+        long start = System.currentTimeMillis();
+        long lastProgress = start;
+        int rows = 0;
+        try {
+            int running = chunks;
+            while (running > 0) {
+                ArrayList<Value[]> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (exception != null) {
+                    throw DbException.convert(exception);
+                }
+                session.checkCanceled();
+                if (batch == null) {
+                    continue;
+                } else if (batch == END) {
+                    running--;
+                    continue;
+                }
+                rows += insert(command, batch);
+                long now = System.currentTimeMillis();
+                if (now - lastProgress > PROGRESS_INTERVAL) {
+                    lastProgress = now;
+                    database.setProgress(DatabaseEventListener.STATE_STATEMENT_PROGRESS, fileName, rows, 0);
+                    if (trace.isInfoEnabled()) {
+                        trace.info("CSVLOAD {0}: {1} rows, {2} rows/s", fileName, rows, rowsPerSecond(rows, now - start));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw DbException.convert(e);
+        } finally {
+            stopped = true;
+            for (Chunk t : threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+            command.close();
+        }
+        if (trace.isInfoEnabled()) {
+            long time = System.currentTimeMillis() - start;
+            trace.info("CSVLOAD {0}: {1} rows in {2} ms using {3} thread(s), {4} rows/s", fileName, rows, time, chunks,
+                    rowsPerSecond(rows, time));
+        }
+        return rows;
+    }
+
+    private static long rowsPerSecond(long rows, long millis) {
+        return millis <= 0 ? rows : rows * 1000 / millis;
+    }
+
+    private int insert(Command command, ArrayList<Value[]> batch) {
+        // the statement is compiled again if a table was changed, the
+        // previous batch then was executed by another Prepared
+        Prepared prepared = command.getPrepared();
+        ArrayList<Parameter> params = prepared.getParameters();
+        int size = batch.size();
+        if (size > 1 && prepared.setBatchParameters(batch)) {
+            try {
+                //最后一组参数用于通过checkParameters的检查
+                setParameters(params, batch.get(size - 1));
+                return command.executeUpdate();
+            } finally {
+                // also if the batch was moved to a recompiled statement
+                prepared.clearBatchParameters();
+                command.getPrepared().clearBatchParameters();
+            }
+        }
+        int count = 0;
+        for (Value[] row : batch) {
+            setParameters(command.getPrepared().getParameters(), row);
+            count += command.executeUpdate();
+        }
+        return count;
+    }
+
+    private static void setParameters(ArrayList<Parameter> params, Value[] values) {
+        for (int i = 0, size = params.size(); i < size; i++) {
+            params.get(i).setValue(values[i]);
+        }
+    }
+
+    private void readColumnNames() {
+        Csv headerCsv = newCsv();
+        try {
+            String[] names = columnList == null ? null : columnList.clone();
+            ResultSet rs = headerCsv.read(fileName, names, charset);
+            try {
+                ResultSetMetaData meta = rs.getMetaData();
+                columnNames = new String[meta.getColumnCount()];
+                for (int i = 0; i < columnNames.length; i++) {
+                    columnNames[i] = meta.getColumnLabel(i + 1);
+                }
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            throw DbException.convert(e);
+        }
+    }
+
+    private Command prepareInsert() {
+        StatementBuilder buff = new StatementBuilder("INSERT INTO ");
+        buff.append(tableName).append('(');
+        for (String n : columnNames) {
+            buff.appendExceptFirst(", ");
+            buff.append(Parser.quoteIdentifier(n));
+        }
+        buff.append(") VALUES(");
+        buff.resetCount();
+        for (int i = 0; i < columnNames.length; i++) {
+            buff.appendExceptFirst(", ");
+            buff.append('?');
+        }
+        buff.append(')');
+        Command command = session.prepareLocal(buff.toString());
+        Prepared prepared = command.getPrepared();
+        if (!(prepared instanceof Insert)) {
+            command.close();
+            throw DbException.get(ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, tableName);
+        }
+        columns = ((Insert) prepared).getColumns();
+        return command;
+    }
+
+    private Csv newCsv() {
+        Csv c = new Csv();
+        if (options != null) {
+            c.setOptions(options);
+        }
+        return c;
+    }
+
+    /**
+     * Get the start positions of the chunks. A chunk always starts at the
+     * beginning of a line, and not within a delimited value.
+     *
+     * @return the start positions, followed by the file length
+     */
+    private long[] split() {
+        long length = FileUtils.size(fileName);
+        int threads = database.getSettings().csvLoadThreads;
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        int count = (int) Math.min(threads, length / MIN_CHUNK_SIZE);
+        if (count < 2 || !isSplittable()) {
+            return new long[] { 0, Long.MAX_VALUE };
+        }
+        long[] bounds = new long[count + 1];
+        int next = 1;
+        // without a field delimiter, every line feed ends a row
+        int delimiter = csv.getFieldDelimiter() == 0 ? -1 : csv.getFieldDelimiter();
+        char separator = csv.getFieldSeparatorRead();
+        InputStream in = null;
+        try {
+            in = FileUtils.newInputStream(fileName);
+            byte[] buffer = new byte[Constants.IO_BUFFER_SIZE_COMPRESS];
+            long pos = 0;
+            long target = length / count;
+            boolean quoted = false, closed = false, fieldStart = true;
+            while (next < count) {
+                int len = in.read(buffer);
+                if (len < 0) {
+                    break;
+                }
+                for (int i = 0; i < len && next < count; i++) {
+                    int b = buffer[i] & 0xff;
+                    pos++;
+                    if (quoted) {
+                        if (b == delimiter) {
+                            quoted = false;
+                            closed = true;
+                        }
+                        continue;
+                    }
+                    if (b == delimiter && (fieldStart || closed)) {
+                        // a delimited value, or an escaped delimiter
+                        quoted = true;
+                    } else if (b == '\n') {
+                        fieldStart = true;
+                        if (pos >= target) {
+                            bounds[next++] = pos;
+                            target = length * next / count;
+                        }
+                    } else if (b == separator || b == '\r') {
+                        fieldStart = true;
+                    } else if (b > ' ') {
+                        fieldStart = false;
+                    }
+                    closed = false;
+                }
+            }
+        } catch (IOException e) {
+            throw DbException.convertIOException(e, fileName);
+        } finally {
+            IOUtils.closeSilently(in);
+        }
+        if (next < count) {
+            bounds[next] = Long.MAX_VALUE;
+            long[] b = new long[next + 1];
+            System.arraycopy(bounds, 0, b, 0, b.length);
+            return b;
+        }
+        bounds[count] = Long.MAX_VALUE;
+        return bounds;
+    }
+
+    /**
+     * Check whether the file can be split at a newline byte. This is the case
+     * if line feeds, delimiters and separators are single bytes that can't be
+     * part of another character, and if the delimiter is escaped by doubling
+     * it.
+     *
+     * @return true if the file can be split
+     */
+    private boolean isSplittable() {
+        char delimiter = csv.getFieldDelimiter();
+        if (csv.getLineCommentCharacter() != 0 || delimiter >= 128 || csv.getFieldSeparatorRead() >= 128) {
+            return false;
+        }
+        if (delimiter != 0 && csv.getEscapeCharacter() != delimiter) {
+            return false;
+        }
+        try {
+            Charset cs = Charset.forName(charset);
+            if (cs.name().equals("UTF-8")) {
+                return true;
+            }
+            String s = "\r\n" + delimiter + csv.getFieldSeparatorRead();
+            byte[] bytes = s.getBytes(cs);
+            return cs.newEncoder().maxBytesPerChar() == 1 && bytes[1] == '\n' && bytes[2] == delimiter
+                    && bytes[3] == csv.getFieldSeparatorRead();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Convert a field to the type of the column.
+     *
+     * @param column the column
+     * @param s the field, or null
+     * @return the value
+     */
+    static Value convert(Column column, String s) {
+        if (s == null) {
+            return ValueNull.INSTANCE;
+        }
+        try {
+            switch (column.getType()) {
+            case Value.INT:
+                return ValueInt.get(Integer.parseInt(s));
+            case Value.LONG:
+                return ValueLong.get(Long.parseLong(s));
+            case Value.DOUBLE:
+                return ValueDouble.get(Double.parseDouble(s));
+            case Value.DECIMAL:
+                return ValueDecimal.get(new BigDecimal(s));
+            case Value.STRING:
+                return ValueString.get(s);
+            default:
+            }
+        } catch (NumberFormatException e) {
+            // use the conversion below, which reports the error
+        }
+        return column.convert(ValueString.get(s));
+    }
+
+    /**
+     * A thread that parses one chunk of the file.
+     */
+    private class Chunk extends Thread {
+
+        private final long start;
+        private final long end;
+        private final boolean readHeader;
+
+        Chunk(long start, long end, boolean readHeader) {
+            super("CSVLOAD " + fileName + " " + start);
+            setDaemon(true);
+            this.start = start;
+            this.end = end;
+            this.readHeader = readHeader;
+        }
+
+        public void run() {
+            Csv chunkCsv = newCsv();
+            try {
+                InputStream in = FileUtils.newInputStream(fileName);
+                IOUtils.skipFully(in, start);
+                in = new BufferedInputStream(new ChunkInputStream(in, end - start), Constants.IO_BUFFER_SIZE);
+                Reader reader = new InputStreamReader(in, charset);
+                chunkCsv.read(reader, readHeader ? null : columnNames.clone());
+                int len = columns.length;
+                ArrayList<Value[]> batch = New.arrayList(batchSize);
+                while (!stopped) {
+                    Object[] row = chunkCsv.readRow();
+                    if (row == null) {
+                        break;
+                    }
+                    Value[] values = new Value[len];
+                    for (int i = 0; i < len; i++) {
+                        values[i] = convert(columns[i], (String) row[i]);
+                    }
+                    batch.add(values);
+                    if (batch.size() >= batchSize) {
+                        put(batch);
+                        batch = New.arrayList(batchSize);
+                    }
+                }
+                if (batch.size() > 0) {
+                    put(batch);
+                }
+            } catch (Throwable e) {
+                exception = e;
+            } finally {
+                chunkCsv.close();
+                try {
+                    put(END);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }
+
+        private void put(ArrayList<Value[]> batch) throws InterruptedException {
+            while (!stopped) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * An input stream that stops after the given number of bytes.
+     */
+    private static class ChunkInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        ChunkInputStream(InputStream in, long length) {
+            super(in);
+            remaining = length;
+        }
+
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int x = in.read();
+            if (x >= 0) {
+                remaining--;
+            }
+            return x;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            len = (int) Math.min(len, remaining);
+            int l = in.read(b, off, len);
+            if (l > 0) {
+                remaining -= l;
+            }
+            return l;
+        }
+
+        public long skip(long n) throws IOException {
+            long s = in.skip(Math.min(n, remaining));
+            remaining -= s;
+            return s;
+        }
+
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import com.codefollower.lealone.api.DatabaseEventListener;
+import com.codefollower.lealone.command.PlanCache;
 import com.codefollower.lealone.command.ddl.CreateTableData;
 import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.constant.DbSettings;
@@ -47,6 +48,7 @@ import com.codefollower.lealone.dbobject.table.MetaTable;
 import com.codefollower.lealone.dbobject.table.Table;
 import com.codefollower.lealone.dbobject.table.TableBase;
 import com.codefollower.lealone.dbobject.table.TableLinkConnection;
+import com.codefollower.lealone.dbobject.table.TableStatistics;
 import com.codefollower.lealone.dbobject.table.TableView;
 import com.codefollower.lealone.engine.ConnectionInfo;
 import com.codefollower.lealone.jdbc.JdbcConnection;
@@ -115,6 +117,7 @@ public abstract class Database implements DataHandler {
     private final HashMap<String, UserDataType> userDataTypes = New.hashMap();
     private final HashMap<String, UserAggregate> aggregates = New.hashMap();
     private final HashMap<String, Comment> comments = New.hashMap();
+    private final HashMap<String, TableStatistics> tableStatistics = New.hashMap();
 
     protected final Set<Session> userSessions = Collections.synchronizedSet(new HashSet<Session>());
     protected Session exclusiveSession;
@@ -163,6 +166,8 @@ public abstract class Database implements DataHandler {
     private boolean multiThreaded;
     private int maxOperationMemory = Constants.DEFAULT_MAX_OPERATION_MEMORY;
     private SmallLRUCache<String, String[]> lobFileListCache;
+    private PlanCache planCache;
+    private Metrics metrics;
     protected boolean autoServerMode;
     protected int autoServerPort;
     private HashMap<TableLinkConnection, TableLinkConnection> linkConnections;
@@ -197,6 +202,12 @@ public abstract class Database implements DataHandler {
     public void init(ConnectionInfo ci, String cipher) {
         String name = ci.getName();
         this.dbSettings = ci.getDbSettings();
+        if (dbSettings.planCacheSize > 0) {
+            planCache = new PlanCache(this, dbSettings.planCacheSize);
+        }
+        if (dbSettings.metricsStatementCount > 0) {
+            metrics = new Metrics(dbSettings.metricsStatementCount);
+        }
         this.compareMode = CompareMode.getInstance(null, 0, false);
         //this.persistent = ci.isPersistent();
         this.filePasswordHash = ci.getFilePasswordHash();
@@ -687,6 +698,9 @@ public abstract class Database implements DataHandler {
         case DbObject.COMMENT:
             result = comments;
             break;
+        case DbObject.STATISTICS:
+            result = tableStatistics;
+            break;
         case DbObject.AGGREGATE:
             result = aggregates;
             break;
@@ -764,6 +778,16 @@ public abstract class Database implements DataHandler {
         return comments.get(key);
     }
 
+    /**
+     * Get the statistics of the given table if they exist, or null if not.
+     *
+     * @param table the table
+     * @return the statistics or null
+     */
+    public TableStatistics findTableStatistics(Table table) {
+        return tableStatistics.get(TableStatistics.getKey(table));
+    }
+
     /**
      * Get the role if it exists, or null if not.
      *
@@ -1216,6 +1240,13 @@ public abstract class Database implements DataHandler {
             DbException.throwInternalError();
         }
         update(session, obj);
+        if (obj instanceof Table) {
+            // the statistics refer to the table by name
+            TableStatistics statistics = findTableStatistics((Table) obj);
+            if (statistics != null) {
+                update(session, statistics);
+            }
+        }
         // remember that this scans only one level deep!
         if (list != null) {
             for (DbObject o : list) {
@@ -1390,6 +1421,12 @@ public abstract class Database implements DataHandler {
         if (comment != null) {
             removeDatabaseObject(session, comment);
         }
+        if (type == DbObject.TABLE_OR_VIEW) {
+            TableStatistics statistics = findTableStatistics((Table) obj);
+            if (statistics != null) {
+                removeDatabaseObject(session, statistics);
+            }
+        }
         obj.getSchema().remove(obj);
         int id = obj.getId();
         if (!starting) {
@@ -1520,7 +1557,7 @@ public abstract class Database implements DataHandler {
      *
      * @param session the session
      */
-    synchronized void commit(Session session) {
+    void commit(Session session) {
         if (readOnly) {
             return;
         }
@@ -1802,6 +1839,24 @@ public abstract class Database implements DataHandler {
         return lobFileListCache;
     }
 
+    /**
+     * Get the database wide plan cache.
+     *
+     * @return the plan cache, or null if it is disabled
+     */
+    public PlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Get the database wide metrics registry.
+     *
+     * @return the metrics, or null if they are disabled
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Checks if the system table (containing the catalog) is locked.
      *
@@ -1831,7 +1886,8 @@ public abstract class Database implements DataHandler {
         if (linkConnections == null) {
             linkConnections = New.hashMap();
         }
-        return TableLinkConnection.open(linkConnections, driver, url, user, password, dbSettings.shareLinkedConnections);
+        return TableLinkConnection.open(linkConnections, driver, url, user, password, dbSettings.shareLinkedConnections,
+                dbSettings.linkedConnectionPoolSize);
     }
 
     public String toString() {
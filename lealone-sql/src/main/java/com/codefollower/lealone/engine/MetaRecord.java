@@ -138,6 +138,8 @@ public class MetaRecord implements Comparable<MetaRecord> {
             return 13;
         case DbObject.COMMENT:
             return 14;
+        case DbObject.STATISTICS:
+            return 15;
         default:
             throw DbException.throwInternalError("type=" + objectType);
         }
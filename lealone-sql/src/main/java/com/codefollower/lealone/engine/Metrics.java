@@ -0,0 +1,295 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A database wide registry of cheap runtime counters.
+ *
+ * Statements are grouped by their fingerprint (the SQL text with the literals
+ * replaced by '?', and IN lists of any length reduced to one element). A
+ * command looks up its entry once when it is executed for the first time,
+ * afterwards recording an execution only updates a few atomic counters. When
+ * the maximum number of fingerprints is reached, the least recently used entry
+ * is removed; a command that still holds a removed entry looks up a new one.
+ *
+ * Other modules add named counters, for example the number of commands sent to
+ * each region server, or the number of committed and conflicting transactions.
+ */
+public class Metrics {
+
+    // IN(?, ?, ?) with literals or parameters
+    private static final Pattern IN_LIST = Pattern.compile("(?i)(\\bIN ?\\()\\?(?: ?, ?\\?)+\\)");
+
+    private final LinkedHashMap<String, StatementMetrics> statements;
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+    public Metrics(final int maxStatements) {
+        statements = new LinkedHashMap<String, StatementMetrics>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StatementMetrics> eldest) {
+                if (size() <= maxStatements) {
+                    return false;
+                }
+                eldest.getValue().evicted = true;
+                addCounter("statements.evicted", 1);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the entry of the given statement, and create it if required.
+     *
+     * @param sql the SQL statement
+     * @return the entry
+     */
+    public StatementMetrics getStatementMetrics(String sql) {
+        String fingerprint = getFingerprint(sql);
+        synchronized (statements) {
+            StatementMetrics m = statements.get(fingerprint);
+            if (m == null) {
+                m = new StatementMetrics(fingerprint);
+                statements.put(fingerprint, m);
+            }
+            return m;
+        }
+    }
+
+    /**
+     * Add a value to a named counter.
+     *
+     * @param name the counter name
+     * @param delta the value to add
+     */
+    public void addCounter(String name, long delta) {
+        AtomicLong c = counters.get(name);
+        if (c == null) {
+            c = new AtomicLong();
+            AtomicLong old = counters.putIfAbsent(name, c);
+            if (old != null) {
+                c = old;
+            }
+        }
+        c.addAndGet(delta);
+    }
+
+    public ArrayList<StatementMetrics> getStatementMetrics() {
+        synchronized (statements) {
+            return new ArrayList<StatementMetrics>(statements.values());
+        }
+    }
+
+    /**
+     * Get a snapshot of the named counters, sorted by name.
+     *
+     * @return the counters
+     */
+    public Map<String, Long> getCounters() {
+        TreeMap<String, Long> map = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            map.put(e.getKey(), e.getValue().get());
+        }
+        return map;
+    }
+
+    /**
+     * Remove all entries and counters.
+     */
+    public void clear() {
+        synchronized (statements) {
+            for (StatementMetrics m : statements.values()) {
+                m.evicted = true;
+            }
+            statements.clear();
+        }
+        counters.clear();
+    }
+
+    /**
+     * Replace the number and string literals of a SQL statement with '?', and
+     * all white space with a single space. IN lists that only contain literals
+     * or parameters are reduced to IN(?), so that the fingerprint does not
+     * depend on the number of elements.
+     *
+     * @param sql the SQL statement
+     * @return the fingerprint
+     */
+    static String getFingerprint(String sql) {
+        int len = sql.length();
+        StringBuilder buff = new StringBuilder(len);
+        for (int i = 0; i < len;) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // string literal, '' is an escaped quote
+                for (i++; i < len; i++) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                i++;
+                buff.append('?');
+            } else if (c == '"') {
+                // quoted identifier
+                int start = i;
+                for (i++; i < len && sql.charAt(i) != '"'; i++) {
+                    // skip
+                }
+                i = Math.min(i + 1, len);
+                buff.append(sql, start, i);
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < len && Character.isDigit(sql.charAt(i + 1)))) {
+                boolean identifier = buff.length() > 0 && isIdentifierPart(buff.charAt(buff.length() - 1));
+                int start = i;
+                for (i++; i < len && (isIdentifierPart(sql.charAt(i)) || sql.charAt(i) == '.'); i++) {
+                    // skip
+                }
+                if (identifier) {
+                    buff.append(sql, start, i);
+                } else {
+                    buff.append('?');
+                }
+            } else if (Character.isWhitespace(c)) {
+                for (i++; i < len && Character.isWhitespace(sql.charAt(i)); i++) {
+                    // skip
+                }
+                if (buff.length() > 0 && i < len) {
+                    buff.append(' ');
+                }
+            } else {
+                buff.append(c);
+                i++;
+            }
+        }
+        return IN_LIST.matcher(buff).replaceAll("$1?)");
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * The counters of all statements with the same fingerprint.
+     */
+    public static class StatementMetrics {
+
+        private final String fingerprint;
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong parseNanos = new AtomicLong();
+        private final AtomicLong planNanos = new AtomicLong();
+        private volatile boolean evicted;
+
+        StatementMetrics(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Record one execution.
+         *
+         * @param nanos the execution time in nanoseconds
+         * @param rowCount the number of rows returned or updated, -1 if unknown
+         * @param error whether the execution failed
+         */
+        public void addExecution(long nanos, long rowCount, boolean error) {
+            executions.incrementAndGet();
+            if (error) {
+                errors.incrementAndGet();
+            }
+            if (rowCount > 0) {
+                rows.addAndGet(rowCount);
+            }
+            totalNanos.addAndGet(nanos);
+            while (true) {
+                long max = maxNanos.get();
+                if (nanos <= max || maxNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Record the time spent to parse and to optimize the statement.
+         *
+         * @param parse the parse time in nanoseconds
+         * @param plan the time used by the optimizer in nanoseconds
+         */
+        public void addPrepare(long parse, long plan) {
+            parseNanos.addAndGet(parse);
+            planNanos.addAndGet(plan);
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Check whether this entry was removed from the registry.
+         *
+         * @return true if it is no longer listed
+         */
+        public boolean isEvicted() {
+            return evicted;
+        }
+
+        public long getExecutions() {
+            return executions.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getParseNanos() {
+            return parseNanos.get();
+        }
+
+        public long getPlanNanos() {
+            return planNanos.get();
+        }
+    }
+}
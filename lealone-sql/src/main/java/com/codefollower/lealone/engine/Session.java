@@ -9,11 +9,15 @@ package com.codefollower.lealone.engine;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 
 import com.codefollower.lealone.command.Command;
+import com.codefollower.lealone.command.CommandContainer;
 import com.codefollower.lealone.command.Parser;
+import com.codefollower.lealone.command.PlanCache;
 import com.codefollower.lealone.command.Prepared;
+import com.codefollower.lealone.command.dml.ExplainStatistics;
 import com.codefollower.lealone.command.dml.Insert;
 import com.codefollower.lealone.command.dml.Query;
 import com.codefollower.lealone.constant.Constants;
@@ -27,6 +31,7 @@ import com.codefollower.lealone.dbobject.Setting;
 import com.codefollower.lealone.dbobject.User;
 import com.codefollower.lealone.dbobject.constraint.Constraint;
 import com.codefollower.lealone.dbobject.index.Index;
+import com.codefollower.lealone.dbobject.index.LinkedCursor;
 import com.codefollower.lealone.dbobject.table.Table;
 import com.codefollower.lealone.engine.ConnectionInfo;
 import com.codefollower.lealone.engine.SessionInterface;
@@ -89,6 +94,7 @@ public class Session extends SessionWithState {
     private int throttle;
     private long lastThrottle;
     private Command currentCommand;
+    private volatile ExplainStatistics explainStatistics;
     private boolean allowLiterals;
     private String currentSchemaName;
     private String[] schemaSearchPath;
@@ -107,9 +113,10 @@ public class Session extends SessionWithState {
     private long currentCommandStart;
     private HashMap<String, Value> variables;
     private HashSet<ResultInterface> temporaryResults;
+    private ArrayList<LinkedCursor> linkedCursors;
     private int queryTimeout;
     private boolean commitOrRollbackDisabled;
-    private Table waitForLock;
+    private volatile Table waitForLock;
     private int modificationId;
     private int objectId;
     protected final int queryCacheSize;
@@ -207,6 +214,10 @@ public class Session extends SessionWithState {
         return localTempTables.get(name);
     }
 
+    public boolean hasLocalTempTables() {
+        return localTempTables != null && !localTempTables.isEmpty();
+    }
+
     public ArrayList<Table> getLocalTempTables() {
         if (localTempTables == null) {
             return New.arrayList();
@@ -397,6 +408,40 @@ public class Session extends SessionWithState {
         return parser.prepare(sql);
     }
 
+    /**
+     * Parse and prepare the given SQL statement, re-using an idle statement
+     * from the database wide plan cache if possible. The statement must be
+     * given back with {@link #releasePrepared(String, Prepared)} once it is
+     * not used any longer.
+     *
+     * @param sql the SQL statement
+     * @return the prepared statement
+     */
+    public Prepared prepareCached(String sql) {
+        PlanCache planCache = database.getPlanCache();
+        if (planCache != null) {
+            Prepared p = planCache.take(this, sql, true);
+            if (p != null) {
+                return p;
+            }
+        }
+        return prepare(sql, true);
+    }
+
+    /**
+     * Give a statement returned by {@link #prepareCached(String)} back to the
+     * plan cache.
+     *
+     * @param sql the SQL statement
+     * @param p the prepared statement
+     */
+    public void releasePrepared(String sql, Prepared p) {
+        PlanCache planCache = database.getPlanCache();
+        if (planCache != null) {
+            planCache.release(this, sql, true, p);
+        }
+    }
+
     /**
      * Parse and prepare the given SQL statement.
      * This method also checks if the connection has been closed.
@@ -430,7 +475,13 @@ public class Session extends SessionWithState {
             }
         }
         Parser parser = createParser();
-        command = parser.prepareCommand(sql);
+        PlanCache planCache = database.getPlanCache();
+        Prepared p = planCache == null ? null : planCache.take(this, sql, false);
+        if (p != null) {
+            command = parser.createCommand(p, sql);
+        } else {
+            command = parser.prepareCommand(sql);
+        }
         if (queryCache != null) {
             if (command.isCacheable()) {
                 queryCache.put(sql, command);
@@ -580,6 +631,7 @@ public class Session extends SessionWithState {
         if (!closed) {
             try {
                 database.checkPowerOff();
+                releaseQueryCache();
                 cleanTempTables(true);
                 undoLog.clear();
                 database.removeSession(this);
@@ -589,6 +641,47 @@ public class Session extends SessionWithState {
         }
     }
 
+    /**
+     * Hand the closed statements of this session over to the plan cache. They
+     * can't be used by this session any longer once it is closed. Statements
+     * that are still open are handed over when they are closed.
+     */
+    private synchronized void releaseQueryCache() {
+        PlanCache planCache = database.getPlanCache();
+        if (queryCache != null && planCache != null) {
+            for (Map.Entry<String, Command> e : queryCache.entrySet()) {
+                Command command = e.getValue();
+                if (command instanceof CommandContainer && command.canReuse() && command != currentCommand) {
+                    planCache.release(this, e.getKey(), false, command.getPrepared());
+                }
+            }
+        }
+        queryCache = null;
+    }
+
+    /**
+     * Give the statement of a closed command back to the plan cache, where
+     * this session and other sessions find it the next time the statement is
+     * prepared. If the plan cache is disabled, the command stays in the query
+     * cache of this session.
+     *
+     * @param sql the SQL statement of the command
+     * @param command the closed command
+     * @return true if the statement was given to the plan cache, in which case
+     *         the command must not be used any longer
+     */
+    public synchronized boolean releaseCommand(String sql, Command command) {
+        PlanCache planCache = database.getPlanCache();
+        if (planCache == null) {
+            return false;
+        }
+        if (queryCache != null && queryCache.get(sql) == command) {
+            queryCache.remove(sql);
+        }
+        planCache.release(this, sql, false, command.getPrepared());
+        return true;
+    }
+
     /**
      * Add a lock for the given table. The object is unlocked on commit or
      * rollback.
@@ -653,7 +746,7 @@ public class Session extends SessionWithState {
         for (int i = 0; i < locks.size(); i++) {
             Table t = locks.get(i);
             if (!t.isLockedExclusively()) {
-                synchronized (database) {
+                synchronized (getLockSync()) {
                     t.unlock(this);
                     locks.remove(i);
                 }
@@ -678,7 +771,7 @@ public class Session extends SessionWithState {
             }
         }
         if (locks.size() > 0) {
-            synchronized (database) {
+            synchronized (getLockSync()) {
                 // don't use the enhanced for loop to save memory
                 for (int i = 0, size = locks.size(); i < size; i++) {
                     Table t = locks.get(i);
@@ -713,6 +806,16 @@ public class Session extends SessionWithState {
         }
     }
 
+    /**
+     * Get the object to synchronize on when releasing table locks. In
+     * multi-threaded mode the tables synchronize the lock state themselves.
+     *
+     * @return the object to synchronize on
+     */
+    private Object getLockSync() {
+        return database.isMultiThreaded() ? this : database;
+    }
+
     public Random getRandom() {
         if (random == null) {
             random = new Random();
@@ -932,6 +1035,19 @@ public class Session extends SessionWithState {
         return currentCommand;
     }
 
+    /**
+     * Get the statistics of the running EXPLAIN ANALYZE statement.
+     *
+     * @return the statistics, or null if no statement is being analyzed
+     */
+    public ExplainStatistics getExplainStatistics() {
+        return explainStatistics;
+    }
+
+    public void setExplainStatistics(ExplainStatistics explainStatistics) {
+        this.explainStatistics = explainStatistics;
+    }
+
     public long getCurrentCommandStart() {
         return currentCommandStart;
     }
@@ -1159,9 +1275,23 @@ public class Session extends SessionWithState {
         }
     }
 
+    /**
+     * Remember a cursor of a linked table, and close it at the end of the
+     * statement if it was not read to the end, so that its remote statement
+     * and connection are given back.
+     *
+     * @param cursor the cursor
+     */
+    public void addLinkedCursor(LinkedCursor cursor) {
+        if (linkedCursors == null) {
+            linkedCursors = New.arrayList();
+        }
+        linkedCursors.add(cursor);
+    }
+
     /**
      * Close all temporary result set. This also deletes all temporary files
-     * held by the result sets.
+     * held by the result sets, and closes the cursors of linked tables.
      */
     public void closeTemporaryResults() {
         if (temporaryResults != null) {
@@ -1170,6 +1300,12 @@ public class Session extends SessionWithState {
             }
             temporaryResults = null;
         }
+        if (linkedCursors != null) {
+            for (LinkedCursor cursor : linkedCursors) {
+                cursor.close();
+            }
+            linkedCursors = null;
+        }
     }
 
     public void setQueryTimeout(int queryTimeout) {
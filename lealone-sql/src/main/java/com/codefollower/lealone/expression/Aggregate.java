@@ -132,6 +132,13 @@ public class Aggregate extends Expression {
     private int displaySize;
     private int lastGroupRowId;
 
+    /**
+     * The group and the data of the last update, used to avoid a hash lookup
+     * per row if consecutive rows belong to the same group.
+     */
+    private HashMap<Expression, Object> lastGroup;
+    private AggregateData lastData;
+
     /**
      * Create a new aggregate object.
      *
@@ -238,10 +245,17 @@ public class Aggregate extends Expression {
         }
         lastGroupRowId = groupRowId;
 
-        AggregateData data = (AggregateData) group.get(this);
-        if (data == null) {
-            data = new AggregateData(type, dataType);
-            group.put(this, data);
+        AggregateData data;
+        if (group == lastGroup) {
+            data = lastData;
+        } else {
+            data = (AggregateData) group.get(this);
+            if (data == null) {
+                data = new AggregateData(type, dataType);
+                group.put(this, data);
+            }
+            lastGroup = group;
+            lastData = data;
         }
         Value v = on == null ? null : on.getValue(session);
         if (type == GROUP_CONCAT) {
@@ -11,6 +11,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 
 import com.codefollower.lealone.constant.Constants;
+import com.codefollower.lealone.constant.ErrorCode;
 import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.util.IntIntHashMap;
@@ -39,6 +40,16 @@ class AggregateData {
     private double m2, mean;
     private ArrayList<Value> list;
 
+    /**
+     * SUM and AVG over LONG or DOUBLE are accumulated in a primitive field
+     * instead of allocating a new value for each row. The type is
+     * Value.UNKNOWN before the first row and Value.NULL if the values have
+     * to be added in the generic way.
+     */
+    private int sumType = Value.UNKNOWN;
+    private long longSum;
+    private double doubleSum;
+
     AggregateData(int aggregateType, int dataType) {
         this.aggregateType = aggregateType;
         this.dataType = dataType;
@@ -101,6 +112,9 @@ class AggregateData {
         case Aggregate.HISTOGRAM:
             return;
         case Aggregate.SUM:
+            if (addPrimitive(v, dataType)) {
+                break;
+            }
             if (value == null) {
                 value = v.convertTo(dataType);
             } else {
@@ -109,6 +123,9 @@ class AggregateData {
             }
             break;
         case Aggregate.AVG:
+            if (addPrimitive(v, DataType.getAddProofType(dataType))) {
+                break;
+            }
             if (value == null) {
                 value = v.convertTo(DataType.getAddProofType(dataType));
             } else {
@@ -172,7 +189,50 @@ class AggregateData {
         }
     }
 
+    private boolean addPrimitive(Value v, int type) {
+        if (sumType == Value.UNKNOWN) {
+            sumType = type == Value.LONG || type == Value.DOUBLE ? type : Value.NULL;
+        }
+        switch (sumType) {
+        case Value.LONG: {
+            long x = v.getLong();
+            long r = longSum + x;
+            // same overflow check as in ValueLong.add
+            int sv = Long.signum(longSum);
+            int so = Long.signum(x);
+            if (sv == so && Long.signum(r) != so && sv != 0) {
+                throw DbException.get(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, Long.toString(longSum));
+            }
+            longSum = r;
+            return true;
+        }
+        case Value.DOUBLE:
+            doubleSum += v.getDouble();
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Move a primitive sum into the value field.
+     */
+    private void flushPrimitive() {
+        if (count > 0) {
+            if (sumType == Value.LONG) {
+                value = ValueLong.get(longSum);
+            } else if (sumType == Value.DOUBLE) {
+                value = ValueDouble.get(doubleSum);
+            }
+        }
+    }
+
     void merge(Database database, boolean distinct, Value v) {
+        if (sumType != Value.NULL) {
+            // merging works on the value field only
+            flushPrimitive();
+            sumType = Value.NULL;
+        }
         if (aggregateType == Aggregate.COUNT || aggregateType == Aggregate.COUNT_ALL) {
             count += v.getLong();
             return;
@@ -288,9 +348,14 @@ class AggregateData {
      */
     Value getValue(Database database, boolean distinct) {
         if (distinct) {
+            // the distinct values are added again, so that getting the value twice returns the same result
             count = 0;
+            value = null;
+            longSum = 0;
+            doubleSum = 0;
             groupDistinct(database);
         }
+        flushPrimitive();
         Value v = null;
         switch (aggregateType) {
         case Aggregate.SELECTIVITY: {
@@ -378,9 +443,14 @@ class AggregateData {
 
     Value getMergedValue(Database database, boolean distinct) {
         if (distinct) {
+            // the distinct values are added again, so that getting the value twice returns the same result
             count = 0;
+            value = null;
+            longSum = 0;
+            doubleSum = 0;
             groupDistinct(database);
         }
+        flushPrimitive();
         Value v = null;
         switch (aggregateType) {
         case Aggregate.COUNT:
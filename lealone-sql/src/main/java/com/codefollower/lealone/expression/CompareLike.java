@@ -406,4 +406,19 @@ public class CompareLike extends Condition {
         return left.getCost() + right.getCost() + 3;
     }
 
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    public Expression getEscape() {
+        return escape;
+    }
+
+    public boolean isRegexp() {
+        return regexp;
+    }
 }
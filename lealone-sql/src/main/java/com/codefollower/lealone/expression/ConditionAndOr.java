@@ -271,4 +271,13 @@ public class ConditionAndOr extends Condition {
     public Expression getExpression(boolean getLeft) {
         return getLeft ? this.left : right;
     }
+
+    /**
+     * Get the type of this condition.
+     *
+     * @return AND or OR
+     */
+    public int getAndOrType() {
+        return andOrType;
+    }
 }
@@ -199,4 +199,11 @@ public class ConditionIn extends Condition {
         return null;
     }
 
+    public Expression getLeft() {
+        return left;
+    }
+
+    public ArrayList<Expression> getValueList() {
+        return valueList;
+    }
 }
@@ -151,4 +151,12 @@ public class ConditionInConstantSet extends Condition {
         }
         return null;
     }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public ArrayList<Expression> getValueList() {
+        return valueList;
+    }
 }
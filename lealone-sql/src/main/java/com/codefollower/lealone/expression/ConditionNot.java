@@ -89,4 +89,7 @@ public class ConditionNot extends Condition {
         return condition.getCost();
     }
 
+    public Expression getCondition() {
+        return condition;
+    }
 }
@@ -165,6 +165,10 @@ public class ExpressionColumn extends Expression {
         for (Column col : resolver.getColumns()) {
             String n = col.getName();
             if (database.equalsIdentifiers(columnName, n)) {
+                if (resolver instanceof TableFilter && resolver.getSelect() != null) {
+                    // the columns used by the query, see Select.getColumns
+                    resolver.getSelect().addColumn(resolver.getTableFilter(), col);
+                }
                 mapColumn(resolver, col, level);
                 return;
             }
@@ -36,6 +36,7 @@ import com.codefollower.lealone.dbobject.table.LinkSchema;
 import com.codefollower.lealone.dbobject.table.Table;
 import com.codefollower.lealone.dbobject.table.TableFilter;
 import com.codefollower.lealone.engine.Csv;
+import com.codefollower.lealone.engine.CsvLoader;
 import com.codefollower.lealone.engine.Database;
 import com.codefollower.lealone.engine.Mode;
 import com.codefollower.lealone.engine.Session;
@@ -107,6 +108,8 @@ public class Function extends Expression implements FunctionCall {
      */
     public static final int LEALONE_VERSION = 231;
 
+    public static final int CSVLOAD = 232;
+
     public static final int ROW_NUMBER = 300;
 
     private static final int VAR_ARGS = -1;
@@ -341,6 +344,7 @@ public class Function extends Expression implements FunctionCall {
         addFunction("ARRAY_CONTAINS", ARRAY_CONTAINS, 2, Value.BOOLEAN, false, true, false);
         addFunction("CSVREAD", CSVREAD, VAR_ARGS, Value.RESULT_SET, false, false, true);
         addFunction("CSVWRITE", CSVWRITE, VAR_ARGS, Value.INT, false, false, false);
+        addFunction("CSVLOAD", CSVLOAD, VAR_ARGS, Value.INT, false, false, false);
         addFunctionNotDeterministic("MEMORY_FREE", MEMORY_FREE, 0, Value.INT);
         addFunctionNotDeterministic("MEMORY_USED", MEMORY_USED, 0, Value.INT);
         addFunctionNotDeterministic("LOCK_MODE", LOCK_MODE, 0, Value.INT);
@@ -1236,7 +1240,6 @@ public class Function extends Expression implements FunctionCall {
         }
         case CSVWRITE: {
             session.getUser().checkAdmin();
-            Connection conn = session.createConnection(false);
             Csv csv = new Csv();
             String options = v2 == null ? null : v2.getString();
             String charset = null;
@@ -1258,13 +1261,31 @@ public class Function extends Expression implements FunctionCall {
                 }
             }
             try {
-                int rows = csv.write(conn, v0.getString(), v1.getString(), charset);
+                Command command = session.prepareLocal(v1.getString());
+                int rows;
+                try {
+                    if (command.isQuery()) {
+                        rows = csv.write(v0.getString(), command.executeQuery(0, false), charset);
+                    } else {
+                        rows = csv.write(session.createConnection(false), v0.getString(), v1.getString(), charset);
+                    }
+                } finally {
+                    command.close();
+                }
                 result = ValueInt.get(rows);
             } catch (SQLException e) {
                 throw DbException.convert(e);
             }
             break;
         }
+        case CSVLOAD: {
+            session.getUser().checkAdmin();
+            String columnList = v2 == null ? null : v2.getString();
+            String options = v3 == null ? null : v3.getString();
+            CsvLoader loader = new CsvLoader(session, v0.getString(), v1.getString(), columnList, options);
+            result = ValueInt.get(loader.load());
+            break;
+        }
         case SET: {
             Variable var = (Variable) args[0];
             session.setVariable(var.getName(), v1);
@@ -1741,6 +1762,10 @@ public class Function extends Expression implements FunctionCall {
         case CSVWRITE:
             min = 2;
             break;
+        case CSVLOAD:
+            min = 2;
+            max = 4;
+            break;
         case XMLNODE:
             min = 1;
             max = 4;
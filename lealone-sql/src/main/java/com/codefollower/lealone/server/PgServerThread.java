@@ -6,6 +6,7 @@
  */
 package com.codefollower.lealone.server;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -17,19 +18,29 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.math.BigDecimal;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import com.codefollower.lealone.command.CommandInterface;
+import com.codefollower.lealone.constant.Constants;
 import com.codefollower.lealone.constant.SysProperties;
 import com.codefollower.lealone.engine.ConnectionInfo;
 import com.codefollower.lealone.jdbc.JdbcConnection;
@@ -37,12 +48,16 @@ import com.codefollower.lealone.jdbc.JdbcPreparedStatement;
 import com.codefollower.lealone.jdbc.JdbcStatement;
 import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.util.DataUtils;
+import com.codefollower.lealone.util.DateTimeUtils;
 import com.codefollower.lealone.util.IOUtils;
 import com.codefollower.lealone.util.JdbcUtils;
 import com.codefollower.lealone.util.ScriptReader;
 import com.codefollower.lealone.util.StringUtils;
 import com.codefollower.lealone.util.Utils;
 import com.codefollower.lealone.value.CaseInsensitiveMap;
+import com.codefollower.lealone.value.ValueDate;
+import com.codefollower.lealone.value.ValueTime;
+import com.codefollower.lealone.value.ValueTimestamp;
 
 /**
  * One server thread is opened for each client.
@@ -55,9 +70,10 @@ public class PgServerThread implements Runnable {
     private DataInputStream dataInRaw;
     protected DataInputStream dataIn;
     private OutputStream out;
+    private DataOutputStream dataOutRaw;
     private int messageType;
-    private ByteArrayOutputStream outBuffer;
-    private DataOutputStream dataOut;
+    private final ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream dataOut = new DataOutputStream(outBuffer);
     private Thread thread;
     private boolean initDone;
     protected String userName;
@@ -65,9 +81,47 @@ public class PgServerThread implements Runnable {
     private int processId;
     private String clientEncoding = SysProperties.PG_DEFAULT_CLIENT_ENCODING;
     private String dateStyle = "ISO";
+
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    /**
+     * The day 2000-01-01 (the epoch of PostgreSQL) as days since 1970-01-01.
+     */
+    private static final long PG_EPOCH_DAY = 10957;
+    private static final long MICROS_PER_DAY = DateTimeUtils.MILLIS_PER_DAY * 1000;
     private final HashMap<String, Prepared> prepared = new CaseInsensitiveMap<Prepared>();
     private final HashMap<String, Portal> portals = new CaseInsensitiveMap<Portal>();
 
+    /**
+     * The statements of closed or re-parsed prepared objects, by SQL
+     * statement. Clients (for example the unnamed statement of the JDBC
+     * driver) often parse the same statement again, which then does not need
+     * to be prepared again.
+     */
+    private final LinkedHashMap<String, JdbcPreparedStatement> statementCache = new LinkedHashMap<String, JdbcPreparedStatement>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<String, JdbcPreparedStatement> eldest) {
+            if (size() > STATEMENT_CACHE_SIZE) {
+                JdbcUtils.closeSilently(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Whether the current message belongs to the extended query protocol.
+     */
+    private boolean extendedQuery;
+
+    /**
+     * After an error in the extended query protocol, all messages up to the
+     * next Sync are ignored.
+     */
+    private boolean ignoreUntilSync;
+
     protected PgServerThread(Socket socket, PgServer server) {
         this.server = server;
         this.socket = socket;
@@ -77,11 +131,12 @@ public class PgServerThread implements Runnable {
         try {
             server.trace("Connect");
             InputStream ins = socket.getInputStream();
-            out = socket.getOutputStream();
+            // the responses are buffered, see process()
+            out = new BufferedOutputStream(socket.getOutputStream(), Constants.IO_BUFFER_SIZE);
+            dataOutRaw = new DataOutputStream(out);
             dataInRaw = new DataInputStream(ins);
             while (!stop) {
                 process();
-                out.flush();
             }
         } catch (EOFException e) {
             // more or less normal disconnect
@@ -158,6 +213,11 @@ public class PgServerThread implements Runnable {
         byte[] data = DataUtils.newBytes(len);
         dataInRaw.readFully(data, 0, len);
         dataIn = new DataInputStream(new ByteArrayInputStream(data, 0, len));
+        extendedQuery = isExtendedQueryMessage(x);
+        if (ignoreUntilSync && extendedQuery) {
+            server.trace("Ignored until Sync: " + (char) x);
+            return;
+        }
         switchBlock: switch (x) {
         case 0:
             server.trace("Init");
@@ -242,7 +302,19 @@ public class PgServerThread implements Runnable {
                 p.paramType[i] = type;
             }
             try {
-                p.prep = (JdbcPreparedStatement) conn.prepareStatement(p.sql);
+                Prepared old = prepared.get(p.name);
+                if (old != null && old.sql.equals(p.sql) && Arrays.equals(old.paramType, p.paramType)) {
+                    // the same statement is parsed again: keep it
+                    sendParseComplete();
+                    break;
+                }
+                if (old != null) {
+                    closePrepared(old);
+                }
+                p.prep = statementCache.remove(p.sql);
+                if (p.prep == null) {
+                    p.prep = (JdbcPreparedStatement) conn.prepareStatement(p.sql);
+                }
                 prepared.put(p.name, p);
                 sendParseComplete();
             } catch (Exception e) {
@@ -260,6 +332,7 @@ public class PgServerThread implements Runnable {
                 sendErrorResponse("Prepared not found");
                 break;
             }
+            freePortal(portals.remove(portal.name));
             portal.prep = prep;
             portals.put(portal.name, portal);
             int formatCodeCount = readShort();
@@ -268,12 +341,18 @@ public class PgServerThread implements Runnable {
                 formatCodes[i] = readShort();
             }
             int paramCount = readShort();
+            // the parameters are set when the portal is executed, as other
+            // portals of the same statement may be bound before that
+            portal.params = new Object[paramCount];
             for (int i = 0; i < paramCount; i++) {
                 int paramLen = readInt();
+                if (paramLen < 0) {
+                    continue;
+                }
                 byte[] d2 = DataUtils.newBytes(paramLen);
                 readFully(d2);
                 try {
-                    setParameter(prep.prep, i, d2, formatCodes);
+                    portal.params[i] = readParameter(prep, i, d2, formatCodes);
                 } catch (Exception e) {
                     sendErrorResponse(e);
                     break switchBlock;
@@ -294,10 +373,10 @@ public class PgServerThread implements Runnable {
             if (type == 'S') {
                 Prepared p = prepared.remove(name);
                 if (p != null) {
-                    JdbcUtils.closeSilently(p.prep);
+                    closePrepared(p);
                 }
             } else if (type == 'P') {
-                portals.remove(name);
+                freePortal(portals.remove(name));
             } else {
                 server.trace("expected S or P, got " + type);
                 sendErrorResponse("expected S or P");
@@ -316,6 +395,11 @@ public class PgServerThread implements Runnable {
                     sendErrorResponse("Prepared not found: " + name);
                 } else {
                     sendParameterDescription(p);
+                    try {
+                        sendRowDescription(p.prep.getMetaData(), null);
+                    } catch (Exception e) {
+                        sendErrorResponse(e);
+                    }
                 }
             } else if (type == 'P') {
                 Portal p = portals.get(name);
@@ -325,7 +409,7 @@ public class PgServerThread implements Runnable {
                     PreparedStatement prep = p.prep.prep;
                     try {
                         ResultSetMetaData meta = prep.getMetaData();
-                        sendRowDescription(meta);
+                        sendRowDescription(meta, p);
                     } catch (Exception e) {
                         sendErrorResponse(e);
                     }
@@ -344,27 +428,46 @@ public class PgServerThread implements Runnable {
                 sendErrorResponse("Portal not found: " + name);
                 break;
             }
-            int maxRows = readShort();
+            // the maximum number of rows to return, 0 for all rows
+            int maxRows = readInt();
             Prepared prepared = p.prep;
-            JdbcPreparedStatement prep = prepared.prep;
             server.trace(prepared.sql);
             try {
-                prep.setMaxRows(maxRows);
-                boolean result = prep.execute();
-                if (result) {
-                    try {
-                        ResultSet rs = prep.getResultSet();
-                        ResultSetMetaData meta = rs.getMetaData();
-                        sendRowDescription(meta);
-                        while (rs.next()) {
-                            sendDataRow(rs);
+                if (p.stat == null) {
+                    p.stat = getStatement(prepared);
+                }
+                JdbcPreparedStatement prep = p.stat;
+                if (p.rs == null) {
+                    prep.clearParameters();
+                    for (int i = 0; i < p.params.length; i++) {
+                        prep.setObject(i + 1, p.params[i]);
+                    }
+                    prep.setMaxRows(0);
+                    boolean result = prep.execute();
+                    if (!result) {
+                        sendCommandComplete(prep, prep.getUpdateCount());
+                        break;
+                    }
+                    p.rs = prep.getResultSet();
+                    if (p.columnTypes == null) {
+                        // the client did not describe the portal
+                        initColumnFormats(p.rs.getMetaData(), p);
+                    }
+                }
+                try {
+                    // the row description was sent in the prior Describe
+                    for (int count = 0; maxRows == 0 || count < maxRows; count++) {
+                        if (!p.rs.next()) {
+                            closePortal(p);
+                            sendCommandComplete(prep, 0);
+                            break switchBlock;
                         }
-                        sendCommandComplete(prep, 0);
-                    } catch (Exception e) {
-                        sendErrorResponse(e);
+                        sendDataRow(p.rs, p.columnTypes, p.columnFormats);
                     }
-                } else {
-                    sendCommandComplete(prep, prep.getUpdateCount());
+                    sendPortalSuspended();
+                } catch (Exception e) {
+                    closePortal(p);
+                    sendErrorResponse(e);
                 }
             } catch (Exception e) {
                 sendErrorResponse(e);
@@ -373,6 +476,7 @@ public class PgServerThread implements Runnable {
         }
         case 'S': {
             server.trace("Sync");
+            ignoreUntilSync = false;
             sendReadyForQuery();
             break;
         }
@@ -394,9 +498,10 @@ public class PgServerThread implements Runnable {
                         ResultSet rs = stat.getResultSet();
                         ResultSetMetaData meta = rs.getMetaData();
                         try {
-                            sendRowDescription(meta);
+                            Portal portal = new Portal();
+                            sendRowDescription(meta, portal);
                             while (rs.next()) {
-                                sendDataRow(rs);
+                                sendDataRow(rs, portal.columnTypes, portal.columnFormats);
                             }
                             sendCommandComplete(stat, 0);
                         } catch (Exception e) {
@@ -421,10 +526,33 @@ public class PgServerThread implements Runnable {
             close();
             break;
         }
+        case 'H': {
+            server.trace("Flush");
+            break;
+        }
         default:
             server.trace("Unsupported: " + x + " (" + (char) x + ")");
             break;
         }
+        // the responses to the messages of the extended query protocol are
+        // sent together when the client sends Sync or Flush,
+        // so that pipelined messages do not cause one write per message
+        if (!extendedQuery && out != null) {
+            out.flush();
+        }
+    }
+
+    private static boolean isExtendedQueryMessage(int x) {
+        switch (x) {
+        case 'P':
+        case 'B':
+        case 'C':
+        case 'D':
+        case 'E':
+            return true;
+        default:
+            return false;
+        }
     }
 
     private String getSQL(String s) {
@@ -471,27 +599,184 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
-    private void sendDataRow(ResultSet rs) throws Exception {
-        int columns = rs.getMetaData().getColumnCount();
-        String[] values = new String[columns];
-        for (int i = 0; i < columns; i++) {
-            values[i] = rs.getString(i + 1);
-        }
+    private void sendDataRow(ResultSet rs, int[] types, int[] formats) throws Exception {
+        int columns = types.length;
         startMessage('D');
         writeShort(columns);
-        for (String s : values) {
-            if (s == null) {
-                writeInt(-1);
+        for (int i = 0; i < columns; i++) {
+            if (formats[i] == 1) {
+                writeBinaryValue(rs.getObject(i + 1), types[i]);
             } else {
-                // TODO write Binary data
-                byte[] d2 = s.getBytes(getEncoding());
-                writeInt(d2.length);
-                write(d2);
+                String s = rs.getString(i + 1);
+                if (s == null) {
+                    writeInt(-1);
+                } else {
+                    byte[] d2 = s.getBytes(getEncoding());
+                    writeInt(d2.length);
+                    write(d2);
+                }
             }
         }
         sendMessage();
     }
 
+    private static boolean isBinaryFormatSupported(int pgType) {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+        case PgServer.PG_TYPE_BYTEA:
+        case PgServer.PG_TYPE_INT2:
+        case PgServer.PG_TYPE_INT4:
+        case PgServer.PG_TYPE_INT8:
+        case PgServer.PG_TYPE_OID:
+        case PgServer.PG_TYPE_FLOAT4:
+        case PgServer.PG_TYPE_FLOAT8:
+        case PgServer.PG_TYPE_NUMERIC:
+        case PgServer.PG_TYPE_DATE:
+        case PgServer.PG_TYPE_TIME:
+        case PgServer.PG_TYPE_TIMESTAMP_NO_TMZONE:
+        case PgServer.PG_TYPE_VARCHAR:
+        case PgServer.PG_TYPE_TEXT:
+        case PgServer.PG_TYPE_BPCHAR:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void writeBinaryValue(Object o, int pgType) throws IOException {
+        if (o == null) {
+            writeInt(-1);
+            return;
+        }
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+            writeInt(1);
+            write(((Boolean) o).booleanValue() ? 1 : 0);
+            break;
+        case PgServer.PG_TYPE_BYTEA: {
+            byte[] data = (byte[]) o;
+            writeInt(data.length);
+            write(data);
+            break;
+        }
+        case PgServer.PG_TYPE_INT2:
+            writeInt(2);
+            writeShort(((Number) o).shortValue());
+            break;
+        case PgServer.PG_TYPE_INT4:
+        case PgServer.PG_TYPE_OID:
+            writeInt(4);
+            writeInt(((Number) o).intValue());
+            break;
+        case PgServer.PG_TYPE_INT8:
+            writeInt(8);
+            dataOut.writeLong(((Number) o).longValue());
+            break;
+        case PgServer.PG_TYPE_FLOAT4:
+            writeInt(4);
+            dataOut.writeFloat(((Number) o).floatValue());
+            break;
+        case PgServer.PG_TYPE_FLOAT8:
+            writeInt(8);
+            dataOut.writeDouble(((Number) o).doubleValue());
+            break;
+        case PgServer.PG_TYPE_NUMERIC:
+            writeNumeric(o instanceof BigDecimal ? (BigDecimal) o : new BigDecimal(o.toString()));
+            break;
+        case PgServer.PG_TYPE_DATE: {
+            long dateValue = ValueDate.get((Date) o).getDateValue();
+            writeInt(4);
+            writeInt((int) (DateTimeUtils.absoluteDayFromDateValue(dateValue) - PG_EPOCH_DAY));
+            break;
+        }
+        case PgServer.PG_TYPE_TIME:
+            writeInt(8);
+            dataOut.writeLong(ValueTime.get((Time) o).getNanos() / 1000);
+            break;
+        case PgServer.PG_TYPE_TIMESTAMP_NO_TMZONE: {
+            ValueTimestamp ts = ValueTimestamp.get((Timestamp) o);
+            long days = DateTimeUtils.absoluteDayFromDateValue(ts.getDateValue()) - PG_EPOCH_DAY;
+            writeInt(8);
+            dataOut.writeLong(days * MICROS_PER_DAY + ts.getNanos() / 1000);
+            break;
+        }
+        default: {
+            byte[] data = o.toString().getBytes(getEncoding());
+            writeInt(data.length);
+            write(data);
+        }
+        }
+    }
+
+    /**
+     * Write a value in the binary format of the NUMERIC data type: the number
+     * of digits, the weight of the first digit, the sign, the display scale,
+     * and then the digits in base 10000.
+     */
+    private void writeNumeric(BigDecimal d) throws IOException {
+        int sign = d.signum() < 0 ? 0x4000 : 0;
+        int scale = Math.max(0, d.scale());
+        String plain = d.abs().setScale(scale).toPlainString();
+        int dot = plain.indexOf('.');
+        String intPart = dot < 0 ? plain : plain.substring(0, dot);
+        String fracPart = dot < 0 ? "" : plain.substring(dot + 1);
+        if ("0".equals(intPart)) {
+            intPart = "";
+        }
+        int intGroups = (intPart.length() + 3) / 4;
+        StringBuilder buff = new StringBuilder();
+        for (int i = intPart.length(); i < intGroups * 4; i++) {
+            buff.append('0');
+        }
+        buff.append(intPart).append(fracPart);
+        while (buff.length() % 4 != 0) {
+            buff.append('0');
+        }
+        int groups = buff.length() / 4;
+        short[] digits = new short[groups];
+        for (int i = 0; i < groups; i++) {
+            digits[i] = Short.parseShort(buff.substring(i * 4, i * 4 + 4));
+        }
+        int weight = intGroups - 1;
+        int first = 0, last = groups;
+        while (first < last && digits[first] == 0) {
+            first++;
+            weight--;
+        }
+        while (last > first && digits[last - 1] == 0) {
+            last--;
+        }
+        if (first == last) {
+            weight = 0;
+        }
+        writeInt(8 + 2 * (last - first));
+        writeShort(last - first);
+        writeShort(weight);
+        writeShort(sign);
+        writeShort(scale);
+        for (int i = first; i < last; i++) {
+            writeShort(digits[i]);
+        }
+    }
+
+    private static BigDecimal readNumeric(ByteBuffer buff) {
+        int count = buff.getShort();
+        int weight = buff.getShort();
+        int sign = buff.getShort() & 0xffff;
+        int scale = buff.getShort();
+        if (sign == 0xc000) {
+            throw DbException.getInvalidValueException("NUMERIC", "NaN");
+        }
+        BigDecimal d = BigDecimal.ZERO;
+        for (int i = 0; i < count; i++) {
+            d = d.add(BigDecimal.valueOf(buff.getShort()).scaleByPowerOfTen(4 * (weight - i)));
+        }
+        if (sign == 0x4000) {
+            d = d.negate();
+        }
+        return d.setScale(scale, BigDecimal.ROUND_HALF_UP);
+    }
+
     private String getEncoding() {
         if ("UNICODE".equals(clientEncoding)) {
             return "UTF-8";
@@ -499,27 +784,65 @@ public class PgServerThread implements Runnable {
         return clientEncoding;
     }
 
-    private void setParameter(PreparedStatement prep, int i, byte[] d2, int[] formatCodes) throws SQLException {
-        boolean text = (i >= formatCodes.length) || (formatCodes[i] == 0);
-        String s;
-        try {
-            if (text) {
-                s = new String(d2, getEncoding());
-            } else {
-                server.trace("Binary format not supported");
-                s = new String(d2, getEncoding());
+    private static int getFormat(int[] formatCodes, int i) {
+        if (formatCodes == null || formatCodes.length == 0) {
+            return 0;
+        } else if (formatCodes.length == 1) {
+            // one format code for all columns or parameters
+            return formatCodes[0];
+        }
+        return i < formatCodes.length ? formatCodes[i] : 0;
+    }
+
+    private Object readParameter(Prepared prep, int i, byte[] d2, int[] formatCodes) throws IOException {
+        if (getFormat(formatCodes, i) == 0) {
+            return new String(d2, getEncoding());
+        }
+        int type = prep.paramType != null && i < prep.paramType.length ? prep.paramType[i] : 0;
+        ByteBuffer buff = ByteBuffer.wrap(d2);
+        switch (type) {
+        case PgServer.PG_TYPE_BOOL:
+            return d2[0] != 0;
+        case PgServer.PG_TYPE_BYTEA:
+            return d2;
+        case PgServer.PG_TYPE_INT2:
+            return buff.getShort();
+        case PgServer.PG_TYPE_INT4:
+        case PgServer.PG_TYPE_OID:
+            return buff.getInt();
+        case PgServer.PG_TYPE_INT8:
+            return buff.getLong();
+        case PgServer.PG_TYPE_FLOAT4:
+            return buff.getFloat();
+        case PgServer.PG_TYPE_FLOAT8:
+            return buff.getDouble();
+        case PgServer.PG_TYPE_NUMERIC:
+            return readNumeric(buff);
+        case PgServer.PG_TYPE_DATE:
+            return DateTimeUtils.convertDateValueToDate(DateTimeUtils.dateValueFromAbsoluteDay(buff.getInt() + PG_EPOCH_DAY));
+        case PgServer.PG_TYPE_TIME:
+            return DateTimeUtils.convertNanoToTime(buff.getLong() * 1000);
+        case PgServer.PG_TYPE_TIMESTAMP_NO_TMZONE: {
+            long micros = buff.getLong();
+            long days = micros / MICROS_PER_DAY;
+            micros -= days * MICROS_PER_DAY;
+            if (micros < 0) {
+                micros += MICROS_PER_DAY;
+                days--;
             }
-        } catch (Exception e) {
-            server.traceError(e);
-            s = null;
+            long dateValue = DateTimeUtils.dateValueFromAbsoluteDay(days + PG_EPOCH_DAY);
+            return DateTimeUtils.convertDateValueToTimestamp(dateValue, micros * 1000);
+        }
+        default:
+            // the text types, and types without a known binary format
+            return new String(d2, getEncoding());
         }
-        // if(server.getLog()) {
-        // server.log(" " + i + ": " + s);
-        // }
-        prep.setString(i + 1, s);
     }
 
     private void sendErrorResponse(Exception re) throws IOException {
+        if (extendedQuery) {
+            ignoreUntilSync = true;
+        }
         SQLException e = DbException.toSQLException(re);
         server.traceError(e);
         startMessage('E');
@@ -563,7 +886,32 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
-    private void sendRowDescription(ResultSetMetaData meta) throws Exception {
+    /**
+     * Decide the data types and the formats (text or binary) of the result
+     * columns of a portal. The binary format is only used if the client
+     * asked for it and it is supported for the type.
+     */
+    private static void initColumnFormats(ResultSetMetaData meta, Portal portal) throws SQLException {
+        int columns = meta.getColumnCount();
+        portal.columnTypes = new int[columns];
+        portal.columnFormats = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            int type = PgServer.convertType(meta.getColumnType(i + 1));
+            portal.columnTypes[i] = type;
+            if (getFormat(portal.resultColumnFormat, i) == 1 && isBinaryFormatSupported(type)) {
+                portal.columnFormats[i] = 1;
+            }
+        }
+    }
+
+    /**
+     * Send the row description.
+     *
+     * @param meta the meta data, or null if the statement returns no rows
+     * @param portal the portal (the formats of the result columns are
+     *            stored there), or null to describe a statement
+     */
+    private void sendRowDescription(ResultSetMetaData meta, Portal portal) throws Exception {
         if (meta == null) {
             sendNoData();
         } else {
@@ -571,6 +919,9 @@ public class PgServerThread implements Runnable {
             int[] types = new int[columns];
             int[] precision = new int[columns];
             String[] names = new String[columns];
+            if (portal != null) {
+                initColumnFormats(meta, portal);
+            }
             for (int i = 0; i < columns; i++) {
                 String name = meta.getColumnName(i + 1);
                 names[i] = name;
@@ -600,8 +951,8 @@ public class PgServerThread implements Runnable {
                 writeShort(getTypeSize(types[i], precision[i]));
                 // pg_attribute.atttypmod
                 writeInt(-1);
-                // text
-                writeShort(0);
+                // text or binary
+                writeShort(portal == null ? 0 : portal.columnFormats[i]);
             }
             sendMessage();
         }
@@ -617,6 +968,9 @@ public class PgServerThread implements Runnable {
     }
 
     private void sendErrorResponse(String message) throws IOException {
+        if (extendedQuery) {
+            ignoreUntilSync = true;
+        }
         server.trace("Exception: " + message);
         startMessage('E');
         write('S');
@@ -644,6 +998,78 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
+    private void sendPortalSuspended() throws IOException {
+        startMessage('s');
+        sendMessage();
+    }
+
+    /**
+     * Close a prepared object. Its statement is kept in the statement cache,
+     * and the portals that use it are closed.
+     */
+    private void closePrepared(Prepared p) {
+        for (Iterator<Portal> it = portals.values().iterator(); it.hasNext();) {
+            Portal portal = it.next();
+            if (portal.prep == p) {
+                freePortal(portal);
+                it.remove();
+            }
+        }
+        if (p.prep != null) {
+            cacheStatement(p.sql, p.prep);
+        }
+    }
+
+    private void cacheStatement(String sql, JdbcPreparedStatement prep) {
+        JdbcPreparedStatement old = statementCache.put(sql, prep);
+        if (old != null && old != prep) {
+            JdbcUtils.closeSilently(old);
+        }
+    }
+
+    /**
+     * Get the statement a portal is executed with. Executing a statement
+     * closes its previous result, so each portal needs a statement of its
+     * own: the statement of the prepared object is used by only one portal at
+     * a time, the other portals get another statement for the same SQL.
+     */
+    private JdbcPreparedStatement getStatement(Prepared p) throws SQLException {
+        if (!p.inUse) {
+            p.inUse = true;
+            return p.prep;
+        }
+        JdbcPreparedStatement prep = statementCache.remove(p.sql);
+        if (prep == null) {
+            prep = (JdbcPreparedStatement) conn.prepareStatement(p.sql);
+        }
+        return prep;
+    }
+
+    /**
+     * Close a portal that is removed, and give back its statement.
+     */
+    private void freePortal(Portal portal) {
+        if (portal == null) {
+            return;
+        }
+        closePortal(portal);
+        if (portal.stat != null) {
+            if (portal.stat == portal.prep.prep) {
+                portal.prep.inUse = false;
+            } else {
+                cacheStatement(portal.prep.sql, portal.stat);
+            }
+            portal.stat = null;
+        }
+    }
+
+    private static void closePortal(Portal portal) {
+        if (portal != null && portal.rs != null) {
+            JdbcUtils.closeSilently(portal.rs);
+            portal.rs = null;
+        }
+    }
+
     private void initDb() throws SQLException {
         Statement stat = null;
         ResultSet rs = null;
@@ -733,7 +1159,8 @@ public class PgServerThread implements Runnable {
         sendMessage();
         sendParameterStatus("client_encoding", clientEncoding);
         sendParameterStatus("DateStyle", dateStyle);
-        sendParameterStatus("integer_datetimes", "off");
+        // binary TIME and TIMESTAMP values are 64 bit microseconds
+        sendParameterStatus("integer_datetimes", "on");
         sendParameterStatus("is_superuser", "off");
         sendParameterStatus("server_encoding", "SQL_ASCII");
         sendParameterStatus("server_version", "8.1.4");
@@ -798,19 +1225,14 @@ public class PgServerThread implements Runnable {
 
     private void startMessage(int newMessageType) {
         this.messageType = newMessageType;
-        outBuffer = new ByteArrayOutputStream();
-        dataOut = new DataOutputStream(outBuffer);
+        outBuffer.reset();
     }
 
     private void sendMessage() throws IOException {
         dataOut.flush();
-        byte[] buff = outBuffer.toByteArray();
-        int len = buff.length;
-        dataOut = new DataOutputStream(out);
-        dataOut.write(messageType);
-        dataOut.writeInt(len + 4);
-        dataOut.write(buff);
-        dataOut.flush();
+        dataOutRaw.write(messageType);
+        dataOutRaw.writeInt(outBuffer.size() + 4);
+        outBuffer.writeTo(dataOutRaw);
     }
 
     private void sendParameterStatus(String param, String value) throws IOException {
@@ -852,6 +1274,11 @@ public class PgServerThread implements Runnable {
          */
         JdbcPreparedStatement prep;
 
+        /**
+         * Whether the prepared statement is used by a portal.
+         */
+        boolean inUse;
+
         /**
          * The list of parameter types (if set).
          */
@@ -877,6 +1304,32 @@ public class PgServerThread implements Runnable {
          * The prepared object.
          */
         Prepared prep;
+
+        /**
+         * The statement the portal is executed with, or null if the portal
+         * was not executed yet.
+         */
+        JdbcPreparedStatement stat;
+
+        /**
+         * The parameter values bound to the portal.
+         */
+        Object[] params;
+
+        /**
+         * The PostgreSQL data types of the result columns.
+         */
+        int[] columnTypes;
+
+        /**
+         * The format of each result column: 0 for text, 1 for binary.
+         */
+        int[] columnFormats;
+
+        /**
+         * The result of a suspended portal, or null.
+         */
+        ResultSet rs;
     }
 
 }
@@ -32,6 +32,7 @@ import com.codefollower.lealone.message.DbException;
 import com.codefollower.lealone.result.ResultColumn;
 import com.codefollower.lealone.result.ResultInterface;
 import com.codefollower.lealone.store.LobStorage;
+import com.codefollower.lealone.tools.CompressTool;
 import com.codefollower.lealone.util.IOUtils;
 import com.codefollower.lealone.util.New;
 import com.codefollower.lealone.util.SmallLRUCache;
@@ -49,6 +50,9 @@ public class TcpServerThread implements Runnable {
     private final SmallMap cache = new SmallMap(SysProperties.SERVER_CACHED_OBJECTS);
     private final SmallLRUCache<Long, CachedInputStream> lobs = SmallLRUCache.newInstance(Math.max(
             SysProperties.SERVER_CACHED_OBJECTS, SysProperties.SERVER_RESULT_SET_FETCH_SIZE * 5));
+    //结果集中已发送给客户端的LOB，在HBase环境中它们有可能来自其他region server，需要通过它们自己读取
+    private final SmallLRUCache<Long, ValueLobDb> lobValues = SmallLRUCache.newInstance(Math.max(
+            SysProperties.SERVER_CACHED_OBJECTS, SysProperties.SERVER_RESULT_SET_FETCH_SIZE * 5));
 
     private final TcpServer server;
     private final int threadId;
@@ -86,13 +90,13 @@ public class TcpServerThread implements Runnable {
                 if (minClientVersion < Constants.TCP_PROTOCOL_VERSION_6) {
                     throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2, "" + clientVersion, ""
                             + Constants.TCP_PROTOCOL_VERSION_6);
-                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_12) {
+                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_14) {
                     throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2, "" + clientVersion, ""
-                            + Constants.TCP_PROTOCOL_VERSION_12);
+                            + Constants.TCP_PROTOCOL_VERSION_14);
                 }
                 int maxClientVersion = transfer.readInt();
-                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_12) {
-                    clientVersion = Constants.TCP_PROTOCOL_VERSION_12;
+                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_14) {
+                    clientVersion = Constants.TCP_PROTOCOL_VERSION_14;
                 } else {
                     clientVersion = minClientVersion;
                 }
@@ -343,6 +347,7 @@ public class TcpServerThread implements Runnable {
             command.getPrepared().setFetchSize(fetchSize);
             setParameters(command);
             int old = session.getModificationId();
+            long start = System.nanoTime();
             ResultInterface result;
             synchronized (session) {
                 result = command.executeQuery(maxRows, false);
@@ -364,7 +369,7 @@ public class TcpServerThread implements Runnable {
             int fetch = fetchSize;
             if (rowCount != -1)
                 fetch = Math.min(rowCount, fetchSize);
-            sendRow(result, fetch);
+            sendRow(result, fetch, start);
             transfer.flush();
             break;
         }
@@ -483,11 +488,12 @@ public class TcpServerThread implements Runnable {
             break;
         }
         case SessionRemote.RESULT_FETCH_ROWS: {
+            long start = System.nanoTime();
             int id = transfer.readInt();
             int count = transfer.readInt();
             ResultInterface result = (ResultInterface) cache.getObject(id, false);
             transfer.writeInt(SessionRemote.STATUS_OK);
-            sendRow(result, count);
+            sendRow(result, count, start);
             transfer.flush();
             break;
         }
@@ -519,6 +525,14 @@ public class TcpServerThread implements Runnable {
             transfer.writeInt(SessionRemote.STATUS_OK).flush();
             break;
         }
+        case SessionRemote.SESSION_SET_COMPRESS_RESULT: {
+            String algorithm = transfer.readString();
+            // fail early if the algorithm is unknown
+            CompressTool.getCompressAlgorithm(algorithm);
+            transfer.writeInt(SessionRemote.STATUS_OK).flush();
+            transfer.setCompressResult(algorithm);
+            break;
+        }
         case SessionRemote.SESSION_SET_AUTOCOMMIT: {
             boolean autoCommit = transfer.readBoolean();
             session.setAutoCommit(autoCommit);
@@ -554,8 +568,14 @@ public class TcpServerThread implements Runnable {
             }
             long offset = transfer.readLong();
             if (in.getPos() != offset) {
-                LobStorage lobStorage = session.getDataHandler().getLobStorage();
-                InputStream lobIn = lobStorage.getInputStream(lobId, hmac, -1);
+                ValueLobDb lob = lobValues.get(lobId);
+                InputStream lobIn;
+                if (lob != null) {
+                    lobIn = lob.getInputStream();
+                } else {
+                    LobStorage lobStorage = session.getDataHandler().getLobStorage();
+                    lobIn = lobStorage.getInputStream(lobId, hmac, -1);
+                }
                 in = new CachedInputStream(lobIn);
                 lobs.put(lobId, in);
                 lobIn.skip(offset);
@@ -585,7 +605,20 @@ public class TcpServerThread implements Runnable {
         return SessionRemote.STATUS_OK_STATE_CHANGED;
     }
 
-    private void sendRow(ResultInterface result, int count) throws IOException {
+    /**
+     * Send at most count rows of the result. Since protocol version 14 the
+     * rows are followed by the time the server spent on this request, so that
+     * the client can tell it apart from the network time.
+     *
+     * @param result the result
+     * @param count the maximum number of rows
+     * @param start the time the request started, from System.nanoTime()
+     */
+    private void sendRow(ResultInterface result, int count, long start) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        transfer.beginWriteResultBatch();
         try {
             int visibleColumnCount = result.getVisibleColumnCount();
             for (int i = 0; i < count; i++) {
@@ -594,6 +627,7 @@ public class TcpServerThread implements Runnable {
                     Value[] v = result.currentRow();
                     for (int j = 0; j < visibleColumnCount; j++) {
                         if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_12) {
+                            rememberLob(v[j]);
                             transfer.writeValue(v[j]);
                         } else {
                             writeValue(v[j]);
@@ -604,12 +638,31 @@ public class TcpServerThread implements Runnable {
                     break;
                 }
             }
+            writeServerTime(start);
         } catch (Throwable e) {
             //如果取结果集的下一行记录时发生了异常，
             //比如在HBase环境一个结果集可能涉及多个region，当切换到下一个region时此region有可能在进行split，
             //此时就会抛异常，所以结果集包必须加一个结束标记，结果集包后面跟一个异常包。
             transfer.writeBoolean(false);
+            writeServerTime(start);
             throw DbException.convert(e);
+        } finally {
+            transfer.endWriteResultBatch();
+        }
+    }
+
+    private void writeServerTime(long start) throws IOException {
+        if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_14) {
+            transfer.writeLong(System.nanoTime() - start);
+        }
+    }
+
+    private void rememberLob(Value v) {
+        if (v instanceof ValueLobDb) {
+            ValueLobDb lob = (ValueLobDb) v;
+            if (lob.isStored()) {
+                lobValues.put(lob.getLobId(), lob);
+            }
         }
     }
 
@@ -620,6 +673,7 @@ public class TcpServerThread implements Runnable {
                 if (lob.isStored()) {
                     long id = lob.getLobId();
                     lobs.put(id, new CachedInputStream(null));
+                    lobValues.put(id, lob);
                 }
             }
         }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.engine;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MetricsTest {
+    @Test
+    public void run() throws Exception {
+        testFingerprint();
+        testInList();
+        testEviction();
+        testUnknownRowCount();
+    }
+
+    void testFingerprint() {
+        assertEquals("SELECT * FROM t WHERE f1 = ? AND f2 = ?",
+                Metrics.getFingerprint("SELECT *  FROM t\n WHERE f1 = 10 AND f2 = 'it''s'"));
+        //标识符中的数字不替换
+        assertEquals("SELECT f1 FROM t2 WHERE \"f3\" > ?", Metrics.getFingerprint("SELECT f1 FROM t2 WHERE \"f3\" > 1.5"));
+    }
+
+    //IN列表的长度不影响fingerprint
+    void testInList() {
+        String expected = "SELECT * FROM t WHERE f1 IN(?) AND f2 NOT IN (?)";
+        assertEquals(expected, Metrics.getFingerprint("SELECT * FROM t WHERE f1 IN(1) AND f2 NOT IN ('a', 'b')"));
+        assertEquals(expected, Metrics.getFingerprint("SELECT * FROM t WHERE f1 IN(1,2,3) AND f2 NOT IN (?, ?, ?, ?)"));
+        assertEquals("SELECT * FROM t WHERE f1 in(?)", Metrics.getFingerprint("SELECT * FROM t WHERE f1 in(?,?)"));
+        //不全是常量的列表不变
+        assertEquals("SELECT * FROM t WHERE f1 IN(?, f2)", Metrics.getFingerprint("SELECT * FROM t WHERE f1 IN(1, f2)"));
+        assertEquals("SELECT * FROM t JOIN(?, ?)", Metrics.getFingerprint("SELECT * FROM t JOIN(1, 2)"));
+
+        Metrics metrics = new Metrics(10);
+        assertSame(metrics.getStatementMetrics("DELETE FROM t WHERE f1 IN(1, 2)"),
+                metrics.getStatementMetrics("DELETE FROM t WHERE f1 IN(1, 2, 3, 4, 5)"));
+        assertEquals(1, metrics.getStatementMetrics().size());
+    }
+
+    //超过上限时删除最久没有用过的语句
+    void testEviction() {
+        Metrics metrics = new Metrics(2);
+        Metrics.StatementMetrics a = metrics.getStatementMetrics("SELECT a FROM t");
+        Metrics.StatementMetrics b = metrics.getStatementMetrics("SELECT b FROM t");
+        assertSame(a, metrics.getStatementMetrics("SELECT a FROM t"));
+        Metrics.StatementMetrics c = metrics.getStatementMetrics("SELECT c FROM t");
+        assertEquals(2, metrics.getStatementMetrics().size());
+        assertTrue(b.isEvicted());
+        assertFalse(a.isEvicted());
+        assertFalse(c.isEvicted());
+        assertEquals(Long.valueOf(1), metrics.getCounters().get("statements.evicted"));
+
+        //被删除的语句再次执行时重新统计
+        Metrics.StatementMetrics b2 = metrics.getStatementMetrics("SELECT b FROM t");
+        assertNotSame(b, b2);
+        assertTrue(a.isEvicted());
+        assertFalse(b2.isEvicted());
+
+        metrics.clear();
+        assertTrue(b2.isEvicted());
+        assertEquals(0, metrics.getStatementMetrics().size());
+    }
+
+    //行数未知(-1)时不计入
+    void testUnknownRowCount() {
+        Metrics.StatementMetrics m = new Metrics(10).getStatementMetrics("SELECT * FROM t");
+        m.addExecution(100, 5, false);
+        m.addExecution(200, -1, false);
+        m.addExecution(50, -1, true);
+        assertEquals(3, m.getExecutions());
+        assertEquals(1, m.getErrors());
+        assertEquals(5, m.getRows());
+        assertEquals(200, m.getMaxNanos());
+        assertEquals(350, m.getTotalNanos());
+    }
+}
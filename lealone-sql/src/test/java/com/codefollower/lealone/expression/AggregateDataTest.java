@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.expression;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+import org.junit.Test;
+
+import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.message.DbException;
+import com.codefollower.lealone.value.Value;
+import com.codefollower.lealone.value.ValueDouble;
+import com.codefollower.lealone.value.ValueInt;
+import com.codefollower.lealone.value.ValueLong;
+import com.codefollower.lealone.value.ValueNull;
+
+//SUM和AVG在LONG和DOUBLE类型上用基本类型累加，结果要和Value.add逐行相加完全一样
+public class AggregateDataTest {
+    @Test
+    public void run() throws Exception {
+        testLongOverflow();
+        testNoFalseOverflow();
+        testNulls();
+        testAvg();
+        testDouble();
+        testDistinct();
+        testMerge();
+    }
+
+    private static Value sum(int dataType, Value... values) {
+        AggregateData data = new AggregateData(Aggregate.SUM, dataType);
+        for (Value v : values) {
+            data.add(null, false, v);
+        }
+        return data.getValue(null, false);
+    }
+
+    private static int getErrorCode(Value a, Value b) {
+        try {
+            a.add(b);
+        } catch (DbException e) {
+            return e.getErrorCode();
+        }
+        return 0;
+    }
+
+    void testLongOverflow() {
+        assertEquals(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, getErrorCode(ValueLong.get(Long.MAX_VALUE), ValueLong.get(1)));
+        try {
+            sum(Value.LONG, ValueLong.get(Long.MAX_VALUE), ValueLong.get(1));
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, e.getErrorCode());
+        }
+
+        assertEquals(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, getErrorCode(ValueLong.get(Long.MIN_VALUE), ValueLong.get(-1)));
+        try {
+            sum(Value.LONG, ValueLong.get(Long.MIN_VALUE), ValueLong.get(-1));
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, e.getErrorCode());
+        }
+    }
+
+    void testNoFalseOverflow() {
+        assertEquals(ValueLong.get(Long.MAX_VALUE),
+                sum(Value.LONG, ValueLong.get(Long.MAX_VALUE), ValueLong.get(-1), ValueLong.get(1)));
+        assertEquals(ValueLong.get(-1), sum(Value.LONG, ValueLong.get(Long.MAX_VALUE), ValueLong.get(Long.MIN_VALUE)));
+        assertEquals(ValueLong.get(0), sum(Value.LONG, ValueLong.get(0), ValueLong.get(0)));
+    }
+
+    void testNulls() {
+        assertEquals(ValueNull.INSTANCE, sum(Value.LONG));
+        assertEquals(ValueNull.INSTANCE, sum(Value.LONG, ValueNull.INSTANCE, ValueNull.INSTANCE));
+        assertEquals(ValueNull.INSTANCE, sum(Value.DOUBLE, ValueNull.INSTANCE));
+        assertEquals(ValueLong.get(4), sum(Value.LONG, ValueNull.INSTANCE, ValueInt.get(1), ValueNull.INSTANCE, ValueInt.get(3)));
+
+        AggregateData avg = new AggregateData(Aggregate.AVG, Value.INT);
+        avg.add(null, false, ValueNull.INSTANCE);
+        assertEquals(ValueNull.INSTANCE, avg.getValue(null, false));
+    }
+
+    void testAvg() {
+        //NULL不参与计算，INT的平均值仍然是INT
+        AggregateData avg = new AggregateData(Aggregate.AVG, Value.INT);
+        avg.add(null, false, ValueInt.get(1));
+        avg.add(null, false, ValueNull.INSTANCE);
+        avg.add(null, false, ValueInt.get(4));
+        assertEquals(ValueInt.get(2), avg.getValue(null, false));
+
+        avg = new AggregateData(Aggregate.AVG, Value.DOUBLE);
+        avg.add(null, false, ValueDouble.get(1));
+        avg.add(null, false, ValueDouble.get(4));
+        assertEquals(ValueDouble.get(2.5), avg.getValue(null, false));
+    }
+
+    void testDouble() {
+        Value expected = ValueDouble.get(0);
+        Value[] values = new Value[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ValueDouble.get(0.1 * i);
+            expected = expected.add(values[i]);
+        }
+        assertEquals(expected, sum(Value.DOUBLE, values));
+        assertEquals(ValueDouble.get(Double.POSITIVE_INFINITY),
+                sum(Value.DOUBLE, ValueDouble.get(Double.MAX_VALUE), ValueDouble.get(Double.MAX_VALUE)));
+    }
+
+    void testDistinct() {
+        AggregateData data = new AggregateData(Aggregate.SUM, Value.LONG);
+        data.add(null, true, ValueInt.get(1));
+        data.add(null, true, ValueInt.get(1));
+        data.add(null, true, ValueInt.get(2));
+        assertEquals(ValueLong.get(3), data.getValue(null, true));
+        //再取一次，结果不变
+        assertEquals(ValueLong.get(3), data.getValue(null, true));
+    }
+
+    void testMerge() {
+        AggregateData data = new AggregateData(Aggregate.SUM, Value.LONG);
+        data.add(null, false, ValueInt.get(5));
+        data.merge(null, false, ValueLong.get(7));
+        assertEquals(ValueLong.get(12), data.getValue(null, false));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.function;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+//用4个线程和较小的批量，文件要大于两个1M的块才会被分开读
+public class CsvLoadTest extends TestBase {
+    private static final int ROWS = 20000;
+    private static File file;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        conn = DriverManager.getConnection(
+                "jdbc:lealone:embedded:memory:CsvLoadTest;CSV_LOAD_THREADS=4;CSV_LOAD_BATCH_SIZE=100", "sa", "");
+        stmt = conn.createStatement();
+        file = File.createTempFile("CsvLoadTest", ".csv");
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        stmt.close();
+        conn.close();
+        file.delete();
+    }
+
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("DROP TABLE IF EXISTS CsvLoadTest");
+        stmt.executeUpdate("CREATE TABLE CsvLoadTest(f1 int primary key, f2 varchar, f3 double)");
+
+        testSmallFile();
+        testQuotedNewlines();
+        testWorkerError();
+        testCsvWrite();
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS CsvLoadTest");
+    }
+
+    private static String getValue(int i) {
+        StringBuilder buff = new StringBuilder("value-").append(i);
+        //每个值有很多换行，块的边界几乎总是落在带引号的值中间
+        for (int j = 0; j < 10; j++) {
+            buff.append("\nline ").append(j).append(", \"quoted\"");
+        }
+        return buff.toString();
+    }
+
+    private static void writeFile(int rows, int badRow) throws Exception {
+        Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        w.write("F1,F2,F3\n");
+        for (int i = 1; i <= rows; i++) {
+            String f1 = i == badRow ? "abc" : String.valueOf(i);
+            w.write(f1 + ",\"" + getValue(i).replace("\"", "\"\"") + "\"," + (i / 2.0) + "\n");
+        }
+        w.close();
+    }
+
+    private static int load() throws Exception {
+        ResultSet r = stmt.executeQuery("SELECT CSVLOAD('CsvLoadTest', '" + file.getAbsolutePath() + "')");
+        r.next();
+        int rows = r.getInt(1);
+        r.close();
+        return rows;
+    }
+
+    private static int count() throws Exception {
+        ResultSet r = stmt.executeQuery("SELECT COUNT(*) FROM CsvLoadTest");
+        r.next();
+        int count = r.getInt(1);
+        r.close();
+        return count;
+    }
+
+    void testSmallFile() throws Exception {
+        stmt.executeUpdate("DELETE FROM CsvLoadTest");
+        writeFile(10, 0);
+        assertEquals(10, load());
+        assertEquals(10, count());
+    }
+
+    void testQuotedNewlines() throws Exception {
+        stmt.executeUpdate("DELETE FROM CsvLoadTest");
+        writeFile(ROWS, 0);
+        assertTrue(file.length() > 4 * 1024 * 1024);
+        assertEquals(ROWS, load());
+        assertEquals(ROWS, count());
+        ResultSet r = stmt.executeQuery("SELECT f1, f2, f3 FROM CsvLoadTest ORDER BY f1");
+        for (int i = 1; i <= ROWS; i++) {
+            assertTrue(r.next());
+            assertEquals(i, r.getInt(1));
+            assertEquals(getValue(i), r.getString(2));
+            assertEquals(i / 2.0, r.getDouble(3));
+        }
+        r.close();
+    }
+
+    //解析线程中的错误由执行CSVLOAD的会话抛出，其他线程也会停下来
+    void testWorkerError() throws Exception {
+        stmt.executeUpdate("DELETE FROM CsvLoadTest");
+        writeFile(ROWS, ROWS * 3 / 4);
+        try {
+            load();
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("abc"));
+        }
+        int activeCount = 0;
+        for (int i = 0; i < 50; i++) {
+            activeCount = countLoaderThreads();
+            if (activeCount == 0) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(0, activeCount);
+    }
+
+    private static int countLoaderThreads() {
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int count = 0;
+        for (int i = 0, len = Thread.enumerate(threads); i < len; i++) {
+            if (threads[i].getName().startsWith("CSVLOAD ")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void testCsvWrite() throws Exception {
+        stmt.executeUpdate("DELETE FROM CsvLoadTest");
+        stmt.executeUpdate("INSERT INTO CsvLoadTest(f1, f2, f3) VALUES(1, 'a\nb', 1.5), (2, NULL, 2)");
+        stmt.executeQuery("SELECT CSVWRITE('" + file.getAbsolutePath() + "', 'SELECT * FROM CsvLoadTest')").close();
+        stmt.executeUpdate("DELETE FROM CsvLoadTest");
+        assertEquals(2, load());
+        ResultSet r = stmt.executeQuery("SELECT f2 FROM CsvLoadTest ORDER BY f1");
+        assertTrue(r.next());
+        assertEquals("a\nb", r.getString(1));
+        assertTrue(r.next());
+        assertEquals(null, r.getString(1));
+        r.close();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.sql.PreparedStatement;
+
+import org.junit.Test;
+
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+//表结构在batch执行前或执行中改变时，语句会被重新编译，batch中的每一行都不能丢
+public class BatchRecompileTest extends TestBase {
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("DROP TABLE IF EXISTS BatchRecompileTest");
+        stmt.executeUpdate("CREATE TABLE BatchRecompileTest(f1 int primary key, f2 int)");
+
+        testPreparedStatementBatch();
+        testStatementBatch();
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS BatchRecompileTest");
+    }
+
+    private int count(String where) throws Exception {
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM BatchRecompileTest WHERE " + where);
+        rs.next();
+        int count = rs.getInt(1);
+        rs.close();
+        return count;
+    }
+
+    void testPreparedStatementBatch() throws Exception {
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO BatchRecompileTest(f1, f2) VALUES(?, ?)");
+        ps.setInt(1, 0);
+        ps.setInt(2, 0);
+        ps.executeUpdate();
+
+        for (int i = 1; i <= 10; i++) {
+            ps.setInt(1, i);
+            ps.setInt(2, i * 2);
+            ps.addBatch();
+        }
+        //batch已经绑定到语句上之后表结构才改变
+        stmt.executeUpdate("ALTER TABLE BatchRecompileTest ADD COLUMN f3 int");
+        int[] result = ps.executeBatch();
+        assertEquals(10, result.length);
+        assertEquals(10, count("f1 BETWEEN 1 AND 10"));
+        assertEquals(10, count("f2 = f1 * 2 AND f1 > 0"));
+
+        //同一个语句再次执行batch时不能带着上一个batch的行
+        for (int i = 11; i <= 15; i++) {
+            ps.setInt(1, i);
+            ps.setInt(2, i * 2);
+            ps.addBatch();
+        }
+        stmt.executeUpdate("ALTER TABLE BatchRecompileTest DROP COLUMN f3");
+        result = ps.executeBatch();
+        assertEquals(5, result.length);
+        assertEquals(16, count("f1 >= 0"));
+        ps.close();
+    }
+
+    void testStatementBatch() throws Exception {
+        stmt.clearBatch();
+        stmt.addBatch("INSERT INTO BatchRecompileTest(f1, f2) VALUES(100, 1)");
+        stmt.addBatch("ALTER TABLE BatchRecompileTest ADD COLUMN f3 int");
+        stmt.addBatch("INSERT INTO BatchRecompileTest(f1, f2, f3) VALUES(101, 1, 1)");
+        stmt.addBatch("INSERT INTO BatchRecompileTest(f1, f2, f3) VALUES(102, 1, 1)");
+        int[] result = stmt.executeBatch();
+        assertEquals(4, result.length);
+        assertEquals(3, count("f1 >= 100"));
+        assertEquals(2, count("f3 = 1"));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+public class CompressResultTest extends TestBase {
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        conn = DriverManager.getConnection(getURL() + ";COMPRESS_RESULT=LZF", "sa", "");
+        stmt = conn.createStatement();
+    }
+
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS CompressResultTest(f1 int primary key, f2 varchar)");
+        stmt.executeUpdate("DELETE FROM CompressResultTest");
+
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO CompressResultTest(f1, f2) VALUES(?, ?)");
+        for (int i = 1; i <= 2000; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "value-" + i);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+
+        stmt.setFetchSize(500);
+        sql = "SELECT f1, f2 FROM CompressResultTest";
+        rs = stmt.executeQuery(sql);
+        int count = 0;
+        while (rs.next()) {
+            assertEquals("value-" + rs.getInt(1), rs.getString(2));
+            count++;
+        }
+        rs.close();
+        assertEquals(2000, count);
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS CompressResultTest");
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+import com.codefollower.lealone.constant.ErrorCode;
+import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.jdbc.JdbcConnection;
+
+//两个会话互相等待对方的表锁，后开始等待的那个会话马上发现死锁，不用等到锁超时
+public class DeadlockTest {
+    @Test
+    public void run() throws Exception {
+        //内存数据库默认一次只执行一条语句，等待锁时在数据库上wait
+        testDeadlock("jdbc:lealone:embedded:memory:DeadlockTest1", false);
+        //每个表用自己的锁
+        testDeadlock("jdbc:lealone:embedded:memory:DeadlockTest2;MULTI_THREADED=1", true);
+        testLockModeOff();
+    }
+
+    private static Session getSession(Connection conn) {
+        return (Session) ((JdbcConnection) conn).getSession();
+    }
+
+    private static long getDeadlocks(Statement stmt, String tableName) throws Exception {
+        ResultSet rs = stmt.executeQuery("SELECT DEADLOCKS FROM INFORMATION_SCHEMA.LOCK_STATISTICS WHERE TABLE_NAME = '"
+                + tableName + "'");
+        assertTrue(rs.next());
+        long deadlocks = rs.getLong(1);
+        rs.close();
+        return deadlocks;
+    }
+
+    void testDeadlock(String url, boolean multiThreaded) throws Exception {
+        Connection conn1 = DriverManager.getConnection(url, "sa", "");
+        final Connection conn2 = DriverManager.getConnection(url, "sa", "");
+        assertEquals(multiThreaded, getSession(conn1).getDatabase().isMultiThreaded());
+
+        Statement stmt1 = conn1.createStatement();
+        stmt1.executeUpdate("CREATE TABLE DeadlockTestA(f1 int primary key)");
+        stmt1.executeUpdate("CREATE TABLE DeadlockTestB(f1 int primary key)");
+        //锁超时足够长，如果靠超时才结束测试会很慢
+        stmt1.executeUpdate("SET DEFAULT_LOCK_TIMEOUT 60000");
+        stmt1.executeUpdate("SET LOCK_TIMEOUT 60000");
+        final Statement stmt2 = conn2.createStatement();
+        stmt2.executeUpdate("SET LOCK_TIMEOUT 60000");
+
+        conn1.setAutoCommit(false);
+        conn2.setAutoCommit(false);
+        stmt1.executeUpdate("INSERT INTO DeadlockTestA VALUES(1)");
+        stmt2.executeUpdate("INSERT INTO DeadlockTestB VALUES(1)");
+
+        //conn2等待conn1释放A的锁
+        final SQLException[] error = new SQLException[1];
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stmt2.executeUpdate("INSERT INTO DeadlockTestA VALUES(2)");
+                } catch (SQLException e) {
+                    error[0] = e;
+                }
+            }
+        });
+        t.start();
+        Session session2 = getSession(conn2);
+        while (session2.getWaitForLock() == null)
+            Thread.sleep(10);
+
+        //conn1再等待conn2释放B的锁就形成了环
+        long start = System.currentTimeMillis();
+        try {
+            stmt1.executeUpdate("INSERT INTO DeadlockTestB VALUES(2)");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.DEADLOCK_1, e.getErrorCode());
+        }
+        assertTrue(System.currentTimeMillis() - start < 10000);
+
+        //conn1回滚后释放A的锁，conn2就能继续
+        conn1.rollback();
+        t.join();
+        assertNull(error[0]);
+        conn2.commit();
+
+        conn1.setAutoCommit(true);
+        assertEquals(1, getDeadlocks(stmt1, "DEADLOCKTESTB"));
+        assertEquals(0, getDeadlocks(stmt1, "DEADLOCKTESTA"));
+        ResultSet rs = stmt1.executeQuery("SELECT COUNT(*) FROM DeadlockTestA");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+
+        stmt1.close();
+        stmt2.close();
+        conn2.close();
+        conn1.close();
+    }
+
+    //并发执行时不能关掉锁
+    void testLockModeOff() throws Exception {
+        String url = "jdbc:lealone:embedded:memory:DeadlockTest3;MULTI_THREADED=1";
+        Connection conn1 = DriverManager.getConnection(url, "sa", "");
+        Connection conn2 = DriverManager.getConnection(url, "sa", "");
+        Statement stmt = conn1.createStatement();
+        try {
+            stmt.executeUpdate("SET LOCK_MODE 0");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.CANNOT_CHANGE_SETTING_WHEN_OPEN_1, e.getErrorCode());
+        }
+        assertTrue(getSession(conn1).getDatabase().isMultiThreaded());
+        assertFalse(getSession(conn1).getDatabase().getLockMode() == 0);
+        stmt.close();
+        conn2.close();
+        conn1.close();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+//大字段超过一块(默认64K)时分块存放
+public class HBaseLobTest extends TestBase {
+    private static final int ROWS = 5000;
+
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("DROP TABLE IF EXISTS HBaseLobTest");
+        createTableSQL("CREATE STATIC TABLE HBaseLobTest (f1 int primary key, f2 int, f3 blob, f4 clob)");
+
+        testInsertAndRead();
+        testUpdateManyRows();
+        testSkip();
+        testShrink();
+        testDelete();
+        testRollback();
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS HBaseLobTest");
+    }
+
+    private static byte[] getBytes(int f1, int length) {
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++)
+            b[i] = (byte) (i * 31 + f1);
+        return b;
+    }
+
+    private static String getString(int f1, int length) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++)
+            c[i] = (char) ('a' + (i + f1) % 26);
+        return new String(c);
+    }
+
+    private void insert(int f1, int length) throws Exception {
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO HBaseLobTest(f1, f2, f3, f4) VALUES(?, 0, ?, ?)");
+        ps.setInt(1, f1);
+        ps.setBinaryStream(2, new ByteArrayInputStream(getBytes(f1, length)), length);
+        ps.setString(3, getString(f1, length));
+        ps.executeUpdate();
+        ps.close();
+    }
+
+    private void check(int f1, int length) throws Exception {
+        rs = stmt.executeQuery("SELECT f3, f4 FROM HBaseLobTest WHERE f1 = " + f1);
+        assertTrue(rs.next());
+        assertTrue(Arrays.equals(getBytes(f1, length), rs.getBytes(1)));
+        assertEquals(getString(f1, length), rs.getString(2));
+        rs.close();
+        rs = null;
+    }
+
+    void testInsertAndRead() throws Exception {
+        //一块以内、正好一块、跨很多块
+        insert(1, 100);
+        insert(2, 64 * 1024);
+        insert(3, 1024 * 1024 + 1);
+        check(1, 100);
+        check(2, 64 * 1024);
+        check(3, 1024 * 1024 + 1);
+    }
+
+    //一条update语句读到的大字段比以前登记大字段的缓存(4096个)还多时，不能找不到数据块
+    void testUpdateManyRows() throws Exception {
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO HBaseLobTest(f1, f2, f3, f4) VALUES(?, 0, ?, ?)");
+        for (int i = 100; i < 100 + ROWS; i++) {
+            ps.setInt(1, i);
+            ps.setBytes(2, getBytes(i, 70 * 1024));
+            ps.setString(3, getString(i, 10));
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+
+        assertEquals(ROWS, stmt.executeUpdate("UPDATE HBaseLobTest SET f2 = f2 + 1 WHERE f1 >= 100"));
+        rs = stmt.executeQuery("SELECT f1, f2, f3, f4 FROM HBaseLobTest WHERE f1 >= 100");
+        int count = 0;
+        while (rs.next()) {
+            assertEquals(1, rs.getInt(2));
+            assertTrue(Arrays.equals(getBytes(rs.getInt(1), 70 * 1024), rs.getBytes(3)));
+            assertEquals(getString(rs.getInt(1), 10), rs.getString(4));
+            count++;
+        }
+        rs.close();
+        rs = null;
+        assertEquals(ROWS, count);
+    }
+
+    //跳过的块不需要读取
+    void testSkip() throws Exception {
+        rs = stmt.executeQuery("SELECT f3 FROM HBaseLobTest WHERE f1 = 3");
+        assertTrue(rs.next());
+        InputStream in = rs.getBinaryStream(1);
+        byte[] expected = getBytes(3, 1024 * 1024 + 1);
+        assertEquals(1000 * 1024, in.skip(1000 * 1024));
+        for (int i = 1000 * 1024; i < expected.length; i++)
+            assertEquals(expected[i] & 0xff, in.read());
+        assertEquals(-1, in.read());
+        in.close();
+        rs.close();
+        rs = null;
+    }
+
+    //从大字段改成小字段后不会再读到原来的数据块
+    void testShrink() throws Exception {
+        PreparedStatement ps = conn.prepareStatement("UPDATE HBaseLobTest SET f3 = ?, f4 = ? WHERE f1 = 3");
+        ps.setBytes(1, getBytes(3, 10));
+        ps.setString(2, getString(3, 10));
+        assertEquals(1, ps.executeUpdate());
+        ps.close();
+        check(3, 10);
+    }
+
+    void testDelete() throws Exception {
+        assertEquals(1, stmt.executeUpdate("DELETE FROM HBaseLobTest WHERE f1 = 2"));
+        rs = stmt.executeQuery("SELECT f3 FROM HBaseLobTest WHERE f1 = 2");
+        assertFalse(rs.next());
+        rs.close();
+        rs = null;
+
+        //重新插入后读到的是新的数据块
+        insert(2, 200 * 1024);
+        check(2, 200 * 1024);
+    }
+
+    void testRollback() throws Exception {
+        conn.setAutoCommit(false);
+        insert(4, 300 * 1024);
+        assertEquals(1, stmt.executeUpdate("DELETE FROM HBaseLobTest WHERE f1 = 2"));
+        conn.rollback();
+        conn.setAutoCommit(true);
+
+        rs = stmt.executeQuery("SELECT f3 FROM HBaseLobTest WHERE f1 = 4");
+        assertFalse(rs.next());
+        rs.close();
+        rs = null;
+        check(2, 200 * 1024);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.dbobject.table.Table;
+import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.jdbc.JdbcConnection;
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+//远程数据库和本地数据库都用嵌入模式的内存数据库
+public class LinkedTableTest extends TestBase {
+    private static final String REMOTE_URL = "jdbc:lealone:embedded:memory:LinkedTableRemote";
+    private static Connection remote;
+    private static Statement remoteStmt;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        remote = DriverManager.getConnection(REMOTE_URL, "sa", "");
+        remoteStmt = remote.createStatement();
+        conn = DriverManager.getConnection("jdbc:lealone:embedded:memory:LinkedTableTest", "sa", "");
+        stmt = conn.createStatement();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        stmt.close();
+        conn.close();
+        remoteStmt.close();
+        remote.close();
+    }
+
+    @Test
+    public void run() throws Exception {
+        remoteStmt.executeUpdate("DROP TABLE IF EXISTS LinkedTableTest");
+        //远程数据库比较字符串时不区分大小写
+        remoteStmt.executeUpdate("CREATE TABLE LinkedTableTest(f1 int primary key, f2 varchar_ignorecase)");
+        for (int i = 1; i <= 10; i++) {
+            remoteStmt.executeUpdate("INSERT INTO LinkedTableTest(f1, f2) VALUES(" + i + ", 'value-" + i + "')");
+        }
+        remoteStmt.executeUpdate("INSERT INTO LinkedTableTest(f1, f2) VALUES(11, 'VALUE-1')");
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS LinkedTableTest");
+        stmt.executeUpdate("CREATE LINKED TABLE LinkedTableTest('', '" + REMOTE_URL + "', 'sa', '', 'LinkedTableTest')");
+
+        testStringConditions();
+        testLimitWithStringConditions();
+        testAbandonedCursors();
+        testRowCount();
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS LinkedTableTest");
+        remoteStmt.executeUpdate("DROP TABLE IF EXISTS LinkedTableTest");
+    }
+
+    private static int count(String where) throws Exception {
+        ResultSet r = stmt.executeQuery("SELECT COUNT(*) FROM LinkedTableTest WHERE " + where);
+        r.next();
+        int count = r.getInt(1);
+        r.close();
+        return count;
+    }
+
+    //本地按区分大小写的方式比较，远程数据库只能多返回记录，不能少返回
+    void testStringConditions() throws Exception {
+        assertEquals(1, count("f2 = 'value-1'"));
+        assertEquals(1, count("f2 IN('VALUE-1', 'none')"));
+        assertEquals(10, count("f2 <> 'value-1'"));
+        assertEquals(10, count("NOT(f2 = 'value-1')"));
+        assertEquals(10, count("NOT(f2 IN('value-1'))"));
+        assertEquals(10, count("f2 > 'a'"));
+        assertEquals(1, count("f2 LIKE 'VALUE%'"));
+        assertEquals(1, count("f1 = 11 AND NOT(f1 > 5 AND f2 = 'value-1')"));
+    }
+
+    //远程数据库对字符串条件多返回的记录在本地才去掉，所以LIMIT不能交给远程数据库
+    void testLimitWithStringConditions() throws Exception {
+        ResultSet r = stmt.executeQuery("SELECT f1 FROM LinkedTableTest WHERE f2 = 'VALUE-1' LIMIT 1");
+        assertTrue(r.next());
+        assertEquals(11, r.getInt(1));
+        r.close();
+        r = stmt.executeQuery("SELECT f1 FROM LinkedTableTest WHERE f2 IN('VALUE-1') ORDER BY f1 LIMIT 1");
+        assertTrue(r.next());
+        assertEquals(11, r.getInt(1));
+        r.close();
+    }
+
+    private static int getRemoteSessions() throws Exception {
+        ResultSet r = remoteStmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS");
+        r.next();
+        int count = r.getInt(1);
+        r.close();
+        return count;
+    }
+
+    //没有读完的游标在语句结束时关闭，连接还给连接池，不会一直打开新的连接，
+    //两个游标同时打开，所以第一次查询需要再建立一个连接
+    void testAbandonedCursors() throws Exception {
+        sql = "SELECT * FROM LinkedTableTest a, LinkedTableTest b LIMIT 1";
+        stmt.executeQuery(sql).close();
+        int sessions = getRemoteSessions();
+        for (int i = 0; i < 10; i++) {
+            ResultSet r = stmt.executeQuery(sql);
+            assertTrue(r.next());
+            r.close();
+        }
+        assertEquals(sessions, getRemoteSessions());
+    }
+
+    //优化器用ANALYZE TABLE得到的记录数，不去远程数据库取
+    void testRowCount() throws Exception {
+        Session session = (Session) ((JdbcConnection) conn).getSession();
+        Table table = session.getDatabase().getSchema("PUBLIC").findTableOrView(session, "LINKEDTABLETEST");
+        long approximation = table.getRowCountApproximation();
+        stmt.executeUpdate("ANALYZE");
+        assertEquals(approximation, table.getRowCountApproximation());
+        stmt.executeUpdate("ANALYZE TABLE LinkedTableTest");
+        assertEquals(11, table.getRowCountApproximation());
+        assertEquals(11, table.getRowCount(session));
+    }
+}
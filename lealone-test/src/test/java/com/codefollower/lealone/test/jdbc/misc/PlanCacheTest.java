@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+public class PlanCacheTest extends TestBase {
+    //一直打开，不会再准备，所以不影响计划缓存的统计
+    private PreparedStatement info;
+
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("DROP VIEW IF EXISTS PlanCacheTestView");
+        stmt.executeUpdate("DROP TABLE IF EXISTS PlanCacheTest");
+        stmt.executeUpdate("CREATE TABLE PlanCacheTest(f1 int primary key, f2 varchar)");
+        for (int i = 1; i <= 10; i++) {
+            stmt.executeUpdate("INSERT INTO PlanCacheTest(f1, f2) VALUES(" + i + ", 'value-" + i + "')");
+        }
+        stmt.executeUpdate("CREATE VIEW PlanCacheTestView AS SELECT f1, f2 FROM PlanCacheTest WHERE f1 > 5");
+        info = conn.prepareStatement("SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = ?");
+
+        testHitInSameSession();
+        testHitInOtherSession();
+        testViewInOtherSession();
+        testLocalTempTableInOtherSession();
+        testInvalidation();
+        info.close();
+
+        stmt.executeUpdate("DROP VIEW IF EXISTS PlanCacheTestView");
+        stmt.executeUpdate("DROP TABLE IF EXISTS PlanCacheTest");
+    }
+
+    private long getInfo(String name) throws Exception {
+        info.setString(1, "info." + name);
+        ResultSet r = info.executeQuery();
+        assertTrue(r.next());
+        long value = Long.parseLong(r.getString(1));
+        r.close();
+        return value;
+    }
+
+    private static String selectF2(PreparedStatement ps, int f1) throws Exception {
+        ps.setInt(1, f1);
+        ResultSet r = ps.executeQuery();
+        String f2 = r.next() ? r.getString(1) : null;
+        r.close();
+        return f2;
+    }
+
+    //同一个SQL的两个语句同时打开时，会话的查询缓存只保留一个，另一个关闭后交给计划缓存
+    void testHitInSameSession() throws Exception {
+        sql = "SELECT f2 FROM PlanCacheTest WHERE f1 = ? AND f1 > 0";
+        PreparedStatement ps1 = conn.prepareStatement(sql);
+        PreparedStatement ps2 = conn.prepareStatement(sql);
+        assertEquals("value-1", selectF2(ps1, 1));
+        assertEquals("value-2", selectF2(ps2, 2));
+        ps1.close();
+
+        long hits = getInfo("PLAN_CACHE_HITS");
+        PreparedStatement ps3 = conn.prepareStatement(sql);
+        assertEquals(hits + 1, getInfo("PLAN_CACHE_HITS"));
+        assertEquals("value-3", selectF2(ps3, 3));
+        assertEquals("value-4", selectF2(ps2, 4));
+        ps2.close();
+        ps3.close();
+    }
+
+    void testHitInOtherSession() throws Exception {
+        sql = "SELECT f2 FROM PlanCacheTest WHERE f1 = ? AND f1 > 1";
+        Connection conn1 = DriverManager.getConnection(getURL(), "sa", "");
+        PreparedStatement ps = conn1.prepareStatement(sql);
+        assertEquals("value-5", selectF2(ps, 5));
+        ps.close();
+        //关闭语句的请求和下一个请求一起发给服务器
+        conn1.createStatement().executeQuery("SELECT 1").close();
+
+        //建立连接时执行的语句也可能命中计划缓存，所以先建立连接
+        Connection conn2 = DriverManager.getConnection(getURL(), "sa", "");
+        long hits = getInfo("PLAN_CACHE_HITS");
+        ps = conn2.prepareStatement(sql);
+        assertEquals(hits + 1, getInfo("PLAN_CACHE_HITS"));
+        conn1.close();
+        assertEquals("value-6", selectF2(ps, 6));
+        ps.close();
+        conn2.close();
+    }
+
+    //视图的查询在创建计划的会话中执行，计划被另一个会话取走后，要用新的会话执行
+    void testViewInOtherSession() throws Exception {
+        sql = "SELECT f2 FROM PlanCacheTestView WHERE f1 = ?";
+        Connection conn1 = DriverManager.getConnection(getURL(), "sa", "");
+        PreparedStatement ps = conn1.prepareStatement(sql);
+        assertEquals("value-7", selectF2(ps, 7));
+        ps.close();
+        conn1.close();
+
+        Connection conn2 = DriverManager.getConnection(getURL(), "sa", "");
+        long hits = getInfo("PLAN_CACHE_HITS");
+        ps = conn2.prepareStatement(sql);
+        assertEquals(hits + 1, getInfo("PLAN_CACHE_HITS"));
+        assertEquals("value-8", selectF2(ps, 8));
+        assertEquals(null, selectF2(ps, 3));
+        ps.close();
+        conn2.close();
+    }
+
+    //用到局部临时表的计划不能交给其他会话，否则其他会话能读到这个会话的临时表
+    void testLocalTempTableInOtherSession() throws Exception {
+        sql = "SELECT * FROM PlanCacheTestSecret";
+        Connection conn1 = DriverManager.getConnection(getURL(), "sa", "");
+        Statement stmt1 = conn1.createStatement();
+        stmt1.executeUpdate("CREATE LOCAL TEMPORARY TABLE PlanCacheTestSecret(x int)");
+        stmt1.executeUpdate("INSERT INTO PlanCacheTestSecret(x) VALUES(42)");
+        PreparedStatement ps = conn1.prepareStatement(sql);
+        ResultSet r = ps.executeQuery();
+        assertTrue(r.next());
+        assertEquals(42, r.getInt(1));
+        r.close();
+        ps.close();
+        //关闭语句的请求和下一个请求一起发给服务器
+        stmt1.executeQuery("SELECT 1").close();
+
+        Connection conn2 = DriverManager.getConnection(getURL(), "sa", "");
+        long hits = getInfo("PLAN_CACHE_HITS");
+        try {
+            conn2.prepareStatement(sql);
+            fail();
+        } catch (SQLException e) {
+            //表在这个会话中不存在
+        }
+        assertEquals(hits, getInfo("PLAN_CACHE_HITS"));
+        conn2.close();
+        stmt1.close();
+        conn1.close();
+    }
+
+    void testInvalidation() throws Exception {
+        sql = "SELECT * FROM PlanCacheTest WHERE f1 = ?";
+        Connection conn1 = DriverManager.getConnection(getURL(), "sa", "");
+        PreparedStatement ps = conn1.prepareStatement(sql);
+        ps.setInt(1, 1);
+        ResultSet r = ps.executeQuery();
+        assertEquals(2, r.getMetaData().getColumnCount());
+        r.close();
+        ps.close();
+
+        long invalidations = getInfo("PLAN_CACHE_INVALIDATIONS");
+        stmt.executeUpdate("ALTER TABLE PlanCacheTest ADD COLUMN f3 int");
+
+        long hits = getInfo("PLAN_CACHE_HITS");
+        ps = conn1.prepareStatement(sql);
+        assertEquals(hits, getInfo("PLAN_CACHE_HITS"));
+        assertEquals(invalidations + 1, getInfo("PLAN_CACHE_INVALIDATIONS"));
+        ps.setInt(1, 1);
+        r = ps.executeQuery();
+        assertEquals(3, r.getMetaData().getColumnCount());
+        r.close();
+        ps.close();
+        conn1.close();
+    }
+}
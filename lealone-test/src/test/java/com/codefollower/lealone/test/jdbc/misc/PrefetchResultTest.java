@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+public class PrefetchResultTest extends TestBase {
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        conn = DriverManager.getConnection(getURL() + ";PREFETCH_RESULT=TRUE", "sa", "");
+        stmt = conn.createStatement();
+    }
+
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS PrefetchResultTest(f1 int primary key, f2 varchar)");
+        stmt.executeUpdate("DELETE FROM PrefetchResultTest");
+
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO PrefetchResultTest(f1, f2) VALUES(?, ?)");
+        for (int i = 1; i <= 2000; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "value-" + i);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+
+        testScan();
+        testInterleavedStatements();
+        testCloseEarly();
+
+        stmt.executeUpdate("DROP TABLE IF EXISTS PrefetchResultTest");
+    }
+
+    void testScan() throws Exception {
+        stmt.setFetchSize(100);
+        rs = stmt.executeQuery("SELECT f1, f2 FROM PrefetchResultTest ORDER BY f1");
+        int count = 0;
+        while (rs.next()) {
+            count++;
+            assertEquals(count, rs.getInt(1));
+            assertEquals("value-" + count, rs.getString(2));
+        }
+        rs.close();
+        assertEquals(2000, count);
+    }
+
+    //一个结果集有未读完的预取请求时，同一个连接上的其他语句和结果集仍然得到正确的响应
+    void testInterleavedStatements() throws Exception {
+        Statement stmt2 = conn.createStatement();
+        stmt2.setFetchSize(50);
+        stmt.setFetchSize(100);
+        rs = stmt.executeQuery("SELECT f1 FROM PrefetchResultTest ORDER BY f1");
+        ResultSet rs2 = stmt2.executeQuery("SELECT f1 FROM PrefetchResultTest ORDER BY f1 DESC");
+        int count = 0;
+        while (rs.next()) {
+            count++;
+            assertEquals(count, rs.getInt(1));
+            assertTrue(rs2.next());
+            assertEquals(2001 - count, rs2.getInt(1));
+            if (count % 150 == 0) {
+                ResultSet r = stmt2.executeQuery("SELECT COUNT(*) FROM PrefetchResultTest WHERE f1 <= " + count);
+                r.next();
+                assertEquals(count, r.getInt(1));
+                r.close();
+                rs2 = stmt2.executeQuery("SELECT f1 FROM PrefetchResultTest WHERE f1 <= " + (2000 - count)
+                        + " ORDER BY f1 DESC");
+            }
+        }
+        assertEquals(2000, count);
+        rs.close();
+        rs2.close();
+        stmt2.close();
+    }
+
+    void testCloseEarly() throws Exception {
+        stmt.setFetchSize(10);
+        rs = stmt.executeQuery("SELECT f1 FROM PrefetchResultTest ORDER BY f1");
+        assertTrue(rs.next());
+        assertTrue(rs.next());
+        rs.close();
+
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM PrefetchResultTest");
+        assertTrue(rs.next());
+        assertEquals(2000, rs.getInt(1));
+        assertFalse(rs.next());
+        rs.close();
+    }
+}
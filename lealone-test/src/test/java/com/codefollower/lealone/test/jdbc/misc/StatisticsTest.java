@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.jdbc.misc;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.dbobject.table.Table;
+import com.codefollower.lealone.dbobject.table.TableStatistics;
+import com.codefollower.lealone.engine.Database;
+import com.codefollower.lealone.engine.Session;
+import com.codefollower.lealone.jdbc.JdbcConnection;
+import com.codefollower.lealone.test.jdbc.TestBase;
+
+//用嵌入模式，这样可以直接检查数据库里的统计信息
+public class StatisticsTest extends TestBase {
+    private static Database db;
+    private static Session session;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        conn = DriverManager.getConnection("jdbc:lealone:embedded:memory:StatisticsTest", "sa", "");
+        stmt = conn.createStatement();
+        session = (Session) ((JdbcConnection) conn).getSession();
+        db = session.getDatabase();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        stmt.close();
+        conn.close();
+    }
+
+    @Test
+    public void run() throws Exception {
+        stmt.executeUpdate("DROP TABLE IF EXISTS StatisticsTest");
+        stmt.executeUpdate("CREATE TABLE StatisticsTest(f1 int primary key, f2 varchar, f3 int)");
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO StatisticsTest(f1, f2, f3) VALUES(?, ?, ?)");
+        for (int i = 1; i <= 100; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "value-" + (i % 10));
+            if (i % 4 == 0)
+                ps.setNull(3, java.sql.Types.INTEGER);
+            else
+                ps.setInt(3, i);
+            ps.executeUpdate();
+        }
+        ps.close();
+
+        testAnalyze();
+        testRestore();
+        testRename();
+        testDrop();
+    }
+
+    private static Table getTable(String name) {
+        return db.getSchema("PUBLIC").findTableOrView(session, name);
+    }
+
+    //统计信息放在单独的元数据记录里，不改变表的定义
+    void testAnalyze() throws Exception {
+        stmt.executeUpdate("ANALYZE TABLE StatisticsTest");
+        Table table = getTable("STATISTICSTEST");
+        TableStatistics statistics = db.findTableStatistics(table);
+        assertNotNull(statistics);
+        assertTrue(statistics == table.getStatistics());
+        assertEquals(100, statistics.getRowCount());
+        assertEquals(10, table.getColumn("F2").getStatistics().getDistinctCount());
+        assertEquals(0.25, table.getColumn("F3").getStatistics().getNullFraction(), 0.001);
+        assertFalse(table.getCreateSQL().contains("HISTOGRAM"));
+        assertTrue(statistics.getCreateSQL().startsWith("ANALYZE TABLE PUBLIC.STATISTICSTEST ROW_COUNT 100 COLUMN"));
+
+        //不指定表时分析所有的表，记录只更新不重复创建
+        int id = statistics.getId();
+        stmt.executeUpdate("ANALYZE");
+        assertEquals(id, db.findTableStatistics(table).getId());
+    }
+
+    //启动时重新执行元数据记录里的SQL，得到同样的统计信息，不认识的列被忽略
+    void testRestore() throws Exception {
+        Table table = getTable("STATISTICSTEST");
+        String sql = db.findTableStatistics(table).getCreateSQL();
+        stmt.executeUpdate("ANALYZE TABLE StatisticsTest ROW_COUNT 7 COLUMN f2 NULL_FRACTION 0.5 DISTINCT 3 "
+                + "HISTOGRAM('a', 'b') COLUMN f4 NULL_FRACTION 0.0 DISTINCT 1 HISTOGRAM(1)");
+        assertEquals(7, table.getStatistics().getRowCount());
+        assertEquals(3, table.getColumn("F2").getStatistics().getDistinctCount());
+        assertEquals(2, table.getColumn("F2").getStatistics().getBounds().length);
+
+        stmt.executeUpdate(sql);
+        assertEquals(sql, db.findTableStatistics(table).getCreateSQL());
+        assertEquals(100, table.getStatistics().getRowCount());
+    }
+
+    void testRename() throws Exception {
+        stmt.executeUpdate("DROP TABLE IF EXISTS StatisticsTest2");
+        stmt.executeUpdate("ALTER TABLE StatisticsTest RENAME TO StatisticsTest2");
+        Table table = getTable("STATISTICSTEST2");
+        assertTrue(db.findTableStatistics(table).getCreateSQL().startsWith("ANALYZE TABLE PUBLIC.STATISTICSTEST2 "));
+        stmt.executeUpdate("ALTER TABLE StatisticsTest2 RENAME TO StatisticsTest");
+    }
+
+    void testDrop() throws Exception {
+        Table table = getTable("STATISTICSTEST");
+        stmt.executeUpdate("DROP TABLE StatisticsTest");
+        assertNull(db.findTableStatistics(table));
+        assertNull(table.getStatistics());
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.codefollower.lealone.test.pg;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codefollower.lealone.server.PgServer;
+
+//没有PostgreSQL的JDBC驱动，所以直接按协议发送消息
+public class PgServerPortalTest {
+    private static PgServer server;
+    private Socket socket;
+    private ByteArrayOutputStream buff;
+    private String lastValue;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        server = new PgServer();
+        server.init("-pgPort", "0");
+        server.start();
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                server.listen();
+            }
+        }, "PgServerPortalTest");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void run() throws Exception {
+        connect();
+        query("CREATE TABLE IF NOT EXISTS PgServerPortalTest(f1 int primary key)");
+        query("DELETE FROM PgServerPortalTest");
+        for (int i = 1; i <= 10; i++) {
+            query("INSERT INTO PgServerPortalTest(f1) VALUES(" + i + ")");
+        }
+
+        testInterleavedPortals();
+        testRebind();
+
+        query("DROP TABLE IF EXISTS PgServerPortalTest");
+        socket.close();
+    }
+
+    //同一个语句的两个门户交替执行，互相不会关闭对方的结果
+    void testInterleavedPortals() throws Exception {
+        parse("S1", "SELECT f1 FROM PgServerPortalTest WHERE f1 > $1 ORDER BY f1");
+        bind("P1", "S1", "0");
+        bind("P2", "S1", "5");
+        execute("P1", 2);
+        execute("P2", 2);
+        execute("P1", 3);
+        execute("P2", 0);
+        execute("P1", 0);
+        assertEquals("[1, B, B, 1, 2, s, 6, 7, s, 3, 4, 5, s, 8, 9, 10, C, 6, 7, 8, 9, 10, C, Z]", sync().toString());
+    }
+
+    //门户关闭后语句可以给新的门户用，重新绑定同名的门户会关闭原来的结果
+    void testRebind() throws Exception {
+        close('P', "P1");
+        close('P', "P2");
+        bind("P1", "S1", "7");
+        execute("P1", 1);
+        bind("P1", "S1", "8");
+        bind("P2", "S1", "6");
+        execute("P1", 0);
+        execute("P2", 1);
+        close('S', "S1");
+        assertEquals("[3, 3, B, 8, s, B, B, 9, 10, C, 7, s, 3, Z]", sync().toString());
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket("localhost", server.getPort());
+        in = new DataInputStream(socket.getInputStream());
+        out = new DataOutputStream(socket.getOutputStream());
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buff);
+        data.writeInt(196608);
+        writeString(data, "user");
+        writeString(data, "sa");
+        writeString(data, "database");
+        writeString(data, "embedded:memory:PgServerPortalTest");
+        data.writeByte(0);
+        out.writeInt(buff.size() + 4);
+        out.write(buff.toByteArray());
+        out.flush();
+        assertEquals('R', readMessage());
+
+        data = message();
+        writeString(data, "");
+        send('p', data);
+        readUntilReady();
+    }
+
+    private void query(String sql) throws IOException {
+        DataOutputStream data = message();
+        writeString(data, sql);
+        send('Q', data);
+        List<String> events = readUntilReady();
+        assertEquals("C", events.get(events.size() - 2));
+    }
+
+    private void parse(String name, String sql) throws IOException {
+        DataOutputStream data = message();
+        writeString(data, name);
+        writeString(data, sql);
+        data.writeShort(0);
+        send('P', data);
+    }
+
+    private void bind(String portal, String name, String param) throws IOException {
+        DataOutputStream data = message();
+        writeString(data, portal);
+        writeString(data, name);
+        data.writeShort(0);
+        data.writeShort(1);
+        byte[] bytes = param.getBytes("UTF-8");
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        data.writeShort(0);
+        send('B', data);
+    }
+
+    private void execute(String portal, int maxRows) throws IOException {
+        DataOutputStream data = message();
+        writeString(data, portal);
+        data.writeInt(maxRows);
+        send('E', data);
+    }
+
+    private void close(char type, String name) throws IOException {
+        DataOutputStream data = message();
+        data.writeByte(type);
+        writeString(data, name);
+        send('C', data);
+    }
+
+    //ParseComplete和CloseComplete记为1和3，BindComplete记为B，数据行记为它的值
+    private List<String> sync() throws IOException {
+        send('S', message());
+        return readUntilReady();
+    }
+
+    private List<String> readUntilReady() throws IOException {
+        List<String> events = new ArrayList<String>();
+        while (true) {
+            char type = readMessage();
+            String event;
+            switch (type) {
+            case 'D':
+                event = lastValue;
+                break;
+            case 'E':
+                event = "E";
+                break;
+            case '2':
+                event = "B";
+                break;
+            case 's':
+            case 'C':
+            case 'Z':
+            case '1':
+            case '3':
+                event = String.valueOf(type);
+                break;
+            default:
+                continue;
+            }
+            events.add(event);
+            if (type == 'Z') {
+                return events;
+            }
+        }
+    }
+
+    //数据行只有一列，它的值放在lastValue中
+    private char readMessage() throws IOException {
+        char type = (char) in.readByte();
+        byte[] data = new byte[in.readInt() - 4];
+        in.readFully(data);
+        if (type == 'D') {
+            DataInputStream d = new DataInputStream(new ByteArrayInputStream(data));
+            d.readShort();
+            byte[] v = new byte[d.readInt()];
+            d.readFully(v);
+            lastValue = new String(v, "UTF-8");
+        }
+        return type;
+    }
+
+    private DataOutputStream message() {
+        buff = new ByteArrayOutputStream();
+        return new DataOutputStream(buff);
+    }
+
+    private void send(char type, DataOutputStream data) throws IOException {
+        data.flush();
+        out.writeByte(type);
+        out.writeInt(buff.size() + 4);
+        out.write(buff.toByteArray());
+        out.flush();
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        data.write(s.getBytes("UTF-8"));
+        data.writeByte(0);
+    }
+}